@@ -0,0 +1,106 @@
+package kr.co.iefriends.pcsx2.hid;
+
+import android.hardware.usb.UsbDevice;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Report throughput through {@link HIDDeviceTable} with several controllers open, the way
+ * HIDDeviceManager resolves a device for every writeReport/readReport call.
+ */
+@RunWith(AndroidJUnit4.class)
+public class HIDDeviceTableBenchmark
+{
+    private static final int DEVICE_COUNT = 8;
+    private static final int FIRST_ID = 1000;
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final HIDDeviceTable table = new HIDDeviceTable();
+    private final byte[] report = new byte[64];
+    private final AtomicBoolean hotplugRunning = new AtomicBoolean();
+    private Thread hotplug;
+
+    @Before
+    public void setUp() {
+        for (int i = 0; i < DEVICE_COUNT; i++) {
+            table.put(FIRST_ID + i, new FakeDevice(FIRST_ID + i));
+        }
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        hotplugRunning.set(false);
+        if (hotplug != null) {
+            hotplug.join();
+        }
+    }
+
+    /** One report to each open device per iteration. */
+    @Test
+    public void writeReportAcrossDevices() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            for (int i = 0; i < DEVICE_COUNT; i++) {
+                table.get(FIRST_ID + i).writeReport(report, false);
+            }
+        }
+    }
+
+    /** Same, while another thread keeps connecting and disconnecting a ninth device. */
+    @Test
+    public void writeReportAcrossDevicesDuringHotplug() {
+        final int extraId = FIRST_ID + DEVICE_COUNT;
+        final HIDDevice extra = new FakeDevice(extraId);
+        hotplugRunning.set(true);
+        hotplug = new Thread(() -> {
+            while (hotplugRunning.get()) {
+                table.put(extraId, extra);
+                table.remove(extraId);
+            }
+        }, "HIDHotplug");
+        hotplug.start();
+
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            for (int i = 0; i < DEVICE_COUNT; i++) {
+                table.get(FIRST_ID + i).writeReport(report, false);
+            }
+        }
+    }
+
+    private static final class FakeDevice implements HIDDevice
+    {
+        private final int mId;
+
+        FakeDevice(int id) {
+            mId = id;
+        }
+
+        @Override public int getId() { return mId; }
+        @Override public int getVendorId() { return 0x045e; }
+        @Override public int getProductId() { return 0x028e; }
+        @Override public String getSerialNumber() { return ""; }
+        @Override public int getVersion() { return 0; }
+        @Override public String getManufacturerName() { return ""; }
+        @Override public String getProductName() { return ""; }
+        @Override public UsbDevice getDevice() { return null; }
+        @Override public boolean open() { return true; }
+        @Override public int writeReport(byte[] report, boolean feature) { return report.length; }
+        @Override public boolean readReport(byte[] report, boolean feature) { return true; }
+        @Override public void setFrozen(boolean frozen) {}
+        @Override public void close() {}
+        @Override public void shutdown() {}
+    }
+}
@@ -0,0 +1,184 @@
+package kr.co.iefriends.pcsx2.hid;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** Drives {@link HIDDeviceUSB#pumpInput} with a scripted queue instead of a USB connection. */
+@RunWith(AndroidJUnit4.class)
+public class HIDDeviceUSBInputTest
+{
+    private static final int DEVICE_ID = 7;
+    private static final int PACKET_SIZE = 64;
+    private static final int TIMEOUT = -2;
+
+    /** Completes reads round-robin with the scripted lengths, then reports an I/O error. */
+    private static final class FakeQueue implements HIDInputQueue
+    {
+        final ByteBuffer[] buffers;
+        final int[] requeues;
+        final ArrayDeque<Integer> script = new ArrayDeque<>();
+        final List<Integer> completed = new ArrayList<>();
+        private final boolean[] queued;
+        private int next;
+        boolean requeuedDirty;
+
+        FakeQueue(int count) {
+            buffers = new ByteBuffer[count];
+            requeues = new int[count];
+            queued = new boolean[count];
+        }
+
+        @Override
+        public int open(int count, int packetSize) {
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = ByteBuffer.allocateDirect(packetSize);
+                queued[i] = true;
+            }
+            return buffers.length;
+        }
+
+        @Override
+        public int await(long timeoutMs) throws TimeoutException {
+            Integer length = script.poll();
+            if (length == null) {
+                return -1;
+            }
+            if (length == TIMEOUT) {
+                throw new TimeoutException();
+            }
+            int index = next;
+            next = (next + 1) % buffers.length;
+            assertTrue("completed a read that was not queued", queued[index]);
+            queued[index] = false;
+            ByteBuffer buffer = buffers[index];
+            for (int i = 0; i < length; i++) {
+                buffer.put((byte) (completed.size() * 16 + i));
+            }
+            completed.add(index);
+            return index;
+        }
+
+        @Override
+        public ByteBuffer buffer(int index) {
+            return buffers[index];
+        }
+
+        @Override
+        public boolean requeue(int index) {
+            ByteBuffer buffer = buffers[index];
+            if (buffer.position() != 0 || buffer.limit() != buffer.capacity()) {
+                requeuedDirty = true;
+            }
+            queued[index] = true;
+            requeues[index]++;
+            return true;
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    private static final class RecordingSink implements HIDInputSink
+    {
+        final List<byte[]> reports = new ArrayList<>();
+
+        @Override
+        public void onInputReport(int deviceId, ByteBuffer report, int length) {
+            assertEquals(DEVICE_ID, deviceId);
+            byte[] copy = new byte[length];
+            ByteBuffer view = report.duplicate();
+            view.flip();
+            view.get(copy);
+            reports.add(copy);
+        }
+    }
+
+    @Test
+    public void reportsReachSinkWithTheirLengthsAndBuffersAreRequeued() {
+        FakeQueue queue = new FakeQueue(4);
+        queue.open(4, PACKET_SIZE);
+        int[] lengths = { 64, 12, 1, 49, 64, 3 };
+        for (int length : lengths) {
+            queue.script.add(length);
+        }
+        RecordingSink sink = new RecordingSink();
+
+        HIDDeviceUSB.pumpInput(queue, DEVICE_ID, sink, () -> true, () -> false);
+
+        assertEquals(lengths.length, sink.reports.size());
+        for (int r = 0; r < lengths.length; r++) {
+            byte[] expected = new byte[lengths[r]];
+            for (int i = 0; i < expected.length; i++) {
+                expected[i] = (byte) (r * 16 + i);
+            }
+            assertArrayEquals(expected, sink.reports.get(r));
+        }
+        // Six completions over four requests: the first two went round twice.
+        assertArrayEquals(new int[] { 2, 2, 1, 1 }, queue.requeues);
+        assertTrue("buffer requeued without being cleared", !queue.requeuedDirty);
+    }
+
+    @Test
+    public void timeoutsAndEmptyReadsAreSkipped() {
+        FakeQueue queue = new FakeQueue(2);
+        queue.open(2, PACKET_SIZE);
+        queue.script.add(TIMEOUT);
+        queue.script.add(0);
+        queue.script.add(TIMEOUT);
+        queue.script.add(8);
+        RecordingSink sink = new RecordingSink();
+
+        HIDDeviceUSB.pumpInput(queue, DEVICE_ID, sink, () -> true, () -> false);
+
+        assertEquals(1, sink.reports.size());
+        assertEquals(8, sink.reports.get(0).length);
+        assertArrayEquals(new int[] { 1, 1 }, queue.requeues);
+    }
+
+    @Test
+    public void frozenDeviceDropsReportsButKeepsReadsQueued() {
+        FakeQueue queue = new FakeQueue(2);
+        queue.open(2, PACKET_SIZE);
+        queue.script.add(10);
+        queue.script.add(20);
+        queue.script.add(30);
+        RecordingSink sink = new RecordingSink();
+
+        HIDDeviceUSB.pumpInput(queue, DEVICE_ID, sink, () -> true, () -> true);
+
+        assertEquals(0, sink.reports.size());
+        assertArrayEquals(new int[] { 2, 1 }, queue.requeues);
+        assertTrue(!queue.requeuedDirty);
+    }
+
+    @Test
+    public void stopsWithoutRequeueingOnceNotRunning() {
+        FakeQueue queue = new FakeQueue(2);
+        queue.open(2, PACKET_SIZE);
+        queue.script.add(5);
+        queue.script.add(6);
+        RecordingSink sink = new RecordingSink();
+        boolean[] running = { true };
+
+        HIDDeviceUSB.pumpInput(queue, DEVICE_ID, (id, report, length) -> {
+            sink.onInputReport(id, report, length);
+            running[0] = false;
+        }, () -> running[0], () -> false);
+
+        assertEquals(1, sink.reports.size());
+        assertEquals(5, sink.reports.get(0).length);
+        assertArrayEquals(new int[] { 0, 0 }, queue.requeues);
+    }
+}
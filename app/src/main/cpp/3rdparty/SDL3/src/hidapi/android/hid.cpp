@@ -824,6 +824,9 @@ JNIEXPORT void JNICALL HID_DEVICE_MANAGER_JAVA_INTERFACE(HIDDeviceDisconnected)(
 extern "C"
 JNIEXPORT void JNICALL HID_DEVICE_MANAGER_JAVA_INTERFACE(HIDDeviceInputReport)(JNIEnv *env, jobject thiz, int nDeviceID, jbyteArray value);
 
+extern "C"
+JNIEXPORT void JNICALL HID_DEVICE_MANAGER_JAVA_INTERFACE(HIDDeviceInputReportDirect)(JNIEnv *env, jobject thiz, int nDeviceID, jobject buffer, int nLength);
+
 extern "C"
 JNIEXPORT void JNICALL HID_DEVICE_MANAGER_JAVA_INTERFACE(HIDDeviceReportResponse)(JNIEnv *env, jobject thiz, int nDeviceID, jbyteArray value);
 
@@ -1003,6 +1006,29 @@ JNIEXPORT void JNICALL HID_DEVICE_MANAGER_JAVA_INTERFACE(HIDDeviceInputReport)(J
 	env->ReleaseByteArrayElements(value, pBuf, 0);
 }
 
+extern "C"
+JNIEXPORT void JNICALL HID_DEVICE_MANAGER_JAVA_INTERFACE(HIDDeviceInputReportDirect)(JNIEnv *env, jobject thiz, int nDeviceID, jobject buffer, int nLength)
+{
+	// Java reuses the buffer for the next report, so ProcessInput() has to copy it.
+	const uint8_t *pBuf = static_cast< const uint8_t* >( env->GetDirectBufferAddress( buffer ) );
+	jlong nCapacity = env->GetDirectBufferCapacity( buffer );
+	if ( !pBuf || nLength <= 0 || nCapacity <= 0 )
+	{
+		return;
+	}
+	if ( nLength > nCapacity )
+	{
+		nLength = (int)nCapacity;
+	}
+
+//	LOGV( "HIDDeviceInputDirect() id=%d len=%d\n", nDeviceID, nLength );
+	hid_device_ref<CHIDDevice> pDevice = FindDevice( nDeviceID );
+	if ( pDevice )
+	{
+		pDevice->ProcessInput( pBuf, nLength );
+	}
+}
+
 extern "C"
 JNIEXPORT void JNICALL HID_DEVICE_MANAGER_JAVA_INTERFACE(HIDDeviceReportResponse)(JNIEnv *env, jobject thiz, int nDeviceID, jbyteArray value)
 {
@@ -1410,6 +1436,9 @@ JNIEXPORT void JNICALL HID_DEVICE_MANAGER_JAVA_INTERFACE(HIDDeviceDisconnected)(
 extern "C"
 JNIEXPORT void JNICALL HID_DEVICE_MANAGER_JAVA_INTERFACE(HIDDeviceInputReport)(JNIEnv *env, jobject thiz, int nDeviceID, jbyteArray value);
 
+extern "C"
+JNIEXPORT void JNICALL HID_DEVICE_MANAGER_JAVA_INTERFACE(HIDDeviceInputReportDirect)(JNIEnv *env, jobject thiz, int nDeviceID, jobject buffer, int nLength);
+
 extern "C"
 JNIEXPORT void JNICALL HID_DEVICE_MANAGER_JAVA_INTERFACE(HIDDeviceReportResponse)(JNIEnv *env, jobject thiz, int nDeviceID, jbyteArray value);
 
@@ -1456,6 +1485,12 @@ JNIEXPORT void JNICALL HID_DEVICE_MANAGER_JAVA_INTERFACE(HIDDeviceInputReport)(J
 	LOGV("Stub HIDDeviceInput() id=%d len=%u\n", nDeviceID, nBufSize);
 }
 
+extern "C"
+JNIEXPORT void JNICALL HID_DEVICE_MANAGER_JAVA_INTERFACE(HIDDeviceInputReportDirect)(JNIEnv *env, jobject thiz, int nDeviceID, jobject buffer, int nLength)
+{
+	LOGV("Stub HIDDeviceInputDirect() id=%d len=%d\n", nDeviceID, nLength);
+}
+
 extern "C"
 JNIEXPORT void JNICALL HID_DEVICE_MANAGER_JAVA_INTERFACE(HIDDeviceReportResponse)(JNIEnv *env, jobject thiz, int nDeviceID, jbyteArray value)
 {
@@ -1465,7 +1500,7 @@ JNIEXPORT void JNICALL HID_DEVICE_MANAGER_JAVA_INTERFACE(HIDDeviceReportResponse
 #endif /* SDL_HIDAPI_DISABLED */
 
 extern "C"
-JNINativeMethod HIDDeviceManager_tab[8] = {
+JNINativeMethod HIDDeviceManager_tab[9] = {
         { "HIDDeviceRegisterCallback", "()V", (void*)HID_DEVICE_MANAGER_JAVA_INTERFACE(HIDDeviceRegisterCallback) },
         { "HIDDeviceReleaseCallback", "()V", (void*)HID_DEVICE_MANAGER_JAVA_INTERFACE(HIDDeviceReleaseCallback) },
         { "HIDDeviceConnected", "(ILjava/lang/String;IILjava/lang/String;ILjava/lang/String;Ljava/lang/String;IIIIZ)V", (void*)HID_DEVICE_MANAGER_JAVA_INTERFACE(HIDDeviceConnected) },
@@ -1473,5 +1508,6 @@ JNINativeMethod HIDDeviceManager_tab[8] = {
         { "HIDDeviceOpenResult", "(IZ)V", (void*)HID_DEVICE_MANAGER_JAVA_INTERFACE(HIDDeviceOpenResult) },
         { "HIDDeviceDisconnected", "(I)V", (void*)HID_DEVICE_MANAGER_JAVA_INTERFACE(HIDDeviceDisconnected) },
         { "HIDDeviceInputReport", "(I[B)V", (void*)HID_DEVICE_MANAGER_JAVA_INTERFACE(HIDDeviceInputReport) },
+        { "HIDDeviceInputReportDirect", "(ILjava/nio/ByteBuffer;I)V", (void*)HID_DEVICE_MANAGER_JAVA_INTERFACE(HIDDeviceInputReportDirect) },
         { "HIDDeviceReportResponse", "(I[B)V", (void*)HID_DEVICE_MANAGER_JAVA_INTERFACE(HIDDeviceReportResponse) }
 };
@@ -0,0 +1,402 @@
+#include "IsoToChd.h"
+
+#include "libchdr/chd.h"
+
+#include <zlib.h>
+#include <sys/stat.h>
+#include <unistd.h>
+#include <algorithm>
+#include <cerrno>
+#include <condition_variable>
+#include <cstring>
+#include <memory>
+#include <mutex>
+#include <thread>
+#include <vector>
+
+// Writes CHD v5 files the way libchdr reads them: a 124-byte header, the hunks back to back, then
+// the compressed hunk map. Every hunk is raw deflate ("zlib" codec) or stored when it doesn't
+// shrink, so the map only ever uses two entry types. Hunks are compressed on several threads and
+// written in order by the caller.
+
+namespace
+{
+    constexpr uint32_t SECTOR_BYTES = 2048;
+    constexpr uint32_t HUNK_BYTES = SECTOR_BYTES * 8;
+    constexpr uint64_t FIRST_HUNK_OFFSET = CHD_V5_HEADER_SIZE;
+
+    // Map entry types of the v5 format (COMPRESSION_TYPE_0 and COMPRESSION_NONE in libchdr).
+    constexpr uint8_t MAP_TYPE_CODEC0 = 0;
+    constexpr uint8_t MAP_TYPE_UNCOMPRESSED = 4;
+    constexpr uint32_t MAP_TYPE_CODES = 16;
+    constexpr uint32_t MAP_TYPE_CODE_BITS = 4;
+    constexpr uint32_t MAP_HEADER_BYTES = 16;
+    constexpr uint32_t MAP_ENTRY_BYTES = 12;
+
+    struct HunkEntry
+    {
+        uint8_t type;
+        uint32_t length;
+        uint64_t offset;
+        uint16_t crc;
+    };
+
+    // CRC-16/CCITT as used for CHD hunks and maps.
+    uint16_t Crc16(const uint8_t* data, size_t length)
+    {
+        uint16_t crc = 0xffff;
+        for (size_t i = 0; i < length; i++)
+        {
+            crc ^= static_cast<uint16_t>(data[i]) << 8;
+            for (int bit = 0; bit < 8; bit++)
+                crc = (crc & 0x8000) ? static_cast<uint16_t>((crc << 1) ^ 0x1021) : static_cast<uint16_t>(crc << 1);
+        }
+        return crc;
+    }
+
+    void PutBigEndian(uint8_t* dst, uint64_t value, int bytes)
+    {
+        for (int i = bytes - 1; i >= 0; i--, value >>= 8)
+            dst[i] = static_cast<uint8_t>(value);
+    }
+
+    // Most significant bit first, matching libchdr's bitstream reader.
+    class BitWriter
+    {
+    public:
+        void Write(uint32_t value, uint32_t numbits)
+        {
+            for (int i = static_cast<int>(numbits) - 1; i >= 0; i--)
+            {
+                m_acc = static_cast<uint8_t>((m_acc << 1) | ((value >> i) & 1));
+                if (++m_bits == 8)
+                {
+                    m_data.push_back(m_acc);
+                    m_acc = 0;
+                    m_bits = 0;
+                }
+            }
+        }
+
+        std::vector<uint8_t>& Finish()
+        {
+            if (m_bits > 0)
+            {
+                m_data.push_back(static_cast<uint8_t>(m_acc << (8 - m_bits)));
+                m_acc = 0;
+                m_bits = 0;
+            }
+            return m_data;
+        }
+
+    private:
+        std::vector<uint8_t> m_data;
+        uint8_t m_acc = 0;
+        uint32_t m_bits = 0;
+    };
+
+    // Reads up to length bytes; fewer only at end of file. Returns -1 on error.
+    ssize_t ReadAt(int fd, uint8_t* buffer, size_t length, uint64_t offset)
+    {
+        size_t done = 0;
+        while (done < length)
+        {
+            const ssize_t got = pread(fd, buffer + done, length - done, static_cast<off_t>(offset + done));
+            if (got < 0)
+            {
+                if (errno == EINTR)
+                    continue;
+                return -1;
+            }
+            if (got == 0)
+                break;
+            done += static_cast<size_t>(got);
+        }
+        return static_cast<ssize_t>(done);
+    }
+
+    bool WriteAt(int fd, const uint8_t* buffer, size_t length, uint64_t offset)
+    {
+        size_t done = 0;
+        while (done < length)
+        {
+            const ssize_t put = pwrite(fd, buffer + done, length - done, static_cast<off_t>(offset + done));
+            if (put < 0)
+            {
+                if (errno == EINTR)
+                    continue;
+                return false;
+            }
+            done += static_cast<size_t>(put);
+        }
+        return true;
+    }
+
+    class HunkCompressor
+    {
+    public:
+        HunkCompressor()
+        {
+            std::memset(&m_stream, 0, sizeof(m_stream));
+            // Raw deflate, as libchdr's zlib codec inflates with -MAX_WBITS.
+            m_ok = deflateInit2(&m_stream, Z_BEST_COMPRESSION, Z_DEFLATED, -MAX_WBITS, 8, Z_DEFAULT_STRATEGY) == Z_OK;
+        }
+
+        ~HunkCompressor()
+        {
+            if (m_ok)
+                deflateEnd(&m_stream);
+        }
+
+        bool IsValid() const { return m_ok; }
+
+        // Returns the compressed length, or 0 when the hunk doesn't get smaller.
+        uint32_t Compress(const uint8_t* src, uint8_t* dst)
+        {
+            deflateReset(&m_stream);
+            m_stream.next_in = const_cast<Bytef*>(src);
+            m_stream.avail_in = HUNK_BYTES;
+            m_stream.next_out = dst;
+            m_stream.avail_out = HUNK_BYTES - 1;
+            if (deflate(&m_stream, Z_FINISH) != Z_STREAM_END)
+                return 0;
+            return static_cast<uint32_t>(m_stream.total_out);
+        }
+
+    private:
+        z_stream m_stream;
+        bool m_ok = false;
+    };
+
+    bool WriteHeader(int fd, uint64_t logical_bytes, uint64_t map_offset)
+    {
+        uint8_t header[CHD_V5_HEADER_SIZE] = {};
+        std::memcpy(header, "MComprHD", 8);
+        PutBigEndian(header + 8, CHD_V5_HEADER_SIZE, 4);
+        PutBigEndian(header + 12, CHD_HEADER_VERSION, 4);
+        PutBigEndian(header + 16, CHD_CODEC_ZLIB, 4);
+        PutBigEndian(header + 32, logical_bytes, 8);
+        PutBigEndian(header + 40, map_offset, 8);
+        PutBigEndian(header + 48, 0, 8); // no metadata
+        PutBigEndian(header + 56, HUNK_BYTES, 4);
+        PutBigEndian(header + 60, SECTOR_BYTES, 4);
+        // The SHA-1 fields stay zero; they are only consulted to pair a child CHD with its parent.
+        return WriteAt(fd, header, sizeof(header), 0);
+    }
+
+    // Every type symbol gets a 4-bit code, so the canonical code of type N is N itself.
+    bool WriteMap(int fd, const std::vector<HunkEntry>& entries, uint64_t map_offset)
+    {
+        uint32_t max_length = 0;
+        for (const HunkEntry& entry : entries)
+        {
+            if (entry.type == MAP_TYPE_CODEC0)
+                max_length = std::max(max_length, entry.length);
+        }
+        uint8_t length_bits = 0;
+        while (length_bits < 32 && (max_length >> length_bits) != 0)
+            length_bits++;
+
+        BitWriter bits;
+        for (uint32_t code = 0; code < MAP_TYPE_CODES; code++)
+            bits.Write(MAP_TYPE_CODE_BITS, 4);
+        for (const HunkEntry& entry : entries)
+            bits.Write(entry.type, MAP_TYPE_CODE_BITS);
+        for (const HunkEntry& entry : entries)
+        {
+            if (entry.type == MAP_TYPE_CODEC0)
+                bits.Write(entry.length, length_bits);
+            bits.Write(entry.crc, 16);
+        }
+        const std::vector<uint8_t>& compressed = bits.Finish();
+
+        // The map CRC covers the decoded 12-byte entries.
+        std::vector<uint8_t> raw(entries.size() * MAP_ENTRY_BYTES);
+        for (size_t i = 0; i < entries.size(); i++)
+        {
+            uint8_t* dst = raw.data() + i * MAP_ENTRY_BYTES;
+            dst[0] = entries[i].type;
+            PutBigEndian(dst + 1, entries[i].length, 3);
+            PutBigEndian(dst + 4, entries[i].offset, 6);
+            PutBigEndian(dst + 10, entries[i].crc, 2);
+        }
+
+        uint8_t header[MAP_HEADER_BYTES] = {};
+        PutBigEndian(header, compressed.size(), 4);
+        PutBigEndian(header + 4, FIRST_HUNK_OFFSET, 6);
+        PutBigEndian(header + 10, Crc16(raw.data(), raw.size()), 2);
+        header[12] = length_bits;
+        return WriteAt(fd, header, sizeof(header), map_offset) &&
+               WriteAt(fd, compressed.data(), compressed.size(), map_offset + sizeof(header));
+    }
+
+    // A hunk read and compressed by a worker, waiting for the writer.
+    struct Slot
+    {
+        std::unique_ptr<uint8_t[]> raw = std::make_unique<uint8_t[]>(HUNK_BYTES);
+        std::unique_ptr<uint8_t[]> packed = std::make_unique<uint8_t[]>(HUNK_BYTES);
+        uint32_t packed_length = 0;
+        uint16_t crc = 0;
+        int error = 0;
+        bool ready = false;
+    };
+
+    // Workers claim hunks in order, read them with pread and compress them into a ring of slots;
+    // the calling thread writes the slots out in hunk order. A worker never runs more than the ring
+    // size ahead of the writer, so memory stays bounded whatever the image size.
+    class Pipeline
+    {
+    public:
+        Pipeline(int input_fd, uint64_t logical_bytes, uint64_t hunk_count, uint32_t workers)
+            : m_input_fd(input_fd)
+            , m_logical_bytes(logical_bytes)
+            , m_hunk_count(hunk_count)
+            , m_slots(workers * 4)
+        {
+            for (uint32_t i = 0; i < workers; i++)
+                m_threads.emplace_back(&Pipeline::WorkerLoop, this);
+        }
+
+        ~Pipeline()
+        {
+            Abort();
+            for (std::thread& thread : m_threads)
+                thread.join();
+        }
+
+        void Abort()
+        {
+            std::lock_guard<std::mutex> lock(m_mutex);
+            m_abort = true;
+            m_room.notify_all();
+            m_filled.notify_all();
+        }
+
+        // Blocks until hunk index is compressed; the slot stays valid until Release().
+        Slot& Wait(uint64_t index)
+        {
+            Slot& slot = m_slots[index % m_slots.size()];
+            std::unique_lock<std::mutex> lock(m_mutex);
+            m_filled.wait(lock, [&slot] { return slot.ready; });
+            return slot;
+        }
+
+        void Release(Slot& slot)
+        {
+            std::lock_guard<std::mutex> lock(m_mutex);
+            slot.ready = false;
+            m_written++;
+            m_room.notify_all();
+        }
+
+    private:
+        void WorkerLoop()
+        {
+            HunkCompressor compressor;
+            for (;;)
+            {
+                uint64_t index;
+                {
+                    std::unique_lock<std::mutex> lock(m_mutex);
+                    m_room.wait(lock, [this] {
+                        return m_abort || m_next >= m_hunk_count || m_next < m_written + m_slots.size();
+                    });
+                    if (m_abort || m_next >= m_hunk_count)
+                        return;
+                    index = m_next++;
+                }
+                Slot& slot = m_slots[index % m_slots.size()];
+                slot.error = compressor.IsValid() ? Fill(slot, index, compressor) : IsoToChd::RESULT_INTERNAL_ERROR;
+                std::lock_guard<std::mutex> lock(m_mutex);
+                slot.ready = true;
+                m_filled.notify_all();
+            }
+        }
+
+        int Fill(Slot& slot, uint64_t index, HunkCompressor& compressor)
+        {
+            const uint64_t offset = index * HUNK_BYTES;
+            const size_t want = static_cast<size_t>(std::min<uint64_t>(HUNK_BYTES, m_logical_bytes - offset));
+            const ssize_t got = ReadAt(m_input_fd, slot.raw.get(), want, offset);
+            if (got < 0)
+                return IsoToChd::RESULT_IO_ERROR;
+            if (static_cast<size_t>(got) != want)
+                return IsoToChd::RESULT_UNEXPECTED_EOF;
+            // The last hunk is zero-padded; the header keeps the real size.
+            if (want < HUNK_BYTES)
+                std::memset(slot.raw.get() + want, 0, HUNK_BYTES - want);
+            slot.crc = Crc16(slot.raw.get(), HUNK_BYTES);
+            slot.packed_length = compressor.Compress(slot.raw.get(), slot.packed.get());
+            return IsoToChd::RESULT_OK;
+        }
+
+        const int m_input_fd;
+        const uint64_t m_logical_bytes;
+        const uint64_t m_hunk_count;
+        std::vector<Slot> m_slots;
+        std::vector<std::thread> m_threads;
+        std::mutex m_mutex;
+        std::condition_variable m_room;
+        std::condition_variable m_filled;
+        uint64_t m_next = 0;
+        uint64_t m_written = 0;
+        bool m_abort = false;
+    };
+
+    uint32_t WorkerCount()
+    {
+        // Leave a core for the UI and the writer; deflate at level 9 is the bottleneck.
+        const uint32_t cores = std::max(1u, std::thread::hardware_concurrency());
+        return std::clamp(cores - 1, 1u, 8u);
+    }
+} // namespace
+
+int IsoToChd::Convert(int input_fd, int output_fd, Progress* progress)
+{
+    struct stat st;
+    if (input_fd < 0 || fstat(input_fd, &st) != 0)
+        return RESULT_INPUT_NOT_FOUND;
+    if (!S_ISREG(st.st_mode) || st.st_size <= 0)
+        return RESULT_NOT_A_FILE;
+    if (output_fd < 0)
+        return RESULT_OUTPUT_FAILED;
+
+    const uint64_t logical_bytes = static_cast<uint64_t>(st.st_size);
+    const uint64_t hunk_count = (logical_bytes + HUNK_BYTES - 1) / HUNK_BYTES;
+    if (hunk_count > UINT32_MAX)
+        return RESULT_TOO_MANY_HUNKS;
+    if (progress)
+        progress->bytes_total = logical_bytes;
+
+    std::vector<HunkEntry> entries(static_cast<size_t>(hunk_count));
+    uint64_t write_offset = FIRST_HUNK_OFFSET;
+    {
+        Pipeline pipeline(input_fd, logical_bytes, hunk_count, WorkerCount());
+        for (uint64_t index = 0; index < hunk_count; index++)
+        {
+            if (progress && progress->cancel.load(std::memory_order_relaxed))
+                return RESULT_CANCELLED;
+            Slot& slot = pipeline.Wait(index);
+            if (slot.error != RESULT_OK)
+                return slot.error;
+
+            HunkEntry& entry = entries[static_cast<size_t>(index)];
+            entry.crc = slot.crc;
+            entry.offset = write_offset;
+            const bool packed = slot.packed_length > 0;
+            entry.type = packed ? MAP_TYPE_CODEC0 : MAP_TYPE_UNCOMPRESSED;
+            entry.length = packed ? slot.packed_length : HUNK_BYTES;
+            if (!WriteAt(output_fd, packed ? slot.packed.get() : slot.raw.get(), entry.length, write_offset))
+                return RESULT_OUTPUT_FAILED;
+            write_offset += entry.length;
+            pipeline.Release(slot);
+            if (progress)
+                progress->bytes_read.store(std::min<uint64_t>((index + 1) * HUNK_BYTES, logical_bytes), std::memory_order_relaxed);
+        }
+    }
+
+    const uint64_t map_offset = write_offset;
+    if (!WriteMap(output_fd, entries, map_offset) || !WriteHeader(output_fd, logical_bytes, map_offset))
+        return RESULT_OUTPUT_FAILED;
+    return RESULT_OK;
+}
@@ -0,0 +1,35 @@
+#pragma once
+
+#include <atomic>
+#include <cstdint>
+
+namespace IsoToChd
+{
+    // Same codes as the native tools' convertIsoToChd, so callers can share their messages.
+    enum Result : int
+    {
+        RESULT_OK = 0,
+        RESULT_INPUT_NOT_FOUND = -3,
+        RESULT_NOT_A_FILE = -4,
+        RESULT_OUTPUT_FAILED = -5,
+        RESULT_IO_ERROR = -6,
+        RESULT_TOO_MANY_HUNKS = -7,
+        RESULT_UNEXPECTED_EOF = -9,
+        RESULT_CANCELLED = -10,
+        RESULT_INTERNAL_ERROR = -100,
+    };
+
+    // Shared with the caller while a conversion runs.
+    struct Progress
+    {
+        std::atomic<uint64_t> bytes_read{0};
+        uint64_t bytes_total = 0;
+        // Set by the caller to stop at the next hunk; Convert then returns RESULT_CANCELLED.
+        std::atomic<bool> cancel{false};
+    };
+
+    // Writes a zlib-compressed CHD v5 of the 2048-byte-sector image in input_fd to output_fd.
+    // Both are accessed with pread/pwrite, so neither offset matters; the output must be seekable
+    // and empty. Neither descriptor is closed.
+    int Convert(int input_fd, int output_fd, Progress* progress);
+} // namespace IsoToChd
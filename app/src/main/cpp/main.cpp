@@ -27,11 +27,18 @@
 #include "SIO/Pad/PadDualshock2.h"
 #include "MTGS.h"
 #include "SDL3/SDL.h"
+#include "IsoToChd.h"
 #include <future>
 #include <memory>
 #include <fstream>
 #include <algorithm>
+#include <array>
 #include <mutex>
+#include <atomic>
+#include <ctime>
+#include <unordered_map>
+#include <unordered_set>
+#include <vector>
 
 namespace
 {
@@ -508,9 +515,34 @@ Java_kr_co_iefriends_pcsx2_NativeApp_setPadVibration(JNIEnv *env, jclass clazz,
 }
 
 
-extern "C" JNIEXPORT void JNICALL
-Java_kr_co_iefriends_pcsx2_NativeApp_setPadButton(JNIEnv *env, jclass clazz,
-                                                  jint p_key, jint p_range, jboolean p_keyPressed) {
+// Opt-in input latency tracking. A submission raises s_latency_pending; the next vsync on the
+// CPU thread, where the VM picks up pad state, queues its CLOCK_MONOTONIC time until the Java side
+// drains it and matches it against the inputs submitted before it.
+static std::atomic<bool> s_latency_tracking{false};
+static std::atomic<bool> s_latency_pending{false};
+static std::mutex s_latency_mutex;
+static std::vector<jlong> s_latency_frames;
+static constexpr size_t MAX_LATENCY_FRAMES = 512;
+
+static jlong MonotonicNanos()
+{
+    timespec ts;
+    clock_gettime(CLOCK_MONOTONIC, &ts);
+    return static_cast<jlong>(ts.tv_sec) * 1000000000LL + ts.tv_nsec;
+}
+
+static void RecordLatencyFrame()
+{
+    if (!s_latency_pending.exchange(false, std::memory_order_acq_rel))
+        return;
+    const jlong now = MonotonicNanos();
+    std::lock_guard<std::mutex> lock(s_latency_mutex);
+    if (s_latency_frames.size() < MAX_LATENCY_FRAMES)
+        s_latency_frames.push_back(now);
+}
+
+static void ApplyPadButton(jint p_key, jint p_range, bool p_keyPressed)
+{
     PadDualshock2::Inputs _key;
     switch (p_key) {
         case 19: _key = PadDualshock2::Inputs::PAD_UP; break;
@@ -551,8 +583,172 @@ Java_kr_co_iefriends_pcsx2_NativeApp_setPadButton(JNIEnv *env, jclass clazz,
     Pad::SetControllerState(0, static_cast<u32>(_key), value);
 }
 
+// Per-key pad state for the current frame, guarded by s_pad_mutex. A button pressed and released
+// between two vsyncs would never be seen by the VM, so such a release is held until the next vsync.
+// Everything else, analog directions included, is applied at once and overwrites the last value.
+struct PadKeyFrameState
+{
+    bool changed;
+    bool pressed;
+    bool deferred;
+    jint deferred_range;
+    bool deferred_pressed;
+};
+static constexpr jint MAX_PAD_KEY = 256;
+static std::mutex s_pad_mutex;
+static std::array<PadKeyFrameState, MAX_PAD_KEY> s_pad_keys{};
+
+static bool IsAnalogPadKey(jint p_key)
+{
+    return (p_key >= 110 && p_key <= 113) || (p_key >= 120 && p_key <= 123);
+}
+
+// Caller holds s_pad_mutex.
+static void SubmitPadButton(jint p_key, jint p_range, bool p_keyPressed)
+{
+    if (p_key < 0 || p_key >= MAX_PAD_KEY || IsAnalogPadKey(p_key))
+    {
+        ApplyPadButton(p_key, p_range, p_keyPressed);
+        return;
+    }
+    PadKeyFrameState& state = s_pad_keys[p_key];
+    if (state.deferred)
+    {
+        state.deferred_range = p_range;
+        state.deferred_pressed = p_keyPressed;
+        return;
+    }
+    if (state.changed && state.pressed && !p_keyPressed)
+    {
+        state.deferred = true;
+        state.deferred_range = p_range;
+        state.deferred_pressed = false;
+        return;
+    }
+    ApplyPadButton(p_key, p_range, p_keyPressed);
+    state.changed = true;
+    state.pressed = p_keyPressed;
+}
+
+// Called on the CPU thread once per vsync, after the VM has seen the previous frame's changes.
+static void ReleaseDeferredPadInput()
+{
+    std::lock_guard<std::mutex> lock(s_pad_mutex);
+    for (jint key = 0; key < MAX_PAD_KEY; key++)
+    {
+        PadKeyFrameState& state = s_pad_keys[key];
+        state.changed = false;
+        if (!state.deferred)
+            continue;
+        ApplyPadButton(key, state.deferred_range, state.deferred_pressed);
+        state.deferred = false;
+        state.changed = true;
+        state.pressed = state.deferred_pressed;
+    }
+}
+
+extern "C" JNIEXPORT void JNICALL
+Java_kr_co_iefriends_pcsx2_NativeApp_setPadButton(JNIEnv *env, jclass clazz,
+                                                  jint p_key, jint p_range, jboolean p_keyPressed) {
+    std::lock_guard<std::mutex> lock(s_pad_mutex);
+    SubmitPadButton(p_key, p_range, p_keyPressed == JNI_TRUE);
+}
+
+extern "C" JNIEXPORT void JNICALL
+Java_kr_co_iefriends_pcsx2_NativeApp_submitPadState(JNIEnv *env, jclass clazz,
+                                                    jobject p_entries, jint p_count, jlong p_eventTimeNs) {
+    const auto* entries = static_cast<const jint*>(env->GetDirectBufferAddress(p_entries));
+    if (!entries || p_count <= 0)
+        return;
+    const jlong capacity = env->GetDirectBufferCapacity(p_entries) / static_cast<jlong>(2 * sizeof(jint));
+    const jlong count = std::min<jlong>(p_count, capacity);
+    {
+        std::lock_guard<std::mutex> lock(s_pad_mutex);
+        for (jlong i = 0; i < count; i++)
+        {
+            const jint value = entries[i * 2 + 1];
+            SubmitPadButton(entries[i * 2], value, value > 0);
+        }
+    }
+    if (s_latency_tracking.load(std::memory_order_relaxed))
+        s_latency_pending.store(true, std::memory_order_release);
+}
+
+extern "C" JNIEXPORT void JNICALL
+Java_kr_co_iefriends_pcsx2_NativeApp_setInputLatencyTracking(JNIEnv *env, jclass clazz, jboolean p_enabled) {
+    s_latency_tracking.store(p_enabled == JNI_TRUE, std::memory_order_relaxed);
+    s_latency_pending.store(false, std::memory_order_relaxed);
+    std::lock_guard<std::mutex> lock(s_latency_mutex);
+    s_latency_frames.clear();
+}
+
+extern "C" JNIEXPORT jint JNICALL
+Java_kr_co_iefriends_pcsx2_NativeApp_drainInputLatency(JNIEnv *env, jclass clazz, jlongArray p_out) {
+    if (!p_out)
+        return 0;
+    std::lock_guard<std::mutex> lock(s_latency_mutex);
+    const jsize count = std::min<jsize>(env->GetArrayLength(p_out), static_cast<jsize>(s_latency_frames.size()));
+    if (count <= 0)
+        return 0;
+    env->SetLongArrayRegion(p_out, 0, count, s_latency_frames.data());
+    s_latency_frames.erase(s_latency_frames.begin(), s_latency_frames.begin() + count);
+    return count;
+}
+
+// Conversions in flight, keyed by the caller's job key so other threads can poll or cancel them.
+// A cancel that arrives before its conversion registers is remembered until it does.
+static std::mutex s_chd_mutex;
+static std::unordered_map<jlong, IsoToChd::Progress*> s_chd_jobs;
+static std::unordered_set<jlong> s_chd_cancelled;
+
+extern "C" JNIEXPORT jint JNICALL
+Java_kr_co_iefriends_pcsx2_NativeApp_convertIsoToChdFd(JNIEnv *env, jclass clazz,
+                                                       jint p_inputFd, jint p_outputFd, jlong p_key) {
+    IsoToChd::Progress progress;
+    {
+        std::lock_guard<std::mutex> lock(s_chd_mutex);
+        if (s_chd_cancelled.erase(p_key) > 0)
+            return IsoToChd::RESULT_CANCELLED;
+        s_chd_jobs[p_key] = &progress;
+    }
+    const int result = IsoToChd::Convert(p_inputFd, p_outputFd, &progress);
+    std::lock_guard<std::mutex> lock(s_chd_mutex);
+    s_chd_jobs.erase(p_key);
+    s_chd_cancelled.erase(p_key);
+    return result;
+}
+
+extern "C" JNIEXPORT void JNICALL
+Java_kr_co_iefriends_pcsx2_NativeApp_cancelChdConversion(JNIEnv *env, jclass clazz, jlong p_key) {
+    std::lock_guard<std::mutex> lock(s_chd_mutex);
+    const auto it = s_chd_jobs.find(p_key);
+    if (it != s_chd_jobs.end())
+        it->second->cancel.store(true, std::memory_order_relaxed);
+    else
+        s_chd_cancelled.insert(p_key);
+}
+
+extern "C" JNIEXPORT jlong JNICALL
+Java_kr_co_iefriends_pcsx2_NativeApp_getChdConversionProgress(JNIEnv *env, jclass clazz, jlong p_key) {
+    std::lock_guard<std::mutex> lock(s_chd_mutex);
+    const auto it = s_chd_jobs.find(p_key);
+    if (it == s_chd_jobs.end())
+        return -1;
+    return static_cast<jlong>(it->second->bytes_read.load(std::memory_order_relaxed));
+}
+
+extern "C" JNIEXPORT void JNICALL
+Java_kr_co_iefriends_pcsx2_NativeApp_showOsdMessage(JNIEnv *env, jclass clazz,
+                                                    jstring p_key, jstring p_message, jfloat p_duration) {
+    Host::AddKeyedOSDMessage(GetJavaString(env, p_key), GetJavaString(env, p_message), p_duration);
+}
+
 extern "C" JNIEXPORT void JNICALL
 Java_kr_co_iefriends_pcsx2_NativeApp_resetKeyStatus(JNIEnv *env, jclass clazz) {
+    {
+        std::lock_guard<std::mutex> lock(s_pad_mutex);
+        s_pad_keys.fill({});
+    }
     for (u32 pad = 0; pad < Pad::NUM_CONTROLLER_PORTS; pad++)
     {
         for (u32 key = 0; key < static_cast<u32>(PadDualshock2::Inputs::LENGTH); key++)
@@ -1057,6 +1253,9 @@ void Host::OnGameChanged(const std::string& title, const std::string& elf_overri
 }
 
 void Host::PumpMessagesOnCPUThread() {
+    ReleaseDeferredPadInput();
+    if (s_latency_tracking.load(std::memory_order_relaxed))
+        RecordLatencyFrame();
 }
 
 int FileSystem::OpenFDFileContent(const char* filename)
@@ -9,7 +9,7 @@ import android.view.Surface;
 import java.io.File;
 import java.lang.ref.WeakReference;
 
-import kr.co.iefriends.pcsx2.activities.MainActivity;
+import kr.co.iefriends.pcsx2.input.RumbleEngine;
 import kr.co.iefriends.pcsx2.utils.DataDirectoryManager;
 
 public class NativeApp {
@@ -93,8 +93,20 @@ public class NativeApp {
 
 	public static native void setPadVibration(boolean isonoff);
 	public static native void setPadButton(int index, int range, boolean iskeypressed);
+	// Submits count (pad code, value 0-255) int pairs from a direct buffer; see input.PadState.
+	// Changes apply at once, except that a button released in the frame it was pressed is held
+	// until the next vsync so the VM sees the press. eventTimeNanos is when the input happened,
+	// on the CLOCK_MONOTONIC base of input events.
+	public static native void submitPadState(java.nio.ByteBuffer entries, int count, long eventTimeNanos);
 	public static native void resetKeyStatus();
 
+	// Input latency tracking; see input.InputLatencyTracker. When enabled, the first vsync after a
+	// submitPadState call records its CLOCK_MONOTONIC time; drainInputLatency moves the recorded
+	// times into out, oldest first, and returns how many were written.
+	public static native void setInputLatencyTracking(boolean enabled);
+	public static native int drainInputLatency(long[] out);
+	public static native void showOsdMessage(String key, String message, float durationSeconds);
+
 	public static native void setAspectRatio(int type);
 	public static native void setEnableCheats(boolean isonoff);
 	public static native void speedhackLimitermode(int value);
@@ -150,11 +162,21 @@ public class NativeApp {
     public static native boolean isFullscreenUIEnabled();
 
     public static void onPadVibration(int padIndex, float large, float small) {
-        MainActivity.requestControllerRumble(large, small);
+        RumbleEngine.get().update(padIndex, large, small);
     }
     
     // Native tools for ISO to CHD conversion (and eventually more soon)
     public static native int convertIsoToChd(String inputIsoPath);
+    // ISO to CHD conversion built into the core, between already open descriptors (e.g. from
+    // ContentResolver.openFileDescriptor), so content:// documents need no staging copy. The
+    // output must be seekable and empty; neither fd is closed. Returns the convertIsoToChd codes,
+    // or -10 if cancelled. Hunks are compressed on several cores; key identifies the conversion to
+    // the two calls below and must be unique among running conversions.
+    public static native int convertIsoToChdFd(int inputFd, int outputFd, long key);
+    // Stops the conversion with this key at its next hunk, or before it starts.
+    public static native void cancelChdConversion(long key);
+    // Bytes of input converted so far, or -1 if no conversion with this key is running.
+    public static native long getChdConversionProgress(long key);
     
     public static native void setCustomDriverPath(String path);
     public static native String getCustomDriverPath();
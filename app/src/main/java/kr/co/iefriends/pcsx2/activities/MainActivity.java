@@ -145,10 +145,17 @@ import kr.co.iefriends.pcsx2.R;
 import kr.co.iefriends.pcsx2.hid.HIDDeviceManager;
 import kr.co.iefriends.pcsx2.input.ControllerMappingDialog;
 import kr.co.iefriends.pcsx2.input.ControllerMappingManager;
+import kr.co.iefriends.pcsx2.input.GamepadInputThread;
+import kr.co.iefriends.pcsx2.input.InputDeviceRegistry;
+import kr.co.iefriends.pcsx2.input.InputLatencyTracker;
+import kr.co.iefriends.pcsx2.input.PadState;
+import kr.co.iefriends.pcsx2.input.RumbleEngine;
 import kr.co.iefriends.pcsx2.input.view.DPadView;
 import kr.co.iefriends.pcsx2.input.view.JoystickView;
 import kr.co.iefriends.pcsx2.input.view.PSButtonView;
 import kr.co.iefriends.pcsx2.input.view.PSShoulderButtonView;
+import kr.co.iefriends.pcsx2.input.view.TouchPadOverlayView;
+import kr.co.iefriends.pcsx2.utils.ChdConversionQueue;
 import kr.co.iefriends.pcsx2.utils.DataDirectoryManager;
 import kr.co.iefriends.pcsx2.utils.DebugLog;
 import kr.co.iefriends.pcsx2.utils.DeviceProfiles;
@@ -168,6 +175,8 @@ public class MainActivity extends AppCompatActivity {
     // UI groups for on-screen controls
     private View llPadSelectStart;
     private View llPadRight;
+    private TouchPadOverlayView touchPadOverlay;
+    private boolean singleLayerControls;
     private DrawerLayout inGameDrawer;
     private FloatingActionButton drawerToggle;
     private FloatingActionButton drawerPauseButton;
@@ -189,9 +198,6 @@ public class MainActivity extends AppCompatActivity {
             (buttonView, isChecked) ->
                     NativeApp.setSetting("EmuCore", "EnableWideScreenPatches", "bool", isChecked ? "true" : "false");
 
-    private static final int RUMBLE_DURATION_MS = 160;
-    private static volatile int sLastControllerDeviceId = -1;
-    private static volatile boolean sVibrationEnabled = true;
     private static WeakReference<MainActivity> sInstanceRef = new WeakReference<>(null);
 
     // Home UI
@@ -207,17 +213,24 @@ public class MainActivity extends AppCompatActivity {
     private GamesAdapter gamesAdapter;
     private boolean listMode = false;
     private Uri gamesFolderUri;
+    private int scanGeneration = 0;
+    private final List<GameEntry> streamedEntries = new ArrayList<>();
     private final Object coverPrefetchLock = new Object();
     private boolean coverPrefetchRunning;
     private boolean storagePromptShown = false;
-    private String pendingChdCachePath;
+    private Uri pendingChdSourceUri;
     private String pendingChdDisplayName;
+    private final List<Uri> pendingChdBatch = new ArrayList<>();
+    private ChdConversionQueue.Listener chdQueueListener;
     private AlertDialog dataDirProgressDialog;
     private static final String PREFS = "armsx2";
     private static final String PREF_GAMES_URI = "games_folder_uri";
+    private static final String PREF_SCAN_MAX_DEPTH = "games_scan_max_depth";
     private static final String PREF_ONBOARDING_COMPLETE = "onboarding_complete";
     private static final String PREF_ONSCREEN_UI_STYLE = "on_screen_ui_style";
     private static final String PREF_UI_SCALE_MULTIPLIER = "onscreen_ui_scale_multiplier";
+    private static final String PREF_SINGLE_LAYER_CONTROLS = "onscreen_single_layer_controls";
+    private static final String OVERLAY_LAYOUT_ASSET = "overlay/default_layout.json";
     private static final String STYLE_DEFAULT = "default";
     private static final String STYLE_NETHER = "nether";
     private static final float ONSCREEN_UI_SCALE_MIN = 0.2f;
@@ -247,9 +260,26 @@ public class MainActivity extends AppCompatActivity {
     private static final String PREF_HIDE_CONTROLS_SECONDS = "onscreen_timeout_seconds";
 
     private static final float ANALOG_DEADZONE = 0.08f;
-    private static final float TRIGGER_DEADZONE = 0.04f;
     private final SparseIntArray analogStates = new SparseIntArray();
-    private boolean hatUp, hatDown, hatLeft, hatRight;
+    private final PadState padState = PadState.get();
+    private GamepadInputThread gamepadInput;
+    private final android.os.Handler latencyOsdHandler = new android.os.Handler(android.os.Looper.getMainLooper());
+    private final Runnable latencyOsdTick = new Runnable() {
+        @Override
+        public void run() {
+            if (!InputLatencyTracker.isEnabled()) {
+                return;
+            }
+            InputLatencyTracker.drain();
+            String summary = InputLatencyTracker.summary();
+            if (summary != null) {
+                try {
+                    NativeApp.showOsdMessage("InputLatency", summary, 1.5f);
+                } catch (Throwable ignored) {}
+            }
+            latencyOsdHandler.postDelayed(this, 1000L);
+        }
+    };
     private boolean disableTouchControls;
     
     private int currentControllerMode = 0; // 0=2 Sticks, 1=1 Stick+Face, 2=D-Pad Only
@@ -319,6 +349,18 @@ public class MainActivity extends AppCompatActivity {
         return dir;
     }
 
+    static File getLibraryCacheDir(Context ctx) {
+        Context appCtx = ctx.getApplicationContext();
+        if (appCtx == null) {
+            appCtx = ctx;
+        }
+        File dir = new File(DataDirectoryManager.getDataRoot(appCtx), GameLibraryIndex.DIR_NAME);
+        if (!dir.exists() && !dir.mkdirs()) {
+            try { DebugLog.e("Library", "Failed to create library cache directory: " + dir); } catch (Throwable ignored) {}
+        }
+        return dir;
+    }
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -350,6 +392,8 @@ public class MainActivity extends AppCompatActivity {
         // Force immersive fullscreen
         applyFullscreen();
         DataDirectoryManager.copyAssetAll(getApplicationContext(), "resources");
+        // Pick up conversions queued before the app was last closed.
+        ChdConversionQueue.get(this).resume();
 
     Initialize();
 
@@ -372,6 +416,7 @@ public class MainActivity extends AppCompatActivity {
     // Cache on-screen pad containers
     llPadSelectStart = findViewById(R.id.ll_pad_select_start);
     llPadRight = findViewById(R.id.ll_pad_right);
+    setupTouchPadOverlay();
     JoystickView joystickLeft = findViewById(R.id.joystick_left);
     DPadView dpadView = findViewById(R.id.dpad_view);
     setupInGameDrawer();
@@ -427,6 +472,10 @@ public class MainActivity extends AppCompatActivity {
                         startPickIsoForChd();
                         return true;
                     }
+                    if (item.getItemId() == R.id.menu_chd_queue) {
+                        showChdQueueDialog();
+                        return true;
+                    }
                     return false;
                 });
                 pm.show();
@@ -772,16 +821,23 @@ public class MainActivity extends AppCompatActivity {
             coverPrefetchRunning = true;
         }
         try { Toast.makeText(this, R.string.cover_prefetch_start, Toast.LENGTH_SHORT).show(); } catch (Throwable ignored) {}
-            new Thread(() -> {
-                int downloaded = 0;
-                try {
-                    for (Uri root : roots) {
-                    downloaded += prefetchCoversForRoot(root, template, cacheDir);
-                    }
-                } finally {
-                    synchronized (coverPrefetchLock) {
-                        coverPrefetchRunning = false;
-                    }
+        final Context appCtx = getApplicationContext();
+        new Thread(() -> {
+            int downloaded = 0;
+            try {
+                GameLibraryIndex index = GameLibraryIndex.get(appCtx);
+                List<GameEntry> entries = collectPrefetchEntries(roots, index);
+                CoverPrefetcher prefetcher = new CoverPrefetcher(cacheDir, CoverMisses.get(appCtx),
+                        CoverPrefetcher.HTTP, CoverPrefetcher.Options.defaults());
+                downloaded = prefetcher.run(entries, template, entry -> resolveMetadataForEntry(appCtx, index, entry),
+                        GamesAdapter::registerCachedCover);
+                index.save();
+            } catch (Throwable t) {
+                try { DebugLog.w("Covers", "Cover prefetch failed: " + t.getMessage()); } catch (Throwable ignored) {}
+            } finally {
+                synchronized (coverPrefetchLock) {
+                    coverPrefetchRunning = false;
+                }
             }
             final int total = downloaded;
             runOnUiThread(() -> {
@@ -796,54 +852,49 @@ public class MainActivity extends AppCompatActivity {
         }, "CoverPrefetch").start();
     }
 
-    private int prefetchCoversForRoot(Uri root, String template, File cacheDir) {
-        if (root == null) {
-            return 0;
-        }
-        if (cacheDir == null) {
-            return 0;
-        }
-        List<GameEntry> entries = GameScanner.scanFolder(this, root);
-        if (entries == null || entries.isEmpty()) {
-            return 0;
-        }
-        resolveMetadataForEntries(entries);
-        int downloaded = 0;
-        Set<String> attempted = new HashSet<>();
-        for (GameEntry entry : entries) {
-            if (ensureCoverCachedForEntry(cacheDir, entry, template, attempted)) {
-                downloaded++;
+    /**
+     * Games to prefetch covers for, taken from the library index. Only roots that have never been
+     * indexed are walked.
+     */
+    private List<GameEntry> collectPrefetchEntries(Set<Uri> roots, GameLibraryIndex index) {
+        List<GameEntry> out = new ArrayList<>();
+        for (Uri root : roots) {
+            if (root == null) continue;
+            List<GameEntry> entries = index.cachedEntries(root);
+            if (entries.isEmpty()) {
+                entries = GameScanner.scanFolder(this, root, index);
+            }
+            if (entries != null) {
+                out.addAll(entries);
             }
         }
-        return downloaded;
+        return out;
     }
 
-    private void resolveMetadataForEntries(List<GameEntry> entries) {
-        if (entries == null || entries.isEmpty()) {
+    /**
+     * Fills in serial and title through Redump for entries that have neither. Image hashes are
+     * cached, so only games that were never resolved are read.
+     */
+    private static void resolveMetadataForEntry(Context ctx, GameLibraryIndex index, GameEntry ge) {
+        if (ge == null || ge.uri == null) {
             return;
         }
-        android.content.ContentResolver cr = getContentResolver();
-        for (GameEntry ge : entries) {
-            if (ge == null || ge.uri == null) {
-                continue;
-            }
-            try {
-                boolean needsSerial = TextUtils.isEmpty(ge.serial);
-                boolean needsTitle = TextUtils.isEmpty(ge.gameTitle);
-                if (!needsSerial && !needsTitle) {
-                    continue;
-                }
-                RedumpDB.Result rd = RedumpDB.lookupByFile(cr, ge.uri);
-                if (rd != null) {
-                    if (needsSerial && !TextUtils.isEmpty(rd.serial)) {
-                        ge.serial = rd.serial;
-                    }
-                    if (needsTitle && !TextUtils.isEmpty(rd.name)) {
-                        ge.gameTitle = rd.name;
-                    }
-                }
-            } catch (Throwable ignored) {}
+        if (!TextUtils.isEmpty(ge.serial) || !TextUtils.isEmpty(ge.gameTitle)) {
+            return;
         }
+        try {
+            RedumpDB.Result rd = RedumpDB.lookupByFile(ctx.getContentResolver(), ge.uri);
+            if (rd == null) {
+                return;
+            }
+            if (!TextUtils.isEmpty(rd.serial)) {
+                ge.serial = rd.serial;
+            }
+            if (!TextUtils.isEmpty(rd.name)) {
+                ge.gameTitle = rd.name;
+            }
+            index.updateMetadata(ge);
+        } catch (Throwable ignored) {}
     }
 
     private static List<String> buildCoverCandidateUrls(GameEntry entry, String template) {
@@ -1010,90 +1061,34 @@ public class MainActivity extends AppCompatActivity {
         return ".jpg";
     }
 
-    private boolean downloadCoverToDirectory(File coversDir, String url, String baseName) {
-        HttpURLConnection connection = null;
-        InputStream in = null;
-        OutputStream out = null;
-        try {
-            connection = (HttpURLConnection) new URL(url).openConnection();
-            connection.setConnectTimeout(4000);
-            connection.setReadTimeout(6000);
-            connection.setInstanceFollowRedirects(true);
-            connection.setRequestMethod("GET");
-            int code = connection.getResponseCode();
-            if (code != HttpURLConnection.HTTP_OK) {
-                return false;
-            }
-            String extension = guessImageExtension(url, connection.getContentType());
-            String fileName = baseName + extension;
-            File existing = findExistingCoverFile(coversDir, baseName);
-            if (existing != null && existing.length() > 0) {
-                return false;
-            }
-            if (existing != null) {
-                if (!existing.delete()) {
-                    return false;
-                }
-            }
-            File file = new File(coversDir, fileName);
-            File parent = file.getParentFile();
-            if (parent != null && !parent.exists() && !parent.mkdirs()) {
-                return false;
-            }
-            out = new FileOutputStream(file);
-            in = connection.getInputStream();
-            byte[] buffer = new byte[8192];
-            int read;
-            while ((read = in.read(buffer)) != -1) {
-                out.write(buffer, 0, read);
-            }
-            out.flush();
-            return true;
-        } catch (Exception ignored) {
-            return false;
-        } finally {
-            if (in != null) {
-                try { in.close(); } catch (IOException ignored) {}
-            }
-            if (out != null) {
-                try { out.close(); } catch (IOException ignored) {}
-            }
-            if (connection != null) {
-                connection.disconnect();
-            }
+    /** Writes a cover as {@code baseName + extension} in {@code dir} through a temporary file. */
+    @Nullable
+    private static File writeCoverFile(File dir, String baseName, byte[] data, @Nullable String extension) {
+        String ext = extension;
+        if (TextUtils.isEmpty(ext)) {
+            ext = ".jpg";
         }
-    }
-
-    private boolean ensureCoverCachedForEntry(File coversDir, GameEntry entry, String template, Set<String> attemptedUrls) {
-        List<String> urls = buildCoverCandidateUrls(entry, template);
-        if (urls.isEmpty()) {
-            return false;
+        if (!ext.startsWith(".")) {
+            ext = "." + ext;
         }
-        String baseName = computeCoverBaseName(entry);
-        if (TextUtils.isEmpty(baseName)) {
-            return false;
+        File target = new File(dir, baseName + ext);
+        File parent = target.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            return null;
         }
-        File existing = findExistingCoverFile(coversDir, baseName);
-        if (existing != null && existing.length() > 0) {
-            return false;
+        File temp = new File(dir, baseName + "_tmp" + ext);
+        try (FileOutputStream fos = new FileOutputStream(temp)) {
+            fos.write(data);
+            fos.flush();
+        } catch (IOException ignored) {
+            temp.delete();
+            return null;
         }
-        for (String url : urls) {
-            if (TextUtils.isEmpty(url) || url.contains("${")) {
-                continue;
-            }
-            if (attemptedUrls != null && !attemptedUrls.add(url)) {
-                continue;
-            }
-            if (downloadCoverToDirectory(coversDir, url, baseName)) {
-                File stored = MainActivity.findExistingCoverFile(coversDir, baseName);
-                if (stored != null && stored.isFile()) {
-                    GamesAdapter.registerCachedCover(entry, stored);
-                }
-                try { DebugLog.d("Covers", "Cached cover for " + baseName + " from " + url); } catch (Throwable ignored) {}
-                return true;
-            }
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            return null;
         }
-        return false;
+        return target;
     }
 
     private LinkedHashSet<Uri> collectGameRootUris() {
@@ -1174,42 +1169,41 @@ public class MainActivity extends AppCompatActivity {
                 }
             });
 
-    private final ActivityResultLauncher<Intent> startActivityResultSaveChd = registerForActivityResult(
+    private final ActivityResultLauncher<Intent> startActivityResultChdDestination = registerForActivityResult(
             new ActivityResultContracts.StartActivityForResult(), result -> {
-                if (pendingChdCachePath == null) {
-                    android.util.Log.w("ARMSX2_CHD", "Save handler invoked with no pending CHD path");
-                    return;
-                }
-
-                File chdFile = new File(pendingChdCachePath);
-                String cachePath = pendingChdCachePath;
-                pendingChdCachePath = null;
+                Uri sourceUri = pendingChdSourceUri;
                 String displayName = pendingChdDisplayName;
+                pendingChdSourceUri = null;
                 pendingChdDisplayName = null;
-
-                if (!chdFile.exists()) {
-                    android.util.Log.e("ARMSX2_CHD", "Pending CHD file missing from cache: " + cachePath);
-                    showConversionResult(false, "Could not locate the converted CHD file. Please try converting again.");
+                if (sourceUri == null) {
+                    android.util.Log.w("ARMSX2_CHD", "Destination handler invoked with no pending ISO");
                     return;
                 }
 
                 if (result.getResultCode() == Activity.RESULT_OK && result.getData() != null && result.getData().getData() != null) {
                     Uri destinationUri = result.getData().getData();
                     android.util.Log.d("ARMSX2_CHD", "User selected destination URI: " + destinationUri);
-                    boolean saved = saveChdToUri(chdFile, destinationUri);
-                    if (saved) {
-                        if (!chdFile.delete()) {
-                            android.util.Log.w("ARMSX2_CHD", "Failed to delete cached CHD after saving: " + cachePath);
-                        } else {
-                            android.util.Log.d("ARMSX2_CHD", "Deleted cached CHD after successful save");
-                        }
-                        showConversionResult(true, "CHD saved to the selected location.");
-                    } else {
-                        showConversionResult(false, "Failed to save CHD. The converted file is still available in the app cache:\n" + cachePath);
-                    }
+                    enqueueChdConversions(java.util.Collections.singletonList(sourceUri), destinationUri, null);
                 } else {
                     android.util.Log.i("ARMSX2_CHD", "User cancelled CHD save dialog");
-                    showConversionResult(false, "Save cancelled. The converted CHD remains in the app cache:\n" + cachePath);
+                    showConversionResult(false, "Conversion cancelled.");
+                }
+            });
+
+    private final ActivityResultLauncher<Intent> startActivityResultChdFolder = registerForActivityResult(
+            new ActivityResultContracts.StartActivityForResult(), result -> {
+                List<Uri> batch = new ArrayList<>(pendingChdBatch);
+                pendingChdBatch.clear();
+                if (batch.isEmpty()) {
+                    return;
+                }
+                if (result.getResultCode() == Activity.RESULT_OK && result.getData() != null && result.getData().getData() != null) {
+                    Uri tree = result.getData().getData();
+                    android.util.Log.d("ARMSX2_CHD", "User selected destination folder: " + tree);
+                    enqueueChdConversions(batch, null, tree);
+                } else {
+                    android.util.Log.i("ARMSX2_CHD", "User cancelled CHD folder picker");
+                    showConversionResult(false, "Conversion cancelled.");
                 }
             });
 
@@ -2062,9 +2056,69 @@ public class MainActivity extends AppCompatActivity {
         } else {
             updateOnScreenUiScaleLabel(uiScaleValue);
         }
+        MaterialSwitch swSingleLayer = findViewById(R.id.drawer_sw_single_layer_controls);
+        if (swSingleLayer != null) {
+            swSingleLayer.setChecked(singleLayerControls);
+            swSingleLayer.setOnCheckedChangeListener((buttonView, isChecked) -> setSingleLayerControls(isChecked));
+        }
         updatePauseButtonIcon();
     }
 
+    private void setupTouchPadOverlay() {
+        touchPadOverlay = findViewById(R.id.touch_pad_overlay);
+        if (touchPadOverlay == null) {
+            return;
+        }
+        touchPadOverlay.setPadState(padState);
+        touchPadOverlay.setOnOverlayTouchListener(onControl -> {
+            lastInput = InputSource.TOUCH;
+            lastTouchTimeMs = System.currentTimeMillis();
+            maybeAutoHideControls();
+            if (!onControl) {
+                showDrawerToggleTemporarily();
+            }
+        });
+        try {
+            touchPadOverlay.setLayoutJson(readOverlayLayout());
+        } catch (IOException | JSONException e) {
+            try {
+                DebugLog.e("Input", "Touch overlay layout failed: " + e.getMessage());
+            } catch (Throwable ignored) {}
+            touchPadOverlay = null;
+            return;
+        }
+        touchPadOverlay.setControlScale(onScreenUiScaleMultiplier);
+        singleLayerControls = getSharedPreferences(PREFS, MODE_PRIVATE).getBoolean(PREF_SINGLE_LAYER_CONTROLS, false);
+    }
+
+    // A layout.json under <data root>/overlay replaces the bundled layout.
+    private String readOverlayLayout() throws IOException {
+        File dataRoot = DataDirectoryManager.getDataRoot(getApplicationContext());
+        File custom = dataRoot != null ? new File(new File(dataRoot, "overlay"), "layout.json") : null;
+        try (InputStream in = custom != null && custom.isFile()
+                ? new FileInputStream(custom) : getAssets().open(OVERLAY_LAYOUT_ASSET);
+             java.io.ByteArrayOutputStream bos = new java.io.ByteArrayOutputStream()) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                bos.write(buffer, 0, n);
+            }
+            return new String(bos.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private void setSingleLayerControls(boolean enabled) {
+        if (touchPadOverlay == null) {
+            enabled = false;
+        }
+        singleLayerControls = enabled;
+        getSharedPreferences(PREFS, MODE_PRIVATE).edit().putBoolean(PREF_SINGLE_LAYER_CONTROLS, enabled).apply();
+        boolean visible = !disableTouchControls && !isHomeVisible()
+                && (llPadSelectStart != null && llPadSelectStart.getVisibility() == View.VISIBLE
+                || touchPadOverlay != null && touchPadOverlay.getVisibility() == View.VISIBLE);
+        setOnScreenControlsVisible(visible);
+    }
+
     private void setupTouchRevealOverlay() {
         View root = findViewById(R.id.in_game_root);
         if (root == null) {
@@ -2662,6 +2716,56 @@ public class MainActivity extends AppCompatActivity {
             swDevHud.setOnCheckedChangeListener((buttonView, isChecked) ->
                     NativeApp.setSetting("EmuCore/GS", "OsdShowFPS", "bool", isChecked ? "true" : "false"));
         }
+
+        MaterialSwitch swInputLatency = findViewById(R.id.drawer_sw_input_latency);
+        View btnExportLatency = findViewById(R.id.drawer_btn_export_latency);
+        if (swInputLatency != null) {
+            swInputLatency.setChecked(InputLatencyTracker.isEnabled());
+            if (btnExportLatency != null) btnExportLatency.setEnabled(InputLatencyTracker.isEnabled());
+            swInputLatency.setOnCheckedChangeListener((buttonView, isChecked) -> {
+                setInputLatencyTracking(isChecked);
+                if (btnExportLatency != null) btnExportLatency.setEnabled(isChecked);
+            });
+        }
+        if (btnExportLatency != null) {
+            btnExportLatency.setOnClickListener(v -> exportInputLatency());
+        }
+    }
+
+    private void setInputLatencyTracking(boolean enabled) {
+        InputLatencyTracker.setEnabled(enabled);
+        latencyOsdHandler.removeCallbacks(latencyOsdTick);
+        if (enabled) {
+            latencyOsdHandler.postDelayed(latencyOsdTick, 1000L);
+        }
+        try {
+            DebugLog.d("Input", "Latency tracking=" + enabled);
+        } catch (Throwable ignored) {}
+    }
+
+    private void exportInputLatency() {
+        final File dataRoot = DataDirectoryManager.getDataRoot(getApplicationContext());
+        if (dataRoot == null) {
+            return;
+        }
+        String label = null;
+        try {
+            label = NativeApp.getGameSerial();
+        } catch (Throwable ignored) {}
+        final String gameLabel = label;
+        new Thread(() -> {
+            String message;
+            try {
+                File out = InputLatencyTracker.exportCsv(new File(dataRoot, "latency"), gameLabel);
+                message = "Saved " + out.getAbsolutePath();
+            } catch (Exception e) {
+                message = "Latency export failed: " + e.getMessage();
+            }
+            final String toast = message;
+            runOnUiThread(() -> {
+                try { Toast.makeText(this, toast, Toast.LENGTH_LONG).show(); } catch (Throwable ignored) {}
+            });
+        }, "LatencyExport").start();
     }
 
     private void updateWidescreenToggleVisibility() {
@@ -2906,6 +3010,9 @@ public class MainActivity extends AppCompatActivity {
         applyScaleWithPivot(joystickRight, multiplier, multiplier, 1f, 1f);
         DPadView dpadView = findViewById(R.id.dpad_view);
         applyScaleWithPivot(dpadView, multiplier, multiplier, 0f, 1f);
+        if (touchPadOverlay != null) {
+            touchPadOverlay.setControlScale(multiplier);
+        }
     }
 
     private void applyScaleWithPivot(View view, float scaleX, float scaleY, float pivotXF, float pivotYF) {
@@ -2927,11 +3034,21 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    // With the input thread running the reset is queued behind pending controller input there.
+    private void resetPadInput() {
+        if (gamepadInput != null) {
+            gamepadInput.reset();
+            return;
+        }
+        padState.clear();
+        try { NativeApp.resetKeyStatus(); } catch (Throwable ignored) {}
+    }
+
     private void pauseVmForStateOperation() {
         try {
             NativeApp.pause();
             SystemClock.sleep(50);
-            NativeApp.resetKeyStatus();
+            resetPadInput();
         } catch (Throwable ignored) {}
     }
 
@@ -2978,7 +3095,7 @@ public class MainActivity extends AppCompatActivity {
             float selectScale = isNether ? 0.75f : 1.0f;
             btn_pad_select.setScaleX(selectScale);
             btn_pad_select.setScaleY(selectScale);
-            btn_pad_select.setOnPSButtonListener(pressed -> NativeApp.setPadButton(KeyEvent.KEYCODE_BUTTON_SELECT, 0, pressed));
+            btn_pad_select.setOnPSButtonListener(pressed -> padState.submit(KeyEvent.KEYCODE_BUTTON_SELECT, 0, pressed));
         }
 
         PSButtonView btn_pad_start = findViewById(R.id.btn_pad_start);
@@ -2987,7 +3104,7 @@ public class MainActivity extends AppCompatActivity {
             float selectScale = isNether ? 0.75f : 1.0f;
             btn_pad_start.setScaleX(selectScale);
             btn_pad_start.setScaleY(selectScale);
-            btn_pad_start.setOnPSButtonListener(pressed -> NativeApp.setPadButton(KeyEvent.KEYCODE_BUTTON_START, 0, pressed));
+            btn_pad_start.setOnPSButtonListener(pressed -> padState.submit(KeyEvent.KEYCODE_BUTTON_START, 0, pressed));
         }
 
         float faceScale = isNether ? 0.9f : 1.0f;
@@ -3041,7 +3158,7 @@ public class MainActivity extends AppCompatActivity {
             applyShoulderIcon(btn_pad_l1, R.drawable.playstation_trigger_l1_alternative_outline, "ic_controller_l1_button.png");
             btn_pad_l1.setScaleX(1.0f);
             btn_pad_l1.setScaleY(isNether ? 0.6f : 1.0f);
-            btn_pad_l1.setOnPSShoulderButtonListener(pressed -> NativeApp.setPadButton(KeyEvent.KEYCODE_BUTTON_L1, 0, pressed));
+            btn_pad_l1.setOnPSShoulderButtonListener(pressed -> padState.submit(KeyEvent.KEYCODE_BUTTON_L1, 0, pressed));
         }
 
         PSShoulderButtonView btn_pad_r1 = findViewById(R.id.btn_pad_r1);
@@ -3049,7 +3166,7 @@ public class MainActivity extends AppCompatActivity {
             applyShoulderIcon(btn_pad_r1, R.drawable.playstation_trigger_r1_alternative_outline, "ic_controller_r1_button.png");
             btn_pad_r1.setScaleX(1.0f);
             btn_pad_r1.setScaleY(isNether ? 0.6f : 1.0f);
-            btn_pad_r1.setOnPSShoulderButtonListener(pressed -> NativeApp.setPadButton(KeyEvent.KEYCODE_BUTTON_R1, 0, pressed));
+            btn_pad_r1.setOnPSShoulderButtonListener(pressed -> padState.submit(KeyEvent.KEYCODE_BUTTON_R1, 0, pressed));
         }
 
         PSShoulderButtonView btn_pad_l2 = findViewById(R.id.btn_pad_l2);
@@ -3057,7 +3174,7 @@ public class MainActivity extends AppCompatActivity {
             applyShoulderIcon(btn_pad_l2, R.drawable.playstation_trigger_l2_alternative_outline, "ic_controller_l2_button.png");
             btn_pad_l2.setScaleX(1.0f);
             btn_pad_l2.setScaleY(isNether ? 0.6f : 1.0f);
-            btn_pad_l2.setOnPSShoulderButtonListener(pressed -> NativeApp.setPadButton(KeyEvent.KEYCODE_BUTTON_L2, 0, pressed));
+            btn_pad_l2.setOnPSShoulderButtonListener(pressed -> padState.submit(KeyEvent.KEYCODE_BUTTON_L2, 0, pressed));
         }
 
         PSShoulderButtonView btn_pad_r2 = findViewById(R.id.btn_pad_r2);
@@ -3065,19 +3182,19 @@ public class MainActivity extends AppCompatActivity {
             applyShoulderIcon(btn_pad_r2, R.drawable.playstation_trigger_r2_alternative_outline, "ic_controller_r2_button.png");
             btn_pad_r2.setScaleX(1.0f);
             btn_pad_r2.setScaleY(isNether ? 0.6f : 1.0f);
-            btn_pad_r2.setOnPSShoulderButtonListener(pressed -> NativeApp.setPadButton(KeyEvent.KEYCODE_BUTTON_R2, 0, pressed));
+            btn_pad_r2.setOnPSShoulderButtonListener(pressed -> padState.submit(KeyEvent.KEYCODE_BUTTON_R2, 0, pressed));
         }
 
         PSButtonView btn_pad_l3 = findViewById(R.id.btn_pad_l3);
         if (btn_pad_l3 != null) {
             applyButtonIcon(btn_pad_l3, R.drawable.playstation_button_l3_outline, "ic_controller_l3_button.png");
-            btn_pad_l3.setOnPSButtonListener(pressed -> NativeApp.setPadButton(KeyEvent.KEYCODE_BUTTON_THUMBL, 0, pressed));
+            btn_pad_l3.setOnPSButtonListener(pressed -> padState.submit(KeyEvent.KEYCODE_BUTTON_THUMBL, 0, pressed));
         }
 
         PSButtonView btn_pad_r3 = findViewById(R.id.btn_pad_r3);
         if (btn_pad_r3 != null) {
             applyButtonIcon(btn_pad_r3, R.drawable.playstation_button_r3_outline, "ic_controller_r3_button.png");
-            btn_pad_r3.setOnPSButtonListener(pressed -> NativeApp.setPadButton(KeyEvent.KEYCODE_BUTTON_THUMBR, 0, pressed));
+            btn_pad_r3.setOnPSButtonListener(pressed -> padState.submit(KeyEvent.KEYCODE_BUTTON_THUMBR, 0, pressed));
         }
 
         applyUserUiScale();
@@ -3092,6 +3209,7 @@ public class MainActivity extends AppCompatActivity {
                 sendAnalog(113, Math.max(0f, -clampedX));
                 sendAnalog(112, Math.max(0f, clampedY));
                 sendAnalog(110, Math.max(0f, -clampedY));
+                padState.flush();
                 lastInput = InputSource.TOUCH;
                 lastTouchTimeMs = System.currentTimeMillis();
                 maybeAutoHideControls();
@@ -3108,6 +3226,7 @@ public class MainActivity extends AppCompatActivity {
                 sendAnalog(123, Math.max(0f, -clampedX));
                 sendAnalog(122, Math.max(0f, clampedY));
                 sendAnalog(120, Math.max(0f, -clampedY));
+                padState.flush();
                 lastInput = InputSource.TOUCH;
                 lastTouchTimeMs = System.currentTimeMillis();
                 maybeAutoHideControls();
@@ -3550,6 +3669,8 @@ public class MainActivity extends AppCompatActivity {
         NativeApp.pause();
         isVmPaused = true;
         updatePauseButtonIcon();
+        // The process may not come back; don't leave per-game settings in the write-behind queue.
+        GameSpecificSettingsManager.flush();
         super.onPause();
         ////
         if (mHIDDeviceManager != null) {
@@ -3581,6 +3702,16 @@ public class MainActivity extends AppCompatActivity {
 	protected void onDestroy() {
 		stopEmuThread();
 		LogcatRecorder.shutdown();
+		latencyOsdHandler.removeCallbacks(latencyOsdTick);
+		InputDeviceRegistry.unregister();
+		if (chdQueueListener != null) {
+			ChdConversionQueue.get(this).removeListener(chdQueueListener);
+			chdQueueListener = null;
+		}
+		if (gamepadInput != null) {
+			gamepadInput.quit();
+			gamepadInput = null;
+		}
 		super.onDestroy();
 		////
 		if (mHIDDeviceManager != null) {
@@ -3617,6 +3748,13 @@ public class MainActivity extends AppCompatActivity {
 
 		// Initialize state
         SDLControllerManager.initialize();
+        InputDeviceRegistry.register(this);
+        gamepadInput = new GamepadInputThread(padState);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            // Deliver joystick motion as it arrives instead of batched to the next UI frame; the
+            // input thread replays history either way.
+            getWindow().getDecorView().requestUnbufferedDispatch(InputDevice.SOURCE_CLASS_JOYSTICK);
+        }
 
         mHIDDeviceManager = HIDDeviceManager.acquire(this);
     }
@@ -3668,9 +3806,24 @@ public class MainActivity extends AppCompatActivity {
         }
         postOnboardingChecksRun = true;
         ensureBiosPresent();
+        if (resumePendingDataMigration()) {
+            return;
+        }
         maybeShowDataDirectoryPrompt();
     }
 
+    // Finishes a data move the process was killed in the middle of; the copy resumes from its journal.
+    private boolean resumePendingDataMigration() {
+        DataDirectoryManager.PendingMigration pending = DataDirectoryManager.getPendingMigration(this);
+        if (pending == null) {
+            return false;
+        }
+        try { DebugLog.d("DataDir", "Resuming data migration to " + pending.target); } catch (Throwable ignored) {}
+        storagePromptShown = true;
+        beginDataDirectoryMigration(pending.source, pending.target, pending.uriString);
+        return true;
+    }
+
     private void maybeShowDataDirectoryPrompt() {
         if (storagePromptShown) {
             return;
@@ -3744,9 +3897,8 @@ public class MainActivity extends AppCompatActivity {
         NativeApp.pause();
         NativeApp.shutdown();
         new Thread(() -> {
-            boolean success = DataDirectoryManager.migrateData(currentDir, targetDir);
+            boolean success = DataDirectoryManager.moveDataRoot(getApplicationContext(), currentDir, targetDir, uriString, this::updateDataDirProgress);
 			if (success) {
-				DataDirectoryManager.storeCustomDataRoot(getApplicationContext(), targetDir.getAbsolutePath(), uriString);
 				NativeApp.setDataRootOverride(targetDir.getAbsolutePath());
 				NativeApp.reinitializeDataRoot(targetDir.getAbsolutePath());
 				LogcatRecorder.handleDataRootChanged();
@@ -3789,6 +3941,15 @@ public class MainActivity extends AppCompatActivity {
         });
     }
 
+    private void updateDataDirProgress(long bytesDone, long bytesTotal) {
+        final int percent = (int) (bytesDone * 100 / Math.max(1L, bytesTotal));
+        runOnUiThread(() -> {
+            if (dataDirProgressDialog != null) {
+                dataDirProgressDialog.setMessage("Moving emulator data to the selected folder… " + percent + "%");
+            }
+        });
+    }
+
     private void dismissDataDirProgressDialog() {
         runOnUiThread(() -> {
             if (dataDirProgressDialog != null) {
@@ -3827,7 +3988,7 @@ public class MainActivity extends AppCompatActivity {
                 DebugLog.w("VM", "VM still reporting active after shutdown; proceeding with clean boot");
             }
         }
-        try { NativeApp.resetKeyStatus(); } catch (Throwable ignored) {}
+        resetPadInput();
         if (isThread()) {
             return;
         }
@@ -3864,7 +4025,7 @@ public class MainActivity extends AppCompatActivity {
         } else if (forceShutdown) {
             NativeApp.shutdown();
         }
-        try { NativeApp.resetKeyStatus(); } catch (Throwable ignored) {}
+        resetPadInput();
         setFastForwardEnabled(false);
         isVmPaused = false;
         updatePauseButtonIcon();
@@ -3962,12 +4123,18 @@ public class MainActivity extends AppCompatActivity {
     }
 
 
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent ev) {
+        // On-screen controls handle touches in their own listeners; time the event before they run.
+        InputLatencyTracker.onInput(InputLatencyTracker.Source.TOUCH, ev.getDeviceId(), PadState.eventTimeNanos(ev, -1));
+        return super.dispatchTouchEvent(ev);
+    }
+
     @Override
     public boolean onGenericMotionEvent(MotionEvent event) {
         updateLastControllerDeviceId(event.getDeviceId());
-        if (SDLControllerManager.isDeviceSDLJoystick(event.getDeviceId())) {
-            SDLControllerManager.handleJoystickMotionEvent(event);
-            handleGamepadMotion(event);
+        if (SDLControllerManager.isDeviceSDLJoystick(event.getDeviceId()) && gamepadInput != null) {
+            gamepadInput.postMotion(event);
             lastInput = InputSource.CONTROLLER;
             lastControllerTimeMs = System.currentTimeMillis();
             maybeAutoHideControls();
@@ -3981,8 +4148,7 @@ public class MainActivity extends AppCompatActivity {
         if ((p_event.getSource() & InputDevice.SOURCE_GAMEPAD) == InputDevice.SOURCE_GAMEPAD) {
             if (p_event.getRepeatCount() == 0) {
                 updateLastControllerDeviceId(p_event.getDeviceId());
-                SDLControllerManager.onNativePadDown(p_event.getDeviceId(), p_keyCode);
-                forwardKeyToPad(true, p_keyCode);
+                if (gamepadInput != null) gamepadInput.postKey(p_event, true);
                 lastInput = InputSource.CONTROLLER;
                 lastControllerTimeMs = System.currentTimeMillis();
                 maybeAutoHideControls();
@@ -4015,8 +4181,7 @@ public class MainActivity extends AppCompatActivity {
         if ((p_event.getSource() & InputDevice.SOURCE_GAMEPAD) == InputDevice.SOURCE_GAMEPAD) {
             if (p_event.getRepeatCount() == 0) {
                 updateLastControllerDeviceId(p_event.getDeviceId());
-                SDLControllerManager.onNativePadUp(p_event.getDeviceId(), p_keyCode);
-                forwardKeyToPad(false, p_keyCode);
+                if (gamepadInput != null) gamepadInput.postKey(p_event, false);
                 lastInput = InputSource.CONTROLLER;
                 lastControllerTimeMs = System.currentTimeMillis();
                 maybeAutoHideControls();
@@ -4035,13 +4200,13 @@ public class MainActivity extends AppCompatActivity {
                 _abs = Math.min(_abs, 100);
                 pad_force = (int) (_abs * 32766.0f / 100);
             }
-            NativeApp.setPadButton(p_keycode, pad_force, true);
+            padState.submit(p_keycode, pad_force, true);
             lastInput = InputSource.TOUCH;
             lastTouchTimeMs = System.currentTimeMillis();
             maybeAutoHideControls();
         } else if(p_action == MotionEvent.ACTION_UP || p_action == MotionEvent.ACTION_CANCEL) {
             p_view.setPressed(false);
-            NativeApp.setPadButton(p_keycode, 0, false);
+            padState.submit(p_keycode, 0, false);
         }
     }
 
@@ -4073,7 +4238,14 @@ public class MainActivity extends AppCompatActivity {
         if (disableTouchControls) {
             visible = false;
         }
-        int vis = visible ? View.VISIBLE : View.GONE;
+        if (touchPadOverlay != null) {
+            touchPadOverlay.setElementVisible("left_stick", currentControllerMode != 2);
+            touchPadOverlay.setElementVisible("right_stick", currentControllerMode == 0);
+            touchPadOverlay.setElementVisible("dpad", currentControllerMode != 1);
+            touchPadOverlay.setVisibility(visible && singleLayerControls ? View.VISIBLE : View.GONE);
+        }
+        // The separate control views stay hidden while the single-view overlay replaces them.
+        int vis = visible && !singleLayerControls ? View.VISIBLE : View.GONE;
         if (llPadSelectStart != null) llPadSelectStart.setVisibility(vis);
         if (llPadRight != null) llPadRight.setVisibility(vis);
         View leftShoulders = findViewById(R.id.ll_pad_shoulders_left);
@@ -4221,15 +4393,35 @@ public class MainActivity extends AppCompatActivity {
 
     private final ActivityResultLauncher<Intent> startActivityResultPickIso = registerForActivityResult(
             new ActivityResultContracts.StartActivityForResult(), result -> {
-                if (result.getResultCode() == Activity.RESULT_OK && result.getData() != null && result.getData().getData() != null) {
-                    Uri uri = result.getData().getData();
+                if (result.getResultCode() != Activity.RESULT_OK || result.getData() == null) {
+                    return;
+                }
+                List<Uri> picked = new ArrayList<>();
+                android.content.ClipData clip = result.getData().getClipData();
+                if (clip != null) {
+                    for (int i = 0; i < clip.getItemCount(); i++) {
+                        if (clip.getItemAt(i).getUri() != null) picked.add(clip.getItemAt(i).getUri());
+                    }
+                } else if (result.getData().getData() != null) {
+                    picked.add(result.getData().getData());
+                }
+                List<Uri> isos = new ArrayList<>();
+                for (Uri uri : picked) {
                     String name = queryOpenableDisplayName(uri);
                     String low = name != null ? name.toLowerCase() : uri.toString().toLowerCase();
-                    if (!low.endsWith(".iso")) {
-                        try { new MaterialAlertDialogBuilder(this).setTitle("Not an ISO").setMessage("Please select a .iso file.").setPositiveButton("OK", (d,w)-> d.dismiss()).show(); } catch (Throwable ignored) {}
-                        return;
-                    }
-                    performIsoToChd(uri, name);
+                    if (low.endsWith(".iso")) isos.add(uri);
+                }
+                if (isos.isEmpty()) {
+                    try { new MaterialAlertDialogBuilder(this).setTitle("Not an ISO").setMessage("Please select a .iso file.").setPositiveButton("OK", (d,w)-> d.dismiss()).show(); } catch (Throwable ignored) {}
+                    return;
+                }
+                if (isos.size() < picked.size()) {
+                    try { Toast.makeText(this, "Skipped " + (picked.size() - isos.size()) + " file(s) that are not ISOs", Toast.LENGTH_LONG).show(); } catch (Throwable ignored) {}
+                }
+                if (isos.size() == 1) {
+                    performIsoToChd(isos.get(0), queryOpenableDisplayName(isos.get(0)));
+                } else {
+                    performIsoToChdBatch(isos);
                 }
             });
 
@@ -4246,173 +4438,54 @@ public class MainActivity extends AppCompatActivity {
                 "application/x-raw-disk-image"
             };
             i.putExtra(Intent.EXTRA_MIME_TYPES, mimeTypes);
+            i.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true);
+            i.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION | Intent.FLAG_GRANT_PERSISTABLE_URI_PERMISSION);
             startActivityResultPickIso.launch(i);
         } catch (Throwable t) {
             try { Toast.makeText(this, "Unable to open file picker", Toast.LENGTH_SHORT).show(); } catch (Throwable ignored) {}
         }
     }
 
-    private void performIsoToChd(Uri isoUri, String isoDisplayName) {
-        if (!NativeApp.hasNativeTools) {
-            String errorMsg = "ARMSX2 Native Tools library could not be called, it was probably not bundled with the app please rebuild the app with the library in place.";
-            android.util.Log.e("ARMSX2_CHD", "Library not available: " + errorMsg);
-            try {
-                new MaterialAlertDialogBuilder(this)
-                        .setTitle("Library Not Available")
-                        .setMessage(errorMsg)
-                        .setPositiveButton("OK", (d, w) -> d.dismiss())
-                        .show();
-            } catch (Throwable ignored) {}
-            return;
+    private boolean ensureNativeToolsForChd() {
+        if (!NativeApp.hasNoNativeBinary) {
+            return true;
         }
-
-        new Thread(() -> {
-            String inputPath = null;
-            String outputPath = null;
-            String resultMessage = null;
-            boolean success = false;
-
-            try {
-                // Get real file path from URI
-                android.util.Log.i("ARMSX2_CHD", "Starting ISO to CHD conversion for: " + isoDisplayName);
-                android.util.Log.i("ARMSX2_CHD", "Input URI: " + isoUri.toString());
-                
-                inputPath = getFilePathFromUri(isoUri);
-                if (inputPath == null) {
-                    resultMessage = "Could not access the selected ISO file. Please ensure the file is accessible.";
-                    android.util.Log.e("ARMSX2_CHD", "Failed to get file path from URI: " + isoUri.toString());
-                    return;
-                }
-                android.util.Log.i("ARMSX2_CHD", "Input path resolved to: " + inputPath);
-
-                // Generate output CHD path to match what Rust will create 
-                outputPath = inputPath.replaceAll("\\.iso$", ".chd");
-                android.util.Log.i("ARMSX2_CHD", "Expected output path: " + outputPath);
-
-                // Call native conversion 
-                android.util.Log.i("ARMSX2_CHD", "Calling native conversion...");
-                try {
-                    android.util.Log.d("ARMSX2_CHD", "Input path bytes: " + java.util.Arrays.toString(inputPath.getBytes("UTF-8")));
-                    android.util.Log.d("ARMSX2_CHD", "Input path length: " + inputPath.length());
-                    android.util.Log.d("ARMSX2_CHD", "Input path string: '" + inputPath + "'");
-                } catch (java.io.UnsupportedEncodingException e) {
-                    android.util.Log.e("ARMSX2_CHD", "Failed to encode path as UTF-8: " + e.getMessage());
-                }
-                int result = NativeApp.convertIsoToChd(inputPath);
-                android.util.Log.i("ARMSX2_CHD", "Native conversion returned code: " + result);
-                
-                success = handleConversionResult(result, inputPath, outputPath);
-                
-                if (success) {
-                    final String chdCachePath = outputPath;
-                    final String chdDisplayName = isoDisplayName;
-                    android.util.Log.i("ARMSX2_CHD", "Conversion succeeded. Prompting user to choose CHD save location.");
-                    runOnUiThread(() -> promptForChdSave(chdCachePath, chdDisplayName));
-                    resultMessage = null;
-                } else {
-                    resultMessage = getErrorMessage(result) + "\n\nInput: " + inputPath + "\nOutput: " + outputPath;
-                    android.util.Log.e("ARMSX2_CHD", "Conversion failed with code " + result + ": " + getErrorMessage(result));
-                    android.util.Log.e("ARMSX2_CHD", "Input: " + inputPath);
-                    android.util.Log.e("ARMSX2_CHD", "Output: " + outputPath);
-                }
-
-            } catch (Throwable e) {
-                resultMessage = "Conversion failed with exception: " + e.getMessage() + 
-                              "\n\nInput: " + inputPath + "\nOutput: " + outputPath;
-                android.util.Log.e("ARMSX2_CHD", "Conversion exception: " + e.getClass().getSimpleName() + ": " + e.getMessage(), e);
-                android.util.Log.e("ARMSX2_CHD", "Input: " + inputPath);
-                android.util.Log.e("ARMSX2_CHD", "Output: " + outputPath);
-            } finally {
-                if (inputPath != null) {
-                    File tempFile = new File(inputPath);
-                    if (tempFile.exists() && tempFile.getParent().equals(getCacheDir().getAbsolutePath())) {
-                        if (tempFile.delete()) {
-                            android.util.Log.d("ARMSX2_CHD", "Cleaned up temporary file: " + inputPath);
-                        } else {
-                            android.util.Log.w("ARMSX2_CHD", "Failed to clean up temporary file: " + inputPath);
-                        }
-                    }
-                }
-                
-                final String finalMessage = resultMessage;
-                final boolean finalSuccess = success;
-                runOnUiThread(() -> {
-                    if (finalMessage != null) {
-                        showConversionResult(finalSuccess, finalMessage);
-                    }
-                });
-            }
-        }, "IsoToChdConverter").start();
+        String errorMsg = "The emulator core library could not be loaded, so images can't be converted.";
+        android.util.Log.e("ARMSX2_CHD", "Library not available: " + errorMsg);
+        try {
+            new MaterialAlertDialogBuilder(this)
+                    .setTitle("Library Not Available")
+                    .setMessage(errorMsg)
+                    .setPositiveButton("OK", (d, w) -> d.dismiss())
+                    .show();
+        } catch (Throwable ignored) {}
+        return false;
     }
 
-    private String getFilePathFromUri(Uri uri) {
-        android.util.Log.d("ARMSX2_CHD", "getFilePathFromUri called with: " + uri.toString());
-        try {
-            // Get display name from content resolver
-            android.database.Cursor cursor = getContentResolver().query(uri, null, null, null, null);
-            if (cursor != null) {
-                try {
-                    if (cursor.moveToFirst()) {
-                        int displayNameIndex = cursor.getColumnIndex(android.provider.OpenableColumns.DISPLAY_NAME);
-                        if (displayNameIndex >= 0) {
-                            String displayName = cursor.getString(displayNameIndex);
-                            
-                            File cacheDir = getCacheDir();
-                            File tempFile = new File(cacheDir, displayName);
-                            android.util.Log.d("ARMSX2_CHD", "Creating temporary file: " + tempFile.getAbsolutePath());
-                            
-                            try (java.io.InputStream input = getContentResolver().openInputStream(uri);
-                                 java.io.FileOutputStream output = new java.io.FileOutputStream(tempFile)) {
-                                
-                                if (input != null) {
-                                    byte[] buffer = new byte[8192];
-                                    int bytesRead;
-                                    long totalBytes = 0;
-                                    while ((bytesRead = input.read(buffer)) != -1) {
-                                        output.write(buffer, 0, bytesRead);
-                                        totalBytes += bytesRead;
-                                    }
-                                    android.util.Log.d("ARMSX2_CHD", "Copied " + totalBytes + " bytes to cache");
-                                    return tempFile.getAbsolutePath();
-                                }
-                            }
-                        }
-                    }
-                } finally {
-                    cursor.close();
-                }
-            }
-        } catch (Throwable e) {
-            android.util.Log.e("ARMSX2_CHD", "Exception in getFilePathFromUri: " + e.getMessage(), e);
+    private void performIsoToChd(Uri isoUri, String isoDisplayName) {
+        if (!ensureNativeToolsForChd()) {
+            return;
         }
-        android.util.Log.w("ARMSX2_CHD", "getFilePathFromUri returning null - failed to resolve path");
-        return null;
+        promptForChdDestination(isoUri, isoDisplayName);
     }
 
-    private void promptForChdSave(String chdCachePath, String displayName) {
-        File chdFile = new File(chdCachePath);
-        if (!chdFile.exists()) {
-            android.util.Log.e("ARMSX2_CHD", "CHD file missing in cache, cannot prompt for save: " + chdCachePath);
-            showConversionResult(false, "Converted file could not be found. Please try converting again.");
+    // Several images go into one folder rather than asking for a file name per image.
+    private void performIsoToChdBatch(List<Uri> isoUris) {
+        if (!ensureNativeToolsForChd()) {
             return;
         }
+        pendingChdBatch.clear();
+        pendingChdBatch.addAll(isoUris);
+        Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT_TREE);
+        intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION | Intent.FLAG_GRANT_WRITE_URI_PERMISSION | Intent.FLAG_GRANT_PERSISTABLE_URI_PERMISSION);
+        startActivityResultChdFolder.launch(intent);
+    }
 
-        pendingChdCachePath = chdCachePath;
+    private void promptForChdDestination(Uri isoUri, String displayName) {
+        pendingChdSourceUri = isoUri;
         pendingChdDisplayName = displayName;
 
-        String baseName = displayName;
-        if (baseName == null || baseName.trim().isEmpty()) {
-            baseName = chdFile.getName();
-        }
-        String lower = baseName.toLowerCase(Locale.US);
-        if (lower.endsWith(".iso")) {
-            baseName = baseName.substring(0, baseName.length() - 4);
-            lower = baseName.toLowerCase(Locale.US);
-        }
-        if (!lower.endsWith(".chd")) {
-            baseName = baseName + ".chd";
-        }
-
+        String baseName = ChdConversionQueue.chdFileName(displayName);
         android.util.Log.d("ARMSX2_CHD", "Prompting user to save CHD as: " + baseName);
 
         Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
@@ -4420,52 +4493,100 @@ public class MainActivity extends AppCompatActivity {
         intent.setType("application/octet-stream");
         intent.putExtra(Intent.EXTRA_TITLE, baseName);
 
-        startActivityResultSaveChd.launch(intent);
+        startActivityResultChdDestination.launch(intent);
     }
 
-    private boolean saveChdToUri(File chdFile, Uri destinationUri) {
-        android.util.Log.d("ARMSX2_CHD", "Saving CHD from cache to destination: " + destinationUri);
-        try (java.io.FileInputStream input = new java.io.FileInputStream(chdFile);
-             java.io.OutputStream output = getContentResolver().openOutputStream(destinationUri, "w")) {
+    private void enqueueChdConversions(List<Uri> isoUris, @Nullable Uri destination, @Nullable Uri destinationTree) {
+        ChdConversionQueue queue = ChdConversionQueue.get(this);
+        for (Uri uri : isoUris) {
+            android.util.Log.i("ARMSX2_CHD", "Queueing ISO to CHD conversion for: " + uri);
+            queue.enqueue(uri, queryOpenableDisplayName(uri), destination, destinationTree);
+        }
+        showChdQueueDialog();
+    }
 
-            if (output == null) {
-                android.util.Log.e("ARMSX2_CHD", "Content resolver returned null output stream for destination");
-                return false;
-            }
+    private void showChdQueueDialog() {
+        ChdConversionQueue queue = ChdConversionQueue.get(this);
+        int pad = dpToPx(16);
+        android.widget.LinearLayout rows = new android.widget.LinearLayout(this);
+        rows.setOrientation(android.widget.LinearLayout.VERTICAL);
+        rows.setPadding(pad, pad / 2, pad, 0);
+        android.widget.ScrollView scroll = new android.widget.ScrollView(this);
+        scroll.addView(rows);
 
-            byte[] buffer = new byte[8192];
-            int bytesRead;
-            long totalBytes = 0;
-            while ((bytesRead = input.read(buffer)) != -1) {
-                output.write(buffer, 0, bytesRead);
-                totalBytes += bytesRead;
-            }
-            output.flush();
-            android.util.Log.d("ARMSX2_CHD", "Wrote " + totalBytes + " bytes to destination URI");
-            return true;
-        } catch (Throwable e) {
-            android.util.Log.e("ARMSX2_CHD", "Failed to copy CHD to destination: " + e.getMessage(), e);
-            return false;
+        Runnable refresh = () -> {
+            rows.removeAllViews();
+            List<ChdConversionQueue.Job> jobs = queue.getJobs();
+            if (jobs.isEmpty()) {
+                TextView empty = new TextView(this);
+                empty.setText("No conversions queued.");
+                rows.addView(empty);
+                return;
+            }
+            for (ChdConversionQueue.Job job : jobs) {
+                android.widget.LinearLayout row = new android.widget.LinearLayout(this);
+                row.setOrientation(android.widget.LinearLayout.HORIZONTAL);
+                row.setGravity(android.view.Gravity.CENTER_VERTICAL);
+                row.setPadding(0, pad / 4, 0, pad / 4);
+                TextView label = new TextView(this);
+                label.setText(job.displayName + "\n" + describeChdJob(job));
+                row.addView(label, new android.widget.LinearLayout.LayoutParams(0, ViewGroup.LayoutParams.WRAP_CONTENT, 1f));
+                ChdConversionQueue.State state = job.getState();
+                if (state == ChdConversionQueue.State.QUEUED || state == ChdConversionQueue.State.RUNNING) {
+                    MaterialButton cancel = new MaterialButton(this);
+                    cancel.setText("Cancel");
+                    cancel.setOnClickListener(v -> queue.cancel(job));
+                    row.addView(cancel);
+                } else if (job.canRetry()) {
+                    MaterialButton retry = new MaterialButton(this);
+                    retry.setText("Retry");
+                    retry.setOnClickListener(v -> queue.retry(job));
+                    row.addView(retry);
+                }
+                rows.addView(row);
+            }
+        };
+        refresh.run();
+
+        if (chdQueueListener != null) {
+            queue.removeListener(chdQueueListener);
         }
-    }
+        ChdConversionQueue.Listener listener = refresh::run;
+        chdQueueListener = listener;
+        queue.addListener(listener);
 
-    private boolean handleConversionResult(int result, String inputPath, String outputPath) {
-        return result == 0; // All good!
+        try {
+            new MaterialAlertDialogBuilder(this)
+                    .setTitle("CHD conversions")
+                    .setView(scroll)
+                    .setPositiveButton("Close", (d, w) -> d.dismiss())
+                    .setNeutralButton("Clear finished", (d, w) -> queue.clearFinished())
+                    .setNegativeButton("Cancel all", (d, w) -> queue.cancelAll())
+                    .setOnDismissListener(d -> {
+                        queue.removeListener(listener);
+                        if (chdQueueListener == listener) chdQueueListener = null;
+                    })
+                    .show();
+        } catch (Throwable ignored) {
+            queue.removeListener(listener);
+        }
     }
 
-    private String getErrorMessage(int errorCode) {
-        switch (errorCode) {
-            case -1: return "Error: Null pointer provided to conversion function";
-            case -2: return "Error: Invalid UTF-8 encoding in file paths";
-            case -3: return "Error: Input ISO file not found";
-            case -4: return "Error: Input path is not a regular file";
-            case -5: return "Error: Failed to create output CHD file";
-            case -6: return "Error: I/O error during conversion";
-            case -7: return "Error: Too many hunks for CHD format";
-            case -8: return "Error: Numeric overflow during conversion";
-            case -9: return "Error: Unexpected end of ISO data";
-            case -100: return "Error: Internal conversion error";
-            default: return "Error: Unknown conversion error (code: " + errorCode + ")";
+    private static String describeChdJob(ChdConversionQueue.Job job) {
+        switch (job.getState()) {
+            case QUEUED:
+                return "Waiting";
+            case RUNNING: {
+                float progress = job.getProgress();
+                if (progress < 0f) return "Converting…";
+                return String.format(Locale.US, "%d%% · %.1f MB/s", Math.round(progress * 100f), job.getMbPerSecond());
+            }
+            case DONE:
+                return "Done";
+            case CANCELLED:
+                return "Cancelled";
+            default:
+                return ChdConversionQueue.describeResult(job.getResultCode());
         }
     }
 
@@ -4489,75 +4610,6 @@ public class MainActivity extends AppCompatActivity {
         } catch (Throwable ignored) { hideDelayMs = 2500L; }
     }
 
-    private void forwardKeyToPad(boolean down, int keycode) {
-        int mapped = ControllerMappingManager.getPadCodeForKey(keycode);
-        if (mapped == ControllerMappingManager.NO_MAPPING) {
-            mapped = keycode;
-        }
-        NativeApp.setPadButton(mapped, 0, down);
-    }
-
-    private void handleGamepadMotion(MotionEvent e) {
-        updateLastControllerDeviceId(e.getDeviceId());
-        float lx = getCenteredAxis(e, MotionEvent.AXIS_X);
-        float ly = getCenteredAxis(e, MotionEvent.AXIS_Y);
-        sendAnalog(111, Math.max(0f, lx));
-        sendAnalog(113, Math.max(0f, -lx));
-        sendAnalog(112, Math.max(0f, ly));
-        sendAnalog(110, Math.max(0f, -ly));
-
-        float rx = getCenteredAxis(e, MotionEvent.AXIS_RX);
-        float ry = getCenteredAxis(e, MotionEvent.AXIS_RY);
-        if (rx == 0f && ry == 0f) {
-            rx = getCenteredAxis(e, MotionEvent.AXIS_Z);
-            ry = getCenteredAxis(e, MotionEvent.AXIS_RZ);
-        }
-        sendAnalog(121, Math.max(0f, rx));
-        sendAnalog(123, Math.max(0f, -rx));
-        sendAnalog(122, Math.max(0f, ry));
-        sendAnalog(120, Math.max(0f, -ry));
-
-        float ltrig = e.getAxisValue(MotionEvent.AXIS_LTRIGGER);
-        float rtrig = e.getAxisValue(MotionEvent.AXIS_RTRIGGER);
-        if (ltrig == 0f) ltrig = e.getAxisValue(MotionEvent.AXIS_BRAKE);
-        if (rtrig == 0f) rtrig = e.getAxisValue(MotionEvent.AXIS_GAS);
-        sendAnalog(KeyEvent.KEYCODE_BUTTON_L2, normalizeTrigger(ltrig), TRIGGER_DEADZONE);
-        sendAnalog(KeyEvent.KEYCODE_BUTTON_R2, normalizeTrigger(rtrig), TRIGGER_DEADZONE);
-
-        float hatX = e.getAxisValue(MotionEvent.AXIS_HAT_X);
-        float hatY = e.getAxisValue(MotionEvent.AXIS_HAT_Y);
-        final float hatThreshold = 0.4f;
-        boolean nowLeft = hatX < -hatThreshold;
-        boolean nowRight = hatX > hatThreshold;
-        boolean nowUp = hatY < -hatThreshold;
-        boolean nowDown = hatY > hatThreshold;
-        setAxisState(hatLeft, nowLeft, KeyEvent.KEYCODE_DPAD_LEFT);  hatLeft = nowLeft;
-        setAxisState(hatRight, nowRight, KeyEvent.KEYCODE_DPAD_RIGHT); hatRight = nowRight;
-        setAxisState(hatUp, nowUp, KeyEvent.KEYCODE_DPAD_UP); hatUp = nowUp;
-        setAxisState(hatDown, nowDown, KeyEvent.KEYCODE_DPAD_DOWN); hatDown = nowDown;
-    }
-
-    private void setAxisState(boolean prev, boolean now, int code) {
-        if (prev == now) return;
-        if (!ControllerMappingManager.isPadCodeBound(code)) {
-            return;
-        }
-        NativeApp.setPadButton(code, 0, now);
-    }
-
-    private float getCenteredAxis(MotionEvent e, int axis) {
-        final InputDevice device = e.getDevice();
-        if (device != null) {
-            final InputDevice.MotionRange range = device.getMotionRange(axis, e.getSource());
-            if (range != null) {
-                float value = e.getAxisValue(axis);
-                float flat = range.getFlat();
-                if (Math.abs(value) > flat) return value;
-            }
-        }
-        return 0f;
-    }
-
     private void sendAnalog(int keyCode, float normalized) {
         sendAnalog(keyCode, normalized, ANALOG_DEADZONE);
     }
@@ -4570,7 +4622,7 @@ public class MainActivity extends AppCompatActivity {
         }
         if (!ControllerMappingManager.isPadCodeBound(padCode)) {
             analogStates.put(padCode, 0);
-            NativeApp.setPadButton(padCode, 0, false);
+            padState.set(padCode, 0, false);
             return;
         }
         float value = Math.min(1f, Math.max(0f, normalized));
@@ -4579,81 +4631,12 @@ public class MainActivity extends AppCompatActivity {
         int prev = analogStates.get(padCode, -1);
         if (prev == scaled) return;
         analogStates.put(padCode, scaled);
-        NativeApp.setPadButton(padCode, scaled, scaled > 0);
-    }
-
-    private float normalizeTrigger(float raw) {
-        if (Float.isNaN(raw)) return 0f;
-        if (raw < 0f) {
-            return Math.min(1f, Math.max(0f, (raw + 1f) * 0.5f));
-        }
-        return Math.min(1f, raw);
+        padState.set(padCode, scaled, scaled > 0);
     }
 
     private static void updateLastControllerDeviceId(int deviceId) {
-        if (deviceId >= 0) {
-            sLastControllerDeviceId = deviceId;
-        }
-    }
-
-    public static void requestControllerRumble(float large, float small) {
-        MainActivity activity = sInstanceRef != null ? sInstanceRef.get() : null;
-        if (activity == null) {
-            if (!sVibrationEnabled) stopControllerRumbleStatic();
-            return;
-        }
-        activity.runOnUiThread(() -> activity.dispatchControllerRumble(large, small));
-    }
-
-    private void dispatchControllerRumble(float large, float small) {
-        if (!sVibrationEnabled) {
-            stopControllerRumble();
-            return;
-        }
-        final float clampedLarge = clamp01(large);
-        final float clampedSmall = clamp01(small);
-        final float combined = Math.max(clampedLarge, clampedSmall);
-        final int deviceId = sLastControllerDeviceId;
-
-        if (combined <= 0f) {
-            stopControllerRumble();
-            return;
-        }
-
-        boolean usedController = false;
-        if (deviceId >= 0 && SDLControllerManager.isDeviceSDLJoystick(deviceId)) {
-            usedController = true;
-            try {
-                SDLControllerManager.hapticRumble(deviceId, clampedLarge, clampedSmall, RUMBLE_DURATION_MS);
-            } catch (Throwable ignored) {}
-        }
-
-        final int vibratorServiceId = 999999;
-        if (!usedController) {
-            try {
-                SDLControllerManager.hapticRun(vibratorServiceId, combined, RUMBLE_DURATION_MS);
-            } catch (Throwable ignored) {}
-        }
-    }
-
-    private void stopControllerRumble() {
-        stopControllerRumbleStatic();
-    }
-
-    private static void stopControllerRumbleStatic() {
-        final int deviceId = sLastControllerDeviceId;
-        try {
-            if (deviceId >= 0) SDLControllerManager.hapticStop(deviceId);
-        } catch (Throwable ignored) {}
-        try {
-            SDLControllerManager.hapticStop(999999);
-        } catch (Throwable ignored) {}
-    }
-
-    private static float clamp01(float value) {
-        if (Float.isNaN(value)) return 0f;
-        if (value <= 0f) return 0f;
-        return Math.min(1f, value);
+        // The native side only drives pad 0; route its rumble to whichever controller was used last.
+        RumbleEngine.get().setPadDevice(0, deviceId);
     }
 
     private void refreshVibrationPreference() {
@@ -4671,15 +4654,7 @@ public class MainActivity extends AppCompatActivity {
     }
 
     public static void setVibrationPreference(boolean enabled) {
-        sVibrationEnabled = enabled;
-        MainActivity activity = sInstanceRef != null ? sInstanceRef.get() : null;
-        if (!enabled) {
-            if (activity != null) {
-                activity.runOnUiThread(activity::stopControllerRumble);
-            } else {
-                stopControllerRumbleStatic();
-            }
-        }
+        RumbleEngine.get().setEnabled(enabled);
     }
 
     private final ActivityResultLauncher<Intent> startActivityResultPickDataDir = registerForActivityResult(
@@ -4772,7 +4747,62 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void scanGamesFolder(Uri folder) {
-    List<GameEntry> entries = GameScanner.scanFolder(this, folder);
+        if (folder == null) {
+            return;
+        }
+        final GameLibraryIndex index = GameLibraryIndex.get(this);
+        final int generation = ++scanGeneration;
+        synchronized (streamedEntries) {
+            streamedEntries.clear();
+        }
+        List<GameEntry> cached = index.cachedEntries(folder);
+        if (!cached.isEmpty()) {
+            showScannedEntries(cached, false);
+        } else {
+            gamesAdapter.update(new ArrayList<>());
+        }
+        // With nothing cached, stream entries into the grid as the scanner finds them.
+        final GameScanner.Listener listener = cached.isEmpty() ? entry -> queueStreamedEntry(generation, entry) : null;
+        final GameScanner.Options options = new GameScanner.Options(
+                GameScanner.Options.defaults().workers,
+                getSharedPreferences(PREFS, MODE_PRIVATE).getInt(PREF_SCAN_MAX_DEPTH, GameScanner.DEFAULT_MAX_DEPTH));
+        new Thread(() -> {
+            List<GameEntry> entries = GameScanner.scanFolder(this, folder, index, options, listener);
+            runOnUiThread(() -> {
+                if (generation != scanGeneration || isFinishing()) {
+                    return;
+                }
+                showScannedEntries(entries, true);
+            });
+        }, "GameScan").start();
+    }
+
+    private void queueStreamedEntry(int generation, GameEntry entry) {
+        boolean schedule;
+        synchronized (streamedEntries) {
+            schedule = streamedEntries.isEmpty();
+            streamedEntries.add(entry);
+        }
+        if (!schedule) {
+            return;
+        }
+        runOnUiThread(() -> {
+            List<GameEntry> batch;
+            synchronized (streamedEntries) {
+                batch = new ArrayList<>(streamedEntries);
+                streamedEntries.clear();
+            }
+            if (generation != scanGeneration || batch.isEmpty()) {
+                return;
+            }
+            gamesAdapter.append(batch);
+            if (emptyContainer != null) emptyContainer.setVisibility(View.GONE);
+            if (tvEmpty != null) tvEmpty.setVisibility(View.GONE);
+            if (rvGames != null) rvGames.setVisibility(View.VISIBLE);
+        });
+    }
+
+    private void showScannedEntries(List<GameEntry> entries, boolean scanComplete) {
         try {
             java.util.Collections.sort(entries, (a, b) -> {
                 String ta = a != null ? (a.title != null ? a.title : "") : "";
@@ -4794,7 +4824,8 @@ public class MainActivity extends AppCompatActivity {
                 }
             } catch (Throwable ignored) {}
         }
-        if (!toResolve.isEmpty()) {
+        if (scanComplete && !toResolve.isEmpty()) {
+            final GameLibraryIndex index = GameLibraryIndex.get(this);
             new Thread(() -> {
                 android.content.ContentResolver cr = getContentResolver();
                 int n = 0;
@@ -4804,6 +4835,7 @@ public class MainActivity extends AppCompatActivity {
                         if (rd != null && rd.serial != null && !rd.serial.isEmpty()) {
                             ge.serial = rd.serial;
                             ge.gameTitle = rd.name;
+                            index.updateMetadata(ge);
                             n++;
                             if (n % 2 == 1) {
                                 runOnUiThread(() -> gamesAdapter.notifyDataSetChanged());
@@ -4811,7 +4843,10 @@ public class MainActivity extends AppCompatActivity {
                         }
                     } catch (Throwable ignored) {}
                 }
-                if (n > 0) runOnUiThread(() -> gamesAdapter.notifyDataSetChanged());
+                if (n > 0) {
+                    index.save();
+                    runOnUiThread(() -> gamesAdapter.notifyDataSetChanged());
+                }
             }, "RedumpResolve").start();
         }
         if (etSearch != null && etSearch.getText() != null && etSearch.length() > 0) {
@@ -4829,7 +4864,9 @@ public class MainActivity extends AppCompatActivity {
             });
         }
         boolean empty = entries.isEmpty();
-    try { Toast.makeText(this, "Found " + entries.size() + " game(s)", Toast.LENGTH_SHORT).show(); } catch (Throwable ignored) {}
+        if (scanComplete) {
+            try { Toast.makeText(this, "Found " + entries.size() + " game(s)", Toast.LENGTH_SHORT).show(); } catch (Throwable ignored) {}
+        }
         if (tvEmpty != null) {
             tvEmpty.setText(empty ? "No games detected in this folder" : "");
             tvEmpty.setVisibility(empty ? View.VISIBLE : View.GONE);
@@ -4890,7 +4927,7 @@ public class MainActivity extends AppCompatActivity {
         if (show || disableTouchControls) {
             hideDrawerToggle();
         }
-        int vis = show ? View.GONE : View.VISIBLE;
+        int vis = show || singleLayerControls ? View.GONE : View.VISIBLE;
         setOnScreenControlsVisible(!show);
         if (llPadSelectStart != null) llPadSelectStart.setVisibility(vis);
         if (llPadRight != null) llPadRight.setVisibility(vis);
@@ -4944,7 +4981,7 @@ public class MainActivity extends AppCompatActivity {
         lastTouchTimeMs = System.currentTimeMillis();
         setOnScreenControlsVisible(false);
         applyFullscreen();
-        requestControllerRumble(0f, 0f);
+        RumbleEngine.get().stopAll();
         isVmPaused = false;
         updatePauseButtonIcon();
         setFastForwardEnabled(false);
@@ -4969,6 +5006,7 @@ public class MainActivity extends AppCompatActivity {
         if (leftShoulders != null) leftShoulders.setVisibility(View.GONE);
         View rightShoulders = findViewById(R.id.ll_pad_shoulders_right);
         if (rightShoulders != null) rightShoulders.setVisibility(View.GONE);
+        if (touchPadOverlay != null) touchPadOverlay.setVisibility(View.GONE);
         hideDrawerToggle();
         setFastForwardEnabled(false);
         if (inGameDrawer != null) {
@@ -5109,14 +5147,53 @@ public class MainActivity extends AppCompatActivity {
 
     static class GameScanner {
     static final String[] EXTS = new String[]{".iso", ".img", ".bin", ".cso", ".zso", ".chd", ".gz"};
+    static final int DEFAULT_MAX_DEPTH = 3;
+
+        /** Receives entries as soon as they are identified; called on scanner worker threads. */
+        interface Listener { void onEntry(GameEntry entry); }
+
+        static final class Options {
+            final int workers;
+            final int maxDepth;
+            final int queueCapacity;
+
+            Options(int workers, int maxDepth) {
+                this.workers = Math.max(1, workers);
+                this.maxDepth = Math.max(0, maxDepth);
+                this.queueCapacity = this.workers * 4;
+            }
+
+            static Options defaults() {
+                int cores = Runtime.getRuntime().availableProcessors();
+                return new Options(Math.max(2, Math.min(8, cores)), DEFAULT_MAX_DEPTH);
+            }
+        }
+
     static List<GameEntry> scanFolder(Context ctx, Uri treeUri) {
-            List<GameEntry> out = new ArrayList<>();
+            return scanFolder(ctx, treeUri, null);
+        }
+
+        static List<GameEntry> scanFolder(Context ctx, Uri treeUri, @Nullable GameLibraryIndex index) {
+            return scanFolder(ctx, treeUri, index, Options.defaults(), null);
+        }
+
+        static List<GameEntry> scanFolder(Context ctx, Uri treeUri, @Nullable GameLibraryIndex index,
+                                          Options options, @Nullable Listener listener) {
             android.content.ContentResolver cr = ctx.getContentResolver();
+            ParallelScan scan = new ParallelScan(cr, treeUri, index, options, listener);
+            boolean complete = false;
             try {
                 String rootId = android.provider.DocumentsContract.getTreeDocumentId(treeUri);
-                scanChildren(cr, treeUri, rootId, out, 0, 3);
+                complete = scan.run(rootId);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             } catch (Exception ignored) {}
-            return out;
+            CsoUtils.releaseCachedReaders();
+            if (index != null) {
+                index.replaceRoot(treeUri, scan.seen, complete);
+                index.save();
+            }
+            return new ArrayList<>(scan.out);
         }
 
         static List<String> debugList(Context ctx, Uri treeUri) {
@@ -5124,65 +5201,158 @@ public class MainActivity extends AppCompatActivity {
             try {
                 android.content.ContentResolver cr = ctx.getContentResolver();
                 String rootId = android.provider.DocumentsContract.getTreeDocumentId(treeUri);
-                debugChildren(cr, treeUri, rootId, out, 0, 3, "/");
+                debugChildren(cr, treeUri, rootId, out, 0, DEFAULT_MAX_DEPTH, "/");
             } catch (Exception e) { out.add("Error: " + e.getMessage()); }
             return out;
         }
 
-        private static void scanChildren(android.content.ContentResolver cr, Uri treeUri, String parentDocId,
-                                         List<GameEntry> out, int depth, int maxDepth) {
-            if (depth > maxDepth) return;
-            Uri children = android.provider.DocumentsContract.buildChildDocumentsUriUsingTree(treeUri, parentDocId);
-            try (android.database.Cursor c = cr.query(children, new String[]{
-                    android.provider.DocumentsContract.Document.COLUMN_DOCUMENT_ID,
-                    android.provider.DocumentsContract.Document.COLUMN_DISPLAY_NAME,
-                    android.provider.DocumentsContract.Document.COLUMN_MIME_TYPE
-            }, null, null, null)) {
-                if (c == null) return;
-                while (c.moveToNext()) {
-                    String docId = c.getString(0);
-                    String name = c.getString(1);
-                    String mime = c.getString(2);
-                    if (mime != null && mime.equals(android.provider.DocumentsContract.Document.MIME_TYPE_DIR)) {
-                        scanChildren(cr, treeUri, docId, out, depth + 1, maxDepth);
-                        continue;
+        /**
+         * Lists directories and probes headers on a bounded pool. Directory queries and header
+         * probes are independent tasks; once the queue is full the submitting thread runs the task
+         * itself, which throttles discovery to the rate the probes drain.
+         */
+        private static final class ParallelScan {
+            private static final AtomicInteger sThreadCounter = new AtomicInteger();
+            private final android.content.ContentResolver cr;
+            private final Uri treeUri;
+            @Nullable private final GameLibraryIndex index;
+            private final Options options;
+            @Nullable private final Listener listener;
+            private final java.util.concurrent.ThreadPoolExecutor pool;
+            private final AtomicInteger pending = new AtomicInteger();
+            private final java.util.concurrent.CountDownLatch done = new java.util.concurrent.CountDownLatch(1);
+            private volatile boolean complete = true;
+            final List<GameEntry> out = Collections.synchronizedList(new ArrayList<>());
+            final Map<String, GameLibraryIndex.Record> seen = new java.util.concurrent.ConcurrentHashMap<>();
+
+            ParallelScan(android.content.ContentResolver cr, Uri treeUri, @Nullable GameLibraryIndex index,
+                         Options options, @Nullable Listener listener) {
+                this.cr = cr;
+                this.treeUri = treeUri;
+                this.index = index;
+                this.options = options;
+                this.listener = listener;
+                this.pool = new java.util.concurrent.ThreadPoolExecutor(options.workers, options.workers,
+                        5, java.util.concurrent.TimeUnit.SECONDS,
+                        new java.util.concurrent.ArrayBlockingQueue<>(options.queueCapacity),
+                        r -> {
+                            Thread t = new Thread(r, "GameScan-" + sThreadCounter.incrementAndGet());
+                            t.setPriority(Thread.NORM_PRIORITY - 1);
+                            return t;
+                        },
+                        new java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy());
+            }
+
+            boolean run(String rootId) throws InterruptedException {
+                try {
+                    submit(() -> listDirectory(rootId, 0));
+                    done.await();
+                } finally {
+                    pool.shutdownNow();
+                }
+                return complete;
+            }
+
+            private void submit(Runnable task) {
+                pending.incrementAndGet();
+                pool.execute(() -> {
+                    try {
+                        task.run();
+                    } catch (Throwable t) {
+                        complete = false;
+                    } finally {
+                        if (pending.decrementAndGet() == 0) done.countDown();
                     }
-                    if (name == null) name = "Unknown";
-                    String lower = name.toLowerCase();
-                    boolean matchExt = false;
-                    for (String ext : EXTS) { if (lower.endsWith(ext)) { matchExt = true; break; } }
-                    boolean matchMime = false;
-                    if (mime != null) {
-                        String lm = mime.toLowerCase();
-                        if (lm.contains("iso9660") || lm.equals("application/x-iso9660-image")) matchMime = true;
+                });
+            }
+
+            private void listDirectory(String parentDocId, int depth) {
+                Uri children = android.provider.DocumentsContract.buildChildDocumentsUriUsingTree(treeUri, parentDocId);
+                try (android.database.Cursor c = cr.query(children, new String[]{
+                        android.provider.DocumentsContract.Document.COLUMN_DOCUMENT_ID,
+                        android.provider.DocumentsContract.Document.COLUMN_DISPLAY_NAME,
+                        android.provider.DocumentsContract.Document.COLUMN_MIME_TYPE,
+                        android.provider.DocumentsContract.Document.COLUMN_SIZE,
+                        android.provider.DocumentsContract.Document.COLUMN_LAST_MODIFIED
+                }, null, null, null)) {
+                    if (c == null) {
+                        complete = false;
+                        return;
                     }
-                    boolean match = matchExt || matchMime;
-                    if (!match) continue;
-                    Uri doc = android.provider.DocumentsContract.buildDocumentUriUsingTree(treeUri, docId);
-                    GameEntry e = new GameEntry(name, doc);
-                    String ft = e.fileTitleNoExt();
-                    String s = parseSerialFromString(ft);
-                    if (s != null) e.serial = s;
-                    String lowerName = name != null ? name.toLowerCase() : "";
-                    if (e.serial == null && (lowerName.endsWith(".iso") || lowerName.endsWith(".img") || lowerName.endsWith(".cso") || lowerName.endsWith(".zso"))) {
-                        try {
-                            String isoSerial = tryExtractIsoSerial(cr, doc);
-                            if (isoSerial != null) e.serial = isoSerial;
-                        } catch (Throwable t) {
-                            try { DebugLog.d("ISO", "Serial parse failed: " + t.getMessage()); } catch (Throwable ignored) {}
+                    while (c.moveToNext()) {
+                        String docId = c.getString(0);
+                        String name = c.getString(1);
+                        String mime = c.getString(2);
+                        long size = c.isNull(3) ? -1L : c.getLong(3);
+                        long lastModified = c.isNull(4) ? -1L : c.getLong(4);
+                        if (mime != null && mime.equals(android.provider.DocumentsContract.Document.MIME_TYPE_DIR)) {
+                            if (depth + 1 <= options.maxDepth) {
+                                submit(() -> listDirectory(docId, depth + 1));
+                            }
+                            continue;
                         }
-                    }
-                    if (e.serial == null && lowerName.endsWith(".bin")) {
-                        try {
-                            String quick = tryExtractBinSerialQuick(cr, doc);
-                            if (quick != null) e.serial = quick;
-                        } catch (Throwable t) {
-                            try { DebugLog.d("BIN", "Quick serial scan failed: " + t.getMessage()); } catch (Throwable ignored) {}
+                        if (name == null) name = "Unknown";
+                        if (!isCandidate(name, mime)) continue;
+                        Uri doc = android.provider.DocumentsContract.buildDocumentUriUsingTree(treeUri, docId);
+                        GameEntry e = new GameEntry(name, doc);
+                        GameLibraryIndex.Record known = index != null ? index.lookup(doc, size, lastModified) : null;
+                        if (known != null) {
+                            e.serial = known.serial;
+                            e.gameTitle = known.gameTitle;
+                            emit(e, size, lastModified);
+                        } else {
+                            final String fileName = name;
+                            submit(() -> {
+                                resolveSerial(cr, e, fileName);
+                                emit(e, size, lastModified);
+                            });
                         }
                     }
-                    out.add(e);
+                } catch (Exception ignored) {
+                    complete = false;
                 }
-            } catch (Exception ignored) {}
+            }
+
+            private void emit(GameEntry e, long size, long lastModified) {
+                seen.put(e.uri.toString(), GameLibraryIndex.Record.of(treeUri, e, size, lastModified));
+                out.add(e);
+                if (listener != null) {
+                    try { listener.onEntry(e); } catch (Throwable ignored) {}
+                }
+            }
+        }
+
+        private static boolean isCandidate(String name, @Nullable String mime) {
+            String lower = name.toLowerCase();
+            for (String ext : EXTS) { if (lower.endsWith(ext)) return true; }
+            if (mime != null) {
+                String lm = mime.toLowerCase();
+                if (lm.contains("iso9660") || lm.equals("application/x-iso9660-image")) return true;
+            }
+            return false;
+        }
+
+        private static void resolveSerial(android.content.ContentResolver cr, GameEntry e, String name) {
+            String ft = e.fileTitleNoExt();
+            String s = parseSerialFromString(ft);
+            if (s != null) e.serial = s;
+            String lowerName = name != null ? name.toLowerCase() : "";
+            if (e.serial == null && (lowerName.endsWith(".iso") || lowerName.endsWith(".img") || lowerName.endsWith(".cso") || lowerName.endsWith(".zso"))) {
+                try {
+                    String isoSerial = tryExtractIsoSerial(cr, e.uri);
+                    if (isoSerial != null) e.serial = isoSerial;
+                } catch (Throwable t) {
+                    try { DebugLog.d("ISO", "Serial parse failed: " + t.getMessage()); } catch (Throwable ignored) {}
+                }
+            }
+            if (e.serial == null && lowerName.endsWith(".bin")) {
+                try {
+                    String quick = tryExtractBinSerialQuick(cr, e.uri);
+                    if (quick != null) e.serial = quick;
+                } catch (Throwable t) {
+                    try { DebugLog.d("BIN", "Quick serial scan failed: " + t.getMessage()); } catch (Throwable ignored) {}
+                }
+            }
         }
 
         private static void debugChildren(android.content.ContentResolver cr, Uri treeUri, String parentDocId,
@@ -5242,15 +5412,22 @@ public class MainActivity extends AppCompatActivity {
         }
 
         static String tryExtractIsoSerial(android.content.ContentResolver cr, Uri uri) throws java.io.IOException {
+            try (CsoUtils.DiscImageChannel image = CsoUtils.DiscImageChannel.open(cr, uri)) {
+                if (image == null) return null;
+                return tryExtractIsoSerial(image);
+            }
+        }
+
+        static String tryExtractIsoSerial(CsoUtils.DiscImageChannel image) throws java.io.IOException {
             final int SECTOR = 2048;
-            byte[] pvd = readRange(cr, uri, 16L * SECTOR, SECTOR);
+            byte[] pvd = readRange(image, 16L * SECTOR, SECTOR);
             if (pvd == null || pvd.length < SECTOR) return null;
             if (pvd[0] != 0x01 || pvd[1] != 'C' || pvd[2] != 'D' || pvd[3] != '0' || pvd[4] != '0' || pvd[5] != '1')
                 return null;
             int rootLBA = u32le(pvd, 156 + 2);
             int rootSize = u32le(pvd, 156 + 10);
             if (rootLBA <= 0 || rootSize <= 0 || rootSize > 512 * 1024) rootSize = 64 * 1024;
-            byte[] dir = readRange(cr, uri, (long) rootLBA * SECTOR, rootSize);
+            byte[] dir = readRange(image, (long) rootLBA * SECTOR, rootSize);
             if (dir == null) return null;
             int off = 0;
             while (off < dir.length) {
@@ -5274,7 +5451,7 @@ public class MainActivity extends AppCompatActivity {
                         if (semi >= 0) norm = norm.substring(0, semi);
                         if ("SYSTEM.CNF".equalsIgnoreCase(norm)) {
                             int readSize = Math.min(size, 4096);
-                            byte[] cnf = readRange(cr, uri, (long) lba * SECTOR, readSize);
+                            byte[] cnf = readRange(image, (long) lba * SECTOR, readSize);
                             if (cnf != null) {
                                 String txt = new String(cnf, java.nio.charset.StandardCharsets.US_ASCII);
                 java.util.regex.Matcher m = java.util.regex.Pattern.compile(
@@ -5331,275 +5508,591 @@ public class MainActivity extends AppCompatActivity {
             if (i + 3 >= a.length) return 0;
             return (a[i] & 0xFF) | ((a[i+1] & 0xFF) << 8) | ((a[i+2] & 0xFF) << 16) | ((a[i+3] & 0xFF) << 24);
         }
-        private static byte[] readRange(android.content.ContentResolver cr, Uri uri, long offset, int size) throws java.io.IOException {
+        private static byte[] readRange(CsoUtils.DiscImageChannel image, long offset, int size) throws java.io.IOException {
             if (size <= 0) return null;
             if (size > 2 * 1024 * 1024) size = 2 * 1024 * 1024;
-            byte[] csoBytes = CsoUtils.readRange(cr, uri, offset, size);
-            if (csoBytes != null) {
-                return csoBytes;
+            return image.readFully(offset, size);
+        }
+    }
+
+    /**
+     * On-disk cache of scanned library entries, keyed by document URI and validated against the
+     * provider-reported size and last-modified time. Lets a rescan skip header probing for files
+     * that have not changed and lets the home grid show the previous scan before SAF responds.
+     */
+    static final class GameLibraryIndex {
+        private static final String TAG = "LibraryIndex";
+        private static final int MAGIC = 0x58444C41; // "ALDX"
+        private static final int VERSION = 1;
+        private static final String DIR_NAME = "armsx2_library";
+        private static final String FILE_NAME = "library.idx";
+        private static GameLibraryIndex sInstance;
+
+        static final class Record {
+            String rootUri;
+            String docUri;
+            String name;
+            long size;
+            long lastModified;
+            String serial;
+            String gameTitle;
+
+            static Record of(Uri treeUri, GameEntry entry, long size, long lastModified) {
+                Record r = new Record();
+                r.rootUri = treeUri.toString();
+                r.docUri = entry.uri.toString();
+                r.name = entry.title;
+                r.size = size;
+                r.lastModified = lastModified;
+                r.serial = entry.serial;
+                r.gameTitle = entry.gameTitle;
+                return r;
             }
-            try (java.io.InputStream in = cr.openInputStream(uri)) {
-                if (in == null) return null;
-                long toSkip = offset;
-                byte[] skipBuf = new byte[8192];
-                while (toSkip > 0) {
-                    long skipped = in.skip(toSkip);
-                    if (skipped <= 0) {
-                        int r = in.read(skipBuf, 0, (int) Math.min(skipBuf.length, toSkip));
-                        if (r <= 0) break;
-                        toSkip -= r;
-                    } else {
-                        toSkip -= skipped;
-                    }
+
+            boolean matches(long size, long lastModified) {
+                if (size < 0 && lastModified < 0) {
+                    return false;
                 }
-                byte[] buf = new byte[size];
-                int off2 = 0;
-                while (off2 < size) {
-                    int r = in.read(buf, off2, size - off2);
-                    if (r <= 0) break;
-                    off2 += r;
+                return this.size == size && this.lastModified == lastModified;
+            }
+        }
+
+        private final File file;
+        private final Map<String, Record> records = new java.util.LinkedHashMap<>();
+        private boolean dirty;
+
+        private GameLibraryIndex(File file) {
+            this.file = file;
+        }
+
+        static synchronized GameLibraryIndex get(Context ctx) {
+            File file = new File(getLibraryCacheDir(ctx), FILE_NAME);
+            if (sInstance == null || !sInstance.file.equals(file)) {
+                GameLibraryIndex index = new GameLibraryIndex(file);
+                index.load();
+                sInstance = index;
+            }
+            return sInstance;
+        }
+
+        synchronized List<GameEntry> cachedEntries(Uri treeUri) {
+            List<GameEntry> out = new ArrayList<>();
+            if (treeUri == null) {
+                return out;
+            }
+            String root = treeUri.toString();
+            for (Record r : records.values()) {
+                if (!root.equals(r.rootUri)) continue;
+                GameEntry e = new GameEntry(r.name, Uri.parse(r.docUri));
+                e.serial = r.serial;
+                e.gameTitle = r.gameTitle;
+                out.add(e);
+            }
+            return out;
+        }
+
+        @Nullable
+        synchronized Record lookup(Uri docUri, long size, long lastModified) {
+            Record r = records.get(docUri.toString());
+            return (r != null && r.matches(size, lastModified)) ? r : null;
+        }
+
+        /**
+         * Replaces all records under {@code treeUri} with {@code fresh}. When the scan was partial,
+         * previously indexed documents that were not reached are kept.
+         */
+        synchronized void replaceRoot(Uri treeUri, Map<String, Record> fresh, boolean complete) {
+            String root = treeUri.toString();
+            if (complete) {
+                java.util.Iterator<Record> it = records.values().iterator();
+                while (it.hasNext()) {
+                    if (root.equals(it.next().rootUri)) it.remove();
                 }
-                if (off2 == 0) return null;
-                if (off2 < size) return java.util.Arrays.copyOf(buf, off2);
-                return buf;
             }
+            records.putAll(fresh);
+            dirty = true;
+        }
+
+        synchronized void updateMetadata(GameEntry entry) {
+            if (entry == null || entry.uri == null) {
+                return;
+            }
+            Record r = records.get(entry.uri.toString());
+            if (r == null) {
+                return;
+            }
+            r.serial = entry.serial;
+            r.gameTitle = entry.gameTitle;
+            dirty = true;
+        }
+
+        synchronized void save() {
+            if (!dirty) {
+                return;
+            }
+            File parent = file.getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                return;
+            }
+            File temp = new File(file.getPath() + ".tmp");
+            try (java.io.DataOutputStream out = new java.io.DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(records.size());
+                for (Record r : records.values()) {
+                    out.writeUTF(r.rootUri);
+                    out.writeUTF(r.docUri);
+                    out.writeUTF(r.name != null ? r.name : "");
+                    out.writeLong(r.size);
+                    out.writeLong(r.lastModified);
+                    writeNullable(out, r.serial);
+                    writeNullable(out, r.gameTitle);
+                }
+            } catch (IOException e) {
+                try { DebugLog.w(TAG, "Failed to write library index: " + e.getMessage()); } catch (Throwable ignored) {}
+                temp.delete();
+                return;
+            }
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                return;
+            }
+            dirty = false;
+        }
+
+        private void load() {
+            if (!file.isFile()) {
+                return;
+            }
+            try (java.io.DataInputStream in = new java.io.DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    return;
+                }
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    Record r = new Record();
+                    r.rootUri = in.readUTF();
+                    r.docUri = in.readUTF();
+                    r.name = in.readUTF();
+                    r.size = in.readLong();
+                    r.lastModified = in.readLong();
+                    r.serial = readNullable(in);
+                    r.gameTitle = readNullable(in);
+                    records.put(r.docUri, r);
+                }
+                try { DebugLog.d(TAG, "Loaded " + records.size() + " library record(s)"); } catch (Throwable ignored) {}
+            } catch (IOException e) {
+                records.clear();
+                try { DebugLog.w(TAG, "Discarding unreadable library index: " + e.getMessage()); } catch (Throwable ignored) {}
+            }
+        }
+
+        private static void writeNullable(java.io.DataOutputStream out, @Nullable String value) throws IOException {
+            out.writeBoolean(value != null);
+            if (value != null) out.writeUTF(value);
+        }
+
+        @Nullable
+        private static String readNullable(java.io.DataInputStream in) throws IOException {
+            return in.readBoolean() ? in.readUTF() : null;
         }
     }
 
     private static final class CsoUtils {
         private static final int MAGIC_CISO = 0x4F534943;
         private static final int MAGIC_ZISO = 0x4F53495A;
+        private static final int MAX_CACHED_READERS = 4;
+        private static final int MAX_PLAIN_ENTRIES = 256;
+        private static final int BLOCK_CACHE_BYTES = 8 * 1024 * 1024;
+        private static final int MAX_POOLED_INFLATERS = 8;
+        private static final int MAX_POOLED_BUFFERS = 4;
+
+        // Open readers shared by short header probes, most recently used last. Readers are
+        // reference counted so an eviction never closes one that is mid-read.
+        private static final Object READER_LOCK = new Object();
+        private static final java.util.LinkedHashMap<String, CsoReader> sReaders = new java.util.LinkedHashMap<>(8, 0.75f, true);
+        private static final java.util.LinkedHashMap<String, Boolean> sPlainImages = new java.util.LinkedHashMap<String, Boolean>(64, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > MAX_PLAIN_ENTRIES;
+            }
+        };
+        private static final android.util.LruCache<Long, byte[]> sBlockCache = new android.util.LruCache<Long, byte[]>(BLOCK_CACHE_BYTES) {
+            @Override protected int sizeOf(Long key, byte[] value) {
+                return value.length;
+            }
+        };
+        private static final java.util.concurrent.ConcurrentLinkedQueue<Inflater> sInflaters = new java.util.concurrent.ConcurrentLinkedQueue<>();
+        private static final AtomicInteger sReaderIds = new AtomicInteger();
 
         private CsoUtils() {}
 
+        /** Returns the shared reader already open for {@code key}, taking a reference, or null. */
         @Nullable
-        static byte[] readRange(android.content.ContentResolver cr, Uri uri, long offset, int size) {
-            CsoReader reader = null;
-            try {
-                reader = CsoReader.open(cr, uri);
-                if (reader == null) {
-                    return null;
+        private static CsoReader acquireCachedReader(String key) {
+            synchronized (READER_LOCK) {
+                CsoReader cached = sReaders.get(key);
+                if (cached != null) {
+                    cached.refCount++;
                 }
-                return reader.readRange(offset, size);
-            } catch (Exception ignored) {
-                return null;
-            } finally {
-                closeQuietly(reader);
+                return cached;
             }
         }
 
-        @Nullable
-        static java.io.InputStream openInputStream(android.content.ContentResolver cr, Uri uri) throws java.io.IOException {
-            CsoReader reader = CsoReader.open(cr, uri);
-            if (reader == null) {
-                return cr.openInputStream(uri);
+        private static boolean isKnownPlain(String key) {
+            synchronized (READER_LOCK) {
+                return sPlainImages.containsKey(key);
             }
-            return new CsoInputStream(reader);
         }
 
-        private static void closeQuietly(@Nullable Closeable closeable) {
-            if (closeable == null) {
-                return;
+        private static void markPlain(String key) {
+            synchronized (READER_LOCK) {
+                sPlainImages.put(key, Boolean.TRUE);
             }
-            try {
-                closeable.close();
-            } catch (Exception ignored) {}
         }
 
-        private static final class CsoReader implements Closeable {
-            private final ParcelFileDescriptor descriptor;
-            private final FileInputStream inputStream;
-            private final FileChannel channel;
-            private final long uncompressedSize;
-            private final int blockSize;
-            private final int alignShift;
-            private final int[] indexTable;
-            private final int blockCount;
-
-            private CsoReader(ParcelFileDescriptor descriptor, FileInputStream inputStream, FileChannel channel,
-                              long uncompressedSize, int blockSize, int alignShift, int[] indexTable) {
-                this.descriptor = descriptor;
-                this.inputStream = inputStream;
-                this.channel = channel;
-                this.uncompressedSize = uncompressedSize;
-                this.blockSize = blockSize;
-                this.alignShift = alignShift;
-                this.indexTable = indexTable;
-                this.blockCount = indexTable.length - 1;
+        /** Publishes a freshly opened reader, or hands back the one another thread published first. */
+        private static CsoReader shareReader(String key, CsoReader opened) {
+            synchronized (READER_LOCK) {
+                CsoReader raced = sReaders.get(key);
+                if (raced != null) {
+                    raced.refCount++;
+                    closeQuietly(opened);
+                    return raced;
+                }
+                opened.refCount = 1;
+                sReaders.put(key, opened);
+                trimReadersLocked(MAX_CACHED_READERS);
+                return opened;
             }
+        }
 
-            static CsoReader open(android.content.ContentResolver cr, Uri uri) throws java.io.IOException {
+        private static void releaseReader(CsoReader reader) {
+            synchronized (READER_LOCK) {
+                reader.refCount--;
+                if (reader.refCount <= 0 && reader.evicted) {
+                    closeQuietly(reader);
+                }
+            }
+        }
+
+        private static void trimReadersLocked(int max) {
+            java.util.Iterator<CsoReader> it = sReaders.values().iterator();
+            while (sReaders.size() > max && it.hasNext()) {
+                CsoReader reader = it.next();
+                it.remove();
+                reader.evicted = true;
+                if (reader.refCount <= 0) {
+                    closeQuietly(reader);
+                }
+            }
+        }
+
+        /** Closes idle shared readers and forgets which images were plain; call after a scan. */
+        static void releaseCachedReaders() {
+            synchronized (READER_LOCK) {
+                trimReadersLocked(0);
+                sPlainImages.clear();
+            }
+        }
+
+        /**
+         * Expands one raw LZ4 block (no frame header) into {@code dest}, stopping once
+         * {@code destLength} bytes are out so that alignment padding after the block is ignored.
+         * Returns the number of bytes written, or -1 when the block is malformed.
+         */
+        static int decodeLz4Block(byte[] src, int srcLength, byte[] dest, int destOffset, int destLength) {
+            int ip = 0;
+            int op = destOffset;
+            final int opEnd = destOffset + destLength;
+            while (ip < srcLength) {
+                int token = src[ip++] & 0xFF;
+                int literals = token >>> 4;
+                if (literals == 15) {
+                    int b;
+                    do {
+                        if (ip >= srcLength) {
+                            return -1;
+                        }
+                        b = src[ip++] & 0xFF;
+                        literals += b;
+                    } while (b == 255);
+                }
+                if (literals > srcLength - ip || literals > opEnd - op) {
+                    return -1;
+                }
+                System.arraycopy(src, ip, dest, op, literals);
+                ip += literals;
+                op += literals;
+                // The last sequence carries literals only.
+                if (op == opEnd || ip >= srcLength) {
+                    break;
+                }
+                if (srcLength - ip < 2) {
+                    return -1;
+                }
+                int distance = (src[ip] & 0xFF) | ((src[ip + 1] & 0xFF) << 8);
+                ip += 2;
+                if (distance == 0 || distance > op - destOffset) {
+                    return -1;
+                }
+                int matchLength = token & 0x0F;
+                if (matchLength == 15) {
+                    int b;
+                    do {
+                        if (ip >= srcLength) {
+                            return -1;
+                        }
+                        b = src[ip++] & 0xFF;
+                        matchLength += b;
+                    } while (b == 255);
+                }
+                matchLength += 4;
+                if (matchLength > opEnd - op) {
+                    return -1;
+                }
+                int match = op - distance;
+                if (distance >= matchLength) {
+                    System.arraycopy(dest, match, dest, op, matchLength);
+                    op += matchLength;
+                } else {
+                    // Overlapping copy repeats the last distance bytes.
+                    for (int i = 0; i < matchLength; i++) {
+                        dest[op++] = dest[match++];
+                    }
+                }
+            }
+            return op - destOffset;
+        }
+
+        private static Inflater obtainInflater() {
+            Inflater inflater = sInflaters.poll();
+            return inflater != null ? inflater : new Inflater(true);
+        }
+
+        private static void recycleInflater(Inflater inflater) {
+            inflater.reset();
+            if (sInflaters.size() < MAX_POOLED_INFLATERS) {
+                sInflaters.offer(inflater);
+            } else {
+                inflater.end();
+            }
+        }
+
+        @Nullable
+        static java.io.InputStream openInputStream(android.content.ContentResolver cr, Uri uri) throws java.io.IOException {
+            CsoReader reader = CsoReader.open(cr, uri);
+            if (reader == null) {
+                return cr.openInputStream(uri);
+            }
+            return new CsoInputStream(reader);
+        }
+
+        private static void closeQuietly(@Nullable Closeable closeable) {
+            if (closeable == null) {
+                return;
+            }
+            try {
+                closeable.close();
+            } catch (Exception ignored) {}
+        }
+
+        /**
+         * Read-only random access to the uncompressed bytes of a disc image, whether it is stored
+         * raw, as CSO/ZSO, or gzip-compressed. Reads are positional and never reopen the document.
+         */
+        abstract static class DiscImageChannel implements java.nio.channels.SeekableByteChannel {
+            private static final int READ_AHEAD_BYTES = 256 * 1024;
+            private static final ExecutorService sReadAhead = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "DiscReadAhead");
+                t.setDaemon(true);
+                return t;
+            });
+
+            private long position;
+            private volatile boolean open = true;
+
+            @Nullable
+            static DiscImageChannel open(android.content.ContentResolver cr, Uri uri) throws java.io.IOException {
+                String key = uri.toString();
+                CsoReader cached = acquireCachedReader(key);
+                if (cached != null) {
+                    return new CsoImageChannel(cached);
+                }
+                // One descriptor and one header read decide the format; the same descriptor then
+                // backs whichever channel is returned.
                 ParcelFileDescriptor pfd = cr.openFileDescriptor(uri, "r");
                 if (pfd == null) {
                     return null;
                 }
-                FileInputStream fis = null;
                 try {
-                    fis = new FileInputStream(pfd.getFileDescriptor());
+                    FileInputStream fis = new FileInputStream(pfd.getFileDescriptor());
                     FileChannel channel = fis.getChannel();
-                    ByteBuffer header = ByteBuffer.allocate(0x18).order(ByteOrder.LITTLE_ENDIAN);
-                    if (channel.read(header) < 0x18) {
-                        closeQuietly(fis);
-                        closeQuietly(pfd);
-                        return null;
-                    }
-                    header.flip();
-                    int magic = header.getInt();
-                    if (magic != MAGIC_CISO && magic != MAGIC_ZISO) {
-                        closeQuietly(fis);
-                        closeQuietly(pfd);
-                        return null;
-                    }
-                    int headerSize = header.getInt();
-                    long uncompressedSize = header.getLong();
-                    int blockSize = header.getInt();
-                    header.get();
-                    int align = header.get() & 0xFF;
-                    header.get();
-                    header.get();
-                    if (blockSize <= 0 || uncompressedSize <= 0 || headerSize < 0x18) {
-                        closeQuietly(fis);
-                        closeQuietly(pfd);
-                        return null;
-                    }
-                    int entryCount = (headerSize - 0x18) / 4;
-                    if (entryCount <= 1) {
-                        closeQuietly(fis);
-                        closeQuietly(pfd);
-                        return null;
-                    }
-                    int[] table = new int[entryCount];
-                    ByteBuffer indexBuffer = ByteBuffer.allocate(entryCount * 4).order(ByteOrder.LITTLE_ENDIAN);
-                    if (channel.read(indexBuffer) < entryCount * 4) {
-                        closeQuietly(fis);
-                        closeQuietly(pfd);
-                        return null;
+                    ByteBuffer header = ByteBuffer.allocate(0x18);
+                    channel.read(header, 0);
+                    if (!isKnownPlain(key)) {
+                        CsoReader reader = CsoReader.fromHeader(pfd, fis, channel, header);
+                        if (reader != null) {
+                            return new CsoImageChannel(shareReader(key, reader));
+                        }
+                        markPlain(key);
                     }
-                    indexBuffer.flip();
-                    for (int i = 0; i < entryCount; i++) {
-                        table[i] = indexBuffer.getInt();
+                    if (header.position() >= 2 && (header.get(0) & 0xFF) == 0x1F && (header.get(1) & 0xFF) == 0x8B) {
+                        return new GzipImageChannel(pfd, fis, channel);
                     }
-                    return new CsoReader(pfd, fis, channel, uncompressedSize, blockSize, align, table);
-                } catch (Exception e) {
-                    closeQuietly(fis);
+                    return new RawImageChannel(pfd, fis, channel);
+                } catch (java.io.IOException | RuntimeException e) {
                     closeQuietly(pfd);
                     throw e;
                 }
             }
 
-            byte[] readRange(long offset, int size) throws java.io.IOException {
-                if (size <= 0 || offset < 0 || offset >= uncompressedSize) {
+            /** Reads into {@code dst} from {@code offset} without moving the channel position. */
+            abstract int read(ByteBuffer dst, long offset) throws java.io.IOException;
+
+            abstract void closeImage() throws java.io.IOException;
+
+            /** Reads up to {@code size} bytes at {@code offset}; returns null when nothing is there. */
+            @Nullable
+            byte[] readFully(long offset, int size) throws java.io.IOException {
+                if (size <= 0 || offset < 0) {
                     return null;
                 }
-                int cappedSize = (int)Math.min(size, uncompressedSize - offset);
-                byte[] output = new byte[cappedSize];
-                byte[] blockBuffer = new byte[blockSize];
-                int startBlock = (int)(offset / blockSize);
-                int endBlock = Math.min(blockCount, (int)Math.ceil((offset + cappedSize) / (double)blockSize));
-                int outOffset = 0;
-                int offsetInBlock = (int)(offset % blockSize);
-                long remaining = cappedSize;
-                for (int block = startBlock; block < endBlock && remaining > 0; block++) {
-                    int produced = readBlockInto(block, blockBuffer);
-                    if (produced <= 0) {
+                ByteBuffer dst = ByteBuffer.allocate(size);
+                while (dst.hasRemaining()) {
+                    int r = read(dst, offset + dst.position());
+                    if (r <= 0) {
                         break;
                     }
-                    int start = (block == startBlock) ? offsetInBlock : 0;
-                    if (start >= produced) {
-                        continue;
-                    }
-                    int copyLength = (int)Math.min(produced - start, remaining);
-                    System.arraycopy(blockBuffer, start, output, outOffset, copyLength);
-                    outOffset += copyLength;
-                    remaining -= copyLength;
                 }
-                if (outOffset == 0) {
+                if (dst.position() == 0) {
                     return null;
                 }
-                if (outOffset < output.length) {
-                    return Arrays.copyOf(output, outOffset);
+                return dst.position() < size ? Arrays.copyOf(dst.array(), dst.position()) : dst.array();
+            }
+
+            @Override
+            public int read(ByteBuffer dst) throws java.io.IOException {
+                ensureOpen();
+                int r = read(dst, position);
+                if (r > 0) {
+                    position += r;
                 }
-                return output;
+                return r;
             }
 
-            int readBlockInto(int blockIndex, byte[] dest) throws java.io.IOException {
-                if (blockIndex < 0 || blockIndex >= blockCount) {
-                    return -1;
+            @Override
+            public int write(ByteBuffer src) {
+                throw new java.nio.channels.NonWritableChannelException();
+            }
+
+            @Override
+            public long position() {
+                return position;
+            }
+
+            @Override
+            public java.nio.channels.SeekableByteChannel position(long newPosition) {
+                if (newPosition < 0) {
+                    throw new IllegalArgumentException("negative position");
                 }
-                long startOffset = (long)(indexTable[blockIndex] & 0x7FFFFFFFL) << alignShift;
-                long endOffset = (long)(indexTable[blockIndex + 1] & 0x7FFFFFFFL) << alignShift;
-                boolean isPlain = (indexTable[blockIndex] & 0x80000000) != 0;
-                int compressedSize = (int)Math.max(0, endOffset - startOffset);
-                int expectedSize = (int)Math.min(blockSize, uncompressedSize - ((long)blockIndex * blockSize));
-                if (expectedSize <= 0) {
-                    return 0;
+                position = newPosition;
+                return this;
+            }
+
+            @Override
+            public java.nio.channels.SeekableByteChannel truncate(long size) {
+                throw new java.nio.channels.NonWritableChannelException();
+            }
+
+            @Override
+            public boolean isOpen() {
+                return open;
+            }
+
+            @Override
+            public void close() throws java.io.IOException {
+                if (!open) {
+                    return;
                 }
-                if (compressedSize == 0) {
-                    Arrays.fill(dest, 0, expectedSize, (byte)0);
-                    return expectedSize;
+                open = false;
+                closeImage();
+            }
+
+            void ensureOpen() throws java.io.IOException {
+                if (!open) {
+                    throw new java.nio.channels.ClosedChannelException();
+                }
+            }
+        }
+
+        private static final class RawImageChannel extends DiscImageChannel {
+            private static final int DIRECT_BUFFER_BYTES = 64 * 1024;
+            private static final int MAX_DIRECT_BUFFER_BYTES = 2 * 1024 * 1024;
+            private static final ThreadLocal<ByteBuffer> sDirectBuffer = new ThreadLocal<>();
+
+            private final ParcelFileDescriptor descriptor;
+            private final FileInputStream inputStream;
+            private final FileChannel channel;
+
+            RawImageChannel(ParcelFileDescriptor descriptor, FileInputStream inputStream, FileChannel channel) {
+                this.descriptor = descriptor;
+                this.inputStream = inputStream;
+                this.channel = channel;
+            }
+
+            @Override
+            int read(ByteBuffer dst, long offset) throws java.io.IOException {
+                ensureOpen();
+                return channel.read(dst, offset);
+            }
+
+            /**
+             * Reads straight into a per-thread direct buffer, so the kernel copies into memory the
+             * channel can use as-is and a probe costs one pread per range.
+             */
+            @Override
+            @Nullable
+            byte[] readFully(long offset, int size) throws java.io.IOException {
+                if (size <= 0 || offset < 0) {
+                    return null;
                 }
-                byte[] compressed = new byte[compressedSize];
-                ByteBuffer buffer = ByteBuffer.wrap(compressed);
-                channel.position(startOffset);
-                int readTotal = 0;
+                ensureOpen();
+                ByteBuffer buffer = directBuffer(size);
                 while (buffer.hasRemaining()) {
-                    int r = channel.read(buffer);
-                    if (r <= 0) {
+                    if (channel.read(buffer, offset + buffer.position()) <= 0) {
                         break;
                     }
-                    readTotal += r;
                 }
-                if (readTotal != compressedSize) {
-                    return -1;
-                }
-                if (isPlain) {
-                    int toCopy = Math.min(expectedSize, compressedSize);
-                    System.arraycopy(compressed, 0, dest, 0, toCopy);
-                    if (toCopy < expectedSize) {
-                        Arrays.fill(dest, toCopy, expectedSize, (byte)0);
-                    }
-                    return expectedSize;
+                int length = buffer.position();
+                if (length == 0) {
+                    return null;
                 }
-                Inflater inflater = new Inflater(true);
-                try {
-                    inflater.setInput(compressed);
-                    int total = 0;
-                    while (!inflater.finished() && total < expectedSize) {
-                        int r = inflater.inflate(dest, total, expectedSize - total);
-                        if (r <= 0) {
-                            if (inflater.needsInput() || inflater.finished()) {
-                                break;
-                            }
-                        } else {
-                            total += r;
-                        }
-                    }
-                    if (total <= 0) {
-                        Arrays.fill(dest, 0, expectedSize, (byte)0);
-                        return expectedSize;
+                byte[] out = new byte[length];
+                buffer.flip();
+                buffer.get(out);
+                return out;
+            }
+
+            private static ByteBuffer directBuffer(int size) {
+                ByteBuffer buffer = sDirectBuffer.get();
+                if (buffer == null || buffer.capacity() < size) {
+                    buffer = ByteBuffer.allocateDirect(Math.max(size, DIRECT_BUFFER_BYTES));
+                    if (buffer.capacity() <= MAX_DIRECT_BUFFER_BYTES) {
+                        sDirectBuffer.set(buffer);
                     }
-                    return total;
-                } catch (Exception ignored) {
-                    return -1;
-                } finally {
-                    inflater.end();
                 }
+                buffer.clear();
+                buffer.limit(size);
+                return buffer;
             }
 
-            int getBlockCount() {
-                return blockCount;
-            }
-
-            int getBlockSize() {
-                return blockSize;
-            }
-
-            long getUncompressedSize() {
-                return uncompressedSize;
+            @Override
+            public long size() throws java.io.IOException {
+                return channel.size();
             }
 
             @Override
-            public void close() throws java.io.IOException {
+            void closeImage() throws java.io.IOException {
                 try {
                     channel.close();
                 } finally {
@@ -5612,633 +6105,2283 @@ public class MainActivity extends AppCompatActivity {
             }
         }
 
-        private static final class CsoInputStream extends java.io.InputStream {
+        /**
+         * Seeks map straight to a block through the index table. Runs of sequential reads decode the
+         * following blocks into the shared block cache on a background thread.
+         */
+        private static final class CsoImageChannel extends DiscImageChannel {
             private final CsoReader reader;
-            private final byte[] blockBuffer;
-            private int currentBlock = 0;
-            private int blockPos = 0;
-            private int blockLimit = 0;
-            private long bytesRemaining;
+            private final int readAheadBlocks;
+            private long lastReadEnd = -1;
+            private volatile int prefetchedUntil = -1;
 
-            CsoInputStream(CsoReader reader) {
+            CsoImageChannel(CsoReader reader) {
                 this.reader = reader;
-                this.blockBuffer = new byte[reader.getBlockSize()];
-                this.bytesRemaining = reader.getUncompressedSize();
-            }
-
-            @Override
-            public int read() throws java.io.IOException {
-                byte[] single = new byte[1];
-                int r = read(single, 0, 1);
-                if (r <= 0) {
-                    return -1;
-                }
-                return single[0] & 0xFF;
+                this.readAheadBlocks = Math.max(1, DiscImageChannel.READ_AHEAD_BYTES / reader.getBlockSize());
             }
 
             @Override
-            public int read(@NonNull byte[] b, int off, int len) throws java.io.IOException {
-                if (b == null) {
-                    throw new NullPointerException();
-                }
-                if (off < 0 || len < 0 || len > b.length - off) {
-                    throw new IndexOutOfBoundsException();
-                }
-                if (len == 0) {
-                    return 0;
-                }
-                if (bytesRemaining <= 0) {
+            int read(ByteBuffer dst, long offset) throws java.io.IOException {
+                ensureOpen();
+                long size = reader.getUncompressedSize();
+                if (offset >= size) {
                     return -1;
                 }
+                boolean sequential = offset == lastReadEnd;
+                int blockSize = reader.getBlockSize();
                 int total = 0;
-                while (len > 0 && bytesRemaining > 0) {
-                    if (blockPos >= blockLimit) {
-                        if (currentBlock >= reader.getBlockCount()) {
-                            break;
-                        }
-                        blockLimit = reader.readBlockInto(currentBlock, blockBuffer);
-                        currentBlock++;
-                        blockPos = 0;
-                        if (blockLimit <= 0) {
-                            break;
-                        }
+                long pos = offset;
+                int block = (int) (pos / blockSize);
+                while (dst.hasRemaining() && pos < size) {
+                    block = (int) (pos / blockSize);
+                    byte[] data = reader.getBlock(block);
+                    if (data == null) {
+                        break;
                     }
-                    int available = blockLimit - blockPos;
-                    int copy = Math.min(len, available);
-                    copy = (int)Math.min(copy, bytesRemaining);
-                    if (copy <= 0) {
+                    int inBlock = (int) (pos - (long) block * blockSize);
+                    if (inBlock >= data.length) {
                         break;
                     }
-                    System.arraycopy(blockBuffer, blockPos, b, off, copy);
-                    off += copy;
-                    len -= copy;
-                    total += copy;
-                    blockPos += copy;
-                    bytesRemaining -= copy;
+                    int n = Math.min(dst.remaining(), data.length - inBlock);
+                    dst.put(data, inBlock, n);
+                    pos += n;
+                    total += n;
+                }
+                lastReadEnd = pos;
+                if (sequential && total > 0) {
+                    scheduleReadAhead(block + 1);
                 }
                 return total > 0 ? total : -1;
             }
 
+            private void scheduleReadAhead(int fromBlock) {
+                if (fromBlock <= prefetchedUntil || fromBlock >= reader.getBlockCount()) {
+                    return;
+                }
+                final int until = Math.min(reader.getBlockCount(), fromBlock + readAheadBlocks) - 1;
+                prefetchedUntil = until;
+                try {
+                    DiscImageChannel.sReadAhead.execute(() -> {
+                        for (int b = fromBlock; b <= until && isOpen(); b++) {
+                            try { reader.getBlock(b); } catch (Throwable ignored) { return; }
+                        }
+                    });
+                } catch (java.util.concurrent.RejectedExecutionException ignored) {}
+            }
+
             @Override
-            public void close() throws java.io.IOException {
-                reader.close();
+            public long size() {
+                return reader.getUncompressedSize();
+            }
+
+            @Override
+            void closeImage() {
+                // The read-ahead task only touches the reader while the channel is open and the
+                // shared reader stays referenced until the cache evicts it.
+                releaseReader(reader);
             }
         }
-    }
 
-    static class RedumpDB {
-        static class Result { String serial; String name; }
-        private static final Object LOCK = new Object();
-        private static java.util.Map<String, Result> sMd5SizeToResult = null; 
+        /**
+         * Gzip has no index, so positions are reached by decoding forward; a seek behind the stream
+         * restarts from the beginning. The most recent decoded window is kept so that re-reading
+         * nearby bytes does not restart. The ISIZE trailer only holds the length modulo 2^32, so
+         * {@link #size()} reports -1: the length is unknown until the stream has been decoded.
+         */
+        private static final class GzipImageChannel extends DiscImageChannel {
+            private static final int WINDOW = 64 * 1024;
+            private final ParcelFileDescriptor descriptor;
+            private final FileInputStream inputStream;
+            private final FileChannel channel;
+            private final byte[] window = new byte[WINDOW];
+            private long windowStart = 0;
+            private int windowLength = 0;
+            private java.util.zip.GZIPInputStream stream;
+            private long streamPos;
 
-        private static String md5ToLower(String s) { return s != null ? s.trim().toLowerCase() : null; }
+            GzipImageChannel(ParcelFileDescriptor descriptor, FileInputStream inputStream, FileChannel channel) throws java.io.IOException {
+                this.descriptor = descriptor;
+                this.inputStream = inputStream;
+                this.channel = channel;
+            }
 
-        private static String externalResourcesPath(Context ctx) {
-            File base = DataDirectoryManager.getDataRoot(ctx);
-            return new File(base, "resources").getAbsolutePath();
+            @Override
+            synchronized int read(ByteBuffer dst, long offset) throws java.io.IOException {
+                ensureOpen();
+                int total = 0;
+                while (dst.hasRemaining()) {
+                    long pos = offset + total;
+                    if (pos < windowStart || pos >= windowStart + windowLength) {
+                        if (!fillWindowAt(pos)) {
+                            break;
+                        }
+                    }
+                    int inWindow = (int) (pos - windowStart);
+                    int n = Math.min(dst.remaining(), windowLength - inWindow);
+                    dst.put(window, inWindow, n);
+                    total += n;
+                }
+                return total > 0 ? total : -1;
+            }
+
+            private boolean fillWindowAt(long pos) throws java.io.IOException {
+                long aligned = pos - (pos % WINDOW);
+                if (stream == null || aligned < streamPos) {
+                    if (stream != null) {
+                        closeQuietly(stream);
+                    }
+                    // Closing a superseded inflater stream must not close the shared channel.
+                    java.io.InputStream source = new java.io.FilterInputStream(java.nio.channels.Channels.newInputStream(channel.position(0))) {
+                        @Override public void close() {}
+                    };
+                    stream = new java.util.zip.GZIPInputStream(source, WINDOW);
+                    streamPos = 0;
+                }
+                while (streamPos + WINDOW <= aligned) {
+                    int n = readWindow();
+                    if (n <= 0) {
+                        return false;
+                    }
+                }
+                int n = readWindow();
+                return n > 0 && pos < windowStart + windowLength;
+            }
+
+            private int readWindow() throws java.io.IOException {
+                int n = 0;
+                while (n < WINDOW) {
+                    int r = stream.read(window, n, WINDOW - n);
+                    if (r <= 0) {
+                        break;
+                    }
+                    n += r;
+                }
+                windowStart = streamPos;
+                windowLength = n;
+                streamPos += n;
+                return n;
+            }
+
+            @Override
+            public long size() {
+                return -1;
+            }
+
+            @Override
+            void closeImage() throws java.io.IOException {
+                try {
+                    if (stream != null) {
+                        stream.close();
+                    }
+                    channel.close();
+                } finally {
+                    try {
+                        inputStream.close();
+                    } finally {
+                        descriptor.close();
+                    }
+                }
+            }
         }
 
+        private static final class CsoReader implements Closeable {
+            private final ParcelFileDescriptor descriptor;
+            private final FileInputStream inputStream;
+            private final FileChannel channel;
+            private final long uncompressedSize;
+            private final int blockSize;
+            private final int alignShift;
+            // ZSO stores its blocks as raw LZ4 rather than deflate.
+            private final boolean lz4;
+            private final int[] indexTable;
+            private final int blockCount;
+            private final int maxCompressedSize;
+            private final long blockCacheKey;
+            private final java.util.concurrent.ConcurrentLinkedQueue<byte[]> compressedBuffers = new java.util.concurrent.ConcurrentLinkedQueue<>();
+            // Guarded by READER_LOCK.
+            private int refCount;
+            private boolean evicted;
+
+            private CsoReader(ParcelFileDescriptor descriptor, FileInputStream inputStream, FileChannel channel,
+                              long uncompressedSize, int blockSize, int alignShift, boolean lz4, int[] indexTable) {
+                this.descriptor = descriptor;
+                this.inputStream = inputStream;
+                this.channel = channel;
+                this.uncompressedSize = uncompressedSize;
+                this.blockSize = blockSize;
+                this.alignShift = alignShift;
+                this.lz4 = lz4;
+                this.indexTable = indexTable;
+                this.blockCount = indexTable.length - 1;
+                int max = 0;
+                for (int i = 0; i < blockCount; i++) {
+                    max = Math.max(max, getCompressedSize(i));
+                }
+                this.maxCompressedSize = max;
+                this.blockCacheKey = ((long) sReaderIds.incrementAndGet()) << 32;
+            }
+
+            static CsoReader open(android.content.ContentResolver cr, Uri uri) throws java.io.IOException {
+                ParcelFileDescriptor pfd = cr.openFileDescriptor(uri, "r");
+                if (pfd == null) {
+                    return null;
+                }
+                FileInputStream fis = null;
+                try {
+                    fis = new FileInputStream(pfd.getFileDescriptor());
+                    FileChannel channel = fis.getChannel();
+                    ByteBuffer header = ByteBuffer.allocate(0x18);
+                    channel.read(header, 0);
+                    CsoReader reader = fromHeader(pfd, fis, channel, header);
+                    if (reader == null) {
+                        closeQuietly(fis);
+                        closeQuietly(pfd);
+                    }
+                    return reader;
+                } catch (Exception e) {
+                    closeQuietly(fis);
+                    closeQuietly(pfd);
+                    throw e;
+                }
+            }
+
+            /**
+             * Builds a reader over an already opened descriptor from the first 0x18 bytes of the
+             * file. Returns null without closing anything when the header is not CSO/ZSO, so the
+             * caller can keep using the descriptor for a plain image.
+             */
+            @Nullable
+            static CsoReader fromHeader(ParcelFileDescriptor pfd, FileInputStream fis, FileChannel channel,
+                                        ByteBuffer header) throws java.io.IOException {
+                if (header.position() < 0x18) {
+                    return null;
+                }
+                ByteBuffer h = ByteBuffer.wrap(header.array(), header.arrayOffset(), 0x18).order(ByteOrder.LITTLE_ENDIAN);
+                int magic = h.getInt();
+                if (magic != MAGIC_CISO && magic != MAGIC_ZISO) {
+                    return null;
+                }
+                int headerSize = h.getInt();
+                long uncompressedSize = h.getLong();
+                int blockSize = h.getInt();
+                h.get();
+                int align = h.get() & 0xFF;
+                if (blockSize <= 0 || uncompressedSize <= 0 || headerSize < 0x18) {
+                    return null;
+                }
+                int entryCount = (headerSize - 0x18) / 4;
+                if (entryCount <= 1) {
+                    return null;
+                }
+                ByteBuffer indexBuffer = ByteBuffer.allocate(entryCount * 4).order(ByteOrder.LITTLE_ENDIAN);
+                while (indexBuffer.hasRemaining()) {
+                    if (channel.read(indexBuffer, 0x18 + indexBuffer.position()) <= 0) {
+                        return null;
+                    }
+                }
+                indexBuffer.flip();
+                int[] table = new int[entryCount];
+                for (int i = 0; i < entryCount; i++) {
+                    table[i] = indexBuffer.getInt();
+                }
+                return new CsoReader(pfd, fis, channel, uncompressedSize, blockSize, align, magic == MAGIC_ZISO, table);
+            }
+
+            /**
+             * Returns the decoded contents of a block from the shared block cache, decoding and
+             * caching it on a miss. The returned array is shared and must not be modified.
+             */
+            @Nullable
+            byte[] getBlock(int blockIndex) throws java.io.IOException {
+                if (blockIndex < 0 || blockIndex >= blockCount) {
+                    return null;
+                }
+                Long key = blockCacheKey | blockIndex;
+                byte[] cached = sBlockCache.get(key);
+                if (cached != null) {
+                    return cached;
+                }
+                byte[] compressed = obtainCompressedBuffer();
+                try {
+                    int compressedSize = readCompressed(blockIndex, compressed);
+                    if (compressedSize < 0) {
+                        return null;
+                    }
+                    byte[] decoded = new byte[blockSize];
+                    int produced = decodeBlock(blockIndex, compressed, compressedSize, decoded);
+                    if (produced <= 0) {
+                        return null;
+                    }
+                    if (produced < decoded.length) {
+                        decoded = Arrays.copyOf(decoded, produced);
+                    }
+                    sBlockCache.put(key, decoded);
+                    return decoded;
+                } finally {
+                    recycleCompressedBuffer(compressed);
+                }
+            }
+
+            private byte[] obtainCompressedBuffer() {
+                byte[] buffer = compressedBuffers.poll();
+                return buffer != null ? buffer : new byte[maxCompressedSize];
+            }
+
+            private void recycleCompressedBuffer(byte[] buffer) {
+                if (compressedBuffers.size() < MAX_POOLED_BUFFERS) {
+                    compressedBuffers.offer(buffer);
+                }
+            }
+
+            int readBlockInto(int blockIndex, byte[] dest) throws java.io.IOException {
+                if (blockIndex < 0 || blockIndex >= blockCount) {
+                    return -1;
+                }
+                byte[] compressed = obtainCompressedBuffer();
+                try {
+                    int compressedSize = readCompressed(blockIndex, compressed);
+                    if (compressedSize < 0) {
+                        return -1;
+                    }
+                    return decodeBlock(blockIndex, compressed, compressedSize, dest);
+                } finally {
+                    recycleCompressedBuffer(compressed);
+                }
+            }
+
+            int getCompressedSize(int blockIndex) {
+                long startOffset = (long)(indexTable[blockIndex] & 0x7FFFFFFFL) << alignShift;
+                long endOffset = (long)(indexTable[blockIndex + 1] & 0x7FFFFFFFL) << alignShift;
+                return (int)Math.max(0, endOffset - startOffset);
+            }
+
+            int getMaxCompressedSize() {
+                return maxCompressedSize;
+            }
+
+            /**
+             * Reads the stored bytes of a block with a positional read, so several threads may read
+             * through the same reader. Returns the stored size, or -1 on a short read.
+             */
+            int readCompressed(int blockIndex, byte[] compressed) throws java.io.IOException {
+                if (blockIndex < 0 || blockIndex >= blockCount) {
+                    return -1;
+                }
+                long startOffset = (long)(indexTable[blockIndex] & 0x7FFFFFFFL) << alignShift;
+                int compressedSize = getCompressedSize(blockIndex);
+                if (compressedSize > compressed.length) {
+                    return -1;
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(compressed, 0, compressedSize);
+                long position = startOffset;
+                while (buffer.hasRemaining()) {
+                    int r = channel.read(buffer, position);
+                    if (r <= 0) {
+                        break;
+                    }
+                    position += r;
+                }
+                return buffer.hasRemaining() ? -1 : compressedSize;
+            }
+
+            /** Expands a block previously fetched with {@link #readCompressed}. Safe to call concurrently. */
+            int decodeBlock(int blockIndex, byte[] compressed, int compressedSize, byte[] dest) {
+                return decodeBlock(blockIndex, compressed, compressedSize, dest, 0);
+            }
+
+            /** Same as {@link #decodeBlock(int, byte[], int, byte[])}, writing at {@code destOffset}. */
+            int decodeBlock(int blockIndex, byte[] compressed, int compressedSize, byte[] dest, int destOffset) {
+                boolean isPlain = (indexTable[blockIndex] & 0x80000000) != 0;
+                int expectedSize = (int)Math.min(blockSize, uncompressedSize - ((long)blockIndex * blockSize));
+                if (expectedSize <= 0) {
+                    return 0;
+                }
+                if (compressedSize == 0) {
+                    Arrays.fill(dest, destOffset, destOffset + expectedSize, (byte)0);
+                    return expectedSize;
+                }
+                if (isPlain) {
+                    int toCopy = Math.min(expectedSize, compressedSize);
+                    System.arraycopy(compressed, 0, dest, destOffset, toCopy);
+                    if (toCopy < expectedSize) {
+                        Arrays.fill(dest, destOffset + toCopy, destOffset + expectedSize, (byte)0);
+                    }
+                    return expectedSize;
+                }
+                if (lz4) {
+                    return decodeLz4Block(compressed, compressedSize, dest, destOffset, expectedSize);
+                }
+                Inflater inflater = obtainInflater();
+                try {
+                    inflater.setInput(compressed, 0, compressedSize);
+                    int total = 0;
+                    while (!inflater.finished() && total < expectedSize) {
+                        int r = inflater.inflate(dest, destOffset + total, expectedSize - total);
+                        if (r <= 0) {
+                            if (inflater.needsInput() || inflater.finished()) {
+                                break;
+                            }
+                        } else {
+                            total += r;
+                        }
+                    }
+                    if (total <= 0) {
+                        Arrays.fill(dest, destOffset, destOffset + expectedSize, (byte)0);
+                        return expectedSize;
+                    }
+                    return total;
+                } catch (Exception ignored) {
+                    return -1;
+                } finally {
+                    recycleInflater(inflater);
+                }
+            }
+
+            int getBlockCount() {
+                return blockCount;
+            }
+
+            int getBlockSize() {
+                return blockSize;
+            }
+
+            long getUncompressedSize() {
+                return uncompressedSize;
+            }
+
+            @Override
+            public void close() throws java.io.IOException {
+                try {
+                    channel.close();
+                } finally {
+                    try {
+                        inputStream.close();
+                    } finally {
+                        descriptor.close();
+                    }
+                }
+            }
+        }
+
+        private static final class CsoInputStream extends java.io.InputStream {
+            private final CsoReader reader;
+            private final byte[] blockBuffer;
+            private int currentBlock = 0;
+            private int blockPos = 0;
+            private int blockLimit = 0;
+            private long bytesRemaining;
+
+            CsoInputStream(CsoReader reader) {
+                this.reader = reader;
+                this.blockBuffer = new byte[reader.getBlockSize()];
+                this.bytesRemaining = reader.getUncompressedSize();
+            }
+
+            @Override
+            public int read() throws java.io.IOException {
+                byte[] single = new byte[1];
+                int r = read(single, 0, 1);
+                if (r <= 0) {
+                    return -1;
+                }
+                return single[0] & 0xFF;
+            }
+
+            @Override
+            public int read(@NonNull byte[] b, int off, int len) throws java.io.IOException {
+                if (b == null) {
+                    throw new NullPointerException();
+                }
+                if (off < 0 || len < 0 || len > b.length - off) {
+                    throw new IndexOutOfBoundsException();
+                }
+                if (len == 0) {
+                    return 0;
+                }
+                if (bytesRemaining <= 0) {
+                    return -1;
+                }
+                int total = 0;
+                while (len > 0 && bytesRemaining > 0) {
+                    if (blockPos >= blockLimit) {
+                        if (currentBlock >= reader.getBlockCount()) {
+                            break;
+                        }
+                        blockLimit = reader.readBlockInto(currentBlock, blockBuffer);
+                        currentBlock++;
+                        blockPos = 0;
+                        if (blockLimit <= 0) {
+                            break;
+                        }
+                    }
+                    int available = blockLimit - blockPos;
+                    int copy = Math.min(len, available);
+                    copy = (int)Math.min(copy, bytesRemaining);
+                    if (copy <= 0) {
+                        break;
+                    }
+                    System.arraycopy(blockBuffer, blockPos, b, off, copy);
+                    off += copy;
+                    len -= copy;
+                    total += copy;
+                    blockPos += copy;
+                    bytesRemaining -= copy;
+                }
+                return total > 0 ? total : -1;
+            }
+
+            @Override
+            public void close() throws java.io.IOException {
+                reader.close();
+            }
+        }
+    }
+
+    static class RedumpDB {
+        static class Result { String serial; String name; }
+        private static final Object LOCK = new Object();
+        private static final String INDEX_FILE_NAME = "redump.idx";
+        private static final int INDEX_MAGIC = 0x49445241; // "ARDI"
+        private static final int INDEX_VERSION = 1;
+        private static final int HEADER_SIZE = 40;
+        private static final int RECORD_SIZE = 32;
+        private static volatile ByteBuffer sIndex = null;
+        private static int sRecordCount = 0;
+        private static int sStringsOffset = 0;
+
+        private static String md5ToLower(String s) { return s != null ? s.trim().toLowerCase() : null; }
+
+        private static String externalResourcesPath(Context ctx) {
+            File base = DataDirectoryManager.getDataRoot(ctx);
+            return new File(base, "resources").getAbsolutePath();
+        }
+
+        /**
+         * Maps the compiled index, rebuilding it from RedumpDatabase.yaml when the source has changed.
+         * The index layout is a fixed header, then records sorted by (md5, size) of
+         * {md5[16], size:u64, serialOffset:u32, nameOffset:u32}, then a string table of
+         * u16-length-prefixed UTF-8 strings.
+         */
         private static void ensureLoaded(Context ctx) {
-            if (sMd5SizeToResult != null) return;
+            if (sIndex != null) return;
             synchronized (LOCK) {
-                if (sMd5SizeToResult != null) return;
-                sMd5SizeToResult = new java.util.HashMap<>(8192);
-                File f = new File(externalResourcesPath(ctx), "RedumpDatabase.yaml");
-                java.io.BufferedReader br = null;
+                if (sIndex != null) return;
+                File yaml = new File(externalResourcesPath(ctx), "RedumpDatabase.yaml");
+                long stampA = yaml.exists() ? yaml.length() : -1L;
+                long stampB = yaml.exists() ? yaml.lastModified() : BuildConfig.VERSION_CODE;
+                File indexFile = new File(getLibraryCacheDir(ctx), INDEX_FILE_NAME);
+                ByteBuffer mapped = mapIndex(indexFile, stampA, stampB);
+                if (mapped == null) {
+                    ByteBuffer compiled = compile(ctx, yaml, stampA, stampB);
+                    if (compiled == null) {
+                        sIndex = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                        return;
+                    }
+                    writeIndex(indexFile, compiled);
+                    mapped = mapIndex(indexFile, stampA, stampB);
+                    if (mapped == null) mapped = compiled;
+                }
+                sRecordCount = mapped.getInt(24);
+                sStringsOffset = mapped.getInt(28);
+                sIndex = mapped;
+                try { DebugLog.i("Redump", "Loaded hash index entries: " + sRecordCount); } catch (Throwable ignored) {}
+            }
+        }
+
+        @Nullable
+        private static ByteBuffer mapIndex(File indexFile, long stampA, long stampB) {
+            if (!indexFile.isFile() || indexFile.length() < HEADER_SIZE) return null;
+            try (FileInputStream in = new FileInputStream(indexFile); FileChannel channel = in.getChannel()) {
+                ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+                if (buf.getInt(0) != INDEX_MAGIC || buf.getInt(4) != INDEX_VERSION
+                        || buf.getLong(8) != stampA || buf.getLong(16) != stampB) {
+                    return null;
+                }
+                long expected = HEADER_SIZE + (long) buf.getInt(24) * RECORD_SIZE;
+                if (buf.getInt(28) != expected || buf.getInt(28) + buf.getInt(32) != buf.capacity()) return null;
+                return buf;
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        private static void writeIndex(File indexFile, ByteBuffer compiled) {
+            File temp = new File(indexFile.getPath() + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                out.write(compiled.array(), 0, compiled.capacity());
+            } catch (IOException e) {
+                temp.delete();
+                try { DebugLog.w("Redump", "Failed to write compiled index: " + e.getMessage()); } catch (Throwable ignored) {}
+                return;
+            }
+            if (!temp.renameTo(indexFile)) temp.delete();
+        }
+
+        private static final class CompiledRecord {
+            final byte[] md5;
+            final long size;
+            final int serial;
+            final int name;
+            CompiledRecord(byte[] md5, long size, int serial, int name) { this.md5 = md5; this.size = size; this.serial = serial; this.name = name; }
+        }
+
+        @Nullable
+        private static ByteBuffer compile(Context ctx, File yaml, long stampA, long stampB) {
+            List<CompiledRecord> records = new ArrayList<>(16384);
+            java.io.ByteArrayOutputStream strings = new java.io.ByteArrayOutputStream(256 * 1024);
+            Map<String, Integer> stringOffsets = new HashMap<>();
+            java.io.BufferedReader br = null;
+            try {
+                java.io.InputStream in;
+                if (yaml.exists()) {
+                    in = new java.io.FileInputStream(yaml);
+                } else {
+                    try { in = ctx.getAssets().open("resources/RedumpDatabase.yaml"); }
+                    catch (Exception e) {
+                        try { DebugLog.w("Redump", "Database not found (assets and external)"); } catch (Throwable ignored) {}
+                        return null;
+                    }
+                }
+                br = new java.io.BufferedReader(new java.io.InputStreamReader(in, java.nio.charset.StandardCharsets.UTF_8));
+                String line;
+                java.util.List<String[]> pendingHashes = new java.util.ArrayList<>(); // each [md5,size]
+                String curSerial = null;
+                String curName = null;
+                String pendingMd5 = null;
+                String pendingSize = null;
+                while (true) {
+                    line = br.readLine();
+                    String t = line != null ? line.trim() : null;
+                    if (t != null && (t.isEmpty() || t.startsWith("#"))) continue;
+                    if (t == null || t.startsWith("- hashes:")) {
+                        if (curSerial != null && !pendingHashes.isEmpty()) {
+                            int serialOff = internString(curSerial, strings, stringOffsets);
+                            int nameOff = internString(curName != null ? curName : curSerial, strings, stringOffsets);
+                            for (String[] hs : pendingHashes) {
+                                byte[] md5 = parseMd5(md5ToLower(hs[0]));
+                                String size = hs[1] != null ? hs[1].trim() : null;
+                                if (md5 != null && size != null) {
+                                    try {
+                                        records.add(new CompiledRecord(md5, Long.parseLong(size), serialOff, nameOff));
+                                    } catch (NumberFormatException ignored) {}
+                                }
+                            }
+                        }
+                        if (t == null) break;
+                        pendingHashes.clear();
+                        curSerial = null;
+                        curName = null;
+                        pendingMd5 = null; pendingSize = null;
+                        continue;
+                    }
+                    if (t.startsWith("- md5:")) {
+                        int idx = t.indexOf(':');
+                        if (idx >= 0) { pendingMd5 = t.substring(idx + 1).trim(); }
+                        continue;
+                    }
+                    if (t.startsWith("md5:")) {
+                        int idx = t.indexOf(':');
+                        if (idx >= 0) { pendingMd5 = t.substring(idx + 1).trim(); }
+                        continue;
+                    }
+                    if (t.startsWith("size:")) {
+                        int idx = t.indexOf(':');
+                        if (idx >= 0) { pendingSize = t.substring(idx + 1).trim(); }
+                        if (pendingMd5 != null && pendingSize != null) {
+                            pendingHashes.add(new String[]{pendingMd5, pendingSize});
+                            pendingMd5 = null; pendingSize = null;
+                        }
+                        continue;
+                    }
+                    if (t.startsWith("serial:")) {
+                        int idx = t.indexOf(':');
+                        curSerial = (idx >= 0 ? t.substring(idx + 1).trim() : null);
+                        continue;
+                    }
+                    if (t.startsWith("name:")) {
+                        int idx = t.indexOf(':');
+                        curName = (idx >= 0 ? t.substring(idx + 1).trim() : null);
+                        continue;
+                    }
+                }
+            } catch (Exception ex) {
+                try { DebugLog.e("Redump", "Failed to load DB: " + ex.getMessage()); } catch (Throwable ignored) {}
+                return null;
+            } finally {
+                if (br != null) try { br.close(); } catch (Exception ignored) {}
+            }
+            Collections.sort(records, (x, y) -> {
+                int c = compareMd5(x.md5, y.md5);
+                return c != 0 ? c : Long.compare(x.size, y.size);
+            });
+            int stringsOffset = HEADER_SIZE + records.size() * RECORD_SIZE;
+            ByteBuffer out = ByteBuffer.allocate(stringsOffset + strings.size()).order(ByteOrder.LITTLE_ENDIAN);
+            out.putInt(INDEX_MAGIC).putInt(INDEX_VERSION).putLong(stampA).putLong(stampB)
+                    .putInt(records.size()).putInt(stringsOffset).putInt(strings.size()).putInt(0);
+            for (CompiledRecord r : records) {
+                out.put(r.md5).putLong(r.size).putInt(r.serial).putInt(r.name);
+            }
+            out.put(strings.toByteArray());
+            return out;
+        }
+
+        private static int internString(String value, java.io.ByteArrayOutputStream strings, Map<String, Integer> offsets) {
+            Integer existing = offsets.get(value);
+            if (existing != null) return existing;
+            byte[] bytes = value.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+            int len = Math.min(bytes.length, 0xFFFF);
+            int off = strings.size();
+            strings.write(len & 0xFF);
+            strings.write((len >> 8) & 0xFF);
+            strings.write(bytes, 0, len);
+            offsets.put(value, off);
+            return off;
+        }
+
+        @Nullable
+        private static byte[] parseMd5(@Nullable String hex) {
+            if (hex == null || hex.length() != 32) return null;
+            byte[] out = new byte[16];
+            for (int i = 0; i < 16; i++) {
+                int hi = Character.digit(hex.charAt(i * 2), 16);
+                int lo = Character.digit(hex.charAt(i * 2 + 1), 16);
+                if (hi < 0 || lo < 0) return null;
+                out[i] = (byte) ((hi << 4) | lo);
+            }
+            return out;
+        }
+
+        private static int compareMd5(byte[] a, byte[] b) {
+            for (int i = 0; i < 16; i++) {
+                int c = (a[i] & 0xFF) - (b[i] & 0xFF);
+                if (c != 0) return c;
+            }
+            return 0;
+        }
+
+        /** Compares {@code md5} with the record at {@code recordOffset} without copying it out. */
+        private static int compareMd5At(ByteBuffer index, int recordOffset, byte[] md5) {
+            for (int i = 0; i < 16; i++) {
+                int c = (index.get(recordOffset + i) & 0xFF) - (md5[i] & 0xFF);
+                if (c != 0) return c;
+            }
+            return 0;
+        }
+
+        @Nullable
+        static Result lookup(byte[] md5, long size) {
+            ByteBuffer index = sIndex;
+            if (index == null || md5 == null || md5.length != 16) return null;
+            int lo = 0;
+            int hi = sRecordCount - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int off = HEADER_SIZE + mid * RECORD_SIZE;
+                int c = compareMd5At(index, off, md5);
+                if (c == 0) {
+                    long midSize = index.getLong(off + 16);
+                    c = Long.compare(midSize, size);
+                }
+                if (c < 0) {
+                    lo = mid + 1;
+                } else if (c > 0) {
+                    hi = mid - 1;
+                } else {
+                    Result r = new Result();
+                    r.serial = readString(index, index.getInt(off + 24));
+                    r.name = readString(index, index.getInt(off + 28));
+                    return r;
+                }
+            }
+            return null;
+        }
+
+        private static String readString(ByteBuffer index, int stringOffset) {
+            int pos = sStringsOffset + stringOffset;
+            int len = (index.get(pos) & 0xFF) | ((index.get(pos + 1) & 0xFF) << 8);
+            byte[] bytes = new byte[len];
+            for (int i = 0; i < len; i++) bytes[i] = index.get(pos + 2 + i);
+            return new String(bytes, java.nio.charset.StandardCharsets.UTF_8);
+        }
+
+        static Result lookupByFile(android.content.ContentResolver cr, Uri file) {
+            return lookupByFile(cr, file, null);
+        }
+
+        static Result lookupByFile(android.content.ContentResolver cr, Uri file,
+                                   @Nullable PipelinedHasher.ProgressListener listener) {
+            Context ctx = NativeApp.getContext();
+            if (ctx == null) return null;
+            ensureLoaded(ctx);
+            if (sRecordCount == 0) return null;
+            try {
+                HashCache cache = HashCache.get(ctx);
+                long[] stat = queryDocumentStat(cr, file);
+                HashCache.Entry hashed = stat != null ? cache.get(file, stat[0], stat[1]) : null;
+                if (hashed == null) {
+                    hashed = hashImage(cr, file, listener);
+                    if (hashed == null) return null;
+                    if (stat != null) cache.put(file, stat[0], stat[1], hashed);
+                }
+                return lookup(hashed.md5, hashed.imageSize);
+            } catch (Exception ignored) {
+                return null;
+            }
+        }
+
+        @Nullable
+        private static HashCache.Entry hashImage(android.content.ContentResolver cr, Uri file,
+                                                 @Nullable PipelinedHasher.ProgressListener listener) throws Exception {
+            return PipelinedHasher.hash(cr, file, listener);
+        }
+
+        /**
+         * Computes the MD5 of a disc image's uncompressed contents with I/O, decompression and
+         * digesting overlapped. For CSO/ZSO one thread fetches stored blocks in order, a worker
+         * pool inflates them, and the caller digests results in block order; plain images use a
+         * reader thread feeding the digesting caller. A fixed set of pooled buffers bounds the
+         * number of blocks in flight.
+         */
+        static final class PipelinedHasher {
+            interface ProgressListener { void onProgress(long bytesHashed, long totalBytes); }
+
+            private static final int STREAM_CHUNK = 1024 * 1024;
+            private static final int STREAM_BUFFERS = 4;
+            private static final long PROGRESS_STEP = 16L * 1024 * 1024;
+            private static final int CSO_RUN_BLOCKS = 64;
+
+            private static final class Block {
+                final byte[] compressed;
+                final byte[] data;
+                int length;
+                Block(byte[] compressed, byte[] data) { this.compressed = compressed; this.data = data; }
+            }
+
+            private PipelinedHasher() {}
+
+            @Nullable
+            static HashCache.Entry hash(android.content.ContentResolver cr, Uri file,
+                                        @Nullable ProgressListener listener) throws Exception {
+                CsoUtils.CsoReader reader = CsoUtils.CsoReader.open(cr, file);
+                if (reader != null) {
+                    try {
+                        return hashCso(reader, listener);
+                    } finally {
+                        CsoUtils.closeQuietly(reader);
+                    }
+                }
+                return hashStream(cr, file, listener);
+            }
+
+            private static HashCache.Entry hashCso(CsoUtils.CsoReader reader, @Nullable ProgressListener listener) throws Exception {
+                final int workers = Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors() - 1));
+                final int window = workers * 4;
+                final int blockCount = reader.getBlockCount();
+                final int blockSize = reader.getBlockSize();
+                final long totalBytes = reader.getUncompressedSize();
+                // Runs in flight are bounded by the in-flight queue plus one being queued and one
+                // being digested, so window + 2 buffers can never starve.
+                final java.util.concurrent.ArrayBlockingQueue<Block> pool = new java.util.concurrent.ArrayBlockingQueue<>(window + 2);
+                final int compressedCapacity = reader.getMaxCompressedSize();
+                for (int i = 0; i < window + 2; i++) {
+                    pool.add(new Block(new byte[compressedCapacity], new byte[blockSize * CSO_RUN_BLOCKS]));
+                }
+                final java.util.concurrent.ArrayBlockingQueue<java.util.concurrent.Future<Block>> inFlight =
+                        new java.util.concurrent.ArrayBlockingQueue<>(window);
+                final ExecutorService inflaters = Executors.newFixedThreadPool(workers, r -> new Thread(r, "HashInflate"));
+                final java.util.concurrent.CompletableFuture<Block> end = java.util.concurrent.CompletableFuture.completedFuture(null);
+                Thread fetcher = new Thread(() -> {
+                    try {
+                        for (int i = 0; i < blockCount; i += CSO_RUN_BLOCKS) {
+                            final int first = i;
+                            final int last = Math.min(blockCount, i + CSO_RUN_BLOCKS);
+                            Block block = pool.take();
+                            // Each task reads and inflates a run of blocks; per-2 KB tasks cost
+                            // more in scheduling than the inflate itself.
+                            inFlight.put(inflaters.submit(() -> {
+                                int length = 0;
+                                for (int blockIndex = first; blockIndex < last; blockIndex++) {
+                                    int expected = (int) Math.min(blockSize, totalBytes - (long) blockIndex * blockSize);
+                                    if (expected <= 0) {
+                                        break;
+                                    }
+                                    int stored = reader.readCompressed(blockIndex, block.compressed);
+                                    if (stored < 0) {
+                                        throw new IOException("Short read of CSO block " + blockIndex);
+                                    }
+                                    int produced = reader.decodeBlock(blockIndex, block.compressed, stored, block.data, length);
+                                    if (produced != expected) {
+                                        throw new IOException("CSO block " + blockIndex + " decoded to " + produced + " of " + expected + " bytes");
+                                    }
+                                    length += produced;
+                                }
+                                block.length = length;
+                                return block;
+                            }));
+                        }
+                        inFlight.put(end);
+                    } catch (InterruptedException ignored) {
+                    } catch (Exception e) {
+                        java.util.concurrent.CompletableFuture<Block> failed = new java.util.concurrent.CompletableFuture<>();
+                        failed.completeExceptionally(e);
+                        try { inFlight.put(failed); } catch (InterruptedException ignored) {}
+                    }
+                }, "HashFetch");
+                fetcher.start();
+                MessageDigest md = MessageDigest.getInstance("MD5");
+                long total = 0;
+                long nextProgress = PROGRESS_STEP;
                 try {
-                    java.io.InputStream in;
-                    if (f.exists()) {
-                        in = new java.io.FileInputStream(f);
-                    } else {
-                        try { in = ctx.getAssets().open("resources/RedumpDatabase.yaml"); }
-                        catch (Exception e) {
-                            try { DebugLog.w("Redump", "Database not found (assets and external)"); } catch (Throwable ignored) {}
-                            return;
+                    while (total < totalBytes) {
+                        Block block = inFlight.take().get();
+                        if (block == null) break;
+                        int usable = (int) Math.min(block.length, totalBytes - total);
+                        md.update(block.data, 0, usable);
+                        total += usable;
+                        pool.add(block);
+                        if (listener != null && total >= nextProgress) {
+                            listener.onProgress(total, totalBytes);
+                            nextProgress = total + PROGRESS_STEP;
                         }
                     }
-                    br = new java.io.BufferedReader(new java.io.InputStreamReader(in, java.nio.charset.StandardCharsets.UTF_8));
-                    String line;
-                    java.util.List<String[]> pendingHashes = new java.util.ArrayList<>(); // each [md5,size]
-                    String curSerial = null;
-                    String curName = null;
-                    String pendingMd5 = null;
-                    String pendingSize = null;
-                    while ((line = br.readLine()) != null) {
-                        String t = line.trim();
-                        if (t.isEmpty() || t.startsWith("#")) continue;
-                        if (t.startsWith("- hashes:")) {
-                            if (curSerial != null && !pendingHashes.isEmpty()) {
-                                for (String[] hs : pendingHashes) {
-                                    String md5 = md5ToLower(hs[0]);
-                                    String size = hs[1] != null ? hs[1].trim() : null;
-                                    if (md5 != null && size != null) {
-                                        Result r = new Result();
-                                        r.serial = curSerial;
-                                        r.name = (curName != null ? curName : curSerial);
-                                        sMd5SizeToResult.put(md5 + "|" + size, r);
-                                    }
-                                }
+                } finally {
+                    fetcher.interrupt();
+                    inflaters.shutdownNow();
+                    fetcher.join();
+                }
+                // A partial digest must never reach the hash cache, where it would stick as a mismatch.
+                if (total != totalBytes) {
+                    throw new IOException("CSO image hashed " + total + " of " + totalBytes + " bytes");
+                }
+                if (listener != null) listener.onProgress(total, totalBytes);
+                return new HashCache.Entry(md.digest(), total);
+            }
+
+            @Nullable
+            private static HashCache.Entry hashStream(android.content.ContentResolver cr, Uri file,
+                                                      @Nullable ProgressListener listener) throws Exception {
+                java.io.InputStream in;
+                long totalBytes = -1;
+                CsoUtils.DiscImageChannel image = null;
+                try {
+                    image = CsoUtils.DiscImageChannel.open(cr, file);
+                } catch (Exception ignored) {}
+                if (image != null) {
+                    totalBytes = image.size();
+                    in = java.nio.channels.Channels.newInputStream(image);
+                } else {
+                    in = cr.openInputStream(file);
+                }
+                if (in == null) return null;
+                final java.io.InputStream source = in;
+                final java.util.concurrent.ArrayBlockingQueue<Block> pool = new java.util.concurrent.ArrayBlockingQueue<>(STREAM_BUFFERS);
+                for (int i = 0; i < STREAM_BUFFERS; i++) {
+                    pool.add(new Block(null, new byte[STREAM_CHUNK]));
+                }
+                final java.util.concurrent.ArrayBlockingQueue<Object> filled = new java.util.concurrent.ArrayBlockingQueue<>(STREAM_BUFFERS + 1);
+                final Object end = new Object();
+                Thread reader = new Thread(() -> {
+                    Object last = end;
+                    try {
+                        while (true) {
+                            Block block = pool.take();
+                            int n = 0;
+                            while (n < block.data.length) {
+                                int r = source.read(block.data, n, block.data.length - n);
+                                if (r <= 0) break;
+                                n += r;
+                            }
+                            if (n == 0) {
+                                break;
+                            }
+                            block.length = n;
+                            filled.put(block);
+                            if (n < block.data.length) {
+                                break;
                             }
-                            pendingHashes.clear();
-                            curSerial = null;
-                            curName = null;
-                            pendingMd5 = null; pendingSize = null;
-                            continue;
                         }
-                        if (t.startsWith("- md5:")) {
-                            int idx = t.indexOf(':');
-                            if (idx >= 0) { pendingMd5 = t.substring(idx + 1).trim(); }
-                            continue;
+                    } catch (InterruptedException ignored) {
+                        return;
+                    } catch (IOException e) {
+                        last = e;
+                    }
+                    try { filled.put(last); } catch (InterruptedException ignored) {}
+                }, "HashRead");
+                reader.start();
+                MessageDigest md = MessageDigest.getInstance("MD5");
+                long total = 0;
+                long nextProgress = PROGRESS_STEP;
+                try {
+                    while (true) {
+                        Object item = filled.take();
+                        if (item == end) break;
+                        if (item instanceof IOException) throw (IOException) item;
+                        Block block = (Block) item;
+                        md.update(block.data, 0, block.length);
+                        total += block.length;
+                        pool.add(block);
+                        if (listener != null && total >= nextProgress) {
+                            listener.onProgress(total, totalBytes);
+                            nextProgress = total + PROGRESS_STEP;
                         }
-                        if (t.startsWith("md5:")) {
-                            int idx = t.indexOf(':');
-                            if (idx >= 0) { pendingMd5 = t.substring(idx + 1).trim(); }
-                            continue;
+                    }
+                } finally {
+                    reader.interrupt();
+                    reader.join();
+                    CsoUtils.closeQuietly(source);
+                }
+                if (totalBytes >= 0 && total != totalBytes) {
+                    throw new IOException("Image hashed " + total + " of " + totalBytes + " bytes");
+                }
+                if (listener != null) listener.onProgress(total, totalBytes);
+                return new HashCache.Entry(md.digest(), total);
+            }
+        }
+
+        /** Returns {size, lastModified} as reported by the provider, or null when either is unknown. */
+        @Nullable
+        private static long[] queryDocumentStat(android.content.ContentResolver cr, Uri file) {
+            try (android.database.Cursor c = cr.query(file, new String[]{
+                    android.provider.DocumentsContract.Document.COLUMN_SIZE,
+                    android.provider.DocumentsContract.Document.COLUMN_LAST_MODIFIED
+            }, null, null, null)) {
+                if (c == null || !c.moveToFirst() || c.isNull(0) || c.isNull(1)) return null;
+                return new long[]{c.getLong(0), c.getLong(1)};
+            } catch (Exception ignored) {
+                return null;
+            }
+        }
+
+        /**
+         * Persistent (md5, image size) cache keyed by document URI plus the file's size and
+         * last-modified time. Stored as an append-only record log that is compacted on load once
+         * superseded records outnumber live ones.
+         */
+        static final class HashCache {
+            private static final String FILE_NAME = "redump_hashes.bin";
+            private static final int MAGIC = 0x48445241; // "ARDH"
+            private static final int VERSION = 1;
+            private static HashCache sInstance;
+
+            static final class Entry {
+                final byte[] md5;
+                final long imageSize;
+                long fileSize;
+                long lastModified;
+
+                Entry(byte[] md5, long imageSize) {
+                    this.md5 = md5;
+                    this.imageSize = imageSize;
+                }
+            }
+
+            private final File file;
+            private final Map<String, Entry> entries = new HashMap<>();
+
+            private HashCache(File file) {
+                this.file = file;
+            }
+
+            static synchronized HashCache get(Context ctx) {
+                File file = new File(getLibraryCacheDir(ctx), FILE_NAME);
+                if (sInstance == null || !sInstance.file.equals(file)) {
+                    HashCache cache = new HashCache(file);
+                    cache.load();
+                    sInstance = cache;
+                }
+                return sInstance;
+            }
+
+            @Nullable
+            synchronized Entry get(Uri uri, long fileSize, long lastModified) {
+                Entry e = entries.get(uri.toString());
+                if (e == null || e.fileSize != fileSize || e.lastModified != lastModified) return null;
+                return e;
+            }
+
+            synchronized void put(Uri uri, long fileSize, long lastModified, Entry entry) {
+                entry.fileSize = fileSize;
+                entry.lastModified = lastModified;
+                String key = uri.toString();
+                entries.put(key, entry);
+                boolean fresh = !file.isFile() || file.length() == 0;
+                try (java.io.DataOutputStream out = new java.io.DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(file, !fresh)))) {
+                    if (fresh) writeHeader(out);
+                    writeRecord(out, key, entry);
+                } catch (IOException e) {
+                    try { DebugLog.w("Redump", "Failed to append hash cache: " + e.getMessage()); } catch (Throwable ignored) {}
+                }
+            }
+
+            private void load() {
+                if (!file.isFile()) return;
+                int records = 0;
+                try (java.io.DataInputStream in = new java.io.DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                    if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                        file.delete();
+                        return;
+                    }
+                    while (true) {
+                        String key;
+                        try { key = in.readUTF(); } catch (java.io.EOFException eof) { break; }
+                        long fileSize = in.readLong();
+                        long lastModified = in.readLong();
+                        byte[] md5 = new byte[16];
+                        in.readFully(md5);
+                        Entry e = new Entry(md5, in.readLong());
+                        e.fileSize = fileSize;
+                        e.lastModified = lastModified;
+                        entries.put(key, e);
+                        records++;
+                    }
+                } catch (IOException e) {
+                    // A torn trailing record from an interrupted append; keep what was read and rewrite.
+                    records = Integer.MAX_VALUE;
+                }
+                if (records > entries.size() * 2) {
+                    compact();
+                }
+            }
+
+            private void compact() {
+                File temp = new File(file.getPath() + ".tmp");
+                try (java.io.DataOutputStream out = new java.io.DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                    writeHeader(out);
+                    for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                        writeRecord(out, e.getKey(), e.getValue());
+                    }
+                } catch (IOException e) {
+                    temp.delete();
+                    return;
+                }
+                if (!temp.renameTo(file)) temp.delete();
+            }
+
+            private static void writeHeader(java.io.DataOutputStream out) throws IOException {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+            }
+
+            private static void writeRecord(java.io.DataOutputStream out, String key, Entry e) throws IOException {
+                out.writeUTF(key);
+                out.writeLong(e.fileSize);
+                out.writeLong(e.lastModified);
+                out.write(e.md5);
+                out.writeLong(e.imageSize);
+            }
+        }
+    }
+
+    private android.graphics.Bitmap loadHeaderBitmapFromAssets() {
+        try (java.io.InputStream is = getAssets().open("icon.png")) {
+            return android.graphics.BitmapFactory.decodeStream(is);
+        } catch (Exception ignored) {
+            try (java.io.InputStream is2 = getAssets().open("app_icons/icon.png")) {
+                return android.graphics.BitmapFactory.decodeStream(is2);
+            } catch (Exception ignored2) { return null; }
+        }
+    }
+
+
+    private android.graphics.Bitmap loadHeaderBlurBitmapFromAssets() {
+        try (java.io.InputStream is = getAssets().open("app_icons/icon-old.png")) {
+            return android.graphics.BitmapFactory.decodeStream(is);
+        } catch (Exception ignored) {
+            try (java.io.InputStream is2 = getAssets().open("app_icons/icon.png")) {
+                return android.graphics.BitmapFactory.decodeStream(is2);
+            } catch (Exception ignored2) {
+                try (java.io.InputStream is3 = getAssets().open("icon.png")) {
+                    return android.graphics.BitmapFactory.decodeStream(is3);
+                } catch (Exception ignored3) { return null; }
+            }
+        }
+    }
+
+    // Recycler adapter
+    static class GamesAdapter extends RecyclerView.Adapter<GamesAdapter.VH> {
+        interface OnClick { void onClick(GameEntry e); }
+        static class VH extends RecyclerView.ViewHolder {
+            final TextView tv;
+            final android.widget.ImageView img;
+            final TextView tvOverlay;
+            VH(View v) {
+                super(v);
+                this.tv = v.findViewById(R.id.tv_title);
+                this.img = v.findViewById(R.id.img_cover);
+                this.tvOverlay = v.findViewById(R.id.tv_cover_fallback);
+            }
+        }
+        private final List<GameEntry> data;
+    private final List<GameEntry> filtered = new ArrayList<>();
+        private final OnClick onClick;
+        private boolean listMode = false;
+        private static final java.util.concurrent.ExecutorService sExec = java.util.concurrent.Executors.newFixedThreadPool(3);
+        private static final java.util.Map<String, File> sLocalCoverFiles = java.util.Collections.synchronizedMap(new java.util.HashMap<>());
+        private static final java.util.Set<String> sLocalCoverMissing = java.util.Collections.synchronizedSet(new java.util.HashSet<>());
+        static void clearLocalCoverCache() {
+            sLocalCoverFiles.clear();
+            sLocalCoverMissing.clear();
+            CoverLoader.invalidateChanged();
+        }
+
+        static void registerCachedCover(GameEntry entry, File file) {
+            if (entry == null || file == null || !file.exists()) {
+                return;
+            }
+            String key = coverKey(entry);
+            if (TextUtils.isEmpty(key)) {
+                return;
+            }
+            sLocalCoverFiles.put(key, file);
+            sLocalCoverMissing.remove(key);
+        }
+    GamesAdapter(List<GameEntry> d, OnClick oc) { data = d; filtered.addAll(d); onClick = oc; setHasStableIds(true); }
+        void update(List<GameEntry> d) { clearLocalCoverCache(); data.clear(); data.addAll(d); applyFilter(currentFilter); }
+        void append(List<GameEntry> d) { data.addAll(d); applyFilter(currentFilter); }
+        int getItemCountTotal() { return data.size(); }
+        private String currentFilter = "";
+        void setFilter(String q) { currentFilter = q == null ? "" : q.trim(); applyFilter(currentFilter); }
+        private void applyFilter(String q) {
+            filtered.clear();
+            if (TextUtils.isEmpty(q)) {
+                filtered.addAll(data);
+            } else {
+                String needle = q.toLowerCase();
+                for (GameEntry e : data) {
+                    String t = e != null && e.title != null ? e.title.toLowerCase() : "";
+                    String s = e != null && e.serial != null ? e.serial.toLowerCase() : "";
+                    if (t.contains(needle) || s.contains(needle)) filtered.add(e);
+                }
+            }
+            notifyDataSetChanged();
+        }
+        void setListMode(boolean list) { this.listMode = list; notifyDataSetChanged(); }
+        @Override public int getItemViewType(int position) { return listMode ? 1 : 0; }
+        @NonNull @Override public VH onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            int layout = (viewType == 1) ? R.layout.item_game_list : R.layout.item_game;
+            View v = getLayoutInflater(parent).inflate(layout, parent, false);
+            return new VH(v);
+        }
+        @Override public long getItemId(int position) {
+            try {
+                GameEntry e = data.get(position);
+                String key = (e.uri != null ? e.uri.toString() : e.title) + "|" + (e.title != null ? e.title : "");
+                return (long) key.hashCode();
+            } catch (Throwable ignored) { return position; }
+        }
+        @Override public void onViewRecycled(@NonNull VH holder) {
+            super.onViewRecycled(holder);
+            try {
+                holder.img.setTag(R.id.tag_request_key, null);
+                holder.img.setImageDrawable(null);
+            } catch (Throwable ignored) {}
+        }
+        @Override public void onBindViewHolder(@NonNull VH holder, int position) {
+            GameEntry e = filtered.get(position);
+            Context ctx = holder.itemView.getContext();
+            String tpl = ((MainActivity) ctx).getCoversUrlTemplate();
+            try { holder.img.setImageDrawable(null); } catch (Throwable ignored) {}
+            try { holder.img.setBackgroundColor(android.graphics.Color.TRANSPARENT); } catch (Throwable ignored) {}
+            if (holder.tvOverlay != null) holder.tvOverlay.setVisibility(View.GONE);
+            String manual = null;
+            try { manual = ((MainActivity) ctx).getManualCoverUri(gameKeyFromEntry(e)); } catch (Throwable ignored) {}
+            java.util.List<String> urls = null;
+            if (tpl != null && !tpl.isEmpty() && MainActivity.hasInternetConnection(ctx)) {
+                urls = MainActivity.buildCoverCandidateUrls(e, tpl);
+            }
+            String requestKey = (e.uri != null ? e.uri.toString() : e.title) + "|" + (e.serial != null ? e.serial : "") + "|" + (e.title != null ? e.title : "");
+            holder.img.setTag(R.id.tag_request_key, requestKey);
+            boolean loaded = CoverLoader.load(holder.img, listMode ? null : holder.tvOverlay, e, manual, urls, requestKey, listMode);
+            holder.img.setVisibility(View.VISIBLE);
+            if (listMode) {
+                holder.tv.setVisibility(View.VISIBLE);
+                holder.tv.setText(e.gameTitle != null ? e.gameTitle : e.title);
+                if (holder.tvOverlay != null) holder.tvOverlay.setVisibility(View.GONE);
+            } else {
+                holder.tv.setVisibility(View.GONE);
+                if (!loaded && holder.tvOverlay != null) {
+                    // Stays hidden while the cover loads; the loader shows it if nothing is found.
+                    holder.tvOverlay.setText(e.gameTitle != null ? e.gameTitle : e.title);
+                    holder.tvOverlay.bringToFront();
+                }
+            }
+            holder.itemView.setOnClickListener(v -> onClick.onClick(e));
+            holder.itemView.setOnKeyListener((v, keyCode, event) -> {
+                if (event.getAction() != KeyEvent.ACTION_DOWN) return false;
+                RecyclerView rv = (RecyclerView) holder.itemView.getParent();
+                RecyclerView.LayoutManager lm = rv.getLayoutManager();
+                if (!(lm instanceof GridLayoutManager)) return false;
+                int span = ((GridLayoutManager) lm).getSpanCount();
+                int pos = holder.getAdapterPosition();
+                if (pos == RecyclerView.NO_POSITION) return false;
+                switch (keyCode) {
+                    case KeyEvent.KEYCODE_DPAD_LEFT:
+                        if (pos % span > 0) {
+                            int target = pos - 1;
+                            rv.smoothScrollToPosition(target);
+                            rv.post(() -> {
+                                RecyclerView.ViewHolder tvh = rv.findViewHolderForAdapterPosition(target);
+                                if (tvh != null) tvh.itemView.requestFocus();
+                            });
                         }
-                        if (t.startsWith("size:")) {
-                            int idx = t.indexOf(':');
-                            if (idx >= 0) { pendingSize = t.substring(idx + 1).trim(); }
-                            if (pendingMd5 != null && pendingSize != null) {
-                                pendingHashes.add(new String[]{pendingMd5, pendingSize});
-                                pendingMd5 = null; pendingSize = null;
-                            }
-                            continue;
+                        return true;
+                    case KeyEvent.KEYCODE_DPAD_RIGHT:
+                        if (pos + 1 < getItemCount()) {
+                            int target = pos + 1;
+                            rv.smoothScrollToPosition(target);
+                            rv.post(() -> {
+                                RecyclerView.ViewHolder tvh = rv.findViewHolderForAdapterPosition(target);
+                                if (tvh != null) tvh.itemView.requestFocus();
+                            });
                         }
-                        if (t.startsWith("serial:")) {
-                            int idx = t.indexOf(':');
-                            curSerial = (idx >= 0 ? t.substring(idx + 1).trim() : null);
-                            continue;
+                        return true;
+                    case KeyEvent.KEYCODE_DPAD_UP:
+                        if (pos - span >= 0) {
+                            int target = pos - span;
+                            rv.smoothScrollToPosition(target);
+                            rv.post(() -> {
+                                RecyclerView.ViewHolder tvh = rv.findViewHolderForAdapterPosition(target);
+                                if (tvh != null) tvh.itemView.requestFocus();
+                            });
                         }
-                        if (t.startsWith("name:")) {
-                            int idx = t.indexOf(':');
-                            curName = (idx >= 0 ? t.substring(idx + 1).trim() : null);
-                            continue;
+                        return true;
+                    case KeyEvent.KEYCODE_DPAD_DOWN:
+                        if (pos + span < getItemCount()) {
+                            int target = pos + span;
+                            rv.smoothScrollToPosition(target);
+                            rv.post(() -> {
+                                RecyclerView.ViewHolder tvh = rv.findViewHolderForAdapterPosition(target);
+                                if (tvh != null) tvh.itemView.requestFocus();
+                            });
                         }
-                    }
-                    if (curSerial != null && !pendingHashes.isEmpty()) {
-                        for (String[] hs : pendingHashes) {
-                            String md5 = md5ToLower(hs[0]);
-                            String size = hs[1] != null ? hs[1].trim() : null;
-                            if (md5 != null && size != null) {
-                                Result r = new Result();
-                                r.serial = curSerial;
-                                r.name = (curName != null ? curName : curSerial);
-                                sMd5SizeToResult.put(md5 + "|" + size, r);
+                        return true;
+                    case KeyEvent.KEYCODE_BUTTON_A:
+                    case KeyEvent.KEYCODE_BUTTON_START:
+                    case KeyEvent.KEYCODE_ENTER:
+                        v.performClick();
+                        return true;
+                }
+                return false;
+            });
+            holder.itemView.setOnLongClickListener(v -> {
+                try { ((MainActivity)holder.itemView.getContext()).showGameOptionsDialog(e); } catch (Throwable ignored) {}
+                return true;
+            });
+        }
+    @Override public int getItemCount() { return filtered.size(); }
+        private static android.view.LayoutInflater getLayoutInflater(ViewGroup parent) {
+            return android.view.LayoutInflater.from(parent.getContext());
+        }
+
+        static final class Download {
+            final byte[] bytes;
+            final String extension;
+
+            Download(byte[] bytes, String extension) {
+                this.bytes = bytes;
+                this.extension = extension;
+            }
+        }
+
+        /** Downloads the first candidate that decodes as an image, giving up once {@code wanted} turns false. */
+        @Nullable
+        static Download downloadFirstCandidate(java.util.List<String> urls, CoverMisses misses, java.util.function.BooleanSupplier wanted) {
+            for (String ustr : urls) {
+                if (ustr == null || ustr.isEmpty() || ustr.contains("${")) continue;
+                if (!wanted.getAsBoolean()) { break; }
+                if (misses.contains(ustr)) continue;
+                try {
+                    CoverPrefetcher.Response response = CoverPrefetcher.HTTP.fetch(ustr);
+                    if (response.code == 200) {
+                        byte[] data = response.body;
+                        if (data.length > 0) {
+                            android.graphics.BitmapFactory.Options bounds = new android.graphics.BitmapFactory.Options();
+                            bounds.inJustDecodeBounds = true;
+                            android.graphics.BitmapFactory.decodeByteArray(data, 0, data.length, bounds);
+                            if (bounds.outWidth > 0 && bounds.outHeight > 0) {
+                                return new Download(data, guessImageExtension(ustr, response.contentType));
                             }
                         }
+                    } else if (response.code == 404) {
+                        misses.add(ustr);
+                    } else {
+                        try { DebugLog.d("Covers", "HTTP " + response.code + " for " + ustr); } catch (Throwable ignored) {}
                     }
-                    pendingHashes.clear();
-                    try { DebugLog.i("Redump", "Loaded hash map entries: " + sMd5SizeToResult.size()); } catch (Throwable ignored) {}
                 } catch (Exception ex) {
-                    try { DebugLog.e("Redump", "Failed to load DB: " + ex.getMessage()); } catch (Throwable ignored) {}
-                } finally {
-                    if (br != null) try { br.close(); } catch (Exception ignored) {}
+                    try { DebugLog.d("Covers", "Error loading cover: " + ex.getMessage()); } catch (Throwable ignored) {}
                 }
             }
+            return null;
         }
 
-        static Result lookupByFile(android.content.ContentResolver cr, Uri file) {
-            Context ctx = NativeApp.getContext();
-            if (ctx == null) return null;
-            ensureLoaded(ctx);
-            if (sMd5SizeToResult == null || sMd5SizeToResult.isEmpty()) return null;
-            try {
-                MessageDigest md = MessageDigest.getInstance("MD5");
-                long total = 0;
-                final int BUF = 1024 * 1024;
-                byte[] buf = new byte[BUF];
-                try (java.io.InputStream in = CsoUtils.openInputStream(cr, file)) {
-                    if (in == null) return null;
-                    while (true) {
-                        int r = in.read(buf);
-                        if (r <= 0) break;
-                        md.update(buf, 0, r);
-                        total += r;
-                    }
-                }
-                String md5 = new java.math.BigInteger(1, md.digest()).toString(16);
-                while (md5.length() < 32) md5 = "0" + md5;
-                String key = md5ToLower(md5) + "|" + Long.toString(total);
-                Result r = sMd5SizeToResult.get(key);
-                return r;
-            } catch (Exception ignored) {
+        static File findCachedCoverFile(Context ctx, GameEntry entry) {
+            if (ctx == null || entry == null || entry.uri == null) {
+                return null;
+            }
+            String key = coverKey(entry);
+            if (TextUtils.isEmpty(key)) {
+                return null;
+            }
+            File cached = sLocalCoverFiles.get(key);
+            if (cached != null && cached.exists()) {
+                return cached;
+            }
+            if (sLocalCoverMissing.contains(key)) {
+                return null;
+            }
+            File cacheDir = MainActivity.getCoversCacheDir(ctx);
+            if (cacheDir == null) {
+                sLocalCoverMissing.add(key);
                 return null;
             }
+            String baseName = computeCoverBaseName(entry);
+            File coverFile = MainActivity.findExistingCoverFile(cacheDir, baseName);
+            if (coverFile != null && coverFile.isFile() && coverFile.length() > 0) {
+                sLocalCoverFiles.put(key, coverFile);
+                sLocalCoverMissing.remove(key);
+                return coverFile;
+            }
+            sLocalCoverMissing.add(key);
+            return null;
         }
-    }
 
-    private android.graphics.Bitmap loadHeaderBitmapFromAssets() {
-        try (java.io.InputStream is = getAssets().open("icon.png")) {
-            return android.graphics.BitmapFactory.decodeStream(is);
-        } catch (Exception ignored) {
-            try (java.io.InputStream is2 = getAssets().open("app_icons/icon.png")) {
-                return android.graphics.BitmapFactory.decodeStream(is2);
-            } catch (Exception ignored2) { return null; }
+        @Nullable
+        static File storeCoverBytes(Context ctx, GameEntry entry, byte[] data, String extension) {
+            if (ctx == null || entry == null || data == null || data.length == 0) {
+                return null;
+            }
+            File cacheDir = MainActivity.getCoversCacheDir(ctx);
+            if (cacheDir == null) {
+                return null;
+            }
+            String baseName = computeCoverBaseName(entry);
+            if (TextUtils.isEmpty(baseName)) {
+                return null;
+            }
+            File target = writeCoverFile(cacheDir, baseName, data, extension);
+            if (target == null) {
+                return null;
+            }
+            GamesAdapter.registerCachedCover(entry, target);
+            try { DebugLog.d("Covers", "Stored cover cache file: " + target.getAbsolutePath()); } catch (Throwable ignored) {}
+            return target;
         }
-    }
 
-
-    private android.graphics.Bitmap loadHeaderBlurBitmapFromAssets() {
-        try (java.io.InputStream is = getAssets().open("app_icons/icon-old.png")) {
-            return android.graphics.BitmapFactory.decodeStream(is);
-        } catch (Exception ignored) {
-            try (java.io.InputStream is2 = getAssets().open("app_icons/icon.png")) {
-                return android.graphics.BitmapFactory.decodeStream(is2);
-            } catch (Exception ignored2) {
-                try (java.io.InputStream is3 = getAssets().open("icon.png")) {
-                    return android.graphics.BitmapFactory.decodeStream(is3);
-                } catch (Exception ignored3) { return null; }
+        private static String coverKey(GameEntry entry) {
+            if (entry == null) {
+                return null;
+            }
+            if (entry.uri != null) {
+                return entry.uri.toString();
+            }
+            String fallback = entry.title;
+            if (TextUtils.isEmpty(fallback)) {
+                fallback = entry.fileTitleNoExt();
             }
+            return fallback;
         }
+
     }
 
-    // Recycler adapter
-    static class GamesAdapter extends RecyclerView.Adapter<GamesAdapter.VH> {
-        interface OnClick { void onClick(GameEntry e); }
-        static class VH extends RecyclerView.ViewHolder {
-            final TextView tv;
-            final android.widget.ImageView img;
-            final TextView tvOverlay;
-            VH(View v) {
-                super(v);
-                this.tv = v.findViewById(R.id.tv_title);
-                this.img = v.findViewById(R.id.img_cover);
-                this.tvOverlay = v.findViewById(R.id.tv_cover_fallback);
-            }
-        }
-        private final List<GameEntry> data;
-    private final List<GameEntry> filtered = new ArrayList<>();
-        private final OnClick onClick;
-        private boolean listMode = false;
-        // Lightweight in-memory cache for cover bitmaps
-        private static final android.util.LruCache<String, android.graphics.Bitmap> sCoverCache;
-        private static final java.util.Set<String> sNegativeCache = java.util.Collections.synchronizedSet(new java.util.HashSet<>());
-        private static final java.util.concurrent.ExecutorService sExec = java.util.concurrent.Executors.newFixedThreadPool(3);
-        private static final java.util.Map<String, File> sLocalCoverFiles = java.util.Collections.synchronizedMap(new java.util.HashMap<>());
-        private static final java.util.Set<String> sLocalCoverMissing = java.util.Collections.synchronizedSet(new java.util.HashSet<>());
+    /**
+     * Loads grid covers off the UI thread, decoded at the size of a grid cell. Bitmaps live in a
+     * memory LRU backed by downsampled thumbnails under {@code armsx2_covers/thumbs}, so a cover is
+     * only decoded at full size once. Binds for a cover that is already loading join the pending
+     * request instead of starting another one. Each bitmap remembers the size and mtime of the
+     * file or document it came from, so a library refresh only evicts covers that changed.
+     */
+    static final class CoverLoader {
+        private static final String THUMB_DIR = "thumbs";
+        private static final long MAX_THUMB_BYTES = 64L * 1024 * 1024;
+        private static final int THUMB_QUALITY = 85;
+        private static final int SIZE_STEP = 32;
+        private static final int LIST_COVER_DP = 80;
+
+        private static final android.util.LruCache<String, Bitmap> sMemory;
+        // Where each bitmap in sMemory was decoded from; bitmaps decoded from bytes that could
+        // not be stored have no entry and are kept until the LRU drops them.
+        private static final java.util.concurrent.ConcurrentHashMap<String, Source> sSources = new java.util.concurrent.ConcurrentHashMap<>();
+        private static final AtomicBoolean sValidating = new AtomicBoolean();
+        private static final java.util.concurrent.ConcurrentHashMap<String, Request> sInFlight = new java.util.concurrent.ConcurrentHashMap<>();
+        private static final android.os.Handler MAIN = new android.os.Handler(android.os.Looper.getMainLooper());
+        // Thumbnail bytes written since the last trim; starts full so the first write trims.
+        private static final long THUMB_TRIM_INTERVAL_BYTES = MAX_THUMB_BYTES / 8;
+        private static final java.util.concurrent.atomic.AtomicLong sThumbBytesSinceTrim =
+                new java.util.concurrent.atomic.AtomicLong(THUMB_TRIM_INTERVAL_BYTES);
+        // Newest request first: after a fast fling the covers now on screen decode before the
+        // ones that scrolled past.
+        private static final java.util.concurrent.ThreadPoolExecutor sDecode = new java.util.concurrent.ThreadPoolExecutor(
+                2, 2, 30, java.util.concurrent.TimeUnit.SECONDS,
+                new java.util.concurrent.LinkedBlockingDeque<Runnable>() {
+                    @Override public boolean offer(Runnable r) {
+                        return offerFirst(r);
+                    }
+                },
+                r -> {
+                    Thread t = new Thread(r, "CoverDecode");
+                    t.setPriority(Thread.NORM_PRIORITY - 1);
+                    return t;
+                });
+
         static {
             int maxMem = (int) (Runtime.getRuntime().maxMemory() / 1024);
-            int cacheSize = Math.max(1024 * 8, Math.min(1024 * 64, maxMem / 16)); 
-            sCoverCache = new android.util.LruCache<String, android.graphics.Bitmap>(cacheSize) {
-                @Override protected int sizeOf(String key, android.graphics.Bitmap value) {
+            int cacheSize = Math.max(1024 * 8, Math.min(1024 * 64, maxMem / 16));
+            sMemory = new android.util.LruCache<String, Bitmap>(cacheSize) {
+                @Override protected int sizeOf(String key, Bitmap value) {
                     return value.getByteCount() / 1024;
                 }
+
+                @Override protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                    if (newValue == null) {
+                        sSources.remove(key);
+                    }
+                }
             };
-        }
-        static void clearLocalCoverCache() {
-            sLocalCoverFiles.clear();
-            sLocalCoverMissing.clear();
+            sDecode.allowCoreThreadTimeOut(true);
         }
 
-        static void registerCachedCover(GameEntry entry, File file) {
-            if (entry == null || file == null || !file.exists()) {
+        private CoverLoader() {}
+
+        /**
+         * Drops the bitmaps whose source file or picked document has changed size or mtime since
+         * it was decoded. The checks run off the UI thread; overlapping calls share one pass.
+         */
+        static void invalidateChanged() {
+            if (sSources.isEmpty() || !sValidating.compareAndSet(false, true)) {
                 return;
             }
-            String key = coverKey(entry);
-            if (TextUtils.isEmpty(key)) {
-                return;
+            try {
+                sDecode.execute(() -> {
+                    try {
+                        for (Map.Entry<String, Source> e : sSources.entrySet()) {
+                            Source source = e.getValue();
+                            if (!source.id.equals(source.currentId()) && sSources.remove(e.getKey(), source)) {
+                                sMemory.remove(e.getKey());
+                            }
+                        }
+                    } finally {
+                        sValidating.set(false);
+                    }
+                });
+            } catch (java.util.concurrent.RejectedExecutionException ex) {
+                sValidating.set(false);
             }
-            sLocalCoverFiles.put(key, file);
-            sLocalCoverMissing.remove(key);
         }
-    GamesAdapter(List<GameEntry> d, OnClick oc) { data = d; filtered.addAll(d); onClick = oc; setHasStableIds(true); }
-        void update(List<GameEntry> d) { clearLocalCoverCache(); data.clear(); data.addAll(d); applyFilter(currentFilter); }
-        int getItemCountTotal() { return data.size(); }
-        private String currentFilter = "";
-        void setFilter(String q) { currentFilter = q == null ? "" : q.trim(); applyFilter(currentFilter); }
-        private void applyFilter(String q) {
-            filtered.clear();
-            if (TextUtils.isEmpty(q)) {
-                filtered.addAll(data);
-            } else {
-                String needle = q.toLowerCase();
-                for (GameEntry e : data) {
-                    String t = e != null && e.title != null ? e.title.toLowerCase() : "";
-                    String s = e != null && e.serial != null ? e.serial.toLowerCase() : "";
-                    if (t.contains(needle) || s.contains(needle)) filtered.add(e);
+
+        private static final class Source {
+            final String id;
+            @Nullable final File file;
+            @Nullable final Context context;
+            @Nullable final String manual;
+
+            Source(String id, @Nullable File file, @Nullable Context context, @Nullable String manual) {
+                this.id = id;
+                this.file = file;
+                this.context = context;
+                this.manual = manual;
+            }
+
+            String currentId() {
+                if (file != null) {
+                    return fileSourceId(file);
                 }
+                return context != null && manual != null ? manualSourceId(context, manual) : id;
             }
-            notifyDataSetChanged();
         }
-        void setListMode(boolean list) { this.listMode = list; notifyDataSetChanged(); }
-        @Override public int getItemViewType(int position) { return listMode ? 1 : 0; }
-        @NonNull @Override public VH onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-            int layout = (viewType == 1) ? R.layout.item_game_list : R.layout.item_game;
-            View v = getLayoutInflater(parent).inflate(layout, parent, false);
-            return new VH(v);
+
+        // Size and mtime in the id make a replaced cover miss its old thumbnail and bitmap.
+        private static String fileSourceId(File file) {
+            return file.getAbsolutePath() + "|" + file.length() + "|" + file.lastModified();
         }
-        @Override public long getItemId(int position) {
+
+        // Same idea for a picked cover: an image replaced at the same URI gets a new id.
+        private static String manualSourceId(Context context, String manual) {
+            try (android.database.Cursor c = context.getContentResolver().query(Uri.parse(manual), new String[]{
+                    android.provider.DocumentsContract.Document.COLUMN_SIZE,
+                    android.provider.DocumentsContract.Document.COLUMN_LAST_MODIFIED
+            }, null, null, null)) {
+                if (c != null && c.moveToFirst()) {
+                    long size = c.isNull(0) ? -1 : c.getLong(0);
+                    long modified = c.isNull(1) ? -1 : c.getLong(1);
+                    return manual + "|" + size + "|" + modified;
+                }
+            } catch (Exception ignored) {}
+            return manual;
+        }
+
+        /**
+         * Shows the cover for {@code entry} in {@code view}. Returns true when it was already in
+         * memory and is shown now; otherwise it is delivered later if the view's request key still
+         * matches, and {@code overlay} is made visible if no cover turns up.
+         */
+        static boolean load(ImageView view, @Nullable TextView overlay, GameEntry entry, @Nullable String manual,
+                            @Nullable List<String> urls, String requestKey, boolean listMode) {
+            Context ctx = view.getContext();
+            int width = targetWidth(ctx, listMode);
+            int height = width * 3 / 2;
+            String key = requestKey + "|" + (manual != null ? manual : "") + "@" + width + "x" + height;
+            Bitmap cached = sMemory.get(key);
+            if (cached != null) {
+                view.setImageBitmap(cached);
+                return true;
+            }
+            Target target = new Target(view, overlay, requestKey);
+            Request request = new Request(key, ctx.getApplicationContext(), entry, manual, urls, width, height);
+            request.addTarget(target);
+            while (true) {
+                Request pending = sInFlight.putIfAbsent(key, request);
+                if (pending == null) {
+                    break;
+                }
+                if (pending.addTarget(target)) {
+                    return false;
+                }
+                // The pending request finished between the lookups; its bitmap is in memory
+                // unless it found nothing.
+                cached = sMemory.get(key);
+                if (cached != null) {
+                    view.setImageBitmap(cached);
+                    return true;
+                }
+                if (sInFlight.replace(key, pending, request)) {
+                    break;
+                }
+            }
             try {
-                GameEntry e = data.get(position);
-                String key = (e.uri != null ? e.uri.toString() : e.title) + "|" + (e.title != null ? e.title : "");
-                return (long) key.hashCode();
-            } catch (Throwable ignored) { return position; }
+                sDecode.execute(request);
+            } catch (java.util.concurrent.RejectedExecutionException ex) {
+                sInFlight.remove(key, request);
+            }
+            return false;
         }
-        @Override public void onViewRecycled(@NonNull VH holder) {
-            super.onViewRecycled(holder);
-            try {
-                holder.img.setTag(R.id.tag_request_key, null);
-                holder.img.setImageDrawable(null);
-            } catch (Throwable ignored) {}
+
+        private static int targetWidth(Context ctx, boolean listMode) {
+            android.util.DisplayMetrics dm = ctx.getResources().getDisplayMetrics();
+            int width;
+            if (listMode) {
+                width = Math.round(LIST_COVER_DP * dm.density);
+            } else {
+                int span = Math.max(1, ctx.getResources().getInteger(R.integer.game_selector_span_count));
+                width = dm.widthPixels / span;
+            }
+            // Rounded up so small layout differences share cache entries and thumbnails.
+            return Math.max(SIZE_STEP, (width + SIZE_STEP - 1) / SIZE_STEP * SIZE_STEP);
         }
-        @Override public void onBindViewHolder(@NonNull VH holder, int position) {
-            GameEntry e = filtered.get(position);
-            String tpl = ((MainActivity)holder.itemView.getContext()).getCoversUrlTemplate();
-            boolean loaded = false;
-            try { holder.img.setImageDrawable(null); } catch (Throwable ignored) {}
-            try { holder.img.setBackgroundColor(android.graphics.Color.TRANSPARENT); } catch (Throwable ignored) {}
-            if (holder.tvOverlay != null) holder.tvOverlay.setVisibility(View.GONE);
-            try {
-                String gameKey = gameKeyFromEntry(e);
-                String manual = ((MainActivity)holder.itemView.getContext()).getManualCoverUri(gameKey);
-                if (manual != null && !manual.isEmpty()) {
-                    android.net.Uri mu = android.net.Uri.parse(manual);
-                    try (java.io.InputStream is = holder.itemView.getContext().getContentResolver().openInputStream(mu)) {
-                        if (is != null) {
-                            android.graphics.Bitmap bmp = android.graphics.BitmapFactory.decodeStream(is);
-                            if (bmp != null) {
-                                holder.img.setImageBitmap(bmp);
-                                loaded = true;
-                            }
-                        }
-                    } catch (Throwable ignored) {}
+
+        private static final class Target {
+            final WeakReference<ImageView> view;
+            @Nullable final WeakReference<TextView> overlay;
+            final String requestKey;
+
+            Target(ImageView view, @Nullable TextView overlay, String requestKey) {
+                this.view = new WeakReference<>(view);
+                this.overlay = overlay != null ? new WeakReference<>(overlay) : null;
+                this.requestKey = requestKey;
+            }
+
+            boolean isWanted() {
+                ImageView iv = view.get();
+                return iv != null && requestKey.equals(iv.getTag(R.id.tag_request_key));
+            }
+
+            void deliver(@Nullable Bitmap bitmap) {
+                if (!isWanted()) {
+                    return;
                 }
-            } catch (Throwable ignored) {}
-            if (!loaded) {
-                File cachedLocal = findCachedCoverFile(holder.itemView.getContext(), e);
-                if (cachedLocal != null && cachedLocal.exists()) {
-                    String localKey = cachedLocal.getAbsolutePath();
-                    android.graphics.Bitmap cachedBmp = sCoverCache.get(localKey);
-                    if (cachedBmp != null) {
-                        holder.img.setImageBitmap(cachedBmp);
-                        loaded = true;
+                TextView ov = overlay != null ? overlay.get() : null;
+                if (bitmap != null) {
+                    ImageView iv = view.get();
+                    if (iv != null) iv.setImageBitmap(bitmap);
+                    if (ov != null) ov.setVisibility(View.GONE);
+                } else if (ov != null) {
+                    ov.setVisibility(View.VISIBLE);
+                }
+            }
+        }
+
+        private interface StreamSource {
+            @Nullable
+            InputStream open() throws IOException;
+        }
+
+        private static final class Request implements Runnable {
+            private final String key;
+            private final Context context;
+            private final GameEntry entry;
+            @Nullable private final String manual;
+            @Nullable private final List<String> urls;
+            private final int width;
+            private final int height;
+            private final List<Target> targets = new ArrayList<>();
+            private boolean done;
+            private volatile boolean networkStage;
+            @Nullable private Source source;
+
+            Request(String key, Context context, GameEntry entry, @Nullable String manual,
+                    @Nullable List<String> urls, int width, int height) {
+                this.key = key;
+                this.context = context;
+                this.entry = entry;
+                this.manual = manual;
+                this.urls = urls;
+                this.width = width;
+                this.height = height;
+            }
+
+            synchronized boolean addTarget(Target target) {
+                if (done) {
+                    return false;
+                }
+                targets.add(target);
+                return true;
+            }
+
+            synchronized boolean isWanted() {
+                for (Target t : targets) {
+                    if (t.isWanted()) return true;
+                }
+                return false;
+            }
+
+            @Override
+            public void run() {
+                if (!isWanted()) {
+                    // Every view that asked for this cover has been rebound; drop it quietly.
+                    synchronized (this) { done = true; }
+                    sInFlight.remove(key, this);
+                    return;
+                }
+                Bitmap bitmap = null;
+                try {
+                    bitmap = networkStage ? fromNetwork() : fromLocal();
+                } catch (Throwable t) {
+                    try { DebugLog.d("Covers", "Cover decode failed: " + t.getMessage()); } catch (Throwable ignored) {}
+                }
+                if (bitmap == null && !networkStage && urls != null && !urls.isEmpty()) {
+                    networkStage = true;
+                    // Show the title while the download runs, then retry on the network pool so
+                    // slow hosts never hold up local decodes.
+                    post(null);
+                    try {
+                        GamesAdapter.sExec.execute(this);
+                        return;
+                    } catch (java.util.concurrent.RejectedExecutionException ignored) {}
+                }
+                if (bitmap != null) {
+                    if (source != null) {
+                        sSources.put(key, source);
                     } else {
-                        android.graphics.Bitmap bmp = android.graphics.BitmapFactory.decodeFile(localKey);
-                        if (bmp != null) {
-                            holder.img.setImageBitmap(bmp);
-                            sCoverCache.put(localKey, bmp);
-                            loaded = true;
-                        }
+                        sSources.remove(key);
+                    }
+                    sMemory.put(key, bitmap);
+                }
+                synchronized (this) { done = true; }
+                sInFlight.remove(key, this);
+                post(bitmap);
+            }
+
+            private void post(@Nullable Bitmap bitmap) {
+                final List<Target> snapshot;
+                synchronized (this) { snapshot = new ArrayList<>(targets); }
+                MAIN.post(() -> {
+                    for (Target t : snapshot) t.deliver(bitmap);
+                });
+            }
+
+            @Nullable
+            private Bitmap fromLocal() throws IOException {
+                if (!TextUtils.isEmpty(manual)) {
+                    Uri uri = Uri.parse(manual);
+                    String sourceId = manualSourceId(context, manual);
+                    Bitmap bitmap = fromSource(sourceId, () -> context.getContentResolver().openInputStream(uri));
+                    if (bitmap != null) {
+                        source = new Source(sourceId, null, context, manual);
+                        return bitmap;
                     }
                 }
+                File file = GamesAdapter.findCachedCoverFile(context, entry);
+                return file != null ? fromFile(file) : null;
+            }
+
+            @Nullable
+            private Bitmap fromNetwork() throws IOException {
+                GamesAdapter.Download download = GamesAdapter.downloadFirstCandidate(urls, CoverMisses.get(context), this::isWanted);
+                if (download == null) {
+                    return null;
+                }
+                File stored = GamesAdapter.storeCoverBytes(context, entry, download.bytes, download.extension);
+                if (stored != null) {
+                    return fromFile(stored);
+                }
+                Bitmap decoded = decodeSampled(() -> new java.io.ByteArrayInputStream(download.bytes), width, height);
+                return decoded != null ? toHardware(decoded) : null;
+            }
+
+            @Nullable
+            private Bitmap fromFile(File file) throws IOException {
+                String sourceId = fileSourceId(file);
+                Bitmap bitmap = fromSource(sourceId, () -> new FileInputStream(file));
+                if (bitmap != null) {
+                    source = new Source(sourceId, file, null, null);
+                }
+                return bitmap;
             }
-            boolean online = MainActivity.hasInternetConnection(holder.itemView.getContext());
-            if (!loaded && online && tpl != null && !tpl.isEmpty()) {
-                java.util.List<String> urls = MainActivity.buildCoverCandidateUrls(e, tpl);
-                String requestKey = (e.uri != null ? e.uri.toString() : e.title) + "|" + (e.serial != null ? e.serial : "") + "|" + (e.title != null ? e.title : "");
-                holder.img.setTag(R.id.tag_request_key, requestKey);
-                for (String u : urls) {
-                    if (u == null || u.isEmpty() || u.contains("${")) continue;
-                    android.graphics.Bitmap cached = sCoverCache.get(u);
-                    if (cached != null) {
-                        loaded = true;
-                        holder.img.setImageBitmap(cached);
-                        break;
+
+            @Nullable
+            private Bitmap fromSource(String sourceId, StreamSource source) throws IOException {
+                File thumb = thumbnailFile(context, sourceId, width, height);
+                if (thumb != null && thumb.isFile()) {
+                    Bitmap bitmap = decodeThumbnail(thumb);
+                    if (bitmap != null) {
+                        thumb.setLastModified(System.currentTimeMillis());
+                        return bitmap;
                     }
                 }
-                if (!loaded && !urls.isEmpty())
-                    loadImageWithFallback(holder.img, holder.tvOverlay, holder.itemView.getContext(), e, urls, requestKey);
-            }
-            holder.img.setVisibility(View.VISIBLE);
-            if (listMode) {
-                holder.tv.setVisibility(View.VISIBLE);
-                holder.tv.setText(e.gameTitle != null ? e.gameTitle : e.title);
-                if (holder.tvOverlay != null) holder.tvOverlay.setVisibility(View.GONE);
-            } else {
-                if (loaded) {
-                    if (holder.tvOverlay != null) holder.tvOverlay.setVisibility(View.GONE);
-                    holder.tv.setVisibility(View.GONE);
-                } else {
-                    holder.tv.setVisibility(View.GONE);
-                    if (holder.tvOverlay != null) {
-                        holder.tvOverlay.setText(e.gameTitle != null ? e.gameTitle : e.title);
-                        holder.tvOverlay.setVisibility(View.VISIBLE);
-                        holder.tvOverlay.bringToFront();
-                    }
+                Bitmap decoded = decodeSampled(source, width, height);
+                if (decoded == null) {
+                    return null;
                 }
+                if (thumb != null) {
+                    writeThumbnail(decoded, thumb);
+                }
+                return toHardware(decoded);
             }
-            holder.itemView.setOnClickListener(v -> onClick.onClick(e));
-            holder.itemView.setOnKeyListener((v, keyCode, event) -> {
-                if (event.getAction() != KeyEvent.ACTION_DOWN) return false;
-                RecyclerView rv = (RecyclerView) holder.itemView.getParent();
-                RecyclerView.LayoutManager lm = rv.getLayoutManager();
-                if (!(lm instanceof GridLayoutManager)) return false;
-                int span = ((GridLayoutManager) lm).getSpanCount();
-                int pos = holder.getAdapterPosition();
-                if (pos == RecyclerView.NO_POSITION) return false;
-                switch (keyCode) {
-                    case KeyEvent.KEYCODE_DPAD_LEFT:
-                        if (pos % span > 0) {
-                            int target = pos - 1;
-                            rv.smoothScrollToPosition(target);
-                            rv.post(() -> {
-                                RecyclerView.ViewHolder tvh = rv.findViewHolderForAdapterPosition(target);
-                                if (tvh != null) tvh.itemView.requestFocus();
-                            });
-                        }
-                        return true;
-                    case KeyEvent.KEYCODE_DPAD_RIGHT:
-                        if (pos + 1 < getItemCount()) {
-                            int target = pos + 1;
-                            rv.smoothScrollToPosition(target);
-                            rv.post(() -> {
-                                RecyclerView.ViewHolder tvh = rv.findViewHolderForAdapterPosition(target);
-                                if (tvh != null) tvh.itemView.requestFocus();
-                            });
-                        }
-                        return true;
-                    case KeyEvent.KEYCODE_DPAD_UP:
-                        if (pos - span >= 0) {
-                            int target = pos - span;
-                            rv.smoothScrollToPosition(target);
-                            rv.post(() -> {
-                                RecyclerView.ViewHolder tvh = rv.findViewHolderForAdapterPosition(target);
-                                if (tvh != null) tvh.itemView.requestFocus();
-                            });
-                        }
-                        return true;
-                    case KeyEvent.KEYCODE_DPAD_DOWN:
-                        if (pos + span < getItemCount()) {
-                            int target = pos + span;
-                            rv.smoothScrollToPosition(target);
-                            rv.post(() -> {
-                                RecyclerView.ViewHolder tvh = rv.findViewHolderForAdapterPosition(target);
-                                if (tvh != null) tvh.itemView.requestFocus();
-                            });
-                        }
-                        return true;
-                    case KeyEvent.KEYCODE_BUTTON_A:
-                    case KeyEvent.KEYCODE_BUTTON_START:
-                    case KeyEvent.KEYCODE_ENTER:
-                        v.performClick();
-                        return true;
+        }
+
+        /**
+         * Decodes with the largest power-of-two sample size that still covers the target, then
+         * scales down to fit it, so a full-size bitmap is never allocated.
+         */
+        @Nullable
+        private static Bitmap decodeSampled(StreamSource source, int width, int height) throws IOException {
+            BitmapFactory.Options bounds = new BitmapFactory.Options();
+            bounds.inJustDecodeBounds = true;
+            try (InputStream in = source.open()) {
+                if (in == null) return null;
+                BitmapFactory.decodeStream(in, null, bounds);
+            }
+            if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+                return null;
+            }
+            int sample = 1;
+            while (bounds.outWidth / (sample * 2) >= width && bounds.outHeight / (sample * 2) >= height) {
+                sample *= 2;
+            }
+            BitmapFactory.Options opts = new BitmapFactory.Options();
+            opts.inSampleSize = sample;
+            Bitmap bitmap;
+            try (InputStream in = source.open()) {
+                if (in == null) return null;
+                bitmap = BitmapFactory.decodeStream(in, null, opts);
+            }
+            if (bitmap == null) {
+                return null;
+            }
+            float scale = Math.min((float) width / bitmap.getWidth(), (float) height / bitmap.getHeight());
+            if (scale < 1f) {
+                int w = Math.max(1, Math.round(bitmap.getWidth() * scale));
+                int h = Math.max(1, Math.round(bitmap.getHeight() * scale));
+                Bitmap scaled = Bitmap.createScaledBitmap(bitmap, w, h, true);
+                if (scaled != bitmap) {
+                    bitmap.recycle();
+                    bitmap = scaled;
                 }
-                return false;
-            });
-            holder.itemView.setOnLongClickListener(v -> {
-                try { ((MainActivity)holder.itemView.getContext()).showGameOptionsDialog(e); } catch (Throwable ignored) {}
-                return true;
-            });
+            }
+            return bitmap;
         }
-    @Override public int getItemCount() { return filtered.size(); }
-        private static android.view.LayoutInflater getLayoutInflater(ViewGroup parent) {
-            return android.view.LayoutInflater.from(parent.getContext());
+
+        /** Thumbnails decode straight into hardware bitmaps, which live in GPU memory. */
+        @Nullable
+        private static Bitmap decodeThumbnail(File thumb) {
+            BitmapFactory.Options opts = new BitmapFactory.Options();
+            opts.inPreferredConfig = Bitmap.Config.HARDWARE;
+            Bitmap bitmap = BitmapFactory.decodeFile(thumb.getAbsolutePath(), opts);
+            if (bitmap == null) {
+                bitmap = BitmapFactory.decodeFile(thumb.getAbsolutePath());
+            }
+            return bitmap;
         }
 
-        private void loadImageWithFallback(android.widget.ImageView iv, TextView overlayView, Context ctx, GameEntry entry, java.util.List<String> urls, String requestKey) {
+        private static Bitmap toHardware(Bitmap bitmap) {
             try {
-                sExec.execute(() -> {
-                    try {
-                        android.graphics.Bitmap bmp = null;
-                        String hitUrl = null;
-                        byte[] downloadedBytes = null;
-                        String downloadExtension = null;
-                        for (String ustr : urls) {
-                            if (ustr == null || ustr.isEmpty() || ustr.contains("${")) continue;
-                            Object tag = iv.getTag(R.id.tag_request_key);
-                            if (!(requestKey.equals(tag))) { break; }
-                            if (sNegativeCache.contains(ustr)) continue;
-                            android.graphics.Bitmap cached = sCoverCache.get(ustr);
-                            if (cached != null) { bmp = cached; hitUrl = ustr; break; }
-                            try {
-                                java.net.HttpURLConnection c = (java.net.HttpURLConnection) new java.net.URL(ustr).openConnection();
-                                c.setConnectTimeout(4000); c.setReadTimeout(6000);
-                                c.setInstanceFollowRedirects(true);
-                                c.setRequestMethod("GET");
-                                int code = c.getResponseCode();
-                                if (code == 200) {
-                                    try (java.io.InputStream is = c.getInputStream();
-                                         java.io.ByteArrayOutputStream baos = new java.io.ByteArrayOutputStream()) {
-                                        byte[] buffer = new byte[8192];
-                                        int read;
-                                        while ((read = is.read(buffer)) != -1) {
-                                            baos.write(buffer, 0, read);
-                                        }
-                                        byte[] data = baos.toByteArray();
-                                        if (data.length > 0) {
-                                            android.graphics.Bitmap candidate = android.graphics.BitmapFactory.decodeByteArray(data, 0, data.length);
-                                            if (candidate != null) {
-                                                bmp = candidate;
-                                                downloadedBytes = data;
-                                                downloadExtension = guessImageExtension(ustr, c.getContentType());
-                                                hitUrl = ustr;
-                                                break;
-                                            }
-                                        }
-                                    }
-                                } else if (code == 404) {
-                                    sNegativeCache.add(ustr);
-                                    continue; 
-                                } else {
-                                    try { DebugLog.d("Covers", "HTTP " + code + " for " + ustr); } catch (Throwable ignored) {}
-                                }
-                            } catch (Exception ex) {
-                                try { DebugLog.d("Covers", "Error loading cover: " + ex.getMessage()); } catch (Throwable ignored) {}
-                            }
-                        }
-                        if (downloadedBytes != null && downloadedBytes.length > 0 && entry != null && ctx != null) {
-                            try { storeCoverBytes(ctx, entry, downloadedBytes, downloadExtension); } catch (Throwable ignored) {}
-                        }
-                        final android.graphics.Bitmap fb = bmp;
-                        final String fUrl = hitUrl;
-                        iv.post(() -> {
-                            Object tagNow = iv.getTag(R.id.tag_request_key);
-                            if (requestKey.equals(tagNow) && fb != null) {
-                                iv.setImageBitmap(fb);
-                                if (fUrl != null) sCoverCache.put(fUrl, fb);
-                                if (overlayView != null) overlayView.setVisibility(View.GONE);
-                            }
-                        });
-                    } catch (Throwable ignored) {}
-                });
+                Bitmap hardware = bitmap.copy(Bitmap.Config.HARDWARE, false);
+                if (hardware != null) {
+                    bitmap.recycle();
+                    return hardware;
+                }
             } catch (Throwable ignored) {}
+            return bitmap;
         }
 
-        private File findCachedCoverFile(Context ctx, GameEntry entry) {
-            if (ctx == null || entry == null || entry.uri == null) {
+        @Nullable
+        private static File thumbnailFile(Context ctx, String sourceId, int width, int height) {
+            File covers = MainActivity.getCoversCacheDir(ctx);
+            if (covers == null) {
                 return null;
             }
-            String key = coverKey(entry);
-            if (TextUtils.isEmpty(key)) {
+            File dir = new File(covers, THUMB_DIR);
+            if (!dir.isDirectory() && !dir.mkdirs()) {
                 return null;
             }
-            File cached = sLocalCoverFiles.get(key);
-            if (cached != null && cached.exists()) {
-                return cached;
-            }
-            if (sLocalCoverMissing.contains(key)) {
+            try {
+                MessageDigest md = MessageDigest.getInstance("MD5");
+                byte[] digest = md.digest(sourceId.getBytes(StandardCharsets.UTF_8));
+                StringBuilder sb = new StringBuilder(digest.length * 2 + 16);
+                for (byte b : digest) {
+                    sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+                }
+                sb.append('_').append(width).append('x').append(height).append(".webp");
+                return new File(dir, sb.toString());
+            } catch (Exception ignored) {
                 return null;
             }
-            File cacheDir = MainActivity.getCoversCacheDir(ctx);
-            if (cacheDir == null) {
-                sLocalCoverMissing.add(key);
-                return null;
+        }
+
+        private static void writeThumbnail(Bitmap bitmap, File thumb) {
+            File temp = new File(thumb.getParentFile(), thumb.getName() + ".tmp");
+            Bitmap.CompressFormat format = Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                    ? Bitmap.CompressFormat.WEBP_LOSSY : Bitmap.CompressFormat.WEBP;
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                if (!bitmap.compress(format, THUMB_QUALITY, out)) {
+                    temp.delete();
+                    return;
+                }
+            } catch (IOException ignored) {
+                temp.delete();
+                return;
             }
-            String baseName = computeCoverBaseName(entry);
-            File coverFile = MainActivity.findExistingCoverFile(cacheDir, baseName);
-            if (coverFile != null && coverFile.isFile() && coverFile.length() > 0) {
-                sLocalCoverFiles.put(key, coverFile);
-                sLocalCoverMissing.remove(key);
-                return coverFile;
+            if (!temp.renameTo(thumb)) {
+                temp.delete();
+                return;
+            }
+            long written = sThumbBytesSinceTrim.addAndGet(thumb.length());
+            if (written >= THUMB_TRIM_INTERVAL_BYTES && sThumbBytesSinceTrim.compareAndSet(written, 0)) {
+                trimThumbnails(thumb.getParentFile());
             }
-            sLocalCoverMissing.add(key);
-            return null;
         }
 
-        private static void storeCoverBytes(Context ctx, GameEntry entry, byte[] data, String extension) {
-            if (ctx == null || entry == null || data == null || data.length == 0) {
+        /** Drops the least recently used thumbnails once the tier grows past its budget. */
+        private static void trimThumbnails(@Nullable File dir) {
+            File[] files = dir != null ? dir.listFiles() : null;
+            if (files == null) {
                 return;
             }
-            File cacheDir = MainActivity.getCoversCacheDir(ctx);
-            if (cacheDir == null) {
+            long total = 0;
+            for (File f : files) total += f.length();
+            if (total <= MAX_THUMB_BYTES) {
                 return;
             }
-            String baseName = computeCoverBaseName(entry);
-            if (TextUtils.isEmpty(baseName)) {
-                return;
+            Arrays.sort(files, (x, y) -> Long.compare(x.lastModified(), y.lastModified()));
+            for (File f : files) {
+                if (total <= MAX_THUMB_BYTES * 3 / 4) break;
+                long len = f.length();
+                if (f.delete()) total -= len;
+            }
+        }
+    }
+
+    /**
+     * Cover URLs that answered 404, kept in {@code armsx2_library/cover_misses.txt} so the grid and
+     * the prefetcher stop asking for them across launches. Entries expire after a week in case the
+     * cover source adds them later.
+     */
+    static final class CoverMisses {
+        private static final String FILE_NAME = "cover_misses.txt";
+        private static final long TTL_MS = 7L * 24 * 60 * 60 * 1000;
+        private static CoverMisses sInstance;
+
+        private final File file;
+        private final java.util.concurrent.ConcurrentHashMap<String, Long> misses = new java.util.concurrent.ConcurrentHashMap<>();
+
+        private CoverMisses(File file) {
+            this.file = file;
+        }
+
+        static synchronized CoverMisses get(Context ctx) {
+            File file = new File(getLibraryCacheDir(ctx), FILE_NAME);
+            if (sInstance == null || !sInstance.file.equals(file)) {
+                CoverMisses loaded = new CoverMisses(file);
+                loaded.load();
+                sInstance = loaded;
             }
-            String ext = extension;
-            if (TextUtils.isEmpty(ext)) {
-                ext = ".jpg";
+            return sInstance;
+        }
+
+        boolean contains(String url) {
+            Long at = misses.get(url);
+            if (at == null) {
+                return false;
             }
-            if (!ext.startsWith(".")) {
-                ext = "." + ext;
+            if (System.currentTimeMillis() - at > TTL_MS) {
+                misses.remove(url, at);
+                return false;
             }
-            File target = new File(cacheDir, baseName + ext);
-            File parent = target.getParentFile();
-            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            return true;
+        }
+
+        void add(String url) {
+            long now = System.currentTimeMillis();
+            if (misses.put(url, now) == null) {
+                append(url, now);
+            }
+        }
+
+        private synchronized void append(String url, long at) {
+            try (java.io.Writer out = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8)) {
+                out.write(at + "\t" + url + "\n");
+            } catch (IOException ignored) {}
+        }
+
+        private synchronized void load() {
+            if (!file.isFile()) {
                 return;
             }
-            File temp = new File(cacheDir, baseName + "_tmp" + ext);
-            try (FileOutputStream fos = new FileOutputStream(temp)) {
-                fos.write(data);
-                fos.flush();
-            } catch (IOException ignored) {
-                temp.delete();
+            long now = System.currentTimeMillis();
+            int dropped = 0;
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    int tab = line.indexOf('\t');
+                    long at = -1;
+                    if (tab > 0) {
+                        try { at = Long.parseLong(line.substring(0, tab)); } catch (NumberFormatException ignored) {}
+                    }
+                    if (at < 0 || now - at > TTL_MS || misses.put(line.substring(tab + 1), at) != null) {
+                        dropped++;
+                    }
+                }
+            } catch (IOException e) {
                 return;
             }
-            if (!temp.renameTo(target)) {
+            if (dropped > 0) {
+                rewrite();
+            }
+        }
+
+        private void rewrite() {
+            File temp = new File(file.getPath() + ".tmp");
+            try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8))) {
+                for (Map.Entry<String, Long> e : misses.entrySet()) {
+                    out.write(e.getValue() + "\t" + e.getKey() + "\n");
+                }
+            } catch (IOException e) {
                 temp.delete();
                 return;
             }
-            GamesAdapter.registerCachedCover(entry, target);
-            try { DebugLog.d("Covers", "Stored cover cache file: " + target.getAbsolutePath()); } catch (Throwable ignored) {}
+            if (!temp.renameTo(file)) temp.delete();
         }
+    }
 
-        private static String coverKey(GameEntry entry) {
-            if (entry == null) {
-                return null;
+    /**
+     * Downloads covers for a whole library. Games are spread over a bounded worker pool while each
+     * host sees at most {@link Options#perHost} requests at once, and every response is read to
+     * the end so its connection goes back to the keep-alive pool for the next game. Metadata is
+     * resolved on the calling thread as games are handed to the pool, so at most one image is
+     * hashed at a time while the workers download. HTTP goes through a {@link Fetcher}, so the
+     * engine can be pointed at a local stand-in server.
+     */
+    static final class CoverPrefetcher {
+        interface Fetcher {
+            Response fetch(String url) throws IOException;
+        }
+
+        interface MetadataResolver {
+            void resolve(GameEntry entry);
+        }
+
+        interface Listener {
+            void onCoverStored(GameEntry entry, File file);
+        }
+
+        static final class Response {
+            final int code;
+            final byte[] body;
+            @Nullable final String contentType;
+
+            Response(int code, byte[] body, @Nullable String contentType) {
+                this.code = code;
+                this.body = body;
+                this.contentType = contentType;
             }
-            if (entry.uri != null) {
-                return entry.uri.toString();
+        }
+
+        static final class Options {
+            final int workers;
+            final int perHost;
+
+            Options(int workers, int perHost) {
+                this.workers = Math.max(1, workers);
+                this.perHost = Math.max(1, perHost);
             }
-            String fallback = entry.title;
-            if (TextUtils.isEmpty(fallback)) {
-                fallback = entry.fileTitleNoExt();
+
+            static Options defaults() {
+                return new Options(4, 2);
             }
-            return fallback;
         }
 
+        static final Fetcher HTTP = url -> {
+            HttpURLConnection c = (HttpURLConnection) new URL(url).openConnection();
+            try {
+                c.setConnectTimeout(4000);
+                c.setReadTimeout(6000);
+                c.setInstanceFollowRedirects(true);
+                c.setRequestMethod("GET");
+                int code = c.getResponseCode();
+                InputStream in = code < 400 ? c.getInputStream() : c.getErrorStream();
+                byte[] body = new byte[0];
+                if (in != null) {
+                    try (InputStream is = in) {
+                        body = readAll(is);
+                    }
+                }
+                // No disconnect(): a fully read response hands its socket back to the platform's
+                // keep-alive pool for the next request to the same host.
+                return new Response(code, body, c.getContentType());
+            } catch (IOException e) {
+                c.disconnect();
+                throw e;
+            }
+        };
+
+        private final File coversDir;
+        private final CoverMisses misses;
+        private final Fetcher fetcher;
+        private final Options options;
+        private final java.util.concurrent.ConcurrentHashMap<String, java.util.concurrent.Semaphore> hostSlots = new java.util.concurrent.ConcurrentHashMap<>();
+        private final Set<String> attempted = java.util.concurrent.ConcurrentHashMap.newKeySet();
+        private final Set<String> claimed = java.util.concurrent.ConcurrentHashMap.newKeySet();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+
+        CoverPrefetcher(File coversDir, CoverMisses misses, Fetcher fetcher, Options options) {
+            this.coversDir = coversDir;
+            this.misses = misses;
+            this.fetcher = fetcher;
+            this.options = options;
+        }
+
+        void cancel() {
+            cancelled.set(true);
+        }
+
+        /** Fetches missing covers for {@code entries} and returns how many were stored. Blocks. */
+        int run(List<GameEntry> entries, String template, @Nullable MetadataResolver resolver,
+                @Nullable Listener listener) throws InterruptedException {
+            Set<String> existing = listCoverNames(coversDir);
+            AtomicInteger stored = new AtomicInteger();
+            AtomicInteger threadIds = new AtomicInteger();
+            java.util.concurrent.ThreadPoolExecutor pool = new java.util.concurrent.ThreadPoolExecutor(
+                    options.workers, options.workers, 0L, java.util.concurrent.TimeUnit.MILLISECONDS,
+                    new java.util.concurrent.ArrayBlockingQueue<>(options.workers * 4),
+                    r -> new Thread(r, "CoverFetch-" + threadIds.incrementAndGet()),
+                    new java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy());
+            try {
+                for (GameEntry entry : entries) {
+                    if (cancelled.get()) break;
+                    if (entry == null) continue;
+                    // A Redump lookup can hash the whole image; doing it here keeps the disk
+                    // reads sequential instead of one per worker.
+                    if (resolver != null) {
+                        try {
+                            resolver.resolve(entry);
+                        } catch (Throwable t) {
+                            try { DebugLog.d("Covers", "Metadata lookup failed for " + entry.title + ": " + t.getMessage()); } catch (Throwable ignored) {}
+                        }
+                    }
+                    pool.execute(() -> {
+                        try {
+                            if (!cancelled.get() && fetchEntry(entry, template, listener, existing)) {
+                                stored.incrementAndGet();
+                            }
+                        } catch (Throwable t) {
+                            try { DebugLog.d("Covers", "Prefetch failed for " + entry.title + ": " + t.getMessage()); } catch (Throwable ignored) {}
+                        }
+                    });
+                }
+            } finally {
+                pool.shutdown();
+            }
+            pool.awaitTermination(Long.MAX_VALUE, java.util.concurrent.TimeUnit.MILLISECONDS);
+            return stored.get();
+        }
+
+        private boolean fetchEntry(GameEntry entry, String template, @Nullable Listener listener,
+                                   Set<String> existing) throws InterruptedException {
+            String baseName = computeCoverBaseName(entry);
+            if (TextUtils.isEmpty(baseName)) {
+                return false;
+            }
+            String lower = baseName.toLowerCase(Locale.US);
+            if (existing.contains(lower) || !claimed.add(lower)) {
+                return false;
+            }
+            for (String url : buildCoverCandidateUrls(entry, template)) {
+                if (cancelled.get()) {
+                    return false;
+                }
+                if (TextUtils.isEmpty(url) || url.contains("${") || !attempted.add(url) || misses.contains(url)) {
+                    continue;
+                }
+                Response response;
+                try {
+                    response = fetchLimited(url);
+                } catch (IOException e) {
+                    try { DebugLog.d("Covers", "Error fetching " + url + ": " + e.getMessage()); } catch (Throwable ignored) {}
+                    continue;
+                }
+                if (response.code == HttpURLConnection.HTTP_OK && response.body.length > 0) {
+                    File file = writeCoverFile(coversDir, baseName, response.body, guessImageExtension(url, response.contentType));
+                    if (file != null) {
+                        if (listener != null) listener.onCoverStored(entry, file);
+                        try { DebugLog.d("Covers", "Cached cover for " + baseName + " from " + url); } catch (Throwable ignored) {}
+                        return true;
+                    }
+                } else if (response.code == HttpURLConnection.HTTP_NOT_FOUND) {
+                    misses.add(url);
+                }
+            }
+            return false;
+        }
+
+        private Response fetchLimited(String url) throws IOException, InterruptedException {
+            String host = Uri.parse(url).getHost();
+            java.util.concurrent.Semaphore slots = hostSlots.computeIfAbsent(host != null ? host : "",
+                    h -> new java.util.concurrent.Semaphore(options.perHost));
+            slots.acquire();
+            try {
+                return fetcher.fetch(url);
+            } finally {
+                slots.release();
+            }
+        }
+
+        /** Lower-case names that {@link #findExistingCoverFile} would match, from one directory listing. */
+        private static Set<String> listCoverNames(File dir) {
+            Set<String> names = new HashSet<>();
+            File[] files = dir.listFiles();
+            if (files == null) {
+                return names;
+            }
+            for (File child : files) {
+                if (child == null || !child.isFile() || child.length() == 0) continue;
+                String lower = child.getName().toLowerCase(Locale.US);
+                names.add(lower);
+                for (int dot = lower.indexOf('.'); dot > 0; dot = lower.indexOf('.', dot + 1)) {
+                    names.add(lower.substring(0, dot));
+                }
+            }
+            return names;
+        }
+
+        private static byte[] readAll(InputStream in) throws IOException {
+            java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
     }
 
 }
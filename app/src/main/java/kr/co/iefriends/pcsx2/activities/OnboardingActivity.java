@@ -322,9 +322,8 @@ public class OnboardingActivity extends AppCompatActivity {
         NativeApp.pause();
         NativeApp.shutdown();
         new Thread(() -> {
-            boolean success = DataDirectoryManager.migrateData(currentDir, targetDir);
+            boolean success = DataDirectoryManager.moveDataRoot(getApplicationContext(), currentDir, targetDir, uriString, this::updateDataDirProgress);
             if (success) {
-                DataDirectoryManager.storeCustomDataRoot(getApplicationContext(), targetDir.getAbsolutePath(), uriString);
                 NativeApp.setDataRootOverride(targetDir.getAbsolutePath());
                 NativeApp.reinitializeDataRoot(targetDir.getAbsolutePath());
                 LogcatRecorder.handleDataRootChanged();
@@ -360,6 +359,15 @@ public class OnboardingActivity extends AppCompatActivity {
         dataDirProgressDialog.show();
     }
 
+    private void updateDataDirProgress(long bytesDone, long bytesTotal) {
+        final int percent = (int) (bytesDone * 100 / Math.max(1L, bytesTotal));
+        runOnUiThread(() -> {
+            if (dataDirProgressDialog != null) {
+                dataDirProgressDialog.setMessage(getString(R.string.onboarding_storage_moving_message) + " " + percent + "%");
+            }
+        });
+    }
+
     private void dismissDataDirProgressDialog() {
         if (dataDirProgressDialog != null) {
             dataDirProgressDialog.dismiss();
@@ -2085,9 +2085,8 @@ public class SettingsActivity extends AppCompatActivity {
 		NativeApp.pause();
 		NativeApp.shutdown();
 		new Thread(() -> {
-			boolean success = DataDirectoryManager.migrateData(currentDir, targetDir);
+			boolean success = DataDirectoryManager.moveDataRoot(getApplicationContext(), currentDir, targetDir, uriString, this::updateDataDirProgress);
 			if (success) {
-				DataDirectoryManager.storeCustomDataRoot(getApplicationContext(), targetDir.getAbsolutePath(), uriString);
 				NativeApp.setDataRootOverride(targetDir.getAbsolutePath());
 				NativeApp.reinitializeDataRoot(targetDir.getAbsolutePath());
 				DataDirectoryManager.copyAssetAll(getApplicationContext(), "resources");
@@ -2122,6 +2121,15 @@ public class SettingsActivity extends AppCompatActivity {
 		});
 	}
 
+	private void updateDataDirProgress(long bytesDone, long bytesTotal) {
+		final int percent = (int) (bytesDone * 100 / Math.max(1L, bytesTotal));
+		runOnUiThread(() -> {
+			if (dataDirProgressDialog != null) {
+				dataDirProgressDialog.setMessage("Moving emulator data to the selected folder… " + percent + "%");
+			}
+		});
+	}
+
 	private void dismissDataDirProgressDialog() {
 		runOnUiThread(() -> {
 			if (dataDirProgressDialog != null) {
@@ -50,7 +50,7 @@ public class HIDDeviceManager {
     }
 
     private Context mContext;
-    private HashMap<Integer, HIDDevice> mDevicesById = new HashMap<Integer, HIDDevice>();
+    private final HIDDeviceTable mDevicesById = new HIDDeviceTable();
     private HashMap<BluetoothDevice, HIDDeviceBLESteamController> mBluetoothDevices = new HashMap<BluetoothDevice, HIDDeviceBLESteamController>();
     private int mNextDeviceId = 0;
     private SharedPreferences mSharedPreferences = null;
@@ -311,22 +311,19 @@ public class HIDDeviceManager {
     }
 
     private void handleUsbDeviceDetached(UsbDevice usbDevice) {
-        List<Integer> devices = new ArrayList<Integer>();
-        for (HIDDevice device : mDevicesById.values()) {
+        // devices() is a snapshot, so removing while iterating is fine.
+        for (HIDDevice device : mDevicesById.devices()) {
             if (usbDevice.equals(device.getDevice())) {
-                devices.add(device.getId());
+                int id = device.getId();
+                mDevicesById.remove(id);
+                device.shutdown();
+                HIDDeviceDisconnected(id);
             }
         }
-        for (int id : devices) {
-            HIDDevice device = mDevicesById.get(id);
-            mDevicesById.remove(id);
-            device.shutdown();
-            HIDDeviceDisconnected(id);
-        }
     }
 
     private void handleUsbDevicePermission(UsbDevice usbDevice, boolean permission_granted) {
-        for (HIDDevice device : mDevicesById.values()) {
+        for (HIDDevice device : mDevicesById.devices()) {
             if (usbDevice.equals(device.getDevice())) {
                 boolean opened = false;
                 if (permission_granted) {
@@ -530,7 +527,7 @@ public class HIDDeviceManager {
         shutdownUSB();
         shutdownBluetooth();
         synchronized (this) {
-            for (HIDDevice device : mDevicesById.values()) {
+            for (HIDDevice device : mDevicesById.devices()) {
                 device.shutdown();
             }
             mDevicesById.clear();
@@ -541,7 +538,7 @@ public class HIDDeviceManager {
 
     public void setFrozen(boolean frozen) {
         synchronized (this) {
-            for (HIDDevice device : mDevicesById.values()) {
+            for (HIDDevice device : mDevicesById.devices()) {
                 device.setFrozen(frozen);
             }
         }
@@ -551,15 +548,13 @@ public class HIDDeviceManager {
     //////////////////////////////////////////////////////////////////////////////////////////////////////
     //////////////////////////////////////////////////////////////////////////////////////////////////////
 
+    // Called for every report; reads the table without taking the manager lock.
     private HIDDevice getDevice(int id) {
-        synchronized (this) {
-            HIDDevice result = mDevicesById.get(id);
-            if (result == null) {
-                Log.v(TAG, "No device for id: " + id);
-                Log.v(TAG, "Available devices: " + mDevicesById.keySet());
-            }
-            return result;
+        HIDDevice result = mDevicesById.get(id);
+        if (result == null) {
+            Log.v(TAG, "No device for id: " + id);
         }
+        return result;
     }
 
     //////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -684,5 +679,7 @@ public class HIDDeviceManager {
     native void HIDDeviceDisconnected(int deviceID);
 
     native void HIDDeviceInputReport(int deviceID, byte[] report);
+    // Reads length bytes in place from a direct buffer; see HIDDeviceUSB.AsyncInputThread.
+    native void HIDDeviceInputReportDirect(int deviceID, java.nio.ByteBuffer report, int length);
     native void HIDDeviceReportResponse(int deviceID, byte[] report);
 }
@@ -0,0 +1,86 @@
+package kr.co.iefriends.pcsx2.hid;
+
+import java.util.Arrays;
+
+/**
+ * Devices by id, readable without locking.
+ *
+ * <p>The table is an immutable pair of sorted arrays that writers replace as a whole, so
+ * {@link #get} is a binary search over whatever snapshot it reads and never blocks the report
+ * path. Devices are only added and removed on connect and disconnect, which makes the copy cheap.
+ */
+class HIDDeviceTable
+{
+    private static final class Snapshot {
+        final int[] ids;
+        final HIDDevice[] devices;
+
+        Snapshot(int[] ids, HIDDevice[] devices) {
+            this.ids = ids;
+            this.devices = devices;
+        }
+    }
+
+    private static final Snapshot EMPTY = new Snapshot(new int[0], new HIDDevice[0]);
+
+    private volatile Snapshot mSnapshot = EMPTY;
+
+    HIDDevice get(int id) {
+        Snapshot snapshot = mSnapshot;
+        int index = Arrays.binarySearch(snapshot.ids, id);
+        return index >= 0 ? snapshot.devices[index] : null;
+    }
+
+    /** Devices at the time of the call, in id order. The array must not be modified. */
+    HIDDevice[] devices() {
+        return mSnapshot.devices;
+    }
+
+    synchronized void put(int id, HIDDevice device) {
+        Snapshot snapshot = mSnapshot;
+        int index = Arrays.binarySearch(snapshot.ids, id);
+        if (index >= 0) {
+            HIDDevice[] devices = snapshot.devices.clone();
+            devices[index] = device;
+            mSnapshot = new Snapshot(snapshot.ids, devices);
+            return;
+        }
+        int insert = -index - 1;
+        int count = snapshot.ids.length;
+        int[] ids = new int[count + 1];
+        HIDDevice[] devices = new HIDDevice[count + 1];
+        System.arraycopy(snapshot.ids, 0, ids, 0, insert);
+        System.arraycopy(snapshot.devices, 0, devices, 0, insert);
+        ids[insert] = id;
+        devices[insert] = device;
+        System.arraycopy(snapshot.ids, insert, ids, insert + 1, count - insert);
+        System.arraycopy(snapshot.devices, insert, devices, insert + 1, count - insert);
+        mSnapshot = new Snapshot(ids, devices);
+    }
+
+    synchronized HIDDevice remove(int id) {
+        Snapshot snapshot = mSnapshot;
+        int index = Arrays.binarySearch(snapshot.ids, id);
+        if (index < 0) {
+            return null;
+        }
+        HIDDevice removed = snapshot.devices[index];
+        int count = snapshot.ids.length - 1;
+        if (count == 0) {
+            mSnapshot = EMPTY;
+            return removed;
+        }
+        int[] ids = new int[count];
+        HIDDevice[] devices = new HIDDevice[count];
+        System.arraycopy(snapshot.ids, 0, ids, 0, index);
+        System.arraycopy(snapshot.devices, 0, devices, 0, index);
+        System.arraycopy(snapshot.ids, index + 1, ids, index, count - index);
+        System.arraycopy(snapshot.devices, index + 1, devices, index, count - index);
+        mSnapshot = new Snapshot(ids, devices);
+        return removed;
+    }
+
+    synchronized void clear() {
+        mSnapshot = EMPTY;
+    }
+}
@@ -5,15 +5,27 @@ import android.hardware.usb.UsbDevice;
 import android.hardware.usb.UsbDeviceConnection;
 import android.hardware.usb.UsbEndpoint;
 import android.hardware.usb.UsbInterface;
+import android.hardware.usb.UsbRequest;
 import android.os.Build;
 import android.util.Log;
 
+import androidx.annotation.RequiresApi;
+
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
 
 class HIDDeviceUSB implements HIDDevice {
 
     private static final String TAG = "hidapi";
 
+    // Reads kept queued on the input endpoint in asynchronous mode, each with its own buffer.
+    private static final int INPUT_REQUEST_COUNT = 4;
+    // Upper bound on how long close() waits for the input thread to notice.
+    private static final long INPUT_WAIT_MS = 100;
+    private static volatile boolean sAsyncInput = true;
+
     protected HIDDeviceManager mManager;
     protected UsbDevice mDevice;
     protected int mInterfaceIndex;
@@ -24,7 +36,8 @@ class HIDDeviceUSB implements HIDDevice {
     protected UsbEndpoint mOutputEndpoint;
     protected InputThread mInputThread;
     protected boolean mRunning;
-    protected boolean mFrozen;
+    protected volatile boolean mFrozen;
+    protected HIDInputSink mInputSink;
 
     public HIDDeviceUSB(HIDDeviceManager manager, UsbDevice usbDevice, int interface_index) {
         mManager = manager;
@@ -32,9 +45,23 @@ class HIDDeviceUSB implements HIDDevice {
         mInterfaceIndex = interface_index;
         mInterface = mDevice.getInterface(mInterfaceIndex).getId();
         mDeviceId = manager.getDeviceIDForIdentifier(getIdentifier());
+        mInputSink = manager::HIDDeviceInputReportDirect;
         mRunning = false;
     }
 
+    /**
+     * Chooses between queued {@link UsbRequest} reads (Android 8.0+) and the blocking
+     * {@code bulkTransfer} loop for devices opened from now on.
+     */
+    static void setAsyncInputEnabled(boolean enabled) {
+        sAsyncInput = enabled;
+    }
+
+    /** Where asynchronous input reports go; the manager's native entry point by default. */
+    void setInputSink(HIDInputSink sink) {
+        mInputSink = sink;
+    }
+
     String getIdentifier() {
         return String.format("%s/%x/%x/%d", mDevice.getDeviceName(), mDevice.getVendorId(), mDevice.getProductId(), mInterfaceIndex);
     }
@@ -151,7 +178,11 @@ class HIDDeviceUSB implements HIDDevice {
 
         // Start listening for input
         mRunning = true;
-        mInputThread = new InputThread();
+        if (sAsyncInput && Build.VERSION.SDK_INT >= 26 /* Android 8.0 (O) */) {
+            mInputThread = new AsyncInputThread();
+        } else {
+            mInputThread = new InputThread();
+        }
         mInputThread.start();
 
         return true;
@@ -320,4 +351,130 @@ class HIDDeviceUSB implements HIDDevice {
             }
         }
     }
+
+    /**
+     * Keeps {@link #INPUT_REQUEST_COUNT} reads queued so the controller never waits for the next
+     * transfer to be submitted. Each request owns a direct buffer allocated once; completed reports
+     * are passed to the sink in place and the buffer is queued again, so the steady state
+     * allocates nothing.
+     */
+    @RequiresApi(26)
+    protected class AsyncInputThread extends InputThread {
+        @Override
+        public void run() {
+            HIDInputQueue queue = new UsbInputQueue(mConnection, mInputEndpoint);
+            try {
+                if (queue.open(INPUT_REQUEST_COUNT, mInputEndpoint.getMaxPacketSize()) == 0) {
+                    Log.w(TAG, "Unable to queue input requests on USB device " + getDeviceName() + ", using bulk transfers");
+                    super.run();
+                    return;
+                }
+                pumpInput(queue, mDeviceId, mInputSink, () -> mRunning, () -> mFrozen);
+            } finally {
+                queue.close();
+            }
+        }
+    }
+
+    /**
+     * Hands each completed read in {@code queue} to {@code sink} and queues it again, until
+     * {@code running} turns false or the queue fails. Reports that arrive while {@code frozen}
+     * are dropped, but their reads are still requeued.
+     */
+    static void pumpInput(HIDInputQueue queue, int deviceId, HIDInputSink sink,
+                          BooleanSupplier running, BooleanSupplier frozen) {
+        while (running.getAsBoolean()) {
+            int index;
+            try {
+                index = queue.await(INPUT_WAIT_MS);
+            } catch (TimeoutException e) {
+                continue;
+            } catch (Exception e) {
+                Log.v(TAG, "Exception waiting for input request: " + e);
+                break;
+            }
+            if (index < 0) {
+                // I/O error, e.g. the device was unplugged
+                break;
+            }
+            ByteBuffer buffer = queue.buffer(index);
+            // The position is the number of bytes transferred.
+            int length = buffer.position();
+            if (length > 0 && !frozen.getAsBoolean()) {
+                sink.onInputReport(deviceId, buffer, length);
+            }
+            buffer.clear();
+            if (running.getAsBoolean() && !queue.requeue(index)) {
+                Log.w(TAG, "Unable to requeue input request on device " + deviceId);
+                break;
+            }
+        }
+    }
+
+    /** {@link HIDInputQueue} over {@link UsbRequest}s on one connection. */
+    @RequiresApi(26)
+    static final class UsbInputQueue implements HIDInputQueue {
+        private final UsbDeviceConnection mConnection;
+        private final UsbEndpoint mEndpoint;
+        private UsbRequest[] mRequests = new UsbRequest[0];
+        private ByteBuffer[] mBuffers = new ByteBuffer[0];
+
+        UsbInputQueue(UsbDeviceConnection connection, UsbEndpoint endpoint) {
+            mConnection = connection;
+            mEndpoint = endpoint;
+        }
+
+        @Override
+        public int open(int count, int packetSize) {
+            mRequests = new UsbRequest[count];
+            mBuffers = new ByteBuffer[count];
+            int queued = 0;
+            for (int i = 0; i < count; i++) {
+                UsbRequest request = new UsbRequest();
+                if (!request.initialize(mConnection, mEndpoint)) {
+                    request.close();
+                    break;
+                }
+                mRequests[i] = request;
+                mBuffers[i] = ByteBuffer.allocateDirect(packetSize);
+                // Boxed once here; requestWait hands it back for every completion.
+                request.setClientData(i);
+                if (!request.queue(mBuffers[i])) {
+                    break;
+                }
+                ++queued;
+            }
+            return queued;
+        }
+
+        @Override
+        public int await(long timeoutMs) throws TimeoutException {
+            UsbRequest request = mConnection.requestWait(timeoutMs);
+            if (request == null) {
+                return -1;
+            }
+            Object index = request.getClientData();
+            return index instanceof Integer ? (Integer) index : -1;
+        }
+
+        @Override
+        public ByteBuffer buffer(int index) {
+            return mBuffers[index];
+        }
+
+        @Override
+        public boolean requeue(int index) {
+            return mRequests[index].queue(mBuffers[index]);
+        }
+
+        @Override
+        public void close() {
+            for (UsbRequest request : mRequests) {
+                if (request != null) {
+                    request.cancel();
+                    request.close();
+                }
+            }
+        }
+    }
 }
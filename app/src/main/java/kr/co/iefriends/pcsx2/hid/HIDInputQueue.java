@@ -0,0 +1,28 @@
+package kr.co.iefriends.pcsx2.hid;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Reads kept queued on an input endpoint, each with its own buffer. Requests are addressed by
+ * index so that waiting for one and queueing it again allocates nothing.
+ */
+interface HIDInputQueue
+{
+    /** Creates and queues up to {@code count} reads of {@code packetSize} bytes; returns how many were queued. */
+    public int open(int count, int packetSize);
+
+    /**
+     * Waits for a read to complete and returns its index, or -1 on an I/O error such as the
+     * device being unplugged. The buffer's position is the number of bytes received.
+     */
+    public int await(long timeoutMs) throws TimeoutException;
+
+    public ByteBuffer buffer(int index);
+
+    /** Queues the read at {@code index} again into its (cleared) buffer. */
+    public boolean requeue(int index);
+
+    /** Cancels and releases every read. */
+    public void close();
+}
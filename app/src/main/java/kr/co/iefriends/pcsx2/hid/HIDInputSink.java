@@ -0,0 +1,12 @@
+package kr.co.iefriends.pcsx2.hid;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Receives input reports from a {@link HIDDevice}. The buffer is only valid for the duration of
+ * the call; it is reused for the next report.
+ */
+interface HIDInputSink
+{
+    public void onInputReport(int deviceId, ByteBuffer report, int length);
+}
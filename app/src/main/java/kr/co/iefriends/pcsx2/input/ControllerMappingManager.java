@@ -2,14 +2,13 @@ package kr.co.iefriends.pcsx2.input;
 
 import android.content.Context;
 import android.content.SharedPreferences;
-import android.util.SparseArray;
-import android.util.SparseIntArray;
 import android.view.KeyEvent;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.StringRes;
 
+import java.util.Arrays;
 import java.util.EnumMap;
 import java.util.Map;
 
@@ -22,30 +21,75 @@ public final class ControllerMappingManager {
     private static final String KEY_PREFIX = "action_";
 
     private static SharedPreferences sPrefs;
+    // Guarded by the class lock; every change is followed by publish().
     private static final Map<Action, Integer> sActionToKey = new EnumMap<>(Action.class);
-    private static final SparseIntArray sKeyToPad = new SparseIntArray();
-    private static final SparseArray<Action> sPadCodeToAction = new SparseArray<>();
+    // Read on every key and axis event without locking.
+    private static volatile Snapshot sSnapshot = Snapshot.EMPTY;
 
     private ControllerMappingManager() {
     }
 
+    /**
+     * Immutable, array-indexed copy of the mapping. Input handlers read whichever snapshot is
+     * current, so a remap never blocks them and they never see it half applied.
+     */
+    private static final class Snapshot {
+        private static final int PAD_CODE_LIMIT = 128;
+        static final Snapshot EMPTY = new Snapshot(new int[0], new Action[PAD_CODE_LIMIT], new boolean[PAD_CODE_LIMIT]);
+
+        final int[] keyToPad;
+        final Action[] padToAction;
+        final boolean[] padUnbound;
+
+        private Snapshot(int[] keyToPad, Action[] padToAction, boolean[] padUnbound) {
+            this.keyToPad = keyToPad;
+            this.padToAction = padToAction;
+            this.padUnbound = padUnbound;
+        }
+
+        static Snapshot of(Map<Action, Integer> actionToKey) {
+            int keyLimit = KeyEvent.getMaxKeyCode() + 1;
+            for (Integer key : actionToKey.values()) {
+                if (key != null && key >= keyLimit) keyLimit = key + 1;
+            }
+            int[] keyToPad = new int[keyLimit];
+            Arrays.fill(keyToPad, NO_MAPPING);
+            Action[] padToAction = new Action[PAD_CODE_LIMIT];
+            boolean[] padUnbound = new boolean[PAD_CODE_LIMIT];
+            for (Action action : Action.values()) {
+                int padCode = action.getPadCode();
+                padToAction[padCode] = action;
+                Integer key = actionToKey.get(action);
+                if (key == null) continue;
+                if (key == NO_MAPPING) {
+                    padUnbound[padCode] = true;
+                } else if (key >= 0) {
+                    keyToPad[key] = padCode;
+                }
+            }
+            return new Snapshot(keyToPad, padToAction, padUnbound);
+        }
+    }
+
+    private static void publish() {
+        sSnapshot = Snapshot.of(sActionToKey);
+    }
+
     public static synchronized void init(@NonNull Context context) {
         if (sPrefs == null) {
             sPrefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
         }
         for (Action action : Action.values()) {
-            sPadCodeToAction.put(action.getPadCode(), action);
             int defaultKey = action.getDefaultKeyCode();
             int stored = sPrefs.getInt(KEY_PREFIX + action.name(), defaultKey);
             sActionToKey.put(action, stored);
-            if (stored != NO_MAPPING) {
-                sKeyToPad.put(stored, action.getPadCode());
-            }
         }
+        publish();
     }
 
-    public static synchronized int getPadCodeForKey(int keyCode) {
-        return sKeyToPad.get(keyCode, NO_MAPPING);
+    public static int getPadCodeForKey(int keyCode) {
+        int[] keyToPad = sSnapshot.keyToPad;
+        return keyCode >= 0 && keyCode < keyToPad.length ? keyToPad[keyCode] : NO_MAPPING;
     }
 
     public static synchronized int getAssignedKeyCode(@NonNull Action action) {
@@ -66,28 +110,19 @@ public final class ControllerMappingManager {
             Integer currentKey = sActionToKey.get(a);
             if (currentKey != null && currentKey == keyCode) {
                 sActionToKey.put(a, NO_MAPPING);
-                sKeyToPad.delete(keyCode);
                 persist(a, NO_MAPPING);
             }
         }
 
-        Integer previous = sActionToKey.get(action);
-        if (previous != null && previous != NO_MAPPING) {
-            sKeyToPad.delete(previous);
-        }
-
         sActionToKey.put(action, keyCode);
-        sKeyToPad.put(keyCode, action.getPadCode());
         persist(action, keyCode);
+        publish();
     }
 
     public static synchronized void clear(@NonNull Action action) {
-        Integer previous = sActionToKey.get(action);
-        if (previous != null && previous != NO_MAPPING) {
-            sKeyToPad.delete(previous);
-        }
         sActionToKey.put(action, NO_MAPPING);
         persist(action, NO_MAPPING);
+        publish();
     }
 
     public static synchronized void resetToDefaults() {
@@ -95,17 +130,14 @@ public final class ControllerMappingManager {
             return;
         }
         sActionToKey.clear();
-        sKeyToPad.clear();
         SharedPreferences.Editor editor = sPrefs.edit();
         for (Action action : Action.values()) {
             int key = action.getDefaultKeyCode();
             sActionToKey.put(action, key);
-            if (key != NO_MAPPING) {
-                sKeyToPad.put(key, action.getPadCode());
-            }
             editor.putInt(KEY_PREFIX + action.name(), key);
         }
         editor.apply();
+        publish();
     }
 
     private static void persist(@NonNull Action action, int keyCode) {
@@ -133,18 +165,15 @@ public final class ControllerMappingManager {
         return raw.replace('_', ' ');
     }
 
-    public static synchronized boolean isPadCodeBound(int padCode) {
-        Action action = findActionByPadCode(padCode);
-        if (action == null) {
-            return true;
-        }
-        Integer keyCode = sActionToKey.get(action);
-        return keyCode == null || keyCode != NO_MAPPING;
+    public static boolean isPadCodeBound(int padCode) {
+        boolean[] padUnbound = sSnapshot.padUnbound;
+        return padCode < 0 || padCode >= padUnbound.length || !padUnbound[padCode];
     }
 
     @Nullable
-    public static synchronized Action findActionByPadCode(int padCode) {
-        return sPadCodeToAction.get(padCode);
+    public static Action findActionByPadCode(int padCode) {
+        Action[] padToAction = sSnapshot.padToAction;
+        return padCode >= 0 && padCode < padToAction.length ? padToAction[padCode] : null;
     }
 
     public enum Action {
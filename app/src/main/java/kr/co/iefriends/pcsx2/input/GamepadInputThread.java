@@ -0,0 +1,233 @@
+package kr.co.iefriends.pcsx2.input;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
+import android.os.Process;
+import android.view.KeyEvent;
+import android.view.MotionEvent;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+
+import kr.co.iefriends.pcsx2.NativeApp;
+import kr.co.iefriends.pcsx2.utils.SDLControllerManager;
+
+/**
+ * Maps controller key and motion events to pad state on a dedicated high-priority thread.
+ *
+ * <p>Android delivers window input on the UI looper, so the activity still receives the events.
+ * It only copies them here and returns; mapping, SDL forwarding and the {@link PadState}
+ * submission happen on this thread, so a hitch on the UI thread (layout, RecyclerView work,
+ * dialogs) no longer delays pad input to the VM by more than the hand-off itself.
+ *
+ * <p>All fields below except the handler are only touched on the input thread.
+ */
+public final class GamepadInputThread implements Handler.Callback {
+    private static final int MSG_KEY_DOWN = 1;
+    private static final int MSG_KEY_UP = 2;
+    private static final int MSG_MOTION = 3;
+    private static final int MSG_RESET = 4;
+
+    private static final float ANALOG_DEADZONE = 0.08f;
+    private static final float TRIGGER_DEADZONE = 0.04f;
+    private static final float HAT_THRESHOLD = 0.4f;
+    private static final int PAD_CODE_LIMIT = 128;
+
+    private final PadState padState;
+    private final HandlerThread thread;
+    private final Handler handler;
+
+    // Last value sent per pad code from this thread, -1 when unknown.
+    private final int[] analogStates = new int[PAD_CODE_LIMIT];
+    private boolean hatUp, hatDown, hatLeft, hatRight;
+
+    public GamepadInputThread(@NonNull PadState padState) {
+        this.padState = padState;
+        Arrays.fill(analogStates, -1);
+        thread = new HandlerThread("PadInput", Process.THREAD_PRIORITY_URGENT_DISPLAY);
+        thread.start();
+        handler = new Handler(thread.getLooper(), this);
+    }
+
+    public void quit() {
+        thread.quitSafely();
+    }
+
+    /** Queues a gamepad key press or release; {@code event} is copied. */
+    public void postKey(@NonNull KeyEvent event, boolean down) {
+        handler.obtainMessage(down ? MSG_KEY_DOWN : MSG_KEY_UP, new KeyEvent(event)).sendToTarget();
+    }
+
+    /** Queues a joystick motion event; {@code event} is copied and recycled once handled. */
+    public void postMotion(@NonNull MotionEvent event) {
+        handler.obtainMessage(MSG_MOTION, MotionEvent.obtain(event)).sendToTarget();
+    }
+
+    /**
+     * Clears {@link PadState} and native pad state, then forgets hat and analog state. Runs on this
+     * thread so input already queued here can't re-press a key after the reset.
+     */
+    public void reset() {
+        handler.sendEmptyMessage(MSG_RESET);
+    }
+
+    @Override
+    public boolean handleMessage(@NonNull Message msg) {
+        switch (msg.what) {
+            case MSG_KEY_DOWN:
+            case MSG_KEY_UP:
+                handleKey((KeyEvent) msg.obj, msg.what == MSG_KEY_DOWN);
+                return true;
+            case MSG_MOTION: {
+                MotionEvent event = (MotionEvent) msg.obj;
+                try {
+                    handleMotion(event);
+                } finally {
+                    event.recycle();
+                }
+                return true;
+            }
+            case MSG_RESET:
+                padState.clear();
+                try { NativeApp.resetKeyStatus(); } catch (Throwable ignored) {}
+                Arrays.fill(analogStates, -1);
+                hatUp = hatDown = hatLeft = hatRight = false;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void handleKey(KeyEvent event, boolean down) {
+        final long eventTimeNanos = PadState.eventTimeNanos(event);
+        InputLatencyTracker.onInput(InputLatencyTracker.Source.KEY, event.getDeviceId(), eventTimeNanos);
+        final int keyCode = event.getKeyCode();
+        if (down) {
+            SDLControllerManager.onNativePadDown(event.getDeviceId(), keyCode);
+        } else {
+            SDLControllerManager.onNativePadUp(event.getDeviceId(), keyCode);
+        }
+        int mapped = ControllerMappingManager.getPadCodeForKey(keyCode);
+        if (mapped == ControllerMappingManager.NO_MAPPING) {
+            mapped = keyCode;
+        }
+        padState.submit(mapped, 0, down, eventTimeNanos);
+    }
+
+    private void handleMotion(MotionEvent e) {
+        final int historySize = e.getHistorySize();
+        InputLatencyTracker.onInput(InputLatencyTracker.Source.MOTION, e.getDeviceId(),
+                PadState.eventTimeNanos(e, historySize > 0 ? 0 : -1));
+        SDLControllerManager.handleJoystickMotionEvent(e);
+        // Samples that arrived between frames are batched into the history; replay each one with
+        // its own timestamp. Native code holds a button release that follows a press in the same
+        // frame until the next vsync, so a quick hat tap still reaches the VM.
+        final InputDeviceRegistry.Caps caps = InputDeviceRegistry.get(e.getDeviceId());
+        for (int h = 0; h < historySize; h++) {
+            applySample(e, caps, h);
+            padState.flush(PadState.eventTimeNanos(e, h));
+        }
+        applySample(e, caps, -1);
+        padState.flush(PadState.eventTimeNanos(e, -1));
+    }
+
+    /** Queues the pad state of one motion sample; {@code pos} of -1 is the current sample. */
+    private void applySample(MotionEvent e, @Nullable InputDeviceRegistry.Caps caps, int pos) {
+        float lx = getCenteredAxis(e, caps, MotionEvent.AXIS_X, pos);
+        float ly = getCenteredAxis(e, caps, MotionEvent.AXIS_Y, pos);
+        sendAnalog(111, Math.max(0f, lx), ANALOG_DEADZONE);
+        sendAnalog(113, Math.max(0f, -lx), ANALOG_DEADZONE);
+        sendAnalog(112, Math.max(0f, ly), ANALOG_DEADZONE);
+        sendAnalog(110, Math.max(0f, -ly), ANALOG_DEADZONE);
+
+        float rx = getCenteredAxis(e, caps, MotionEvent.AXIS_RX, pos);
+        float ry = getCenteredAxis(e, caps, MotionEvent.AXIS_RY, pos);
+        if (rx == 0f && ry == 0f) {
+            rx = getCenteredAxis(e, caps, MotionEvent.AXIS_Z, pos);
+            ry = getCenteredAxis(e, caps, MotionEvent.AXIS_RZ, pos);
+        }
+        sendAnalog(121, Math.max(0f, rx), ANALOG_DEADZONE);
+        sendAnalog(123, Math.max(0f, -rx), ANALOG_DEADZONE);
+        sendAnalog(122, Math.max(0f, ry), ANALOG_DEADZONE);
+        sendAnalog(120, Math.max(0f, -ry), ANALOG_DEADZONE);
+
+        float ltrig = axisValue(e, MotionEvent.AXIS_LTRIGGER, pos);
+        float rtrig = axisValue(e, MotionEvent.AXIS_RTRIGGER, pos);
+        if (ltrig == 0f) ltrig = axisValue(e, MotionEvent.AXIS_BRAKE, pos);
+        if (rtrig == 0f) rtrig = axisValue(e, MotionEvent.AXIS_GAS, pos);
+        sendAnalog(KeyEvent.KEYCODE_BUTTON_L2, normalizeTrigger(ltrig), TRIGGER_DEADZONE);
+        sendAnalog(KeyEvent.KEYCODE_BUTTON_R2, normalizeTrigger(rtrig), TRIGGER_DEADZONE);
+
+        float hatX = axisValue(e, MotionEvent.AXIS_HAT_X, pos);
+        float hatY = axisValue(e, MotionEvent.AXIS_HAT_Y, pos);
+        boolean nowLeft = hatX < -HAT_THRESHOLD;
+        boolean nowRight = hatX > HAT_THRESHOLD;
+        boolean nowUp = hatY < -HAT_THRESHOLD;
+        boolean nowDown = hatY > HAT_THRESHOLD;
+        setAxisState(hatLeft, nowLeft, KeyEvent.KEYCODE_DPAD_LEFT);  hatLeft = nowLeft;
+        setAxisState(hatRight, nowRight, KeyEvent.KEYCODE_DPAD_RIGHT); hatRight = nowRight;
+        setAxisState(hatUp, nowUp, KeyEvent.KEYCODE_DPAD_UP); hatUp = nowUp;
+        setAxisState(hatDown, nowDown, KeyEvent.KEYCODE_DPAD_DOWN); hatDown = nowDown;
+    }
+
+    private void setAxisState(boolean prev, boolean now, int code) {
+        if (prev == now) return;
+        if (!ControllerMappingManager.isPadCodeBound(code)) {
+            return;
+        }
+        padState.set(code, 0, now);
+    }
+
+    private void sendAnalog(int keyCode, float normalized, float deadzone) {
+        if (Float.isNaN(normalized)) normalized = 0f;
+        int padCode = ControllerMappingManager.getPadCodeForKey(keyCode);
+        if (padCode == ControllerMappingManager.NO_MAPPING) {
+            padCode = keyCode;
+        }
+        if (!ControllerMappingManager.isPadCodeBound(padCode)) {
+            // Release it once when it becomes unbound, not again on every sample.
+            if (padCode >= 0 && padCode < PAD_CODE_LIMIT && analogStates[padCode] == 0) return;
+            remember(padCode, 0);
+            padState.set(padCode, 0, false);
+            return;
+        }
+        float value = Math.min(1f, Math.max(0f, normalized));
+        if (value < deadzone) value = 0f;
+        int scaled = Math.round(value * 255f);
+        if (padCode >= 0 && padCode < PAD_CODE_LIMIT && analogStates[padCode] == scaled) return;
+        remember(padCode, scaled);
+        padState.set(padCode, scaled, scaled > 0);
+    }
+
+    private void remember(int padCode, int value) {
+        if (padCode >= 0 && padCode < PAD_CODE_LIMIT) {
+            analogStates[padCode] = value;
+        }
+    }
+
+    private static float axisValue(MotionEvent e, int axis, int pos) {
+        return pos < 0 ? e.getAxisValue(axis) : e.getHistoricalAxisValue(axis, pos);
+    }
+
+    private static float getCenteredAxis(MotionEvent e, @Nullable InputDeviceRegistry.Caps caps, int axis, int pos) {
+        if (caps != null) {
+            final float flat = caps.getFlat(axis, e.getSource());
+            if (!Float.isNaN(flat)) {
+                float value = axisValue(e, axis, pos);
+                if (Math.abs(value) > flat) return value;
+            }
+        }
+        return 0f;
+    }
+
+    private static float normalizeTrigger(float raw) {
+        if (Float.isNaN(raw)) return 0f;
+        if (raw < 0f) {
+            return Math.min(1f, Math.max(0f, (raw + 1f) * 0.5f));
+        }
+        return Math.min(1f, raw);
+    }
+}
@@ -0,0 +1,212 @@
+package kr.co.iefriends.pcsx2.input;
+
+import android.content.Context;
+import android.hardware.input.InputManager;
+import android.os.Build;
+import android.os.Vibrator;
+import android.view.InputDevice;
+import android.view.MotionEvent;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Caches what the input path needs to know about each {@link InputDevice}: source flags, the
+ * flat of every motion range and whether it can rumble.
+ *
+ * <p>{@link InputDevice#getDevice} and {@link InputDevice#getMotionRange} go through the input
+ * manager service, which is too slow to call for every key and motion event. Devices are resolved
+ * once on first use and dropped again when the {@link InputManager.InputDeviceListener} reports
+ * them added, changed or removed. Lookups read an immutable array and never lock.
+ *
+ * <p>Nothing is cached until {@link #register} has been called, since without the listener there
+ * is no way to tell when an entry goes stale.
+ */
+public final class InputDeviceRegistry {
+    private static final int AXIS_COUNT = MotionEvent.AXIS_GENERIC_16 + 1;
+
+    private static final Caps[] EMPTY = new Caps[0];
+    private static volatile Caps[] sDevices = EMPTY;
+    private static InputManager sInputManager;
+
+    private static final InputManager.InputDeviceListener sListener = new InputManager.InputDeviceListener() {
+        @Override
+        public void onInputDeviceAdded(int deviceId) {
+            invalidate(deviceId);
+        }
+
+        @Override
+        public void onInputDeviceRemoved(int deviceId) {
+            invalidate(deviceId);
+        }
+
+        @Override
+        public void onInputDeviceChanged(int deviceId) {
+            invalidate(deviceId);
+        }
+    };
+
+    private InputDeviceRegistry() {
+    }
+
+    /** Starts listening for device changes; call from the main thread. */
+    public static synchronized void register(@NonNull Context context) {
+        if (sInputManager != null) {
+            return;
+        }
+        InputManager manager = (InputManager) context.getApplicationContext().getSystemService(Context.INPUT_SERVICE);
+        if (manager == null) {
+            return;
+        }
+        manager.registerInputDeviceListener(sListener, null);
+        sInputManager = manager;
+        sDevices = EMPTY;
+    }
+
+    public static synchronized void unregister() {
+        if (sInputManager == null) {
+            return;
+        }
+        sInputManager.unregisterInputDeviceListener(sListener);
+        sInputManager = null;
+        sDevices = EMPTY;
+    }
+
+    /** Capabilities of {@code deviceId}, or null for virtual and unknown devices. */
+    @Nullable
+    public static Caps get(int deviceId) {
+        if (deviceId < 0) {
+            return null;
+        }
+        for (Caps caps : sDevices) {
+            if (caps.deviceId == deviceId) {
+                return caps;
+            }
+        }
+        return resolve(deviceId);
+    }
+
+    private static synchronized Caps resolve(int deviceId) {
+        Caps[] devices = sDevices;
+        for (Caps caps : devices) {
+            if (caps.deviceId == deviceId) {
+                return caps;
+            }
+        }
+        InputDevice device = InputDevice.getDevice(deviceId);
+        if (device == null) {
+            return null;
+        }
+        Caps caps = Caps.of(deviceId, device);
+        if (sInputManager != null) {
+            Caps[] grown = Arrays.copyOf(devices, devices.length + 1);
+            grown[devices.length] = caps;
+            sDevices = grown;
+        }
+        return caps;
+    }
+
+    private static synchronized void invalidate(int deviceId) {
+        Caps[] devices = sDevices;
+        for (int i = 0; i < devices.length; i++) {
+            if (devices[i].deviceId == deviceId) {
+                Caps[] shrunk = new Caps[devices.length - 1];
+                System.arraycopy(devices, 0, shrunk, 0, i);
+                System.arraycopy(devices, i + 1, shrunk, i, shrunk.length - i);
+                sDevices = shrunk;
+                return;
+            }
+        }
+    }
+
+    /** Immutable snapshot of one device. */
+    public static final class Caps {
+        final int deviceId;
+        private final int sources;
+        private final boolean canRumble;
+        // Motion ranges grouped by source; each row holds the flat per axis, NaN where absent.
+        private final int[] rangeSources;
+        private final float[][] flats;
+
+        private Caps(int deviceId, int sources, boolean canRumble, int[] rangeSources, float[][] flats) {
+            this.deviceId = deviceId;
+            this.sources = sources;
+            this.canRumble = canRumble;
+            this.rangeSources = rangeSources;
+            this.flats = flats;
+        }
+
+        static Caps of(int deviceId, @NonNull InputDevice device) {
+            List<Integer> rangeSources = new ArrayList<>();
+            List<float[]> flats = new ArrayList<>();
+            for (InputDevice.MotionRange range : device.getMotionRanges()) {
+                int axis = range.getAxis();
+                if (axis < 0 || axis >= AXIS_COUNT) {
+                    continue;
+                }
+                int index = rangeSources.indexOf(range.getSource());
+                if (index < 0) {
+                    float[] row = new float[AXIS_COUNT];
+                    Arrays.fill(row, Float.NaN);
+                    rangeSources.add(range.getSource());
+                    flats.add(row);
+                    index = flats.size() - 1;
+                }
+                flats.get(index)[axis] = range.getFlat();
+            }
+            int[] sourceArray = new int[rangeSources.size()];
+            for (int i = 0; i < sourceArray.length; i++) {
+                sourceArray[i] = rangeSources.get(i);
+            }
+            return new Caps(deviceId, device.getSources(), hasVibrator(device),
+                    sourceArray, flats.toArray(new float[0][]));
+        }
+
+        private static boolean hasVibrator(InputDevice device) {
+            try {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+                    return device.getVibratorManager().getVibratorIds().length > 0;
+                }
+                Vibrator vibrator = device.getVibrator();
+                return vibrator != null && vibrator.hasVibrator();
+            } catch (Throwable ignored) {
+                return false;
+            }
+        }
+
+        public int getSources() {
+            return sources;
+        }
+
+        /** Same test as SDL's joystick check: joystick class, d-pad or gamepad sources. */
+        public boolean isJoystick() {
+            return (sources & InputDevice.SOURCE_CLASS_JOYSTICK) != 0
+                    || (sources & InputDevice.SOURCE_DPAD) == InputDevice.SOURCE_DPAD
+                    || (sources & InputDevice.SOURCE_GAMEPAD) == InputDevice.SOURCE_GAMEPAD;
+        }
+
+        public boolean canRumble() {
+            return canRumble;
+        }
+
+        /**
+         * Flat of {@code axis} as reported for {@code source}, matching
+         * {@link InputDevice#getMotionRange(int, int)}; NaN when the device has no such range.
+         */
+        public float getFlat(int axis, int source) {
+            if (axis < 0 || axis >= AXIS_COUNT) {
+                return Float.NaN;
+            }
+            for (int i = 0; i < rangeSources.length; i++) {
+                if (rangeSources[i] == source) {
+                    return flats[i][axis];
+                }
+            }
+            return Float.NaN;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package kr.co.iefriends.pcsx2.input;
+
+import android.view.InputDevice;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+
+import kr.co.iefriends.pcsx2.NativeApp;
+
+/**
+ * Opt-in measurement of how long pad input takes to reach the emulator.
+ *
+ * <p>Every input is timed in three stages, all from the time the event happened:
+ * <ul>
+ *   <li>{@link Stage#DISPATCH}: the activity handler receives it,</li>
+ *   <li>{@link Stage#SUBMIT}: {@link PadState} hands the resulting change to native code,</li>
+ *   <li>{@link Stage#FRAME}: the first VM vsync after that submission, which is when the game
+ *       can read it.</li>
+ * </ul>
+ * Samples are kept as per-source histograms with 250 µs buckets, so percentiles stay cheap no
+ * matter how long a session runs. Everything here is a no-op unless {@link #setEnabled} is on.
+ *
+ * <p>Handlers call {@link #onInput} before they touch {@link PadState}; the flushes that follow on
+ * the same thread attach to that input. Inputs that change nothing never reach the later stages.
+ */
+public final class InputLatencyTracker {
+    public enum Source { KEY, MOTION, TOUCH }
+
+    public enum Stage { DISPATCH, SUBMIT, FRAME }
+
+    private static final long BUCKET_NANOS = 250_000L;
+    private static final int BUCKETS = 1000; // 250 ms; anything slower lands in the last bucket
+    private static final int PENDING = 64;
+    private static final long STALE_NANOS = 1_000_000_000L;
+
+    private static volatile boolean sEnabled;
+
+    private static final Object sLock = new Object();
+    private static final int[][][] sHistogram = new int[Source.values().length][Stage.values().length][BUCKETS];
+    private static final long[][] sMaxNanos = new long[Source.values().length][Stage.values().length];
+    private static final int[] sLastDeviceId = new int[Source.values().length];
+    // Inputs waiting for their submission and vsync, in a ring.
+    private static final int[] sPendingSource = new int[PENDING];
+    private static final long[] sPendingEvent = new long[PENDING];
+    private static final long[] sPendingSubmit = new long[PENDING];
+    private static final boolean[] sPendingLive = new boolean[PENDING];
+    private static final long[] sPendingSeq = new long[PENDING];
+    private static long sSeq;
+    // Sequence number of the input each thread is handling; touch and gamepad input run apart.
+    private static final ThreadLocal<long[]> sCurrent = ThreadLocal.withInitial(() -> new long[]{-1L});
+    private static final long[] sDrain = new long[256];
+
+    private InputLatencyTracker() {
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /** Turns tracking on or off; either way the collected statistics start over. */
+    public static void setEnabled(boolean enabled) {
+        synchronized (sLock) {
+            resetLocked();
+            sEnabled = enabled;
+        }
+        try {
+            NativeApp.setInputLatencyTracking(enabled);
+        } catch (Throwable ignored) {}
+    }
+
+    /** Records that an input from {@code source} reached its handler. */
+    public static void onInput(@NonNull Source source, int deviceId, long eventTimeNanos) {
+        if (!sEnabled) {
+            return;
+        }
+        final long now = System.nanoTime();
+        synchronized (sLock) {
+            long seq = ++sSeq;
+            int slot = slotOf(seq);
+            sPendingSource[slot] = source.ordinal();
+            sPendingEvent[slot] = eventTimeNanos;
+            sPendingSubmit[slot] = 0;
+            sPendingLive[slot] = true;
+            sPendingSeq[slot] = seq;
+            sCurrent.get()[0] = seq;
+            sLastDeviceId[source.ordinal()] = deviceId;
+            addLocked(source.ordinal(), Stage.DISPATCH, now - eventTimeNanos);
+        }
+    }
+
+    /** Called by {@link PadState} after a submission that started at {@code submitNanos}. */
+    static void onSubmit(long submitNanos) {
+        final long seq = sCurrent.get()[0];
+        synchronized (sLock) {
+            if (seq <= 0) {
+                return;
+            }
+            int slot = slotOf(seq);
+            if (sPendingSeq[slot] != seq || !sPendingLive[slot] || sPendingSubmit[slot] != 0) {
+                return;
+            }
+            sPendingSubmit[slot] = submitNanos;
+            addLocked(sPendingSource[slot], Stage.SUBMIT, submitNanos - sPendingEvent[slot]);
+        }
+    }
+
+    /** Pulls vsync times from native code and closes out the inputs they consumed. */
+    public static void drain() {
+        if (!sEnabled) {
+            return;
+        }
+        synchronized (sLock) {
+            int frames;
+            try {
+                frames = NativeApp.drainInputLatency(sDrain);
+            } catch (Throwable ignored) {
+                return;
+            }
+            for (int f = 0; f < frames; f++) {
+                long frameNanos = sDrain[f];
+                for (int i = 0; i < PENDING; i++) {
+                    // A vsync consumes everything submitted before it.
+                    if (sPendingLive[i] && sPendingSubmit[i] != 0 && sPendingSubmit[i] <= frameNanos) {
+                        addLocked(sPendingSource[i], Stage.FRAME, frameNanos - sPendingEvent[i]);
+                        sPendingLive[i] = false;
+                    }
+                }
+            }
+            long cutoff = System.nanoTime() - STALE_NANOS;
+            for (int i = 0; i < PENDING; i++) {
+                if (sPendingLive[i] && sPendingEvent[i] < cutoff) {
+                    sPendingLive[i] = false;
+                }
+            }
+        }
+    }
+
+    /** Short per-source summary for the OSD, or null while nothing has been measured. */
+    @Nullable
+    public static String summary() {
+        StringBuilder sb = new StringBuilder();
+        synchronized (sLock) {
+            for (Source source : Source.values()) {
+                int[] frame = sHistogram[source.ordinal()][Stage.FRAME.ordinal()];
+                int count = countOf(frame);
+                if (count == 0) {
+                    continue;
+                }
+                if (sb.length() > 0) {
+                    sb.append('\n');
+                }
+                sb.append(String.format(Locale.US, "%s input->frame p50 %.1f  p95 %.1f  p99 %.1f ms (n=%d)",
+                        source.name().toLowerCase(Locale.US),
+                        percentileMillis(frame, count, 0.50),
+                        percentileMillis(frame, count, 0.95),
+                        percentileMillis(frame, count, 0.99),
+                        count));
+            }
+        }
+        return sb.length() > 0 ? sb.toString() : null;
+    }
+
+    /**
+     * Writes the statistics to {@code dir} as {@code input_latency_<time>.csv}. {@code label} goes
+     * into the header, e.g. the running game, so exports from different setups can be told apart.
+     */
+    public static File exportCsv(@NonNull File dir, @Nullable String label) throws IOException {
+        drain();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        String stamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date());
+        File out = new File(dir, "input_latency_" + stamp + ".csv");
+        File tmp = new File(dir, out.getName() + ".tmp");
+        StringBuilder sb = new StringBuilder();
+        sb.append("# exported,").append(stamp).append('\n');
+        if (label != null) {
+            sb.append("# label,").append(csvField(label)).append('\n');
+        }
+        sb.append("source,device,stage,samples,p50_ms,p95_ms,p99_ms,max_ms\n");
+        synchronized (sLock) {
+            for (Source source : Source.values()) {
+                String device = csvField(deviceName(source));
+                for (Stage stage : Stage.values()) {
+                    int[] histogram = sHistogram[source.ordinal()][stage.ordinal()];
+                    int count = countOf(histogram);
+                    if (count == 0) {
+                        continue;
+                    }
+                    sb.append(String.format(Locale.US, "%s,%s,%s,%d,%.2f,%.2f,%.2f,%.2f\n",
+                            source.name().toLowerCase(Locale.US), device,
+                            stage.name().toLowerCase(Locale.US), count,
+                            percentileMillis(histogram, count, 0.50),
+                            percentileMillis(histogram, count, 0.95),
+                            percentileMillis(histogram, count, 0.99),
+                            sMaxNanos[source.ordinal()][stage.ordinal()] / 1_000_000.0));
+                }
+            }
+        }
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+            writer.write(sb.toString());
+        }
+        if (!tmp.renameTo(out)) {
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+            throw new IOException("Cannot write " + out);
+        }
+        return out;
+    }
+
+    private static void resetLocked() {
+        for (int[][] bySource : sHistogram) {
+            for (int[] histogram : bySource) {
+                Arrays.fill(histogram, 0);
+            }
+        }
+        for (long[] max : sMaxNanos) {
+            Arrays.fill(max, 0L);
+        }
+        Arrays.fill(sLastDeviceId, -1);
+        Arrays.fill(sPendingLive, false);
+    }
+
+    private static int slotOf(long seq) {
+        return (int) (seq % PENDING);
+    }
+
+    private static void addLocked(int source, Stage stage, long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        int bucket = (int) Math.min(BUCKETS - 1, nanos / BUCKET_NANOS);
+        sHistogram[source][stage.ordinal()][bucket]++;
+        if (nanos > sMaxNanos[source][stage.ordinal()]) {
+            sMaxNanos[source][stage.ordinal()] = nanos;
+        }
+    }
+
+    private static int countOf(int[] histogram) {
+        int count = 0;
+        for (int n : histogram) {
+            count += n;
+        }
+        return count;
+    }
+
+    // Upper edge of the bucket holding the requested rank.
+    private static double percentileMillis(int[] histogram, int count, double percentile) {
+        long rank = (long) Math.ceil(count * percentile);
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= rank) {
+                return (i + 1) * BUCKET_NANOS / 1_000_000.0;
+            }
+        }
+        return BUCKETS * BUCKET_NANOS / 1_000_000.0;
+    }
+
+    private static String deviceName(Source source) {
+        if (source == Source.TOUCH) {
+            return "touchscreen";
+        }
+        int deviceId = sLastDeviceId[source.ordinal()];
+        InputDevice device = deviceId >= 0 ? InputDevice.getDevice(deviceId) : null;
+        return device != null ? device.getName() : "";
+    }
+
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,122 @@
+package kr.co.iefriends.pcsx2.input;
+
+import android.os.Build;
+import android.view.KeyEvent;
+import android.view.MotionEvent;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+import kr.co.iefriends.pcsx2.NativeApp;
+
+/**
+ * Collects pad button and axis changes and hands them to native code in one JNI call.
+ *
+ * <p>Callers {@link #set} every input touched by an event and then {@link #flush} once. Changes to
+ * the same pad code inside one batch collapse to the last value. Pad codes are the ones
+ * {@link NativeApp#setPadButton} accepts: Android key codes for buttons and 110-123 for the stick
+ * directions.
+ *
+ * <p>Every flush carries the time its input happened on the {@code CLOCK_MONOTONIC} base used by
+ * input events, so batched motion samples replayed one flush at a time keep their own timestamps.
+ */
+public final class PadState {
+    private static final int MAX_PAD_CODE = 128;
+    private static final PadState sInstance = new PadState();
+
+    private final int[] pending = new int[MAX_PAD_CODE];
+    private final boolean[] dirty = new boolean[MAX_PAD_CODE];
+    private final int[] dirtyCodes = new int[MAX_PAD_CODE];
+    private int dirtyCount;
+    // Pairs of (pad code, value 0-255) in native byte order, read in place by native code.
+    private final ByteBuffer batch = ByteBuffer.allocateDirect(MAX_PAD_CODE * 2 * Integer.BYTES)
+            .order(ByteOrder.nativeOrder());
+    private final IntBuffer batchInts = batch.asIntBuffer();
+
+    private PadState() {
+    }
+
+    public static PadState get() {
+        return sInstance;
+    }
+
+    /**
+     * Queues a change with the same meaning as {@link NativeApp#setPadButton}: a press with a
+     * positive {@code range} is analog (0-255), a press without one is fully down.
+     */
+    public synchronized void set(int padCode, int range, boolean pressed) {
+        if (padCode < 0 || padCode >= MAX_PAD_CODE) {
+            NativeApp.setPadButton(padCode, range, pressed);
+            return;
+        }
+        pending[padCode] = !pressed ? 0 : (range > 0 ? Math.min(255, range) : 255);
+        if (!dirty[padCode]) {
+            dirty[padCode] = true;
+            dirtyCodes[dirtyCount++] = padCode;
+        }
+    }
+
+    /** Queues a change and submits everything pending. */
+    public synchronized void submit(int padCode, int range, boolean pressed) {
+        set(padCode, range, pressed);
+        flush();
+    }
+
+    /** Queues a change and submits everything pending as having happened at {@code eventTimeNanos}. */
+    public synchronized void submit(int padCode, int range, boolean pressed, long eventTimeNanos) {
+        set(padCode, range, pressed);
+        flush(eventTimeNanos);
+    }
+
+    /** Sends every queued change in one native call, stamped with the current time. */
+    public synchronized void flush() {
+        flush(System.nanoTime());
+    }
+
+    /** Sends every queued change in one native call. */
+    public synchronized void flush(long eventTimeNanos) {
+        if (dirtyCount == 0) {
+            return;
+        }
+        batchInts.clear();
+        for (int i = 0; i < dirtyCount; i++) {
+            int code = dirtyCodes[i];
+            dirty[code] = false;
+            batchInts.put(code).put(pending[code]);
+        }
+        int count = dirtyCount;
+        dirtyCount = 0;
+        final long submitNanos = InputLatencyTracker.isEnabled() ? System.nanoTime() : 0L;
+        NativeApp.submitPadState(batch, count, eventTimeNanos);
+        if (submitNanos != 0L) {
+            InputLatencyTracker.onSubmit(submitNanos);
+        }
+    }
+
+    /** Drops queued changes; used alongside {@link NativeApp#resetKeyStatus}. */
+    public synchronized void clear() {
+        for (int i = 0; i < dirtyCount; i++) {
+            dirty[dirtyCodes[i]] = false;
+        }
+        dirtyCount = 0;
+    }
+
+    /**
+     * Time of a motion sample in nanoseconds; {@code historyPos} of -1 means the current sample.
+     * Sub-millisecond precision is only available from Android 14.
+     */
+    public static long eventTimeNanos(MotionEvent event, int historyPos) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE) {
+            return historyPos < 0 ? event.getEventTimeNanos() : event.getHistoricalEventTimeNanos(historyPos);
+        }
+        return (historyPos < 0 ? event.getEventTime() : event.getHistoricalEventTime(historyPos)) * 1_000_000L;
+    }
+
+    public static long eventTimeNanos(KeyEvent event) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE) {
+            return event.getEventTimeNanos();
+        }
+        return event.getEventTime() * 1_000_000L;
+    }
+}
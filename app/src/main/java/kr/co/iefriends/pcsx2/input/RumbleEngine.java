@@ -0,0 +1,225 @@
+package kr.co.iefriends.pcsx2.input;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
+import android.os.SystemClock;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+import androidx.annotation.NonNull;
+
+import kr.co.iefriends.pcsx2.utils.SDLControllerManager;
+
+/**
+ * Drives controller and phone vibration from native pad vibration updates on its own thread.
+ *
+ * <p>The emulated pad reports motor levels on every poll, i.e. at least once a frame. Updates are
+ * coalesced per pad so only the latest (large, small) pair is applied, and a device is only
+ * restarted when its level changes or its one-shot effect is about to run out. Each pad is routed
+ * to the controller last assigned with {@link #setPadDevice}; pads without a controller use the
+ * phone vibrator.
+ */
+public final class RumbleEngine implements Handler.Callback {
+    private static final int MSG_APPLY = 1;
+    private static final int MSG_STOP_ALL = 2;
+
+    /** Length of each one-shot effect; updates keep extending it while the motors run. */
+    private static final int DURATION_MS = 160;
+    /** An unchanged level is re-sent once this much of the effect has elapsed. */
+    private static final long REFRESH_MS = DURATION_MS / 2;
+    private static final int PHONE_VIBRATOR_ID = 999999;
+
+    private static final RumbleEngine sInstance = new RumbleEngine();
+
+    private final Handler handler;
+
+    // Written by any thread under the lock, consumed on the rumble thread.
+    private final Object lock = new Object();
+    private final SparseArray<PadLevels> pending = new SparseArray<>();
+    private final SparseIntArray padDevices = new SparseIntArray();
+    private boolean applyScheduled;
+    private volatile boolean enabled = true;
+
+    // Rumble thread only: what each output device is currently doing.
+    private final SparseArray<Output> outputs = new SparseArray<>();
+    private final SparseIntArray padOutputs = new SparseIntArray();
+    private int[] scratchPads = new int[4];
+    private int[] scratchDevices = new int[4];
+    private float[] scratchLevels = new float[8];
+
+    private static final class PadLevels {
+        float large;
+        float small;
+        boolean dirty;
+    }
+
+    private static final class Output {
+        int large = -1;
+        int small = -1;
+        long startedAt;
+    }
+
+    private RumbleEngine() {
+        HandlerThread thread = new HandlerThread("Rumble");
+        thread.start();
+        handler = new Handler(thread.getLooper(), this);
+    }
+
+    public static RumbleEngine get() {
+        return sInstance;
+    }
+
+    /** Latest motor levels (0-1) for {@code padIndex}; called from the emulator thread. */
+    public void update(int padIndex, float large, float small) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (lock) {
+            PadLevels levels = pending.get(padIndex);
+            if (levels == null) {
+                levels = new PadLevels();
+                pending.put(padIndex, levels);
+            }
+            levels.large = large;
+            levels.small = small;
+            levels.dirty = true;
+            if (applyScheduled) {
+                return;
+            }
+            applyScheduled = true;
+        }
+        handler.sendEmptyMessage(MSG_APPLY);
+    }
+
+    /** Routes {@code padIndex} to the input device {@code deviceId}. */
+    public void setPadDevice(int padIndex, int deviceId) {
+        if (deviceId < 0) {
+            return;
+        }
+        synchronized (lock) {
+            padDevices.put(padIndex, deviceId);
+        }
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            stopAll();
+        }
+    }
+
+    /** Stops every motor this engine started. */
+    public void stopAll() {
+        synchronized (lock) {
+            for (int i = 0; i < pending.size(); i++) {
+                pending.valueAt(i).dirty = false;
+            }
+        }
+        handler.sendEmptyMessage(MSG_STOP_ALL);
+    }
+
+    @Override
+    public boolean handleMessage(@NonNull Message msg) {
+        switch (msg.what) {
+            case MSG_APPLY:
+                applyPending();
+                return true;
+            case MSG_STOP_ALL:
+                for (int i = 0; i < outputs.size(); i++) {
+                    stop(outputs.keyAt(i), outputs.valueAt(i));
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void applyPending() {
+        int count = 0;
+        synchronized (lock) {
+            applyScheduled = false;
+            if (scratchPads.length < pending.size()) {
+                scratchPads = new int[pending.size()];
+                scratchDevices = new int[pending.size()];
+                scratchLevels = new float[pending.size() * 2];
+            }
+            for (int i = 0; i < pending.size(); i++) {
+                PadLevels levels = pending.valueAt(i);
+                if (!levels.dirty) {
+                    continue;
+                }
+                levels.dirty = false;
+                scratchPads[count] = pending.keyAt(i);
+                scratchLevels[count * 2] = levels.large;
+                scratchLevels[count * 2 + 1] = levels.small;
+                scratchDevices[count] = padDevices.get(scratchPads[count], -1);
+                count++;
+            }
+        }
+        if (!enabled) {
+            return;
+        }
+        // Outside the lock: vibrator calls go through binder and must not hold up update().
+        for (int i = 0; i < count; i++) {
+            apply(scratchPads[i], scratchDevices[i], scratchLevels[i * 2], scratchLevels[i * 2 + 1]);
+        }
+    }
+
+    private void apply(int padIndex, int deviceId, float large, float small) {
+        final boolean useController = deviceId >= 0 && SDLControllerManager.isDeviceSDLJoystick(deviceId);
+        final int outputId = useController ? deviceId : PHONE_VIBRATOR_ID;
+
+        int previous = padOutputs.get(padIndex, -1);
+        if (previous != outputId) {
+            Output old = outputs.get(previous);
+            if (old != null) {
+                stop(previous, old);
+            }
+            padOutputs.put(padIndex, outputId);
+        }
+
+        Output out = outputs.get(outputId);
+        if (out == null) {
+            out = new Output();
+            outputs.put(outputId, out);
+        }
+        final int largeLevel = toLevel(large);
+        final int smallLevel = toLevel(small);
+        if (largeLevel == 0 && smallLevel == 0) {
+            stop(outputId, out);
+            return;
+        }
+        final long now = SystemClock.uptimeMillis();
+        if (largeLevel == out.large && smallLevel == out.small && now - out.startedAt < REFRESH_MS) {
+            return;
+        }
+        try {
+            if (useController) {
+                SDLControllerManager.hapticRumble(deviceId, largeLevel / 255f, smallLevel / 255f, DURATION_MS);
+            } else {
+                SDLControllerManager.hapticRun(PHONE_VIBRATOR_ID, Math.max(largeLevel, smallLevel) / 255f, DURATION_MS);
+            }
+        } catch (Throwable ignored) {}
+        out.large = largeLevel;
+        out.small = smallLevel;
+        out.startedAt = now;
+    }
+
+    private static void stop(int outputId, Output out) {
+        if (out.large == 0 && out.small == 0) {
+            return;
+        }
+        try {
+            SDLControllerManager.hapticStop(outputId);
+        } catch (Throwable ignored) {}
+        out.large = 0;
+        out.small = 0;
+    }
+
+    // Same 0-255 steps the vibrator amplitude uses, so equal levels mean an identical effect.
+    private static int toLevel(float value) {
+        if (Float.isNaN(value) || value <= 0f) return 0;
+        return Math.min(255, Math.round(value * 255f));
+    }
+}
@@ -0,0 +1,712 @@
+/*
+
+By MoonPower (Momo-AUX1) GPLv3 License
+   This file is part of ARMSX2.
+
+   ARMSX2 is free software: you can redistribute it and/or modify
+   it under the terms of the GNU General Public License as published by
+   the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   ARMSX2 is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License
+   along with ARMSX2.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package kr.co.iefriends.pcsx2.input.view;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RecordingCanvas;
+import android.graphics.RectF;
+import android.graphics.RenderNode;
+import android.os.Build;
+import android.util.AttributeSet;
+import android.view.KeyEvent;
+import android.view.MotionEvent;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import kr.co.iefriends.pcsx2.input.ControllerMappingManager;
+import kr.co.iefriends.pcsx2.input.PadState;
+
+/**
+ * Draws every on-screen control in a single view and turns touches into one pad update per
+ * {@link MotionEvent}.
+ *
+ * <p>The separate control views each hit-test, redraw and submit on their own. Here all pointers
+ * are resolved against the whole layout in one pass, the resulting button and axis changes are
+ * queued on {@link PadState} and flushed once, and only controls whose look changed are redrawn:
+ * with hardware acceleration each control keeps its own {@link RenderNode} that is re-recorded
+ * only when it is marked dirty.
+ *
+ * <p>The layout comes from JSON (see {@code assets/overlay/default_layout.json}): a list of
+ * {@code elements}, each with a {@code type} of {@code button}, {@code shoulder}, {@code dpad}
+ * or {@code stick}, an {@code anchor} corner, the {@code x}/{@code y} offset of its centre from
+ * that corner and its {@code w}/{@code h}, all in dp, plus the {@code keys} it drives.
+ */
+public class TouchPadOverlayView extends View {
+
+    public interface OnOverlayTouchListener {
+        /** Called for new pointers and whenever the overlay changed pad state. */
+        void onOverlayTouch(boolean onControl);
+    }
+
+    private static final int TYPE_BUTTON = 0;
+    private static final int TYPE_SHOULDER = 1;
+    private static final int TYPE_DPAD = 2;
+    private static final int TYPE_STICK = 3;
+
+    private static final int ANCHOR_TOP_LEFT = 0;
+    private static final int ANCHOR_TOP_RIGHT = 1;
+    private static final int ANCHOR_BOTTOM_LEFT = 2;
+    private static final int ANCHOR_BOTTOM_RIGHT = 3;
+    private static final int ANCHOR_BOTTOM_CENTER = 4;
+    private static final int ANCHOR_TOP_CENTER = 5;
+
+    // Order of the four keys of a d-pad or stick.
+    private static final int DIR_UP = 0;
+    private static final int DIR_RIGHT = 1;
+    private static final int DIR_DOWN = 2;
+    private static final int DIR_LEFT = 3;
+
+    private static final float ANALOG_DEADZONE = 0.08f;
+    // tan(22.5°): splits the d-pad into eight equal sectors.
+    private static final float DPAD_DIAGONAL = 0.4142f;
+    private static final int MAX_POINTERS = 32;
+    private static final int PAD_CODE_LIMIT = 128;
+
+    private final List<Element> elements = new ArrayList<>();
+    // Element each pointer id is holding, -1 for none.
+    private final int[] pointerElement = new int[MAX_POINTERS];
+    // Last analog value sent per pad code, -1 when unknown.
+    private final int[] analogStates = new int[PAD_CODE_LIMIT];
+    private final Rect dirtyRect = new Rect();
+    private final Rect elementRect = new Rect();
+
+    private Paint basePaint;
+    private Paint pressedPaint;
+    private Paint strokePaint;
+    private Paint labelPaint;
+    private Paint pressedLabelPaint;
+
+    private float density;
+    private float controlScale = 1.0f;
+    private PadState padState = PadState.get();
+    private OnOverlayTouchListener listener;
+
+    public TouchPadOverlayView(Context context) {
+        super(context);
+        init();
+    }
+
+    public TouchPadOverlayView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init();
+    }
+
+    public TouchPadOverlayView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        init();
+    }
+
+    private void init() {
+        density = getResources().getDisplayMetrics().density;
+        Arrays.fill(pointerElement, -1);
+        Arrays.fill(analogStates, -1);
+
+        basePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        basePaint.setColor(0x60FFFFFF);
+        basePaint.setStyle(Paint.Style.FILL);
+
+        pressedPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        pressedPaint.setColor(0xFFFFFFFF);
+        pressedPaint.setStyle(Paint.Style.FILL);
+
+        strokePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        strokePaint.setColor(0x80000000);
+        strokePaint.setStyle(Paint.Style.STROKE);
+        strokePaint.setStrokeWidth(3.0f);
+
+        labelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        labelPaint.setColor(0xFFFFFFFF);
+        labelPaint.setTextAlign(Paint.Align.CENTER);
+        labelPaint.setFakeBoldText(true);
+
+        pressedLabelPaint = new Paint(labelPaint);
+        pressedLabelPaint.setColor(0xFF000000);
+    }
+
+    public void setOnOverlayTouchListener(@Nullable OnOverlayTouchListener listener) {
+        this.listener = listener;
+    }
+
+    public void setPadState(@NonNull PadState padState) {
+        this.padState = padState;
+    }
+
+    /** Replaces the layout; anything held on the old one is released first. */
+    public void setLayoutJson(@NonNull String json) throws JSONException {
+        List<Element> parsed = parseLayout(json);
+        releaseAll();
+        elements.clear();
+        elements.addAll(parsed);
+        layoutElements();
+        invalidate();
+    }
+
+    /** Scales every control, and its distance from its anchor, like the UI scale slider. */
+    public void setControlScale(float scale) {
+        if (Math.abs(controlScale - scale) < 0.001f) {
+            return;
+        }
+        controlScale = scale;
+        layoutElements();
+        invalidate();
+    }
+
+    /** Shows or hides every element with the given layout {@code id}, e.g. for controller modes. */
+    public void setElementVisible(@NonNull String id, boolean visible) {
+        boolean changed = false;
+        for (Element e : elements) {
+            if (id.equals(e.id) && e.hidden == visible) {
+                e.hidden = !visible;
+                changed = true;
+            }
+        }
+        if (!changed) {
+            return;
+        }
+        if (!visible) {
+            // Let go of whatever the hidden control was holding.
+            for (int i = 0; i < MAX_POINTERS; i++) {
+                int index = pointerElement[i];
+                if (index >= 0 && elements.get(index).hidden) {
+                    pointerElement[i] = -1;
+                }
+            }
+            boolean sent = false;
+            for (Element e : elements) {
+                if (e.hidden) {
+                    e.resetNext();
+                    sent |= commit(e);
+                }
+            }
+            if (sent) {
+                padState.flush();
+            }
+        }
+        invalidate();
+    }
+
+    @Override
+    public void setVisibility(int visibility) {
+        if (visibility != VISIBLE) {
+            releaseAll();
+        }
+        super.setVisibility(visibility);
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        layoutElements();
+    }
+
+    private void layoutElements() {
+        final int w = getWidth();
+        final int h = getHeight();
+        final float unit = density * controlScale;
+        for (Element e : elements) {
+            float halfW = e.w * unit / 2f;
+            float halfH = e.h * unit / 2f;
+            float dx = e.x * unit;
+            float dy = e.y * unit;
+            float cx;
+            float cy;
+            switch (e.anchor) {
+                case ANCHOR_TOP_RIGHT:
+                    cx = w - dx;
+                    cy = dy;
+                    break;
+                case ANCHOR_BOTTOM_LEFT:
+                    cx = dx;
+                    cy = h - dy;
+                    break;
+                case ANCHOR_BOTTOM_RIGHT:
+                    cx = w - dx;
+                    cy = h - dy;
+                    break;
+                case ANCHOR_BOTTOM_CENTER:
+                    cx = w / 2f + dx;
+                    cy = h - dy;
+                    break;
+                case ANCHOR_TOP_CENTER:
+                    cx = w / 2f + dx;
+                    cy = dy;
+                    break;
+                case ANCHOR_TOP_LEFT:
+                default:
+                    cx = dx;
+                    cy = dy;
+                    break;
+            }
+            e.bounds.set(cx - halfW, cy - halfH, cx + halfW, cy + halfH);
+            if (e.type == TYPE_STICK) {
+                // Same proportions as JoystickView.
+                e.baseRadius = Math.max(1f, Math.min(halfW, halfH) - 20);
+                e.knobRadius = e.baseRadius * 0.3f;
+                e.knobX = cx + e.stickX * (e.baseRadius - e.knobRadius);
+                e.knobY = cy + e.stickY * (e.baseRadius - e.knobRadius);
+            }
+            e.dirty = true;
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        final int action = event.getActionMasked();
+        final int actionIndex = event.getActionIndex();
+        int newHit = -1;
+        boolean newPointer = false;
+        switch (action) {
+            case MotionEvent.ACTION_DOWN:
+            case MotionEvent.ACTION_POINTER_DOWN: {
+                newPointer = true;
+                newHit = hitTest(event.getX(actionIndex), event.getY(actionIndex));
+                int id = event.getPointerId(actionIndex);
+                if (id < MAX_POINTERS) {
+                    pointerElement[id] = newHit;
+                }
+                break;
+            }
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_POINTER_UP: {
+                int id = event.getPointerId(actionIndex);
+                if (id < MAX_POINTERS) {
+                    pointerElement[id] = -1;
+                }
+                break;
+            }
+            case MotionEvent.ACTION_CANCEL:
+                Arrays.fill(pointerElement, -1);
+                break;
+            default:
+                break;
+        }
+
+        // Rebuild the state of every control from the pointers still down, then send the difference.
+        for (Element e : elements) {
+            e.resetNext();
+        }
+        if (action != MotionEvent.ACTION_CANCEL) {
+            final int pointerCount = event.getPointerCount();
+            for (int i = 0; i < pointerCount; i++) {
+                int id = event.getPointerId(i);
+                if (id >= MAX_POINTERS || pointerElement[id] < 0) {
+                    continue;
+                }
+                applyPointer(id, event.getX(i), event.getY(i), action == MotionEvent.ACTION_MOVE);
+            }
+        }
+        boolean sent = false;
+        for (Element e : elements) {
+            sent |= commit(e);
+        }
+        if (sent) {
+            padState.flush(PadState.eventTimeNanos(event, -1));
+        }
+        invalidateDirty();
+
+        if (listener != null && (newPointer || sent)) {
+            listener.onOverlayTouch(newHit >= 0 || !newPointer);
+        }
+        return true;
+    }
+
+    private void applyPointer(int pointerId, float px, float py, boolean moving) {
+        Element e = elements.get(pointerElement[pointerId]);
+        switch (e.type) {
+            case TYPE_BUTTON:
+            case TYPE_SHOULDER:
+                if (moving && !e.bounds.contains(px, py)) {
+                    // Sliding onto another button moves the press there.
+                    int hit = hitTest(px, py);
+                    if (hit >= 0) {
+                        Element other = elements.get(hit);
+                        if (other.type == TYPE_BUTTON || other.type == TYPE_SHOULDER) {
+                            pointerElement[pointerId] = hit;
+                            e = other;
+                        }
+                    }
+                }
+                e.nextMask |= 1;
+                break;
+            case TYPE_DPAD: {
+                float dx = px - e.bounds.centerX();
+                float dy = py - e.bounds.centerY();
+                float deadzone = Math.min(e.bounds.width(), e.bounds.height()) * 0.1f;
+                if (dx * dx + dy * dy < deadzone * deadzone) {
+                    break;
+                }
+                float ax = Math.abs(dx);
+                float ay = Math.abs(dy);
+                if (-dy > ax * DPAD_DIAGONAL) e.nextMask |= 1 << DIR_UP;
+                if (dy > ax * DPAD_DIAGONAL) e.nextMask |= 1 << DIR_DOWN;
+                if (dx > ay * DPAD_DIAGONAL) e.nextMask |= 1 << DIR_RIGHT;
+                if (-dx > ay * DPAD_DIAGONAL) e.nextMask |= 1 << DIR_LEFT;
+                break;
+            }
+            case TYPE_STICK: {
+                float dx = px - e.bounds.centerX();
+                float dy = py - e.bounds.centerY();
+                float maxDistance = Math.max(0f, e.baseRadius - e.knobRadius);
+                float distance = (float) Math.sqrt(dx * dx + dy * dy);
+                if (maxDistance <= 0f) {
+                    break;
+                }
+                if (distance > maxDistance) {
+                    dx = dx / distance * maxDistance;
+                    dy = dy / distance * maxDistance;
+                }
+                e.nextX = dx / maxDistance;
+                e.nextY = dy / maxDistance;
+                break;
+            }
+            default:
+                break;
+        }
+    }
+
+    /** Queues the element's changes on the pad state; returns whether anything was queued. */
+    private boolean commit(Element e) {
+        boolean sent = false;
+        if (e.type == TYPE_STICK) {
+            if (e.nextX != e.stickX || e.nextY != e.stickY) {
+                e.stickX = e.nextX;
+                e.stickY = e.nextY;
+                float travel = e.baseRadius - e.knobRadius;
+                e.knobX = e.bounds.centerX() + e.stickX * travel;
+                e.knobY = e.bounds.centerY() + e.stickY * travel;
+                e.dirty = true;
+            }
+            sent |= sendAnalog(e.keys[DIR_RIGHT], Math.max(0f, e.stickX));
+            sent |= sendAnalog(e.keys[DIR_LEFT], Math.max(0f, -e.stickX));
+            sent |= sendAnalog(e.keys[DIR_DOWN], Math.max(0f, e.stickY));
+            sent |= sendAnalog(e.keys[DIR_UP], Math.max(0f, -e.stickY));
+            return sent;
+        }
+        int changed = e.mask ^ e.nextMask;
+        if (changed == 0) {
+            return false;
+        }
+        for (int i = 0; i < e.keys.length; i++) {
+            if ((changed & (1 << i)) != 0) {
+                padState.set(e.keys[i], 0, (e.nextMask & (1 << i)) != 0);
+                sent = true;
+            }
+        }
+        e.mask = e.nextMask;
+        e.dirty = true;
+        return sent;
+    }
+
+    // Same mapping, deadzone and 0-255 scaling as the activity uses for the stick views.
+    private boolean sendAnalog(int keyCode, float normalized) {
+        int padCode = ControllerMappingManager.getPadCodeForKey(keyCode);
+        if (padCode == ControllerMappingManager.NO_MAPPING) {
+            padCode = keyCode;
+        }
+        int scaled = 0;
+        if (ControllerMappingManager.isPadCodeBound(padCode)) {
+            float value = Math.min(1f, Math.max(0f, normalized));
+            if (value < ANALOG_DEADZONE) value = 0f;
+            scaled = Math.round(value * 255f);
+        }
+        if (padCode >= 0 && padCode < PAD_CODE_LIMIT) {
+            if (analogStates[padCode] == scaled) {
+                return false;
+            }
+            analogStates[padCode] = scaled;
+        }
+        padState.set(padCode, scaled, scaled > 0);
+        return true;
+    }
+
+    private void releaseAll() {
+        Arrays.fill(pointerElement, -1);
+        boolean sent = false;
+        for (Element e : elements) {
+            e.resetNext();
+            sent |= commit(e);
+        }
+        if (sent) {
+            padState.flush();
+        }
+        Arrays.fill(analogStates, -1);
+        invalidateDirty();
+    }
+
+    private int hitTest(float px, float py) {
+        // Later elements are drawn on top, so they win.
+        for (int i = elements.size() - 1; i >= 0; i--) {
+            Element e = elements.get(i);
+            if (e.hidden || !e.bounds.contains(px, py)) {
+                continue;
+            }
+            if (e.type == TYPE_STICK || (e.type == TYPE_BUTTON && !e.rect)) {
+                float dx = px - e.bounds.centerX();
+                float dy = py - e.bounds.centerY();
+                float r = Math.min(e.bounds.width(), e.bounds.height()) / 2f;
+                if (dx * dx + dy * dy > r * r) {
+                    continue;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private void invalidateDirty() {
+        dirtyRect.setEmpty();
+        for (Element e : elements) {
+            if (e.dirty) {
+                dirtyRect.union(outsetBounds(e, elementRect));
+            }
+        }
+        if (dirtyRect.isEmpty()) {
+            return;
+        }
+        if (isHardwareAccelerated()) {
+            // The dirty rect is ignored by hardware rendering; clean elements replay their node.
+            invalidate();
+        } else {
+            invalidate(dirtyRect);
+        }
+    }
+
+    private Rect outsetBounds(Element e, Rect out) {
+        int pad = (int) Math.ceil(strokePaint.getStrokeWidth());
+        out.set((int) Math.floor(e.bounds.left) - pad, (int) Math.floor(e.bounds.top) - pad,
+                (int) Math.ceil(e.bounds.right) + pad, (int) Math.ceil(e.bounds.bottom) + pad);
+        return out;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        final boolean useNodes = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && canvas.isHardwareAccelerated();
+        for (Element e : elements) {
+            if (e.hidden) {
+                continue;
+            }
+            if (useNodes) {
+                drawCached(canvas, e);
+            } else {
+                drawElement(canvas, e);
+                e.dirty = false;
+            }
+        }
+    }
+
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private void drawCached(Canvas canvas, Element e) {
+        RenderNode node = e.node;
+        if (node == null) {
+            node = new RenderNode(e.id);
+            e.node = node;
+            e.dirty = true;
+        }
+        if (e.dirty || !node.hasDisplayList()) {
+            Rect area = outsetBounds(e, elementRect);
+            node.setPosition(area);
+            RecordingCanvas recording = node.beginRecording();
+            try {
+                recording.translate(-area.left, -area.top);
+                drawElement(recording, e);
+            } finally {
+                node.endRecording();
+            }
+            e.dirty = false;
+        }
+        canvas.drawRenderNode(node);
+    }
+
+    private void drawElement(Canvas canvas, Element e) {
+        final RectF b = e.bounds;
+        switch (e.type) {
+            case TYPE_STICK:
+                canvas.drawCircle(b.centerX(), b.centerY(), e.baseRadius, basePaint);
+                canvas.drawCircle(b.centerX(), b.centerY(), e.baseRadius, strokePaint);
+                canvas.drawCircle(e.knobX, e.knobY, e.knobRadius, pressedPaint);
+                canvas.drawCircle(e.knobX, e.knobY, e.knobRadius, strokePaint);
+                break;
+            case TYPE_DPAD: {
+                float size = Math.min(b.width(), b.height());
+                float arm = size * 0.3f;
+                float cx = b.centerX();
+                float cy = b.centerY();
+                float half = size / 2f;
+                drawArm(canvas, e, DIR_UP, cx - arm / 2, cy - half, cx + arm / 2, cy - arm / 2);
+                drawArm(canvas, e, DIR_DOWN, cx - arm / 2, cy + arm / 2, cx + arm / 2, cy + half);
+                drawArm(canvas, e, DIR_LEFT, cx - half, cy - arm / 2, cx - arm / 2, cy + arm / 2);
+                drawArm(canvas, e, DIR_RIGHT, cx + arm / 2, cy - arm / 2, cx + half, cy + arm / 2);
+                canvas.drawRect(cx - arm / 2, cy - arm / 2, cx + arm / 2, cy + arm / 2, basePaint);
+                break;
+            }
+            case TYPE_SHOULDER:
+            case TYPE_BUTTON: {
+                boolean pressed = e.mask != 0;
+                Paint fill = pressed ? pressedPaint : basePaint;
+                if (e.type == TYPE_SHOULDER || e.rect) {
+                    float radius = Math.min(b.width(), b.height()) * 0.25f;
+                    canvas.drawRoundRect(b, radius, radius, fill);
+                    canvas.drawRoundRect(b, radius, radius, strokePaint);
+                } else {
+                    float radius = Math.min(b.width(), b.height()) / 2f;
+                    canvas.drawCircle(b.centerX(), b.centerY(), radius, fill);
+                    canvas.drawCircle(b.centerX(), b.centerY(), radius, strokePaint);
+                }
+                if (e.label != null) {
+                    Paint text = pressed ? pressedLabelPaint : labelPaint;
+                    text.setTextSize(Math.min(b.width(), b.height()) * 0.38f);
+                    float baseline = b.centerY() - (text.descent() + text.ascent()) / 2f;
+                    canvas.drawText(e.label, b.centerX(), baseline, text);
+                }
+                break;
+            }
+            default:
+                break;
+        }
+    }
+
+    private void drawArm(Canvas canvas, Element e, int dir, float l, float t, float r, float btm) {
+        Paint fill = (e.mask & (1 << dir)) != 0 ? pressedPaint : basePaint;
+        canvas.drawRect(l, t, r, btm, fill);
+        canvas.drawRect(l, t, r, btm, strokePaint);
+    }
+
+    private static List<Element> parseLayout(String json) throws JSONException {
+        JSONArray array = new JSONObject(json).getJSONArray("elements");
+        List<Element> result = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            result.add(Element.fromJson(array.getJSONObject(i)));
+        }
+        return result;
+    }
+
+    private static final class Element {
+        final String id;
+        final int type;
+        final int anchor;
+        final float x, y, w, h;
+        final boolean rect;
+        @Nullable final String label;
+        // One key for buttons; up, right, down, left for d-pads and sticks.
+        final int[] keys;
+
+        final RectF bounds = new RectF();
+        boolean hidden;
+        boolean dirty = true;
+        RenderNode node;
+
+        // Current state and the state being built for this event.
+        int mask;
+        int nextMask;
+        float stickX, stickY;
+        float nextX, nextY;
+        float baseRadius, knobRadius;
+        float knobX, knobY;
+
+        private Element(String id, int type, int anchor, float x, float y, float w, float h,
+                        boolean rect, @Nullable String label, int[] keys) {
+            this.id = id;
+            this.type = type;
+            this.anchor = anchor;
+            this.x = x;
+            this.y = y;
+            this.w = w;
+            this.h = h;
+            this.rect = rect;
+            this.label = label;
+            this.keys = keys;
+        }
+
+        void resetNext() {
+            nextMask = 0;
+            nextX = 0f;
+            nextY = 0f;
+        }
+
+        static Element fromJson(JSONObject o) throws JSONException {
+            String typeName = o.getString("type");
+            int type;
+            switch (typeName) {
+                case "button": type = TYPE_BUTTON; break;
+                case "shoulder": type = TYPE_SHOULDER; break;
+                case "dpad": type = TYPE_DPAD; break;
+                case "stick": type = TYPE_STICK; break;
+                default: throw new JSONException("Unknown element type " + typeName);
+            }
+            JSONArray keyArray = o.getJSONArray("keys");
+            int expected = (type == TYPE_DPAD || type == TYPE_STICK) ? 4 : 1;
+            if (keyArray.length() != expected) {
+                throw new JSONException(typeName + " needs " + expected + " keys");
+            }
+            int[] keys = new int[expected];
+            for (int i = 0; i < expected; i++) {
+                keys[i] = parseKey(keyArray.get(i));
+            }
+            float w = (float) o.getDouble("w");
+            return new Element(o.optString("id", typeName + "_" + keys[0]), type,
+                    parseAnchor(o.optString("anchor", "top_left")),
+                    (float) o.getDouble("x"), (float) o.getDouble("y"),
+                    w, (float) o.optDouble("h", w),
+                    "rect".equals(o.optString("shape", "circle")),
+                    o.has("label") ? o.getString("label") : null, keys);
+        }
+
+        // Key names as in KeyEvent without the KEYCODE_ prefix, or raw pad codes (110-123 for sticks).
+        private static int parseKey(Object value) throws JSONException {
+            if (value instanceof Number) {
+                return ((Number) value).intValue();
+            }
+            String name = value.toString();
+            int code = KeyEvent.keyCodeFromString(name.startsWith("KEYCODE_") ? name : "KEYCODE_" + name);
+            if (code == KeyEvent.KEYCODE_UNKNOWN) {
+                throw new JSONException("Unknown key " + name);
+            }
+            return code;
+        }
+
+        private static int parseAnchor(String name) throws JSONException {
+            switch (name) {
+                case "top_left": return ANCHOR_TOP_LEFT;
+                case "top_right": return ANCHOR_TOP_RIGHT;
+                case "bottom_left": return ANCHOR_BOTTOM_LEFT;
+                case "bottom_right": return ANCHOR_BOTTOM_RIGHT;
+                case "bottom_center": return ANCHOR_BOTTOM_CENTER;
+                case "top_center": return ANCHOR_TOP_CENTER;
+                default: throw new JSONException("Unknown anchor " + name);
+            }
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+
+By MoonPower (Momo-AUX1) GPLv3 License
+   This file is part of ARMSX2.
+
+   ARMSX2 is free software: you can redistribute it and/or modify
+   it under the terms of the GNU General Public License as published by
+   the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   ARMSX2 is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License
+   along with ARMSX2.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package kr.co.iefriends.pcsx2.utils;
+
+import android.content.Context;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Extracts bundled assets into the data root using the manifest generated at build time
+ * ({@code generateAssetManifest} in app/build.gradle), which lists every file with its size and
+ * SHA-256.
+ *
+ * <p>A copy of the manifest describing what is actually on disk is kept in the data root, so it
+ * moves along with the data. A file is extracted only when it is missing, its size is off, or its
+ * bundled hash differs from the installed one, i.e. the asset changed in an app update. A file
+ * with no record is hashed once and kept only if it matches. When the installed version matches
+ * the bundled one, a start-up costs one stat per file.
+ */
+final class AssetExtractor {
+    private static final String TAG = "AssetExtractor";
+    private static final String MANIFEST_ASSET = "resources.manifest";
+    private static final String RECORD_NAME = ".asset_manifest";
+    private static final String VERSION_PREFIX = "version\t";
+    private static final String PARTIAL_SUFFIX = ".extracting";
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    // Held across the whole extraction: native code requests subdirectories while the UI may be
+    // extracting everything, and both update the same record.
+    private static final Object sLock = new Object();
+
+    private static final class Entry {
+        final long size;
+        final String hash;
+
+        Entry(long size, String hash) {
+            this.size = size;
+            this.hash = hash;
+        }
+    }
+
+    private static final class Manifest {
+        String version = "";
+        final Map<String, Entry> entries = new TreeMap<>();
+    }
+
+    private AssetExtractor() {}
+
+    /**
+     * Brings {@code srcPath} (an asset file or directory) up to date under {@code dataRoot}.
+     * Returns false when the APK carries no manifest, in which case nothing was done.
+     */
+    static boolean extract(Context context, File dataRoot, String srcPath) {
+        Manifest bundled;
+        try (InputStream in = context.getAssets().open(MANIFEST_ASSET)) {
+            bundled = read(in);
+        } catch (FileNotFoundException e) {
+            return false;
+        } catch (IOException e) {
+            try { DebugLog.e(TAG, "Unreadable asset manifest: " + e.getMessage()); } catch (Throwable ignored) {}
+            return false;
+        }
+        String root = srcPath.endsWith("/") ? srcPath.substring(0, srcPath.length() - 1) : srcPath;
+        String prefix = root + "/";
+
+        synchronized (sLock) {
+            File recordFile = new File(dataRoot, RECORD_NAME);
+            Manifest installed = readRecord(recordFile);
+            boolean sameVersion = !installed.version.isEmpty() && installed.version.equals(bundled.version);
+
+            List<String> stale = new ArrayList<>();
+            int matched = 0;
+            for (Map.Entry<String, Entry> e : bundled.entries.entrySet()) {
+                String path = e.getKey();
+                if (!path.equals(root) && !path.startsWith(prefix)) {
+                    continue;
+                }
+                matched++;
+                File dest = new File(dataRoot, path);
+                Entry want = e.getValue();
+                Entry have = installed.entries.get(path);
+                boolean upToDate = dest.isFile() && dest.length() == want.size;
+                if (upToDate && have == null) {
+                    // Extracted before manifests existed: only adopt it if it is the bundled content.
+                    upToDate = want.hash.equals(sha256(dest));
+                    if (upToDate) {
+                        installed.entries.put(path, want);
+                    }
+                } else if (upToDate && !sameVersion) {
+                    upToDate = have.hash.equals(want.hash);
+                }
+                if (!upToDate) {
+                    stale.add(path);
+                }
+            }
+            if (matched == 0) {
+                return false;
+            }
+
+            boolean ok = stale.isEmpty() || copyAll(context, dataRoot, stale);
+            for (String path : stale) {
+                File dest = new File(dataRoot, path);
+                Entry want = bundled.entries.get(path);
+                if (dest.isFile() && dest.length() == want.size) {
+                    installed.entries.put(path, want);
+                } else {
+                    installed.entries.remove(path);
+                }
+            }
+            // The version only moves once the whole bundled set is in place.
+            if (ok && matched == bundled.entries.size()) {
+                installed.version = bundled.version;
+            }
+            if (!stale.isEmpty() || !sameVersion) {
+                writeRecord(recordFile, installed);
+            }
+            if (!stale.isEmpty()) {
+                try { DebugLog.d(TAG, "Extracted " + stale.size() + " of " + matched + " assets under " + root); } catch (Throwable ignored) {}
+            }
+        }
+        return true;
+    }
+
+    private static boolean copyAll(Context context, File dataRoot, List<String> paths) {
+        if (paths.size() == 1) {
+            return copy(context, dataRoot, paths.get(0));
+        }
+        int threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, paths.size()), r -> new Thread(r, "AssetExtractor"));
+        try {
+            List<Future<Boolean>> pending = new ArrayList<>();
+            for (String path : paths) {
+                pending.add(pool.submit(() -> copy(context, dataRoot, path)));
+            }
+            boolean ok = true;
+            for (Future<Boolean> future : pending) {
+                try {
+                    ok &= future.get();
+                } catch (ExecutionException e) {
+                    try { DebugLog.e(TAG, "Extraction task failed: " + e.getCause()); } catch (Throwable ignored) {}
+                    ok = false;
+                }
+            }
+            return ok;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static boolean copy(Context context, File dataRoot, String path) {
+        File dest = new File(dataRoot, path);
+        File partial = new File(dest.getPath() + PARTIAL_SUFFIX);
+        File parent = dest.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs() && !parent.isDirectory()) {
+            try { DebugLog.e(TAG, "Failed to create parent for asset: " + parent); } catch (Throwable ignored) {}
+            return false;
+        }
+        try (InputStream in = context.getAssets().open(path);
+             OutputStream out = new FileOutputStream(partial)) {
+            byte[] buffer = new byte[BUFFER_BYTES];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            //noinspection ResultOfMethodCallIgnored
+            partial.delete();
+            try { DebugLog.e(TAG, "Failed to extract asset " + path + ": " + e.getMessage()); } catch (Throwable ignored) {}
+            return false;
+        }
+        if (!partial.renameTo(dest)) {
+            //noinspection ResultOfMethodCallIgnored
+            dest.delete();
+            if (!partial.renameTo(dest)) {
+                //noinspection ResultOfMethodCallIgnored
+                partial.delete();
+                try { DebugLog.e(TAG, "Failed to move extracted asset into place: " + dest); } catch (Throwable ignored) {}
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Lower-case hex, as written by the Gradle task; null when the file can't be read.
+    @Nullable
+    private static String sha256(File file) {
+        try (InputStream in = new FileInputStream(file)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[BUFFER_BYTES];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format(Locale.ROOT, "%02x", b));
+            }
+            return hex.toString();
+        } catch (IOException | NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    private static Manifest readRecord(File recordFile) {
+        if (!recordFile.isFile()) {
+            return new Manifest();
+        }
+        try (InputStream in = new FileInputStream(recordFile)) {
+            return read(in);
+        } catch (IOException e) {
+            try { DebugLog.e(TAG, "Unreadable asset record, checking every file: " + e.getMessage()); } catch (Throwable ignored) {}
+            return new Manifest();
+        }
+    }
+
+    private static void writeRecord(File recordFile, Manifest manifest) {
+        File tmp = new File(recordFile.getPath() + ".tmp");
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+            out.write(VERSION_PREFIX + manifest.version + "\n");
+            for (Map.Entry<String, Entry> e : manifest.entries.entrySet()) {
+                out.write(e.getValue().size + "\t" + e.getValue().hash + "\t" + e.getKey() + "\n");
+            }
+        } catch (IOException e) {
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+            try { DebugLog.e(TAG, "Failed to write asset record: " + e.getMessage()); } catch (Throwable ignored) {}
+            return;
+        }
+        if (!tmp.renameTo(recordFile)) {
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+            try { DebugLog.e(TAG, "Failed to replace asset record: " + recordFile); } catch (Throwable ignored) {}
+        }
+    }
+
+    // version \t <v>, then one size \t sha256 \t path line per file.
+    private static Manifest read(InputStream in) throws IOException {
+        Manifest manifest = new Manifest();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith(VERSION_PREFIX)) {
+                manifest.version = line.substring(VERSION_PREFIX.length()).trim();
+                continue;
+            }
+            String[] parts = line.split("\t", 3);
+            if (parts.length != 3) {
+                continue;
+            }
+            try {
+                manifest.entries.put(parts[2], new Entry(Long.parseLong(parts[0]), parts[1]));
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return manifest;
+    }
+}
@@ -0,0 +1,541 @@
+/*
+
+By MoonPower (Momo-AUX1) GPLv3 License
+   This file is part of ARMSX2.
+
+   ARMSX2 is free software: you can redistribute it and/or modify
+   it under the terms of the GNU General Public License as published by
+   the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   ARMSX2 is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License
+   along with ARMSX2.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package kr.co.iefriends.pcsx2.utils;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
+import android.provider.DocumentsContract;
+import android.provider.OpenableColumns;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import kr.co.iefriends.pcsx2.NativeApp;
+
+/**
+ * Process-wide queue of ISO to CHD conversions.
+ *
+ * <p>Source and destination documents are opened here and handed to the emulator core as file
+ * descriptors ({@link NativeApp#convertIsoToChdFd}), so nothing is staged in the app's cache.
+ * Jobs run one at a time; the core compresses each image's hunks on several cores, and reports
+ * progress and takes cancellation through the job's native key. Listeners are told about changes on the main thread.
+ *
+ * <p>The queue lives outside any activity and is saved to {@code chd_queue.json}. A job that was
+ * running when the process died starts again from the beginning on the next {@link #resume}.
+ */
+public final class ChdConversionQueue {
+    private static final String TAG = "ChdQueue";
+    private static final String STORE_NAME = "chd_queue.json";
+    private static final String MIME_CHD = "application/octet-stream";
+    private static final long PROGRESS_INTERVAL_MS = 500;
+
+    /** The emulator core library is missing. */
+    public static final int ERROR_NO_TOOLS = -200;
+    /** The conversion was cancelled while running. */
+    public static final int RESULT_CANCELLED = -10;
+
+    private static final AtomicLong sNextNativeKey = new AtomicLong();
+
+    public enum State { QUEUED, RUNNING, DONE, FAILED, CANCELLED }
+
+    public interface Listener {
+        /** Called on the main thread whenever a job is added, changes state or makes progress. */
+        void onJobsChanged();
+    }
+
+    public static final class Job {
+        public final String id;
+        public final Uri source;
+        public final String displayName;
+        // Folder to create the CHD in when the job starts; null when the user picked the file.
+        @Nullable
+        final Uri destinationTree;
+        @Nullable
+        volatile Uri destination;
+        volatile State state = State.QUEUED;
+        volatile int resultCode;
+        volatile long bytesDone;
+        volatile long bytesTotal;
+        volatile float mbPerSecond;
+        volatile boolean cancelRequested;
+        // Identifies the running conversion to the core; set when the job starts.
+        volatile long nativeKey;
+        volatile long startedAtMs;
+
+        Job(String id, Uri source, String displayName, @Nullable Uri destination, @Nullable Uri destinationTree) {
+            this.id = id;
+            this.source = source;
+            this.displayName = displayName;
+            this.destination = destination;
+            this.destinationTree = destinationTree;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public int getResultCode() {
+            return resultCode;
+        }
+
+        /** Fraction of the input converted so far, or -1 when it can't be told. */
+        public float getProgress() {
+            long total = bytesTotal;
+            return total > 0 && bytesDone > 0 ? Math.min(1f, bytesDone / (float) total) : -1f;
+        }
+
+        public float getMbPerSecond() {
+            return mbPerSecond;
+        }
+
+        public boolean canRetry() {
+            return (state == State.FAILED || state == State.CANCELLED)
+                    && (destinationTree != null || destination != null);
+        }
+    }
+
+    private static ChdConversionQueue sInstance;
+
+    private final Context context;
+    private final File storeFile;
+    private final List<Job> jobs = new ArrayList<>();
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final ExecutorService workers;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Handler progressHandler;
+    private final Runnable notifyListeners = this::dispatchJobsChanged;
+    private final Runnable progressTick = this::pollProgress;
+    private boolean resumed;
+
+    private ChdConversionQueue(Context context) {
+        this.context = context.getApplicationContext();
+        this.storeFile = new File(this.context.getFilesDir(), STORE_NAME);
+        // One job at a time: each conversion already keeps the spare cores busy compressing hunks.
+        workers = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "ChdConversion");
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        HandlerThread thread = new HandlerThread("ChdProgress");
+        thread.start();
+        progressHandler = new Handler(thread.getLooper());
+        load();
+    }
+
+    public static synchronized ChdConversionQueue get(Context context) {
+        if (sInstance == null) {
+            sInstance = new ChdConversionQueue(context);
+        }
+        return sInstance;
+    }
+
+    /** Starts the jobs left queued by an earlier run of the app; later calls do nothing. */
+    public void resume() {
+        List<Job> pending = new ArrayList<>();
+        synchronized (this) {
+            if (resumed) {
+                return;
+            }
+            resumed = true;
+            for (Job job : jobs) {
+                if (job.state == State.QUEUED) {
+                    pending.add(job);
+                }
+            }
+        }
+        if (!pending.isEmpty()) {
+            try { DebugLog.d(TAG, "Resuming " + pending.size() + " queued conversion(s)"); } catch (Throwable ignored) {}
+        }
+        for (Job job : pending) {
+            submit(job);
+        }
+    }
+
+    /**
+     * Queues {@code source}. The CHD is written to {@code destination}, or created inside the
+     * folder {@code destinationTree} when the job starts.
+     */
+    public Job enqueue(@NonNull Uri source, @Nullable String displayName, @Nullable Uri destination, @Nullable Uri destinationTree) {
+        // Overnight batches outlive the picker's grant; keep access across restarts.
+        persistPermission(source, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        Uri writable = destinationTree != null ? destinationTree : destination;
+        if (writable != null) {
+            persistPermission(writable, Intent.FLAG_GRANT_READ_URI_PERMISSION | Intent.FLAG_GRANT_WRITE_URI_PERMISSION);
+        }
+        String name = displayName != null && !displayName.trim().isEmpty() ? displayName : source.getLastPathSegment();
+        Job job = new Job(UUID.randomUUID().toString(), source, name, destination, destinationTree);
+        synchronized (this) {
+            jobs.add(job);
+            resumed = true;
+        }
+        save();
+        postJobsChanged();
+        submit(job);
+        return job;
+    }
+
+    public void cancel(@NonNull Job job) {
+        synchronized (this) {
+            if (job.state == State.QUEUED) {
+                job.state = State.CANCELLED;
+            } else if (job.state == State.RUNNING) {
+                // The core stops at its next hunk; the job ends as cancelled once it returns.
+                job.cancelRequested = true;
+                if (!NativeApp.hasNoNativeBinary) {
+                    NativeApp.cancelChdConversion(job.nativeKey);
+                }
+                return;
+            } else {
+                return;
+            }
+        }
+        save();
+        postJobsChanged();
+    }
+
+    public void cancelAll() {
+        for (Job job : getJobs()) {
+            cancel(job);
+        }
+    }
+
+    public void retry(@NonNull Job job) {
+        synchronized (this) {
+            if (!job.canRetry()) {
+                return;
+            }
+            job.state = State.QUEUED;
+            job.cancelRequested = false;
+            job.resultCode = 0;
+            job.bytesDone = 0;
+            job.mbPerSecond = 0f;
+        }
+        save();
+        postJobsChanged();
+        submit(job);
+    }
+
+    /** Forgets every job that is done, failed or cancelled. */
+    public void clearFinished() {
+        synchronized (this) {
+            for (int i = jobs.size() - 1; i >= 0; i--) {
+                State state = jobs.get(i).state;
+                if (state != State.QUEUED && state != State.RUNNING) {
+                    jobs.remove(i);
+                }
+            }
+        }
+        save();
+        postJobsChanged();
+    }
+
+    public synchronized List<Job> getJobs() {
+        return new ArrayList<>(jobs);
+    }
+
+    public void addListener(@NonNull Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public void removeListener(@NonNull Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /** CHD file name for the image {@code displayName}. */
+    public static String chdFileName(@Nullable String displayName) {
+        String baseName = displayName;
+        if (baseName == null || baseName.trim().isEmpty()) {
+            baseName = "converted";
+        }
+        String lower = baseName.toLowerCase(Locale.US);
+        if (lower.endsWith(".iso")) {
+            baseName = baseName.substring(0, baseName.length() - 4);
+            lower = baseName.toLowerCase(Locale.US);
+        }
+        if (!lower.endsWith(".chd")) {
+            baseName = baseName + ".chd";
+        }
+        return baseName;
+    }
+
+    public static String describeResult(int errorCode) {
+        switch (errorCode) {
+            case 0: return "Converted";
+            case -1: return "Error: Null pointer provided to conversion function";
+            case -2: return "Error: Invalid UTF-8 encoding in file paths";
+            case -3: return "Error: Input ISO file not found";
+            case -4: return "Error: Input path is not a regular file";
+            case -5: return "Error: Failed to create output CHD file";
+            case -6: return "Error: I/O error during conversion";
+            case -7: return "Error: Too many hunks for CHD format";
+            case -8: return "Error: Numeric overflow during conversion";
+            case -9: return "Error: Unexpected end of ISO data";
+            case RESULT_CANCELLED: return "Cancelled";
+            case -100: return "Error: Internal conversion error";
+            case ERROR_NO_TOOLS: return "Error: The emulator core library is not available";
+            default: return "Error: Unknown conversion error (code: " + errorCode + ")";
+        }
+    }
+
+    private void submit(Job job) {
+        workers.execute(() -> run(job));
+    }
+
+    private void run(Job job) {
+        synchronized (this) {
+            if (job.state != State.QUEUED) {
+                return;
+            }
+            job.state = State.RUNNING;
+            job.nativeKey = sNextNativeKey.incrementAndGet();
+            job.startedAtMs = SystemClock.elapsedRealtime();
+            job.bytesDone = 0;
+            job.mbPerSecond = 0f;
+        }
+        save();
+        postJobsChanged();
+        progressHandler.removeCallbacks(progressTick);
+        progressHandler.postDelayed(progressTick, PROGRESS_INTERVAL_MS);
+
+        int result;
+        boolean created = false;
+        try {
+            if (NativeApp.hasNoNativeBinary) {
+                result = ERROR_NO_TOOLS;
+            } else {
+                Uri destination = job.destination;
+                if (destination == null && job.destinationTree != null) {
+                    destination = createInTree(job.destinationTree, chdFileName(job.displayName));
+                    created = destination != null;
+                    job.destination = destination;
+                    save();
+                }
+                result = destination != null ? convert(job, destination) : -5;
+            }
+        } catch (Throwable t) {
+            try { DebugLog.e(TAG, "Conversion of " + job.displayName + " failed: " + t); } catch (Throwable ignored) {}
+            result = -6;
+        }
+
+        synchronized (this) {
+            job.resultCode = result;
+            if (job.cancelRequested) {
+                job.state = State.CANCELLED;
+            } else {
+                job.state = result == 0 ? State.DONE : State.FAILED;
+            }
+        }
+        if (job.state != State.DONE) {
+            deleteOutput(job, created);
+        }
+        try { DebugLog.d(TAG, job.displayName + ": " + job.state + " (" + result + ")"); } catch (Throwable ignored) {}
+        save();
+        postJobsChanged();
+    }
+
+    private int convert(Job job, Uri destination) throws IOException {
+        ContentResolver resolver = context.getContentResolver();
+        try (ParcelFileDescriptor in = resolver.openFileDescriptor(job.source, "r");
+             ParcelFileDescriptor out = resolver.openFileDescriptor(destination, "rwt")) {
+            if (in == null || out == null) {
+                return in == null ? -3 : -5;
+            }
+            job.bytesTotal = in.getStatSize();
+            if (job.cancelRequested) {
+                return RESULT_CANCELLED;
+            }
+            return NativeApp.convertIsoToChdFd(in.getFd(), out.getFd(), job.nativeKey);
+        }
+    }
+
+    private void pollProgress() {
+        boolean running = false;
+        for (Job job : getJobs()) {
+            if (job.state != State.RUNNING) {
+                continue;
+            }
+            running = true;
+            long done = NativeApp.hasNoNativeBinary ? -1 : NativeApp.getChdConversionProgress(job.nativeKey);
+            if (done > 0) {
+                job.bytesDone = done;
+                long elapsedMs = SystemClock.elapsedRealtime() - job.startedAtMs;
+                if (elapsedMs > 0) {
+                    job.mbPerSecond = done / (1024f * 1024f) / (elapsedMs / 1000f);
+                }
+            }
+        }
+        if (running) {
+            postJobsChanged();
+            progressHandler.postDelayed(progressTick, PROGRESS_INTERVAL_MS);
+        }
+    }
+
+    @Nullable
+    private Uri createInTree(Uri tree, String name) {
+        try {
+            Uri parent = DocumentsContract.buildDocumentUriUsingTree(tree, DocumentsContract.getTreeDocumentId(tree));
+            return DocumentsContract.createDocument(context.getContentResolver(), parent, MIME_CHD, name);
+        } catch (Throwable t) {
+            try { DebugLog.e(TAG, "Cannot create " + name + " in " + tree + ": " + t.getMessage()); } catch (Throwable ignored) {}
+            return null;
+        }
+    }
+
+    private void deleteOutput(Job job, boolean created) {
+        Uri destination = job.destination;
+        if (destination == null) {
+            return;
+        }
+        try {
+            DocumentsContract.deleteDocument(context.getContentResolver(), destination);
+            // A picked file is gone for good; a folder job creates a new one on retry.
+            job.destination = null;
+        } catch (Throwable t) {
+            if (created) {
+                job.destination = null;
+            }
+        }
+    }
+
+    private void persistPermission(Uri uri, int flags) {
+        try {
+            context.getContentResolver().takePersistableUriPermission(uri, flags);
+        } catch (SecurityException ignored) {
+        }
+    }
+
+    private void postJobsChanged() {
+        mainHandler.removeCallbacks(notifyListeners);
+        mainHandler.post(notifyListeners);
+    }
+
+    private void dispatchJobsChanged() {
+        for (Listener listener : listeners) {
+            listener.onJobsChanged();
+        }
+    }
+
+    private void load() {
+        if (!storeFile.isFile()) {
+            return;
+        }
+        try {
+            JSONArray array = new JSONArray(new String(Files.readAllBytes(storeFile.toPath()), StandardCharsets.UTF_8));
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject o = array.getJSONObject(i);
+                State state = State.valueOf(o.getString("state"));
+                if (state == State.DONE || state == State.CANCELLED) {
+                    continue;
+                }
+                String destination = o.optString("destination", "");
+                String tree = o.optString("tree", "");
+                Job job = new Job(o.getString("id"), Uri.parse(o.getString("source")), o.optString("name", ""),
+                        destination.isEmpty() ? null : Uri.parse(destination),
+                        tree.isEmpty() ? null : Uri.parse(tree));
+                // Conversions can't pick up mid-file, so an interrupted one starts over.
+                job.state = state == State.RUNNING ? State.QUEUED : state;
+                job.resultCode = o.optInt("result", 0);
+                job.bytesTotal = querySize(job.source);
+                jobs.add(job);
+            }
+        } catch (IOException | JSONException | IllegalArgumentException e) {
+            try { DebugLog.e(TAG, "Discarding unreadable conversion queue: " + e.getMessage()); } catch (Throwable ignored) {}
+            jobs.clear();
+        }
+    }
+
+    private void save() {
+        JSONArray array = new JSONArray();
+        try {
+            for (Job job : getJobs()) {
+                JSONObject o = new JSONObject();
+                o.put("id", job.id);
+                o.put("source", job.source.toString());
+                o.put("name", job.displayName);
+                Uri destination = job.destination;
+                if (destination != null) {
+                    o.put("destination", destination.toString());
+                }
+                if (job.destinationTree != null) {
+                    o.put("tree", job.destinationTree.toString());
+                }
+                o.put("state", job.state.name());
+                o.put("result", job.resultCode);
+                array.put(o);
+            }
+        } catch (JSONException e) {
+            return;
+        }
+        synchronized (storeFile) {
+            File tmp = new File(storeFile.getPath() + ".tmp");
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+                out.write(array.toString());
+            } catch (IOException e) {
+                //noinspection ResultOfMethodCallIgnored
+                tmp.delete();
+                try { DebugLog.e(TAG, "Failed to save conversion queue: " + e.getMessage()); } catch (Throwable ignored) {}
+                return;
+            }
+            if (!tmp.renameTo(storeFile)) {
+                //noinspection ResultOfMethodCallIgnored
+                tmp.delete();
+            }
+        }
+    }
+
+    private long querySize(Uri uri) {
+        try (Cursor cursor = context.getContentResolver().query(uri, new String[] { OpenableColumns.SIZE }, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst() && !cursor.isNull(0)) {
+                return cursor.getLong(0);
+            }
+        } catch (Throwable ignored) {
+        }
+        return 0;
+    }
+}
@@ -34,11 +34,9 @@ import android.text.TextUtils;
 import androidx.annotation.Nullable;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.lang.reflect.Method;
 
 public final class DataDirectoryManager {
@@ -46,10 +44,31 @@ public final class DataDirectoryManager {
     private static final String KEY_CUSTOM_PATH = "data_dir_path";
     private static final String KEY_CUSTOM_URI = "data_dir_uri";
     private static final String KEY_PROMPT_DONE = "data_dir_prompt_done";
+    private static final String KEY_PENDING_SOURCE = "data_dir_migration_source";
+    private static final String KEY_PENDING_TARGET = "data_dir_migration_target";
+    private static final String KEY_PENDING_URI = "data_dir_migration_uri";
     private static final String TAG = "DataDirManager";
 
     private DataDirectoryManager() {}
 
+    /** Copy progress of {@link #migrateData(File, File, MigrationListener)}, reported from worker threads. */
+    public interface MigrationListener {
+        void onProgress(long bytesDone, long bytesTotal);
+    }
+
+    /** A migration that was started but never finished, e.g. because the process was killed. */
+    public static final class PendingMigration {
+        public final File source;
+        public final File target;
+        public final String uriString;
+
+        PendingMigration(File source, File target, String uriString) {
+            this.source = source;
+            this.target = target;
+            this.uriString = uriString;
+        }
+    }
+
     public static File getDataRoot(Context context) {
         SharedPreferences prefs = getPrefs(context);
         String custom = prefs.getString(KEY_CUSTOM_PATH, null);
@@ -83,12 +102,15 @@ public final class DataDirectoryManager {
         if (!TextUtils.isEmpty(uriString)) {
             editor.putString(KEY_CUSTOM_URI, uriString);
         }
-        editor.apply();
+        // commit(): a finished migration clears its pending record only after this is on disk.
+        editor.commit();
         markPromptDone(context);
+        GameSpecificSettingsManager.onDataRootChanged();
     }
 
     public static void clearCustomDataRoot(Context context) {
         getPrefs(context).edit().remove(KEY_CUSTOM_PATH).remove(KEY_CUSTOM_URI).apply();
+        GameSpecificSettingsManager.onDataRootChanged();
     }
 
     public static boolean isPromptDone(Context context) {
@@ -103,7 +125,62 @@ public final class DataDirectoryManager {
         getPrefs(context).edit().remove(KEY_PROMPT_DONE).apply();
     }
 
+    private static void setPendingMigration(Context context, File source, File target, String uriString) {
+        // commit() rather than apply(): the record has to be on disk before any file moves.
+        getPrefs(context).edit()
+                .putString(KEY_PENDING_SOURCE, source.getAbsolutePath())
+                .putString(KEY_PENDING_TARGET, target.getAbsolutePath())
+                .putString(KEY_PENDING_URI, uriString)
+                .commit();
+    }
+
+    private static void clearPendingMigration(Context context) {
+        getPrefs(context).edit()
+                .remove(KEY_PENDING_SOURCE)
+                .remove(KEY_PENDING_TARGET)
+                .remove(KEY_PENDING_URI)
+                .commit();
+    }
+
+    @Nullable
+    public static PendingMigration getPendingMigration(Context context) {
+        SharedPreferences prefs = getPrefs(context);
+        String source = prefs.getString(KEY_PENDING_SOURCE, null);
+        String target = prefs.getString(KEY_PENDING_TARGET, null);
+        String uri = prefs.getString(KEY_PENDING_URI, null);
+        if (TextUtils.isEmpty(source) || TextUtils.isEmpty(target) || TextUtils.isEmpty(uri)) {
+            return null;
+        }
+        return new PendingMigration(new File(source), new File(target), uri);
+    }
+
+    /**
+     * Moves the data root from {@code source} to {@code target} and makes {@code target} the
+     * custom root, recording the move first so {@link #getPendingMigration} can finish it after a
+     * crash. Blocks; returns whether the data was moved.
+     */
+    public static boolean moveDataRoot(Context context, File source, File target, String uriString,
+                                       @Nullable MigrationListener listener) {
+        setPendingMigration(context, source, target, uriString);
+        boolean success = migrateData(source, target, listener);
+        if (success) {
+            storeCustomDataRoot(context, target.getAbsolutePath(), uriString);
+        }
+        // Only once the new root is stored, so a crash in between resumes instead of losing it.
+        clearPendingMigration(context);
+        return success;
+    }
+
     public static boolean migrateData(File source, File target) {
+        return migrateData(source, target, null);
+    }
+
+    /**
+     * Moves the data root to {@code target}. A plain rename is tried first; otherwise every file is
+     * copied and verified (see {@link DataMigration}) before the source is cleared. Calling this
+     * again after an interrupted run picks up where it stopped.
+     */
+    public static boolean migrateData(File source, File target, @Nullable MigrationListener listener) {
         if (source == null || target == null) {
             return false;
         }
@@ -119,6 +196,8 @@ public final class DataDirectoryManager {
             try { DebugLog.e(TAG, "Target is nested inside source: " + targetPath); } catch (Throwable ignored) {}
             return false;
         }
+        // Get pending per-game settings onto disk so they move with everything else.
+        GameSpecificSettingsManager.onDataRootChanged();
         if (!source.exists()) {
             return ensureDir(target);
         }
@@ -137,11 +216,13 @@ public final class DataDirectoryManager {
             try { DebugLog.e(TAG, "Unable to ensure target directory: " + targetPath); } catch (Throwable ignored) {}
             return false;
         }
-        if (!copyRecursively(source, target)) {
-            try { DebugLog.e(TAG, "Recursive copy failed from " + sourcePath + " to " + targetPath); } catch (Throwable ignored) {}
+        if (!new DataMigration(source, target, listener).run()) {
+            try { DebugLog.e(TAG, "Migration failed from " + sourcePath + " to " + targetPath); } catch (Throwable ignored) {}
             return false;
         }
         clearDirectory(source);
+        //noinspection ResultOfMethodCallIgnored
+        new File(target, DataMigration.JOURNAL_NAME).delete();
         return true;
     }
 
@@ -210,44 +291,6 @@ public final class DataDirectoryManager {
         return dir.mkdirs();
     }
 
-    private static boolean copyRecursively(File source, File target) {
-        if (source.isDirectory()) {
-            if (!target.exists() && !target.mkdirs()) {
-                try { DebugLog.e(TAG, "Failed to create directory: " + target); } catch (Throwable ignored) {}
-                return false;
-            }
-            File[] children = source.listFiles();
-            if (children == null) {
-                try { DebugLog.e(TAG, "Cannot list directory contents: " + source); } catch (Throwable ignored) {}
-                return false;
-            }
-            for (File child : children) {
-                if (!copyRecursively(child, new File(target, child.getName()))) {
-                    return false;
-                }
-            }
-            return true;
-        }
-        File parent = target.getParentFile();
-        if (parent != null && !parent.exists() && !parent.mkdirs()) {
-            try { DebugLog.e(TAG, "Failed to create parent for file: " + parent); } catch (Throwable ignored) {}
-            return false;
-        }
-        try (InputStream in = new FileInputStream(source);
-             OutputStream out = new FileOutputStream(target)) {
-            byte[] buffer = new byte[1024 * 1024];
-            int read;
-            while ((read = in.read(buffer)) != -1) {
-                out.write(buffer, 0, read);
-            }
-            out.flush();
-        } catch (IOException e) {
-            try { DebugLog.e(TAG, "Copy failed for " + source + " -> " + target + ": " + e.getMessage()); } catch (Throwable ignored) {}
-            return false;
-        }
-        return true;
-    }
-
     private static void clearDirectory(File dir) {
         if (dir == null || !dir.exists() || !dir.isDirectory()) {
             return;
@@ -276,7 +319,19 @@ public final class DataDirectoryManager {
         file.delete();
     }
 
+    /**
+     * Extracts the bundled asset file or directory {@code srcPath} into the data root. Only files
+     * that are missing or changed since the last extraction are written (see
+     * {@link AssetExtractor}); builds without an asset manifest copy the whole tree.
+     */
     public static void copyAssetAll(Context context, String srcPath) {
+        if (AssetExtractor.extract(context, getDataRoot(context), srcPath)) {
+            return;
+        }
+        copyAssetTree(context, srcPath);
+    }
+
+    private static void copyAssetTree(Context context, String srcPath) {
         AssetManager assetMgr = context.getAssets();
         try {
             String[] assets = assetMgr.list(srcPath);
@@ -297,7 +352,7 @@ public final class DataDirectoryManager {
                     }
                 }
                 for (String element : assets) {
-                    copyAssetAll(context, srcPath + File.separator + element);
+                    copyAssetTree(context, srcPath + File.separator + element);
                 }
             }
         } catch (IOException ignored) {
@@ -0,0 +1,346 @@
+
+/*
+
+By MoonPower (Momo-AUX1) GPLv3 License
+   This file is part of ARMSX2.
+
+   ARMSX2 is free software: you can redistribute it and/or modify
+   it under the terms of the GNU General Public License as published by
+   the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   ARMSX2 is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License
+   along with ARMSX2.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package kr.co.iefriends.pcsx2.utils;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Copies a data root into a new location so that the source can be deleted safely.
+ *
+ * <p>Files are copied kernel-side with {@link FileChannel#transferTo} into a {@code .migrating}
+ * file, synced, compared with the source by size and CRC32 and only then renamed into place.
+ * Small files are spread over a thread pool while large ones (save states, memcards, texture
+ * packs) stream one at a time on the calling thread so they don't fight over the disk.
+ *
+ * <p>Every verified file is appended to a journal in the target root. When a migration is
+ * restarted after the process died, files whose journal entry still matches both sides are
+ * skipped. Once the journal ends in {@link #VERIFIED_MARKER} the copy is complete and only the
+ * source cleanup is left.
+ */
+final class DataMigration {
+    private static final String TAG = "DataMigration";
+    static final String JOURNAL_NAME = ".armsx2_migration";
+    private static final String PARTIAL_SUFFIX = ".migrating";
+    private static final String SOURCE_PREFIX = "source\t";
+    private static final String VERIFIED_MARKER = "#verified";
+    private static final long SMALL_FILE_BYTES = 4L * 1024 * 1024;
+    private static final int BUFFER_BYTES = 256 * 1024;
+
+    private final File source;
+    private final File target;
+    @Nullable
+    private final DataDirectoryManager.MigrationListener listener;
+
+    // Relative path -> {size, crc} of files the journal already records as copied and verified.
+    private final Map<String, long[]> journaled = new HashMap<>();
+    private final AtomicBoolean failed = new AtomicBoolean();
+    private final AtomicLong bytesDone = new AtomicLong();
+    private final AtomicInteger lastPercent = new AtomicInteger(-1);
+    private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_BYTES));
+    private long bytesTotal;
+    private Writer journal;
+
+    private static final class Entry {
+        final String path;
+        final long size;
+
+        Entry(String path, long size) {
+            this.path = path;
+            this.size = size;
+        }
+    }
+
+    DataMigration(File source, File target, @Nullable DataDirectoryManager.MigrationListener listener) {
+        this.source = source;
+        this.target = target;
+        this.listener = listener;
+    }
+
+    /** Copies and verifies everything; true when the source may be deleted. */
+    boolean run() {
+        File journalFile = new File(target, JOURNAL_NAME);
+        if (readJournal(journalFile)) {
+            try { DebugLog.d(TAG, "Copy already verified, resuming cleanup of " + source); } catch (Throwable ignored) {}
+            return true;
+        }
+        List<Entry> files = new ArrayList<>();
+        if (!scan(source, "", files)) {
+            return false;
+        }
+        for (Entry entry : files) {
+            bytesTotal += entry.size;
+        }
+        boolean fresh = !journalFile.exists();
+        try (FileOutputStream out = new FileOutputStream(journalFile, true);
+             Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+            journal = writer;
+            if (fresh) {
+                appendJournal(SOURCE_PREFIX + source.getAbsolutePath());
+            } else if (!journaled.isEmpty()) {
+                try { DebugLog.d(TAG, "Resuming migration, " + journaled.size() + " files already done"); } catch (Throwable ignored) {}
+            }
+            if (!copyAll(files)) {
+                return false;
+            }
+            appendJournal(VERIFIED_MARKER);
+            // The caller deletes the source next; the marker has to survive a power cut first.
+            out.getFD().sync();
+            return true;
+        } catch (IOException e) {
+            try { DebugLog.e(TAG, "Migration journal failed: " + e.getMessage()); } catch (Throwable ignored) {}
+            return false;
+        } finally {
+            journal = null;
+        }
+    }
+
+    /** Loads the journal left by an earlier run; returns whether that run verified everything. */
+    private boolean readJournal(File journalFile) {
+        if (!journalFile.isFile()) {
+            return false;
+        }
+        boolean verified = false;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), StandardCharsets.UTF_8))) {
+            String first = in.readLine();
+            if (first == null || !first.equals(SOURCE_PREFIX + source.getAbsolutePath())) {
+                // Left over from a migration of some other folder.
+                in.close();
+                //noinspection ResultOfMethodCallIgnored
+                journalFile.delete();
+                return false;
+            }
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.equals(VERIFIED_MARKER)) {
+                    verified = true;
+                    continue;
+                }
+                // size \t crc \t relative path; a torn last line simply doesn't parse.
+                String[] parts = line.split("\t", 3);
+                if (parts.length != 3) {
+                    continue;
+                }
+                try {
+                    journaled.put(parts[2], new long[] { Long.parseLong(parts[0]), Long.parseLong(parts[1], 16) });
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        } catch (IOException e) {
+            try { DebugLog.e(TAG, "Unreadable migration journal, starting over: " + e.getMessage()); } catch (Throwable ignored) {}
+            journaled.clear();
+            //noinspection ResultOfMethodCallIgnored
+            journalFile.delete();
+            return false;
+        }
+        return verified;
+    }
+
+    private boolean scan(File dir, String prefix, List<Entry> out) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            try { DebugLog.e(TAG, "Cannot list directory contents: " + dir); } catch (Throwable ignored) {}
+            return false;
+        }
+        File targetDir = prefix.isEmpty() ? target : new File(target, prefix);
+        if (!targetDir.exists() && !targetDir.mkdirs()) {
+            try { DebugLog.e(TAG, "Failed to create directory: " + targetDir); } catch (Throwable ignored) {}
+            return false;
+        }
+        for (File child : children) {
+            String path = prefix.isEmpty() ? child.getName() : prefix + File.separator + child.getName();
+            if (child.isDirectory()) {
+                if (!scan(child, path, out)) {
+                    return false;
+                }
+            } else if (!path.equals(JOURNAL_NAME)) {
+                out.add(new Entry(path, child.length()));
+            }
+        }
+        return true;
+    }
+
+    private boolean copyAll(List<Entry> files) {
+        int threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> new Thread(r, "DataMigration"));
+        List<Future<Boolean>> pending = new ArrayList<>();
+        List<Entry> large = new ArrayList<>();
+        try {
+            for (Entry entry : files) {
+                if (isJournaled(entry)) {
+                    addProgress(entry.size);
+                } else if (entry.size < SMALL_FILE_BYTES) {
+                    pending.add(pool.submit(() -> copyAndVerify(entry)));
+                } else {
+                    large.add(entry);
+                }
+            }
+            boolean ok = true;
+            for (Entry entry : large) {
+                if (!copyAndVerify(entry)) {
+                    ok = false;
+                    break;
+                }
+            }
+            for (Future<Boolean> future : pending) {
+                try {
+                    ok &= future.get();
+                } catch (ExecutionException e) {
+                    try { DebugLog.e(TAG, "Copy task failed: " + e.getCause()); } catch (Throwable ignored) {}
+                    ok = false;
+                }
+            }
+            return ok && !failed.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // A journaled copy is kept while the target still carries the source's mtime (set after each
+    // copy); otherwise the source is checksummed again in case it changed since.
+    private boolean isJournaled(Entry entry) {
+        long[] record = journaled.get(entry.path);
+        File src = new File(source, entry.path);
+        File dst = new File(target, entry.path);
+        if (record == null || record[0] != entry.size || dst.length() != entry.size) {
+            return false;
+        }
+        if (dst.lastModified() == src.lastModified()) {
+            return true;
+        }
+        try {
+            return crc32(src) == record[1];
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private boolean copyAndVerify(Entry entry) {
+        if (failed.get()) {
+            return false;
+        }
+        File src = new File(source, entry.path);
+        File dst = new File(target, entry.path);
+        File partial = new File(dst.getPath() + PARTIAL_SUFFIX);
+        try {
+            try (FileChannel in = new FileInputStream(src).getChannel();
+                 FileChannel out = new FileOutputStream(partial).getChannel()) {
+                long size = in.size();
+                long position = 0;
+                while (position < size) {
+                    long moved = in.transferTo(position, size - position, out);
+                    if (moved <= 0) {
+                        throw new IOException("transferTo made no progress at " + position);
+                    }
+                    position += moved;
+                    addProgress(moved);
+                }
+                out.force(true);
+            }
+            long size = src.length();
+            if (partial.length() != size) {
+                throw new IOException("size mismatch, " + partial.length() + " != " + size);
+            }
+            long crc = crc32(src);
+            if (crc32(partial) != crc) {
+                throw new IOException("checksum mismatch");
+            }
+            if (dst.exists() && !dst.delete()) {
+                throw new IOException("cannot replace existing file");
+            }
+            if (!partial.renameTo(dst)) {
+                throw new IOException("rename failed");
+            }
+            //noinspection ResultOfMethodCallIgnored
+            dst.setLastModified(src.lastModified());
+            appendJournal(size + "\t" + Long.toHexString(crc) + "\t" + entry.path);
+            return true;
+        } catch (IOException e) {
+            failed.set(true);
+            //noinspection ResultOfMethodCallIgnored
+            partial.delete();
+            try { DebugLog.e(TAG, "Copy failed for " + src + " -> " + dst + ": " + e.getMessage()); } catch (Throwable ignored) {}
+            return false;
+        }
+    }
+
+    private long crc32(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = buffers.get();
+        try (FileChannel channel = new FileInputStream(file).getChannel()) {
+            while (true) {
+                buffer.clear();
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+                buffer.flip();
+                crc.update(buffer);
+            }
+        }
+        return crc.getValue();
+    }
+
+    private void appendJournal(String line) throws IOException {
+        synchronized (this) {
+            journal.write(line);
+            journal.write('\n');
+            journal.flush();
+        }
+    }
+
+    private void addProgress(long bytes) {
+        long done = bytesDone.addAndGet(bytes);
+        if (listener == null || bytesTotal <= 0) {
+            return;
+        }
+        int percent = (int) Math.min(100, done * 100 / bytesTotal);
+        int previous = lastPercent.get();
+        if (percent != previous && lastPercent.compareAndSet(previous, percent)) {
+            listener.onProgress(done, bytesTotal);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package kr.co.iefriends.pcsx2.utils;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.text.TextUtils;
 
 import androidx.annotation.Nullable;
@@ -9,7 +11,6 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -24,7 +25,25 @@ public final class GameSpecificSettingsManager {
     private static final String KEY_VERSION = "version";
     private static final String KEY_GAMES = "games";
     private static final int CURRENT_VERSION = 1;
+    private static final String TAG = "GameSettings";
+    private static final long WRITE_DELAY_MS = 500;
+    private static final long WRITE_RETRY_MS = 5000;
     private static final Object LOCK = new Object();
+    private static final Object WRITE_LOCK = new Object();
+    private static final Runnable WRITE_PENDING = GameSpecificSettingsManager::writePending;
+
+    // In-memory copy of IGS.json, guarded by LOCK. Changes reach the disk WRITE_DELAY_MS after the
+    // last one, through a temp file renamed over the old one, so a crash never leaves it half written.
+    private static JSONObject sRoot;
+    private static File sFile;
+    private static boolean sDirty;
+    private static Handler sWriter;
+    // Changes made while the file could not be read, by key; JSONObject.NULL marks a removal.
+    // They are merged into the root once a read succeeds, so a save is never accepted and lost.
+    @Nullable
+    private static JSONObject sPending;
+    @Nullable
+    private static Context sAppContext;
 
     private GameSpecificSettingsManager() {
     }
@@ -96,7 +115,10 @@ public final class GameSpecificSettingsManager {
             return null;
         }
         synchronized (LOCK) {
-            JSONObject root = readRoot(context);
+            JSONObject root = loadedRoot(context);
+            if (root == null) {
+                return sPending != null ? GameSettings.fromJson(sPending.optJSONObject(key)) : null;
+            }
             JSONObject games = root.optJSONObject(KEY_GAMES);
             if (games == null) {
                 return null;
@@ -114,12 +136,15 @@ public final class GameSpecificSettingsManager {
             return;
         }
         synchronized (LOCK) {
-            JSONObject root = readRoot(context);
-            JSONObject games = ensureGamesObject(root);
             try {
-                games.put(key, settings.toJson());
-                writeRoot(context, root);
-            } catch (JSONException | IOException ignored) {
+                JSONObject root = loadedRoot(context);
+                if (root == null) {
+                    deferLocked(key, settings.toJson());
+                    return;
+                }
+                ensureGamesObject(root).put(key, settings.toJson());
+                scheduleWriteLocked();
+            } catch (JSONException ignored) {
             }
         }
     }
@@ -129,18 +154,13 @@ public final class GameSpecificSettingsManager {
             return;
         }
         synchronized (LOCK) {
-            JSONObject root = readRoot(context);
-            JSONObject games = root.optJSONObject(KEY_GAMES);
-            if (games == null || !games.has(key)) {
+            JSONObject root = loadedRoot(context);
+            if (root == null) {
+                deferLocked(key, JSONObject.NULL);
                 return;
             }
-            games.remove(key);
-            if (games.length() == 0) {
-                root.remove(KEY_GAMES);
-            }
-            try {
-                writeRoot(context, root);
-            } catch (IOException ignored) {
+            if (removeFromRoot(root, key)) {
+                scheduleWriteLocked();
             }
         }
     }
@@ -150,8 +170,9 @@ public final class GameSpecificSettingsManager {
             return;
         }
         synchronized (LOCK) {
-            JSONObject root = readRoot(context);
-            JSONObject games = root.optJSONObject(KEY_GAMES);
+            // Nothing is pruned from a file that can't be read; the next scan tries again.
+            JSONObject root = loadedRoot(context);
+            JSONObject games = root != null ? root.optJSONObject(KEY_GAMES) : null;
             if (games == null || games.length() == 0) {
                 return;
             }
@@ -171,16 +192,151 @@ public final class GameSpecificSettingsManager {
                 }
             }
             if (changed) {
+                scheduleWriteLocked();
+            }
+        }
+    }
+
+    /** Writes pending changes now instead of after the write-behind delay. */
+    public static void flush() {
+        synchronized (LOCK) {
+            if (sWriter != null) {
+                sWriter.removeCallbacks(WRITE_PENDING);
+            }
+        }
+        writePending();
+    }
+
+    /**
+     * Writes pending changes to the current file and forgets it, so the next access reads
+     * {@value #FILE_NAME} from wherever the data root is by then.
+     */
+    static void onDataRootChanged() {
+        flush();
+        synchronized (LOCK) {
+            sRoot = null;
+            sFile = null;
+        }
+    }
+
+    // The file is read once per data root; afterwards every lookup is served from memory. Null
+    // while the file can't be read, so nothing overwrites it and the next access tries again.
+    @Nullable
+    private static JSONObject loadedRoot(@Nullable Context context) {
+        if (context != null) {
+            sAppContext = context.getApplicationContext();
+        }
+        if (sRoot == null) {
+            File file = getSettingsFile(context != null ? context : sAppContext);
+            JSONObject root = readRoot(file);
+            if (root == null) {
+                return null;
+            }
+            sFile = file;
+            sRoot = root;
+            if (sPending != null) {
+                mergePendingLocked(root);
+            }
+        }
+        return sRoot;
+    }
+
+    // Keeps a change made while the file is unreadable and retries the read from the writer.
+    private static void deferLocked(String key, Object value) {
+        if (sPending == null) {
+            sPending = new JSONObject();
+        }
+        try {
+            sPending.put(key, value);
+        } catch (JSONException ignored) {
+        }
+        scheduleWriteLocked(WRITE_RETRY_MS);
+    }
+
+    private static void mergePendingLocked(JSONObject root) {
+        JSONObject pending = sPending;
+        sPending = null;
+        Iterator<String> keys = pending.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            Object value = pending.opt(key);
+            if (value instanceof JSONObject) {
                 try {
-                    writeRoot(context, root);
-                } catch (IOException ignored) {
+                    ensureGamesObject(root).put(key, value);
+                } catch (JSONException ignored) {
                 }
+            } else {
+                removeFromRoot(root, key);
             }
         }
+        sDirty = true;
+    }
+
+    private static boolean removeFromRoot(JSONObject root, String key) {
+        JSONObject games = root.optJSONObject(KEY_GAMES);
+        if (games == null || !games.has(key)) {
+            return false;
+        }
+        games.remove(key);
+        if (games.length() == 0) {
+            root.remove(KEY_GAMES);
+        }
+        return true;
     }
 
-    private static JSONObject readRoot(Context context) {
-        File file = getSettingsFile(context);
+    private static void scheduleWriteLocked() {
+        scheduleWriteLocked(WRITE_DELAY_MS);
+    }
+
+    private static void scheduleWriteLocked(long delayMs) {
+        sDirty = true;
+        if (sWriter == null) {
+            HandlerThread thread = new HandlerThread("IGSWriter");
+            thread.start();
+            sWriter = new Handler(thread.getLooper());
+        }
+        sWriter.removeCallbacks(WRITE_PENDING);
+        sWriter.postDelayed(WRITE_PENDING, delayMs);
+    }
+
+    private static void writePending() {
+        // WRITE_LOCK keeps snapshots reaching the disk in the order they were taken.
+        synchronized (WRITE_LOCK) {
+            File file;
+            byte[] data;
+            synchronized (LOCK) {
+                if (sRoot == null && sPending != null && loadedRoot(null) == null) {
+                    scheduleWriteLocked(WRITE_RETRY_MS);
+                    return;
+                }
+                if (!sDirty || sRoot == null || sFile == null) {
+                    return;
+                }
+                try {
+                    sRoot.put(KEY_VERSION, CURRENT_VERSION);
+                    data = sRoot.toString(2).getBytes(StandardCharsets.UTF_8);
+                } catch (JSONException e) {
+                    return;
+                }
+                file = sFile;
+                sDirty = false;
+            }
+            try {
+                writeAtomically(file, data);
+            } catch (IOException e) {
+                try { DebugLog.e(TAG, "Failed to write " + file + ": " + e.getMessage()); } catch (Throwable ignored) {}
+                synchronized (LOCK) {
+                    if (sFile == file) {
+                        scheduleWriteLocked(WRITE_RETRY_MS);
+                    }
+                }
+            }
+        }
+    }
+
+    // Null when the file exists but can't be read, as opposed to being malformed.
+    @Nullable
+    private static JSONObject readRoot(File file) {
         if (!file.exists() || !file.isFile()) {
             return createEmptyRoot();
         }
@@ -195,26 +351,38 @@ public final class GameSpecificSettingsManager {
                 root.put(KEY_VERSION, CURRENT_VERSION);
             }
             return root;
-        } catch (Exception ignored) {
+        } catch (IOException e) {
+            try { DebugLog.e(TAG, "Cannot read " + file + ": " + e.getMessage()); } catch (Throwable ignored) {}
+            return null;
+        } catch (JSONException e) {
+            // Keep the unreadable file for the user rather than overwriting it on the next save.
+            File bad = new File(file.getPath() + ".bad");
+            //noinspection ResultOfMethodCallIgnored
+            bad.delete();
+            boolean kept = file.renameTo(bad);
+            try { DebugLog.e(TAG, "Unreadable " + file + (kept ? ", moved to " + bad : "") + ": " + e.getMessage()); } catch (Throwable ignored) {}
             return createEmptyRoot();
         }
     }
 
-    private static void writeRoot(Context context, JSONObject root) throws IOException {
-        if (context == null || root == null) {
-            return;
-        }
-        File file = getSettingsFile(context);
+    private static void writeAtomically(File file, byte[] data) throws IOException {
         File parent = file.getParentFile();
         if (parent != null && !parent.exists()) {
             parent.mkdirs();
         }
-        try (BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(file, false))) {
-            root.put(KEY_VERSION, CURRENT_VERSION);
-            out.write(root.toString(2).getBytes(StandardCharsets.UTF_8));
-            out.flush();
-        } catch (JSONException e) {
-            throw new IOException(e);
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp, false)) {
+            out.write(data);
+            out.getFD().sync();
+        } catch (IOException e) {
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+            throw e;
+        }
+        if (!tmp.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+            throw new IOException("rename failed");
         }
     }
 
@@ -16,6 +16,7 @@ import java.util.Comparator;
 import java.util.List;
 
 import kr.co.iefriends.pcsx2.NativeApp;
+import kr.co.iefriends.pcsx2.input.InputDeviceRegistry;
 
 
 public class SDLControllerManager
@@ -103,33 +104,12 @@ public class SDLControllerManager
         mHapticHandler.stop(device_id);
     }
 
-    // Check if a given device is considered a possible SDL joystick
+    // Check if a given device is considered a possible SDL joystick.
+    // This is called for every button press and motion event, so it goes through the cached
+    // device capabilities instead of asking the input manager each time.
     static public boolean isDeviceSDLJoystick(int deviceId) {
-        InputDevice device = InputDevice.getDevice(deviceId);
-        // We cannot use InputDevice.isVirtual before API 16, so let's accept
-        // only nonnegative device ids (VIRTUAL_KEYBOARD equals -1)
-        if ((device == null) || (deviceId < 0)) {
-            return false;
-        }
-        int sources = device.getSources();
-
-        /* This is called for every button press, so let's not spam the logs */
-        /*
-        if ((sources & InputDevice.SOURCE_CLASS_JOYSTICK) != 0) {
-            Log.v(TAG, "Input device " + device.getName() + " has class joystick.");
-        }
-        if ((sources & InputDevice.SOURCE_DPAD) == InputDevice.SOURCE_DPAD) {
-            Log.v(TAG, "Input device " + device.getName() + " is a dpad.");
-        }
-        if ((sources & InputDevice.SOURCE_GAMEPAD) == InputDevice.SOURCE_GAMEPAD) {
-            Log.v(TAG, "Input device " + device.getName() + " is a gamepad.");
-        }
-        */
-
-        return ((sources & InputDevice.SOURCE_CLASS_JOYSTICK) != 0 ||
-                ((sources & InputDevice.SOURCE_DPAD) == InputDevice.SOURCE_DPAD) ||
-                ((sources & InputDevice.SOURCE_GAMEPAD) == InputDevice.SOURCE_GAMEPAD)
-        );
+        InputDeviceRegistry.Caps caps = InputDeviceRegistry.get(deviceId);
+        return caps != null && caps.isJoystick();
     }
 
 }
@@ -306,22 +286,38 @@ class SDLJoystickHandler_API16 extends SDLJoystickHandler {
         if (action == MotionEvent.ACTION_MOVE) {
             SDLJoystick joystick = getJoystick(event.getDeviceId());
             if (joystick != null) {
-                for (int i = 0; i < joystick.axes.size(); i++) {
-                    InputDevice.MotionRange range = joystick.axes.get(i);
-                    /* Normalize the value to -1...1 */
-                    float value = (event.getAxisValue(range.getAxis(), actionPointerIndex) - range.getMin()) / range.getRange() * 2.0f - 1.0f;
-                    SDLControllerManager.onNativeJoy(joystick.device_id, i, value);
-                }
-                for (int i = 0; i < joystick.hats.size() / 2; i++) {
-                    int hatX = Math.round(event.getAxisValue(joystick.hats.get(2 * i).getAxis(), actionPointerIndex));
-                    int hatY = Math.round(event.getAxisValue(joystick.hats.get(2 * i + 1).getAxis(), actionPointerIndex));
-                    SDLControllerManager.onNativeHat(joystick.device_id, i, hatX, hatY);
+                // High-rate pads batch several samples into one event; replay them oldest first
+                // so quick flicks between frames are not lost.
+                final int historySize = event.getHistorySize();
+                for (int h = 0; h < historySize; h++) {
+                    reportSample(joystick, event, actionPointerIndex, h);
                 }
+                reportSample(joystick, event, actionPointerIndex, -1);
             }
         }
         return true;
     }
 
+    private static void reportSample(SDLJoystick joystick, MotionEvent event, int pointerIndex, int historyPos) {
+        for (int i = 0; i < joystick.axes.size(); i++) {
+            InputDevice.MotionRange range = joystick.axes.get(i);
+            /* Normalize the value to -1...1 */
+            float value = (axisValue(event, range.getAxis(), pointerIndex, historyPos) - range.getMin()) / range.getRange() * 2.0f - 1.0f;
+            SDLControllerManager.onNativeJoy(joystick.device_id, i, value);
+        }
+        for (int i = 0; i < joystick.hats.size() / 2; i++) {
+            int hatX = Math.round(axisValue(event, joystick.hats.get(2 * i).getAxis(), pointerIndex, historyPos));
+            int hatY = Math.round(axisValue(event, joystick.hats.get(2 * i + 1).getAxis(), pointerIndex, historyPos));
+            SDLControllerManager.onNativeHat(joystick.device_id, i, hatX, hatY);
+        }
+    }
+
+    private static float axisValue(MotionEvent event, int axis, int pointerIndex, int historyPos) {
+        return historyPos < 0
+                ? event.getAxisValue(axis, pointerIndex)
+                : event.getHistoricalAxisValue(axis, pointerIndex, historyPos);
+    }
+
     String getJoystickDescriptor(InputDevice joystickDevice) {
         String desc = joystickDevice.getDescriptor();
 
@@ -501,6 +497,10 @@ class SDLHapticHandler_API31 extends SDLHapticHandler {
 
     @Override
     void rumble(int device_id, float low_frequency_intensity, float high_frequency_intensity, int length) {
+        InputDeviceRegistry.Caps caps = InputDeviceRegistry.get(device_id);
+        if (caps == null || !caps.canRumble()) {
+            return;
+        }
         InputDevice device = InputDevice.getDevice(device_id);
         if (device == null) {
             return;